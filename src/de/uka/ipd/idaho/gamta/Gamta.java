@@ -50,6 +50,7 @@ import de.uka.ipd.idaho.gamta.defaultImplementation.StringBufferCharSequence;
 import de.uka.ipd.idaho.gamta.defaultImplementation.TemporaryAnnotation;
 import de.uka.ipd.idaho.gamta.defaultImplementation.TemporaryAnnotationSet;
 import de.uka.ipd.idaho.gamta.defaultImplementation.TokenizedMutableCharSequence;
+import de.uka.ipd.idaho.gamta.util.AnalyzerInstrumentation;
 import de.uka.ipd.idaho.gamta.util.TestDocumentProvider;
 import de.uka.ipd.idaho.gamta.util.analyzers.LineEndMarker;
 import de.uka.ipd.idaho.gamta.util.analyzers.ParagraphStructureNormalizer;
@@ -1561,6 +1562,16 @@ public class Gamta extends StringUtils {
 	 *         TokenSequence that match the specified regular expression
 	 */
 	public static Annotation[] extractAllMatches(TokenSequence tokens, String regEx, int maxTokens, Dictionary startExclude, final Dictionary exclude, boolean allowOverlap, boolean ignoreLinebreaks, boolean normalize) {
+		AnalyzerInstrumentation.Probe probe = AnalyzerInstrumentation.startProbe(AnalyzerInstrumentation.REGEX_OPERATION, regEx);
+		try {
+			return doExtractAllMatches(tokens, regEx, maxTokens, startExclude, exclude, allowOverlap, ignoreLinebreaks, normalize);
+		}
+		finally {
+			if (probe != null)
+				probe.stop();
+		}
+	}
+	private static Annotation[] doExtractAllMatches(TokenSequence tokens, String regEx, int maxTokens, Dictionary startExclude, final Dictionary exclude, boolean allowOverlap, boolean ignoreLinebreaks, boolean normalize) {
 		
 		/*
 		 * Inspect regex in order to find excludable punctuation marks (keep
@@ -2114,6 +2125,16 @@ public class Gamta extends StringUtils {
 	 *         specified StringVector
 	 */
 	public static Annotation[] extractAllContained(TokenSequence tokens, Dictionary list, int maxTokens, boolean caseSensitive, boolean allowOverlap, boolean normalize) {
+		AnalyzerInstrumentation.Probe probe = (AnalyzerInstrumentation.isEnabled() ? AnalyzerInstrumentation.startProbe(AnalyzerInstrumentation.DICTIONARY_OPERATION, ((list == null) ? null : (list.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(list))))) : null);
+		try {
+			return doExtractAllContained(tokens, list, maxTokens, caseSensitive, allowOverlap, normalize);
+		}
+		finally {
+			if (probe != null)
+				probe.stop();
+		}
+	}
+	private static Annotation[] doExtractAllContained(TokenSequence tokens, Dictionary list, int maxTokens, boolean caseSensitive, boolean allowOverlap, boolean normalize) {
 		
 		//	check parameters
 		if ((tokens == null) || (list == null) || list.isEmpty()) return new Annotation[0];
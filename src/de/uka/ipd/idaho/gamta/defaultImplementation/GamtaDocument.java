@@ -1949,10 +1949,10 @@ public class GamtaDocument extends AbstractAttributed implements DocumentRoot {
 			this.size = size;
 		}
 		
-		AnnotationCacheEntry subAnnotationCacheGet(String type) {
+		synchronized AnnotationCacheEntry subAnnotationCacheGet(String type) {
 			return ((this.subAnnotationsByType == null) ? null : ((AnnotationCacheEntry) this.subAnnotationsByType.get(type)));
 		}
-		void subAnnotationCachePut(String type, AnnotationCacheEntry ace) {
+		synchronized void subAnnotationCachePut(String type, AnnotationCacheEntry ace) {
 			if (this.subAnnotationsByType == null)
 				this.subAnnotationsByType = new WeakHashMap();
 			this.subAnnotationsByType.put(type, ace);
@@ -2784,6 +2784,7 @@ public class GamtaDocument extends AbstractAttributed implements DocumentRoot {
 			return ((AnnotationBase[]) annotList.toArray(new AnnotationBase[annotList.size()]));
 		}
 		void cleanup() {
+			int maxAnnotSize = 0; // annotations might have grown in token sequence change
 			for (int a = 0; a < this.annotCount; a++)
 				if (this.annots[a].size <= 0) {
 					this.removed.add(this.annots[a]);
@@ -2791,6 +2792,9 @@ public class GamtaDocument extends AbstractAttributed implements DocumentRoot {
 					if (AnnotationBase.DEBUG_CHANGE || this.annots[a].printDebugInfo())
 						System.out.println("REMOVED: " + this.annots[a].type + " at " + this.annots[a].absoluteStartIndex + " sized " + this.annots[a].size);
 				}
+				else if (maxAnnotSize < this.annots[a].size)
+					maxAnnotSize = this.annots[a].size;
+			this.maxAnnotSize = maxAnnotSize;
 			this.ensureClean();
 		}
 		void clear() {
@@ -2802,7 +2806,10 @@ public class GamtaDocument extends AbstractAttributed implements DocumentRoot {
 		void annotationTypeChanged() {
 			this.typeModCount++;
 		}
-		private void ensureSorted() {
+		/* synchronized, as sorting and cleanup happen on reads, which might
+		 * come from multiple threads at once, e.g. parallel for loops in GAMTA
+		 * scripts */
+		private synchronized void ensureSorted() {
 			this.ensureClean();
 			if ((this.cleanAddCount == this.addCount) && (this.cleanTypeModCount == this.typeModCount) && (this.cleanOrderModCount == orderModCount))
 				return;
@@ -2815,7 +2822,7 @@ public class GamtaDocument extends AbstractAttributed implements DocumentRoot {
 			this.cleanTypeModCount = this.typeModCount;
 			this.cleanOrderModCount = orderModCount;
 		}
-		private void ensureClean() {
+		private synchronized void ensureClean() {
 			if (TRACK_INSTANCES) accessHistory.accessed();
 			if (this.removed.isEmpty())
 				return;
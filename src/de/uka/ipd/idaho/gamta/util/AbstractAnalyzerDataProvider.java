@@ -27,9 +27,17 @@
  */
 package de.uka.ipd.idaho.gamta.util;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import de.uka.ipd.idaho.stringUtils.CompactDictionary;
+import de.uka.ipd.idaho.stringUtils.Dictionary;
+
 /**
  * This implementation provides a universal implementation of the equals() and
- * hashCode() methods, both based on the getAbsolutePath() method.
+ * hashCode() methods, both based on the getAbsolutePath() method. In addition,
+ * it provides loading list resources as immutable dictionaries.
  * 
  * @author sautter
  */
@@ -55,4 +63,24 @@ public abstract class AbstractAnalyzerDataProvider implements AnalyzerDataProvid
 	public int hashCode() {
 		return this.getAbsolutePath().hashCode();
 	}
+	
+	/**
+	 * Load a list resource as an immutable, thread safe dictionary, one entry
+	 * per line. This default implementation parses the list on every call;
+	 * sub classes that can locate list resources in the file system should
+	 * overwrite it to use the AnalyzerResourceCache.
+	 * @param dataName the name of the list resource
+	 * @param caseSensitive the default case sensitivity of the dictionary
+	 * @return the dictionary
+	 * @throws IOException
+	 */
+	public Dictionary getDictionary(String dataName, boolean caseSensitive) throws IOException {
+		InputStream in = this.getInputStream(dataName);
+		try {
+			return CompactDictionary.build(new InputStreamReader(in), caseSensitive);
+		}
+		finally {
+			in.close();
+		}
+	}
 }
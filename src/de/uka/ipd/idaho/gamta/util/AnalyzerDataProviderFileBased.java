@@ -36,6 +36,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 
+import de.uka.ipd.idaho.stringUtils.Dictionary;
 import de.uka.ipd.idaho.stringUtils.StringVector;
 
 /**
@@ -139,6 +140,15 @@ public class AnalyzerDataProviderFileBased extends AbstractAnalyzerDataProvider
 		return true;
 	}
 	
+	/**
+	 * This implementation loads the list through the AnalyzerResourceCache,
+	 * so all Analyzers in the JVM share a single dictionary for each list.
+	 * @see de.uka.ipd.idaho.gamta.util.AbstractAnalyzerDataProvider#getDictionary(java.lang.String, boolean)
+	 */
+	public Dictionary getDictionary(String dataName, boolean caseSensitive) throws IOException {
+		return AnalyzerResourceCache.getDictionary(this.getFile(dataName), caseSensitive);
+	}
+	
 	private File getFile(String dataName) {
 		return new File(this.basePath, dataName);
 	}
@@ -32,6 +32,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 
+import de.uka.ipd.idaho.stringUtils.Dictionary;
 import de.uka.ipd.idaho.stringUtils.StringVector;
 
 /**
@@ -66,6 +67,11 @@ public class AnalyzerDataProviderPrefixBased extends AbstractAnalyzerDataProvide
 	public InputStream getInputStream(String dataName) throws IOException {
 		return this.dataProvider.getInputStream(this.addPrefix(dataName));
 	}
+	public Dictionary getDictionary(String dataName, boolean caseSensitive) throws IOException {
+		if (this.dataProvider instanceof AbstractAnalyzerDataProvider)
+			return ((AbstractAnalyzerDataProvider) this.dataProvider).getDictionary(this.addPrefix(dataName), caseSensitive);
+		else return super.getDictionary(dataName, caseSensitive);
+	}
 	public OutputStream getOutputStream(String dataName) throws IOException {
 		return this.dataProvider.getOutputStream(this.addPrefix(dataName));
 	}
@@ -5,6 +5,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 
+import de.uka.ipd.idaho.stringUtils.Dictionary;
 import de.uka.ipd.idaho.stringUtils.StringVector;
 
 /**
@@ -38,6 +39,11 @@ public abstract class AnalyzerDataProviderWrapper extends AbstractAnalyzerDataPr
 	public InputStream getInputStream(String dataName) throws IOException {
 		return this.dataProvider.getInputStream(dataName);
 	}
+	public Dictionary getDictionary(String dataName, boolean caseSensitive) throws IOException {
+		if (this.dataProvider instanceof AbstractAnalyzerDataProvider)
+			return ((AbstractAnalyzerDataProvider) this.dataProvider).getDictionary(dataName, caseSensitive);
+		else return super.getDictionary(dataName, caseSensitive);
+	}
 	public URL getURL(String dataName) throws IOException {
 		return this.dataProvider.getURL(dataName);
 	}
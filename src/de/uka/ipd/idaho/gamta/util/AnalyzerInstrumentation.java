@@ -0,0 +1,682 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.gamta.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.uka.ipd.idaho.gamta.Annotation;
+import de.uka.ipd.idaho.gamta.AnnotationListener;
+import de.uka.ipd.idaho.gamta.MutableAnnotation;
+import de.uka.ipd.idaho.gamta.QueriableAnnotation;
+
+/**
+ * Instrumentation for Analyzers and the expensive library functions they use,
+ * namely the extraction of regular expression matches and dictionary entries
+ * from token sequences, GPath evaluation, and annotation pattern matching.
+ * When enabled, every instrumented operation records wall clock time, CPU
+ * time, and allocated bytes of the executing thread, aggregated by the
+ * Analyzer the operation runs in, by the type of operation, and by the
+ * specific regular expression, dictionary, GPath, or pattern. Instrumented
+ * Analyzers additionally record the number of annotations added and removed.
+ * The aggregated statistics can be written as CSV or sent to a
+ * ProgressMonitor.<br>
+ * Instrumentation is disabled by default. In that state, the only cost of an
+ * instrumented operation is checking a single flag. CPU time and allocation
+ * measurements can be switched off separately, as they are more expensive
+ * than wall clock time measurements.
+ * 
+ * @author sautter
+ */
+public class AnalyzerInstrumentation {
+	
+	/** operation type for the process() method of an Analyzer */
+	public static final String ANALYZER_OPERATION = "analyzer";
+	
+	/** operation type for extracting regular expression matches */
+	public static final String REGEX_OPERATION = "regEx";
+	
+	/** operation type for extracting dictionary entries */
+	public static final String DICTIONARY_OPERATION = "dictionary";
+	
+	/** operation type for evaluating GPath queries */
+	public static final String GPATH_OPERATION = "gPath";
+	
+	/** operation type for matching annotation patterns */
+	public static final String PATTERN_OPERATION = "annotationPattern";
+	
+	//	we don't want to be instantiated
+	private AnalyzerInstrumentation() {}
+	
+	private static volatile boolean enabled = false;
+	private static volatile boolean measureResources = true;
+	
+	/**
+	 * Test if instrumentation is enabled.
+	 * @return true if instrumentation is enabled
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * Enable or disable instrumentation. Disabling instrumentation does not
+	 * clear the statistics collected so far.
+	 * @param e enable instrumentation?
+	 */
+	public static void setEnabled(boolean e) {
+		enabled = e;
+	}
+	
+	/**
+	 * Test if instrumentation measures CPU time and allocated bytes in
+	 * addition to wall clock time.
+	 * @return true if CPU time and allocation are measured
+	 */
+	public static boolean isMeasuringResources() {
+		return measureResources;
+	}
+	
+	/**
+	 * Switch on or off measuring CPU time and allocated bytes. Both are only
+	 * measured if the JVM supports it.
+	 * @param mr measure CPU time and allocated bytes?
+	 */
+	public static void setMeasuringResources(boolean mr) {
+		measureResources = mr;
+	}
+	
+	private static ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+	private static boolean measureCpuTime;
+	static {
+		try {
+			measureCpuTime = threadBean.isCurrentThreadCpuTimeSupported();
+			if (measureCpuTime && !threadBean.isThreadCpuTimeEnabled())
+				threadBean.setThreadCpuTimeEnabled(true);
+		}
+		catch (Exception e) {
+			measureCpuTime = false;
+		}
+	}
+	
+	/* allocation measurement is not part of the standard API, so we only
+	 * touch the extended thread bean in a class of its own, which fails to
+	 * load on JVMs that do not have it */
+	private static interface AllocationCounter {
+		public abstract long getAllocatedBytes(long threadId);
+	}
+	private static class SunAllocationCounter implements AllocationCounter {
+		private final com.sun.management.ThreadMXBean threadBean;
+		SunAllocationCounter(ThreadMXBean threadBean) {
+			this.threadBean = ((com.sun.management.ThreadMXBean) threadBean);
+			if (!this.threadBean.isThreadAllocatedMemorySupported())
+				throw new UnsupportedOperationException("Thread allocation measurement not supported");
+			if (!this.threadBean.isThreadAllocatedMemoryEnabled())
+				this.threadBean.setThreadAllocatedMemoryEnabled(true);
+		}
+		public long getAllocatedBytes(long threadId) {
+			return this.threadBean.getThreadAllocatedBytes(threadId);
+		}
+	}
+	private static AllocationCounter allocationCounter;
+	static {
+		try {
+			allocationCounter = new SunAllocationCounter(threadBean);
+		}
+		catch (Throwable t) {
+			allocationCounter = null;
+		}
+	}
+	
+	private static long getCpuTime() {
+		return (measureCpuTime ? threadBean.getCurrentThreadCpuTime() : 0);
+	}
+	
+	private static long getAllocatedBytes(long threadId) {
+		return ((allocationCounter == null) ? 0 : allocationCounter.getAllocatedBytes(threadId));
+	}
+	
+	/* the Analyzer running in a given thread, to attribute nested operations to */
+	private static ThreadLocal currentAnalyzer = new ThreadLocal();
+	
+	/* hand the Analyzer running in a thread on to other threads working for it, namely workers of parallel jobs */
+	static Object getCurrentAnalyzer() {
+		return currentAnalyzer.get();
+	}
+	static Object setCurrentAnalyzer(Object analyzer) {
+		Object parentAnalyzer = currentAnalyzer.get();
+		currentAnalyzer.set(analyzer);
+		return parentAnalyzer;
+	}
+	
+	/**
+	 * Start measuring an operation. If instrumentation is disabled, this
+	 * method returns null. Client code should thus use this method as follows:<br>
+	 * <code>Probe probe = AnalyzerInstrumentation.startProbe(type, name);<br>
+	 * try {<br>
+	 * &nbsp;&nbsp;&nbsp;&nbsp;// do the work<br>
+	 * }<br>
+	 * finally {<br>
+	 * &nbsp;&nbsp;&nbsp;&nbsp;if (probe != null)<br>
+	 * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;probe.stop();<br>
+	 * }</code><br>
+	 * Probes belong to the thread that started them, and must be stopped by
+	 * the same thread. Operations in worker threads of parallel jobs run via
+	 * ParallelJobRunner are attributed to the Analyzer that started the job.
+	 * As the name is part of the key to aggregate statistics by, callers
+	 * should hand over names whose hash codes are cached, like Strings, and
+	 * not build them anew for every probe.
+	 * @param operation the type of operation
+	 * @param name the name of the specific operation, e.g. a GPath
+	 * @return a probe for the operation, or null if instrumentation is
+	 *            disabled
+	 */
+	public static Probe startProbe(String operation, String name) {
+		return (enabled ? new Probe(operation, name) : null);
+	}
+	
+	/**
+	 * A single measurement of an operation, ongoing until stopped.
+	 * 
+	 * @author sautter
+	 */
+	public static class Probe {
+		private final String analyzer;
+		private final String operation;
+		private final String name;
+		private final long threadId;
+		private final boolean measureResources;
+		private final long startWallTime;
+		private final long startCpuTime;
+		private final long startAllocated;
+		volatile int annotationsAdded = 0; // counted by listener, possibly from multiple threads
+		volatile int annotationsRemoved = 0;
+		Probe(String operation, String name) {
+			this.analyzer = ((String) currentAnalyzer.get());
+			this.operation = operation;
+			this.name = name;
+			this.threadId = Thread.currentThread().getId();
+			this.measureResources = AnalyzerInstrumentation.measureResources;
+			this.startAllocated = (this.measureResources ? getAllocatedBytes(this.threadId) : 0);
+			this.startCpuTime = (this.measureResources ? getCpuTime() : 0);
+			this.startWallTime = System.nanoTime();
+		}
+		
+		/**
+		 * Stop the measurement and add it to the statistics.
+		 */
+		public void stop() {
+			long wallTime = (System.nanoTime() - this.startWallTime);
+			long cpuTime = (this.measureResources ? (getCpuTime() - this.startCpuTime) : 0);
+			long allocated = (this.measureResources ? (getAllocatedBytes(this.threadId) - this.startAllocated) : 0);
+			getStatistics(this.analyzer, this.operation, this.name).add(wallTime, cpuTime, allocated, this.annotationsAdded, this.annotationsRemoved);
+		}
+	}
+	private static final AtomicIntegerFieldUpdater annotationsAdded = AtomicIntegerFieldUpdater.newUpdater(Probe.class, "annotationsAdded");
+	private static final AtomicIntegerFieldUpdater annotationsRemoved = AtomicIntegerFieldUpdater.newUpdater(Probe.class, "annotationsRemoved");
+	
+	private static final int HISTOGRAM_BUCKETS = 64;
+	
+	/**
+	 * Aggregate statistics on the executions of an operation. Wall clock
+	 * times are recorded in a histogram with exponentially growing bucket
+	 * sizes, each bucket holding the executions that took up to twice as long
+	 * as the ones in the previous bucket.
+	 * 
+	 * @author sautter
+	 */
+	public static class Statistics {
+		
+		/** the name of the Analyzer the operation ran in (null if outside any instrumented Analyzer) */
+		public final String analyzer;
+		
+		/** the type of operation */
+		public final String operation;
+		
+		/** the name of the specific operation */
+		public final String name;
+		
+		private final AtomicInteger count = new AtomicInteger(0);
+		private final AtomicLong wallTime = new AtomicLong(0);
+		private final AtomicLong maxWallTime = new AtomicLong(0);
+		private final AtomicLong cpuTime = new AtomicLong(0);
+		private final AtomicLong allocated = new AtomicLong(0);
+		private final AtomicLong annotationsAdded = new AtomicLong(0);
+		private final AtomicLong annotationsRemoved = new AtomicLong(0);
+		private final AtomicIntegerArray histogram = new AtomicIntegerArray(HISTOGRAM_BUCKETS);
+		
+		Statistics(String analyzer, String operation, String name) {
+			this.analyzer = analyzer;
+			this.operation = operation;
+			this.name = name;
+		}
+		
+		void add(long wallTime, long cpuTime, long allocated, int annotationsAdded, int annotationsRemoved) {
+			this.count.incrementAndGet();
+			this.wallTime.addAndGet(wallTime);
+			for (long maxWallTime; wallTime > (maxWallTime = this.maxWallTime.get());) {
+				if (this.maxWallTime.compareAndSet(maxWallTime, wallTime))
+					break;
+			}
+			if (cpuTime != 0)
+				this.cpuTime.addAndGet(cpuTime);
+			if (allocated != 0)
+				this.allocated.addAndGet(allocated);
+			if (annotationsAdded != 0)
+				this.annotationsAdded.addAndGet(annotationsAdded);
+			if (annotationsRemoved != 0)
+				this.annotationsRemoved.addAndGet(annotationsRemoved);
+			this.histogram.incrementAndGet(HISTOGRAM_BUCKETS - Long.numberOfLeadingZeros(Math.max(wallTime, 0)));
+		}
+		
+		/** @return the number of executions */
+		public int getCount() {
+			return this.count.get();
+		}
+		
+		/** @return the total wall clock time of all executions, in nanoseconds */
+		public long getWallTime() {
+			return this.wallTime.get();
+		}
+		
+		/** @return the wall clock time of the longest execution, in nanoseconds */
+		public long getMaxWallTime() {
+			return this.maxWallTime.get();
+		}
+		
+		/** @return the total CPU time of all executions, in nanoseconds */
+		public long getCpuTime() {
+			return this.cpuTime.get();
+		}
+		
+		/** @return the total number of bytes allocated by all executions */
+		public long getAllocatedBytes() {
+			return this.allocated.get();
+		}
+		
+		/** @return the total number of annotations added by all executions */
+		public long getAnnotationsAdded() {
+			return this.annotationsAdded.get();
+		}
+		
+		/** @return the total number of annotations removed by all executions */
+		public long getAnnotationsRemoved() {
+			return this.annotationsRemoved.get();
+		}
+		
+		/**
+		 * Estimate a percentile of the wall clock time of the executions from
+		 * the histogram. The returned value is the upper bound of the
+		 * histogram bucket the percentile falls in, so it over-estimates by
+		 * up to a factor of 2.
+		 * @param percentile the percentile to estimate (0-100)
+		 * @return the estimated percentile, in nanoseconds
+		 */
+		public long getWallTimePercentile(int percentile) {
+			int[] histogram = this.getHistogram();
+			long count = 0;
+			for (int b = 0; b < histogram.length; b++)
+				count += histogram[b];
+			if (count == 0)
+				return 0;
+			long maxWallTime = this.maxWallTime.get();
+			long rank = ((count * percentile + 99) / 100);
+			long seen = 0;
+			for (int b = 0; b < histogram.length; b++) {
+				seen += histogram[b];
+				if (seen >= rank)
+					return Math.min(((b == 0) ? 0 : ((1L << b) - 1)), maxWallTime);
+			}
+			return maxWallTime;
+		}
+		
+		/**
+		 * Retrieve the wall clock time histogram. The value at index
+		 * <code>i</code> is the number of executions that took at least
+		 * <code>2^(i-1)</code> and less than <code>2^i</code> nanoseconds.
+		 * @return the histogram
+		 */
+		public int[] getHistogram() {
+			int[] histogram = new int[this.histogram.length()];
+			for (int b = 0; b < histogram.length; b++)
+				histogram[b] = this.histogram.get(b);
+			return histogram;
+		}
+	}
+	
+	private static ConcurrentHashMap statistics = new ConcurrentHashMap();
+	
+	/* key to aggregate statistics by, cheap to create as long as the hash codes of the parts are cached */
+	private static class StatisticsKey {
+		private final String analyzer;
+		private final String operation;
+		private final String name;
+		private final int hash;
+		StatisticsKey(String analyzer, String operation, String name) {
+			this.analyzer = analyzer;
+			this.operation = operation;
+			this.name = name;
+			this.hash = ((((analyzer == null) ? 0 : analyzer.hashCode()) * 31 + operation.hashCode()) * 31 + ((name == null) ? 0 : name.hashCode()));
+		}
+		public int hashCode() {
+			return this.hash;
+		}
+		public boolean equals(Object obj) {
+			if (!(obj instanceof StatisticsKey))
+				return false;
+			StatisticsKey key = ((StatisticsKey) obj);
+			return ((this.hash == key.hash) && equals(this.analyzer, key.analyzer) && this.operation.equals(key.operation) && equals(this.name, key.name));
+		}
+		private static boolean equals(String str1, String str2) {
+			return ((str1 == null) ? (str2 == null) : str1.equals(str2));
+		}
+	}
+	
+	private static Statistics getStatistics(String analyzer, String operation, String name) {
+		StatisticsKey key = new StatisticsKey(analyzer, operation, name);
+		Statistics stats = ((Statistics) statistics.get(key));
+		if (stats == null) {
+			stats = new Statistics(analyzer, operation, name);
+			Statistics oldStats = ((Statistics) statistics.putIfAbsent(key, stats));
+			if (oldStats != null)
+				stats = oldStats;
+		}
+		return stats;
+	}
+	
+	/**
+	 * Retrieve the statistics collected so far, sorted by total wall clock
+	 * time, longest first.
+	 * @return an array holding the statistics
+	 */
+	public static Statistics[] getStatistics() {
+		Statistics[] stats = ((Statistics[]) statistics.values().toArray(new Statistics[0]));
+		Arrays.sort(stats, new Comparator() {
+			public int compare(Object obj1, Object obj2) {
+				long wt1 = ((Statistics) obj1).getWallTime();
+				long wt2 = ((Statistics) obj2).getWallTime();
+				return ((wt1 == wt2) ? 0 : ((wt1 < wt2) ? 1 : -1));
+			}
+		});
+		return stats;
+	}
+	
+	/**
+	 * Clear the statistics collected so far.
+	 */
+	public static void reset() {
+		statistics.clear();
+	}
+	
+	/**
+	 * Write the statistics collected so far as CSV, one line per operation,
+	 * preceded by a header line. Times are in microseconds.
+	 * @param out the writer to write to
+	 * @throws IOException
+	 */
+	public static void writeCsv(Writer out) throws IOException {
+		out.write("\"Analyzer\",\"Operation\",\"Name\",\"Count\",\"WallTime\",\"MeanWallTime\",\"MedianWallTime\",\"P90WallTime\",\"P99WallTime\",\"MaxWallTime\",\"CpuTime\",\"AllocatedBytes\",\"AnnotationsAdded\",\"AnnotationsRemoved\"");
+		out.write("\r\n");
+		Statistics[] stats = getStatistics();
+		for (int s = 0; s < stats.length; s++) {
+			String[] values = getValues(stats[s]);
+			for (int v = 0; v < values.length; v++) {
+				if (v != 0)
+					out.write(",");
+				if (v < 3) {
+					out.write("\"");
+					out.write(values[v].replaceAll("\\\"", "\"\""));
+					out.write("\"");
+				}
+				else out.write(values[v]);
+			}
+			out.write("\r\n");
+		}
+		out.flush();
+	}
+	
+	/**
+	 * Send the statistics collected so far to a progress monitor, one line
+	 * per operation, as info texts. Times are in microseconds.
+	 * @param pm the progress monitor to send the statistics to
+	 */
+	public static void report(ProgressMonitor pm) {
+		Statistics[] stats = getStatistics();
+		for (int s = 0; s < stats.length; s++) {
+			String[] values = getValues(stats[s]);
+			pm.setInfo(values[0] + " / " + values[1] + " / " + values[2] + ": " + values[3] + " runs, " + values[4] + " us total, " + values[5] + " us mean, " + values[6] + " us median, " + values[7] + " us P90, " + values[8] + " us P99, " + values[9] + " us max, " + values[10] + " us CPU, " + values[11] + " bytes allocated, " + values[12] + " annotations added, " + values[13] + " annotations removed");
+		}
+	}
+	
+	private static String[] getValues(Statistics stats) {
+		ArrayList values = new ArrayList();
+		values.add((stats.analyzer == null) ? "" : stats.analyzer);
+		values.add(stats.operation);
+		values.add((stats.name == null) ? "" : stats.name);
+		int count = stats.getCount();
+		long wallTime = stats.getWallTime();
+		values.add("" + count);
+		values.add("" + (wallTime / 1000));
+		values.add("" + ((count == 0) ? 0 : (wallTime / (count * 1000L))));
+		values.add("" + (stats.getWallTimePercentile(50) / 1000));
+		values.add("" + (stats.getWallTimePercentile(90) / 1000));
+		values.add("" + (stats.getWallTimePercentile(99) / 1000));
+		values.add("" + (stats.getMaxWallTime() / 1000));
+		values.add("" + (stats.getCpuTime() / 1000));
+		values.add("" + stats.getAllocatedBytes());
+		values.add("" + stats.getAnnotationsAdded());
+		values.add("" + stats.getAnnotationsRemoved());
+		return ((String[]) values.toArray(new String[values.size()]));
+	}
+	
+	/**
+	 * Wrapper for an Analyzer that measures each invocation of the wrapped
+	 * Analyzer's process() method if instrumentation is enabled. Operations
+	 * executed in the wrapped Analyzer are attributed to the name of the
+	 * wrapper. If instrumentation is disabled, the wrapper simply delegates
+	 * to the wrapped Analyzer.
+	 * 
+	 * @author sautter
+	 */
+	public static class InstrumentedAnalyzer implements MonitorableAnalyzer {
+		private final Analyzer analyzer;
+		private final String name;
+		
+		/** Constructor
+		 * @param analyzer the Analyzer to wrap
+		 */
+		public InstrumentedAnalyzer(Analyzer analyzer) {
+			this(analyzer, analyzer.getClass().getName());
+		}
+		
+		/** Constructor
+		 * @param analyzer the Analyzer to wrap
+		 * @param name the name to record the wrapped Analyzer's statistics under
+		 */
+		public InstrumentedAnalyzer(Analyzer analyzer, String name) {
+			this.analyzer = analyzer;
+			this.name = name;
+		}
+		
+		/**
+		 * @return the wrapped Analyzer
+		 */
+		public Analyzer getAnalyzer() {
+			return this.analyzer;
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uka.ipd.idaho.gamta.util.Analyzer#process(de.uka.ipd.idaho.gamta.MutableAnnotation, java.util.Properties)
+		 */
+		public void process(MutableAnnotation data, Properties parameters) {
+			this.process(data, parameters, null);
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uka.ipd.idaho.gamta.util.MonitorableAnalyzer#process(de.uka.ipd.idaho.gamta.MutableAnnotation, java.util.Properties, de.uka.ipd.idaho.gamta.util.ProgressMonitor)
+		 */
+		public void process(MutableAnnotation data, Properties parameters, ProgressMonitor pm) {
+			if (!enabled) {
+				this.doProcess(data, parameters, pm);
+				return;
+			}
+			
+			Object parentAnalyzer = currentAnalyzer.get();
+			currentAnalyzer.set(this.name);
+			final Probe probe = new Probe(ANALYZER_OPERATION, this.name);
+			AnnotationListener al = new AnnotationListener() {
+				public void annotationAdded(QueriableAnnotation doc, Annotation annotation) {
+					annotationsAdded.incrementAndGet(probe);
+				}
+				public void annotationRemoved(QueriableAnnotation doc, Annotation annotation) {
+					annotationsRemoved.incrementAndGet(probe);
+				}
+				public void annotationTypeChanged(QueriableAnnotation doc, Annotation annotation, String oldType) {}
+				public void annotationAttributeChanged(QueriableAnnotation doc, Annotation annotation, String attributeName, Object oldValue) {}
+			};
+			data.addAnnotationListener(al);
+			try {
+				this.doProcess(data, parameters, pm);
+			}
+			finally {
+				data.removeAnnotationListener(al);
+				probe.stop();
+				currentAnalyzer.set(parentAnalyzer);
+			}
+		}
+		
+		private void doProcess(MutableAnnotation data, Properties parameters, ProgressMonitor pm) {
+			if ((pm != null) && (this.analyzer instanceof MonitorableAnalyzer))
+				((MonitorableAnalyzer) this.analyzer).process(data, parameters, pm);
+			else this.analyzer.process(data, parameters);
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uka.ipd.idaho.gamta.util.Analyzer#setDataProvider(de.uka.ipd.idaho.gamta.util.AnalyzerDataProvider)
+		 */
+		public void setDataProvider(AnalyzerDataProvider dataProvider) {
+			this.analyzer.setDataProvider(dataProvider);
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uka.ipd.idaho.gamta.util.Analyzer#configureProcessor()
+		 */
+		public void configureProcessor() {
+			this.analyzer.configureProcessor();
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uka.ipd.idaho.gamta.util.Analyzer#exit()
+		 */
+		public void exit() {
+			this.analyzer.exit();
+		}
+	}
+	
+	/* measure the overhead instrumentation adds to each probed operation */
+	public static void main(String[] args) throws Exception {
+		final int runs = ((args.length == 0) ? 1000000 : Integer.parseInt(args[0]));
+		final String[] names = new String[16];
+		for (int n = 0; n < names.length; n++)
+			names[n] = ("operation" + n);
+		
+		for (int round = 0; round < 3; round++) {
+			reset();
+			setEnabled(false);
+			long start = System.nanoTime();
+			long sum = 0;
+			for (int r = 0; r < runs; r++)
+				sum += names[r & 15].length();
+			long baseTime = (System.nanoTime() - start);
+			
+			start = System.nanoTime();
+			for (int r = 0; r < runs; r++) {
+				Probe probe = startProbe(REGEX_OPERATION, names[r & 15]);
+				sum += names[r & 15].length();
+				if (probe != null)
+					probe.stop();
+			}
+			long disabledTime = (System.nanoTime() - start);
+			
+			setEnabled(true);
+			setMeasuringResources(false);
+			start = System.nanoTime();
+			for (int r = 0; r < runs; r++) {
+				Probe probe = startProbe(REGEX_OPERATION, names[r & 15]);
+				sum += names[r & 15].length();
+				if (probe != null)
+					probe.stop();
+			}
+			long wallTime = (System.nanoTime() - start);
+			
+			setMeasuringResources(true);
+			start = System.nanoTime();
+			for (int r = 0; r < runs; r++) {
+				Probe probe = startProbe(REGEX_OPERATION, names[r & 15]);
+				sum += names[r & 15].length();
+				if (probe != null)
+					probe.stop();
+			}
+			long resourceTime = (System.nanoTime() - start);
+			
+			//	same in parallel, attributed to an Analyzer running in this thread
+			Object parentAnalyzer = setCurrentAnalyzer("benchmark");
+			start = System.nanoTime();
+			ParallelJobRunner.runParallelFor(new ParallelJobRunner.ParallelFor() {
+				public void doFor(int index) throws Exception {
+					Probe probe = startProbe(REGEX_OPERATION, names[index & 15]);
+					if (probe != null)
+						probe.stop();
+				}
+			}, runs, -1);
+			long parallelTime = (System.nanoTime() - start);
+			setCurrentAnalyzer(parentAnalyzer);
+			setEnabled(false);
+			
+			int attributed = 0;
+			Statistics[] stats = getStatistics();
+			for (int s = 0; s < stats.length; s++) {
+				if ("benchmark".equals(stats[s].analyzer))
+					attributed += stats[s].getCount();
+			}
+			System.out.println("Round " + round + " (" + runs + " probes, checksum " + sum + "): " + (baseTime / runs) + "ns per operation without probe, overhead per probe " + ((disabledTime - baseTime) / runs) + "ns disabled, " + ((wallTime - baseTime) / runs) + "ns wall time only, " + ((resourceTime - baseTime) / runs) + "ns with CPU time and allocation, " + (parallelTime / runs) + "ns in parallel threads");
+			System.out.println("  attribution of parallel probes to Analyzer: " + attributed + " of " + runs + ", check " + ((attributed == runs) ? "passed" : "failed"));
+		}
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.gamta.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.HashMap;
+
+import de.uka.ipd.idaho.stringUtils.CompactDictionary;
+import de.uka.ipd.idaho.stringUtils.Dictionary;
+
+/**
+ * Process wide cache for list resources of Analyzers. Lists are loaded into
+ * compact, immutable, and thread safe dictionaries only once per JVM, no
+ * matter how many Analyzers in how many threads use them. Cache entries are
+ * keyed by the canonical path of the list file, and are reloaded only if the
+ * last modification time or the size of the file changes.<br>
+ * In addition, the binary image of each dictionary is stored beside the list
+ * file (with suffix '.cdict'), unless switched off via
+ * <code>setPersistImages()</code>. Subsequent JVMs memory map this image
+ * instead of parsing the list file, as long as the latter does not change.
+ * This reduces loading time to a few milliseconds, and allows the operating
+ * system to share the dictionary data between JVMs.
+ * 
+ * @author sautter
+ */
+public class AnalyzerResourceCache {
+	
+	/** the suffix of persisted dictionary image files */
+	public static final String IMAGE_FILE_SUFFIX = ".cdict";
+	
+	//	we don't want to be instantiated
+	private AnalyzerResourceCache() {}
+	
+	private static boolean persistImages = true;
+	
+	/**
+	 * Test if dictionary images are persisted beside the list files.
+	 * @return true if images are persisted
+	 */
+	public static boolean isPersistingImages() {
+		return persistImages;
+	}
+	
+	/**
+	 * Switch on or off persisting dictionary images beside the list files.
+	 * Existing images are still used if switched off.
+	 * @param pi persist images?
+	 */
+	public static void setPersistImages(boolean pi) {
+		persistImages = pi;
+	}
+	
+	private static class CachedDictionary {
+		long lastModified = -1;
+		long length = -1;
+		CompactDictionary dictionary = null;
+	}
+	
+	private static HashMap cache = new HashMap();
+	
+	/**
+	 * Retrieve a list file as a dictionary, one entry per line. If the file
+	 * was loaded before and has not changed since, this method returns the
+	 * cached dictionary. Concurrent requests for the same file wait for a
+	 * single thread to load it.
+	 * @param file the list file to load
+	 * @param caseSensitive the default case sensitivity of the dictionary
+	 * @return the dictionary
+	 * @throws IOException
+	 */
+	public static Dictionary getDictionary(File file, boolean caseSensitive) throws IOException {
+		String key = file.getCanonicalPath();
+		CachedDictionary cd;
+		synchronized (cache) {
+			cd = ((CachedDictionary) cache.get(key));
+			if (cd == null) {
+				cd = new CachedDictionary();
+				cache.put(key, cd);
+			}
+		}
+		synchronized (cd) {
+			long lastModified = file.lastModified();
+			long length = file.length();
+			if (!file.exists())
+				throw new FileNotFoundException(file.getAbsolutePath());
+			if ((cd.dictionary == null) || (cd.lastModified != lastModified) || (cd.length != length)) {
+				cd.dictionary = loadDictionary(file, lastModified, length);
+				cd.lastModified = lastModified;
+				cd.length = length;
+			}
+			return cd.dictionary.withDefaultCaseSensitivity(caseSensitive);
+		}
+	}
+	
+	/**
+	 * Remove all dictionaries from the cache. Dictionaries handed out before
+	 * remain valid.
+	 */
+	public static void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+	
+	/*
+	 * Image file layout: long last modification time and long size of list
+	 * file, followed by dictionary data.
+	 */
+	private static final int IMAGE_HEADER_SIZE = 16;
+	
+	private static CompactDictionary loadDictionary(File file, long lastModified, long length) throws IOException {
+		
+		//	try image first
+		File imageFile = new File(file.getPath() + IMAGE_FILE_SUFFIX);
+		if (imageFile.exists()) try {
+			RandomAccessFile raf = new RandomAccessFile(imageFile, "r");
+			boolean imageValid;
+			try {
+				imageValid = ((raf.length() > IMAGE_HEADER_SIZE) && (raf.readLong() == lastModified) && (raf.readLong() == length));
+			}
+			finally {
+				raf.close();
+			}
+			if (imageValid)
+				return CompactDictionary.load(imageFile, IMAGE_HEADER_SIZE);
+		}
+		catch (IOException ioe) {
+			System.out.println("Could not load dictionary image " + imageFile.getAbsolutePath() + ": " + ioe.getMessage());
+		}
+		
+		//	parse list file
+		Reader list = new FileReader(file);
+		CompactDictionary dictionary;
+		try {
+			dictionary = CompactDictionary.build(list, true);
+		}
+		finally {
+			list.close();
+		}
+		
+		//	store image (via temporary file, so JVMs mapping a previous image are not affected)
+		if (persistImages) try {
+			File tempImageFile = new File(imageFile.getPath() + "." + System.currentTimeMillis() + ".tmp");
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempImageFile)));
+			out.writeLong(lastModified);
+			out.writeLong(length);
+			dictionary.store(out);
+			out.close();
+			if (imageFile.exists())
+				imageFile.delete();
+			if (!tempImageFile.renameTo(imageFile))
+				tempImageFile.delete();
+		}
+		catch (IOException ioe) {
+			System.out.println("Could not store dictionary image " + imageFile.getAbsolutePath() + ": " + ioe.getMessage());
+		}
+		
+		return dictionary;
+	}
+}
@@ -28,12 +28,20 @@
 package de.uka.ipd.idaho.gamta.util;
 
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Properties;
 
 import de.uka.ipd.idaho.gamta.AnnotationUtils;
@@ -44,19 +52,82 @@ import de.uka.ipd.idaho.gamta.MutableCharSequence;
 /**
  * Wrapper for building command line tools from Analyzers. All that sub classes
  * have to do is implement the main method, which has to instantiate the
- * Analyzer and then hand the args[] and the Analyzer to the process() method
+ * Analyzer and then hand the args[] and the Analyzer to the process() method.
+ * If the Analyzer can be instantiated multiple times, sub classes can also
+ * hand its class to the process() method, optionally alongside an
+ * AnalyzerFactory wrapping the instances; this enables processing multiple
+ * documents in parallel, with each worker thread using its own Analyzer.<br>
+ * Documents are processed in a pipeline: the thread calling process() lists
+ * the files to process, the worker threads read and process the documents,
+ * and a separate thread writes the results, so reading, processing, and
+ * writing of different documents overlap. The queues between the stages are
+ * bounded, so memory consumption does not depend on the number of documents.
  */
 public class AnalyzerRunner {
 	
 	protected static final String HELP_PARAMETER = "?";
 	protected static final String OUTPUT_FOLDER_PARAMETER = "OUT";
 	protected static final String DATA_PATH_PARAMETER = "DATA";
+	protected static final String THREADS_PARAMETER = "THREADS";
+	protected static final String ORDERED_PARAMETER = "ORDERED";
+	protected static final String INSTRUMENT_PARAMETER = "INSTRUMENT";
 	
-	/**	process the args[] of the main method using an Analyzer
+	private static final int REPORT_INTERVAL = (10 * 1000);
+	
+	/**	process the args[] of the main method using an Analyzer. As Analyzers
+	 * are not necessarily thread safe, this method processes one document at
+	 * a time, but still reads and writes documents asynchronously.
 	 * @param	args		the arguments to process
 	 * @param	analyzer	the Analyzer to use
 	 */
-	protected static void process(String[] args, Analyzer analyzer) {
+	protected static void process(String[] args, final Analyzer analyzer) {
+		process(args, ((analyzer == null) ? null : new AnalyzerSource() {
+			private boolean analyzerUsed = false;
+			Analyzer getAnalyzer() throws Exception {
+				if (this.analyzerUsed)
+					return null;
+				this.analyzerUsed = true;
+				return analyzer;
+			}
+		}));
+	}
+	
+	/**	process the args[] of the main method using a class of Analyzer. Each
+	 * worker thread uses its own instance of the argument class, which has to
+	 * have a public no-argument constructor.
+	 * @param	args			the arguments to process
+	 * @param	analyzerClass	the class of Analyzer to use
+	 */
+	protected static void process(String[] args, final Class analyzerClass) {
+		process(args, ((analyzerClass == null) ? null : new AnalyzerSource() {
+			Analyzer getAnalyzer() throws Exception {
+				return ((Analyzer) analyzerClass.newInstance());
+			}
+		}));
+	}
+	
+	/**	process the args[] of the main method using a third party component
+	 * wrapped by an AnalyzerFactory. Each worker thread uses its own instance
+	 * of the argument component class, which has to have a public no-argument
+	 * constructor.
+	 * @param	args			the arguments to process
+	 * @param	factory			the factory wrapping the component instances
+	 * @param	componentClass	the class of component to use
+	 */
+	protected static void process(String[] args, final AnalyzerFactory factory, final Class componentClass) {
+		process(args, (((factory == null) || (componentClass == null)) ? null : new AnalyzerSource() {
+			Analyzer getAnalyzer() throws Exception {
+				return factory.getAnalyzer(componentClass.newInstance());
+			}
+		}));
+	}
+	
+	/* source of the Analyzers for the worker threads, returning null if there are no further Analyzers */
+	private static abstract class AnalyzerSource {
+		abstract Analyzer getAnalyzer() throws Exception;
+	}
+	
+	private static void process(String[] args, AnalyzerSource analyzerSource) {
 		
 		if ((args.length == 0) || HELP_PARAMETER.equals(args[0])) {
 			System.out.println("Batch mode runner for GAMTA Analyzers");
@@ -64,37 +135,82 @@ public class AnalyzerRunner {
 			System.out.println("- ? --> Displays these explanations");
 			System.out.println("- OUT=<OutputFolder> --> specify the folder to store documents to, if missing, documents will be saved to " + (new File("./finished/").toString()));
 			System.out.println("- DATA=<AnalyzerDataPath> --> specify the folder where the Analyzer can find its data, if missing it uses the local path (./)");
+			System.out.println("- THREADS=<NumberOfThreads> --> specify the number of documents to process in parallel, if missing, it uses the number of CPU cores less 1");
+			System.out.println("- ORDERED --> store documents in the order they were found in, rather than in the order they finish");
+			System.out.println("- INSTRUMENT --> measure the time spent in the Analyzer and store the statistics to instrumentation.csv in the output folder");
 			System.out.println("- <All other parameters> --> specify the files to process, folders will be searched for files");
 			return;
 		}
 		
 		String outputFolderParameter = null;
 		String dataPathParameter = "./";
+		int threads = Math.max(1, (Runtime.getRuntime().availableProcessors() - 1));
+		boolean ordered = false;
+		boolean instrument = false;
 		ArrayList filesToProcess = new ArrayList();
 		
 		for (int a = 0; a < args.length; a++) {
 			String parameter = args[a];
 			if (parameter.startsWith(OUTPUT_FOLDER_PARAMETER + "=")) outputFolderParameter = (((parameter.indexOf('=') + 1) == parameter.length()) ? "." : parameter.substring(parameter.indexOf('=') + 1).trim());
 			else if (parameter.startsWith(DATA_PATH_PARAMETER + "=")) dataPathParameter = (((parameter.indexOf('=') + 1) == parameter.length()) ? "." : parameter.substring(parameter.indexOf('=') + 1).trim());
+			else if (parameter.startsWith(THREADS_PARAMETER + "=")) try {
+				threads = Math.max(1, Integer.parseInt(parameter.substring(parameter.indexOf('=') + 1).trim()));
+			}
+			catch (NumberFormatException nfe) {
+				System.out.println("Invalid number of threads: " + parameter.substring(parameter.indexOf('=') + 1).trim());
+			}
+			else if (parameter.equals(ORDERED_PARAMETER)) ordered = true;
+			else if (parameter.equals(INSTRUMENT_PARAMETER)) instrument = true;
 			else filesToProcess.add(new File(parameter));
 		}
 		
-		if (analyzer == null) {
+		if (analyzerSource == null) {
 			System.out.println("No Analyzer to run, exiting.");
 			return;
 		}
 		
 		if (!dataPathParameter.endsWith("/")) dataPathParameter = (dataPathParameter + "/");
 		
-//		analyzer.setAnalyzerName("Analyzer");
-		analyzer.setDataProvider(new AnalyzerDataProviderFileBased(new File((dataPathParameter == null) ? "./" : dataPathParameter)));
-		
 		File outputFolder = new File((outputFolderParameter == null) ? ("./finished/") : (outputFolderParameter + (outputFolderParameter.endsWith("/") ? "" : "/")));
 		if (!outputFolder.exists()) outputFolder.mkdirs();
 		
 		Properties analyzerParameters = new Properties();
 		analyzerParameters.setProperty(Analyzer.INTERACTIVE_PARAMETER, Analyzer.INTERACTIVE_PARAMETER);
 		
+		//	get one Analyzer per worker
+		ArrayList analyzers = new ArrayList();
+		while (analyzers.size() < threads) try {
+			Analyzer analyzer = analyzerSource.getAnalyzer();
+			if (analyzer == null)
+				break;
+//			analyzer.setAnalyzerName("Analyzer");
+			analyzer.setDataProvider(new AnalyzerDataProviderFileBased(new File((dataPathParameter == null) ? "./" : dataPathParameter)));
+			analyzers.add(instrument ? new AnalyzerInstrumentation.InstrumentedAnalyzer(analyzer) : analyzer);
+		}
+		catch (Exception e) {
+			System.out.println(e.getClass().getName() + " (" + e.getMessage() + ") while creating Analyzer ...");
+			break;
+		}
+		if (analyzers.isEmpty()) {
+			System.out.println("No Analyzer to run, exiting.");
+			return;
+		}
+		
+		if (instrument)
+			AnalyzerInstrumentation.setEnabled(true);
+		
+		//	start writer and workers
+		BatchWriter writer = new BatchWriter(outputFolder, ordered, (analyzers.size() * 2), (analyzers.size() * 4));
+		writer.start();
+		BatchQueue inputQueue = new BatchQueue(analyzers.size() * 2);
+		BatchWorker[] workers = new BatchWorker[analyzers.size()];
+		for (int w = 0; w < workers.length; w++) {
+			workers[w] = new BatchWorker(("AnalyzerRunnerWorker-" + w), ((Analyzer) analyzers.get(w)), analyzerParameters, inputQueue, writer);
+			workers[w].start();
+		}
+		
+		//	list files to process, handing them to workers as we go
+		int seqNumber = 0;
 		while (!filesToProcess.isEmpty()) {
 			File file = ((File) filesToProcess.remove(0));
 			if (file.isDirectory()) {
@@ -102,38 +218,207 @@ public class AnalyzerRunner {
 				for (int f = 0; f < subFiles.length; f++)
 					if (!file.equals(subFiles[f])) filesToProcess.add(subFiles[f]);
 			}
-			else {
+			else inputQueue.put(new BatchItem(seqNumber++, file));
+		}
+		
+		//	wait for workers to finish, and then for writer
+		for (int w = 0; w < workers.length; w++)
+			inputQueue.put(BatchItem.END);
+		for (int w = 0; w < workers.length; w++) try {
+			workers[w].join();
+		} catch (InterruptedException ie) {w--; /* we have to make sure all workers are finished before shutting down */}
+		writer.queue.put(BatchItem.END);
+		try {
+			writer.join();
+		} catch (InterruptedException ie) {}
+		writer.report(true);
+		
+		if (instrument) try {
+			Writer out = new BufferedWriter(new FileWriter(new File(outputFolder, "instrumentation.csv")));
+			AnalyzerInstrumentation.writeCsv(out);
+			out.close();
+		}
+		catch (IOException ioe) {
+			System.out.println(ioe.getClass().getName() + " (" + ioe.getMessage() + ") while storing instrumentation statistics ...");
+		}
+		
+		for (int a = 0; a < analyzers.size(); a++)
+			((Analyzer) analyzers.get(a)).exit();
+	}
+	
+	/* a single file to process, travelling through the pipeline */
+	private static class BatchItem {
+		static final BatchItem END = new BatchItem(-1, null);
+		final int seqNumber;
+		final File file;
+		MutableAnnotation doc = null;
+		String error = null;
+		BatchItem(int seqNumber, File file) {
+			this.seqNumber = seqNumber;
+			this.file = file;
+		}
+	}
+	
+	/* bounded queue handing items from one pipeline stage to the next */
+	private static class BatchQueue {
+		private final LinkedList items = new LinkedList();
+		private final int capacity;
+		BatchQueue(int capacity) {
+			this.capacity = capacity;
+		}
+		synchronized void put(BatchItem item) {
+			while (this.items.size() >= this.capacity) try {
+				this.wait();
+			} catch (InterruptedException ie) {}
+			this.items.addLast(item);
+			this.notifyAll();
+		}
+		synchronized BatchItem take() {
+			while (this.items.isEmpty()) try {
+				this.wait();
+			} catch (InterruptedException ie) {}
+			this.notifyAll();
+			return ((BatchItem) this.items.removeFirst());
+		}
+	}
+	
+	private static class BatchWorker extends Thread {
+		private final Analyzer analyzer;
+		private final Properties analyzerParameters;
+		private final BatchQueue inputQueue;
+		private final BatchWriter writer;
+		BatchWorker(String name, Analyzer analyzer, Properties analyzerParameters, BatchQueue inputQueue, BatchWriter writer) {
+			super(name);
+			this.analyzer = analyzer;
+			this.analyzerParameters = analyzerParameters;
+			this.inputQueue = inputQueue;
+			this.writer = writer;
+		}
+		public void run() {
+			for (BatchItem item; (item = this.inputQueue.take()) != BatchItem.END;) {
 				try {
-					System.out.println("processing " + file.toString() + " ...");
-					String fileName = file.getName();
+					System.out.println("processing " + item.file.toString() + " ...");
 					MutableAnnotation doc;
-					if (fileName.endsWith(".txt")) {
-						FileReader fr = new FileReader(file);
+					if (item.file.getName().endsWith(".txt")) {
 						MutableCharSequence mcs = Gamta.newCharSequence();
-						char c;
-						while ((c = ((char) fr.read())) != -1)
-							mcs.addChar(c);
+						mcs.addChars(readFile(item.file));
 //						doc = Gamta.newDocument(Gamta.newTokenSequence(mcs, Gamta.INNER_PUNCTUATION_TOKENIZER));
 						doc = Gamta.newDocument(Gamta.newTokenSequence(mcs, Gamta.getDefaultTokenizer()));
-						fr.close();
-					} else doc = SgmlDocumentReader.readDocument(file);
-					analyzer.process(doc, analyzerParameters);
-					File saveFile = new File(outputFolder, fileName);
-					AnnotationUtils.writeXML(doc, new FileWriter(saveFile));
-					System.out.println("File " + file.toString() + " done, saved as " + saveFile.toString() + ".");
+					} else doc = SgmlDocumentReader.readDocument(new StringReader(readFile(item.file)));
+					this.analyzer.process(doc, this.analyzerParameters);
+					item.doc = doc;
 				}
 				catch (FileNotFoundException fnfe) {
-					System.out.println(file.toString() + " not found.");
+					item.error = (item.file.toString() + " not found.");
 				}
 				catch (IOException ioe) {
-					System.out.println(ioe.getClass().getName() + " (" + ioe.getMessage() + ") while processing " + file.toString() + " ...");
+					item.error = (ioe.getClass().getName() + " (" + ioe.getMessage() + ") while processing " + item.file.toString() + " ...");
 				}
 				catch (Exception e) {
-					System.out.println(e.getClass().getName() + " (" + e.getMessage() + ") while processing " + file.toString() + " ...");
+					item.error = (e.getClass().getName() + " (" + e.getMessage() + ") while processing " + item.file.toString() + " ...");
+				}
+				finally {
+					
+					//	hand over item even if we are going down on an Error, as ordered writer would wait for it forever otherwise
+					if ((item.doc == null) && (item.error == null))
+						item.error = ("Error while processing " + item.file.toString() + " ...");
+					this.writer.put(item);
 				}
 			}
 		}
-		
-		analyzer.exit();
+	}
+	
+	/* read a file in one go through a channel, decoding with the platform default encoding, like FileReader does */
+	private static String readFile(File file) throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			FileChannel fc = fis.getChannel();
+			ByteBuffer bytes = ByteBuffer.allocate((int) fc.size());
+			while (bytes.hasRemaining() && (fc.read(bytes) != -1)) {}
+			bytes.flip();
+			return Charset.defaultCharset().decode(bytes).toString();
+		}
+		finally {
+			fis.close();
+		}
+	}
+	
+	private static class BatchWriter extends Thread {
+		final BatchQueue queue;
+		private final File outputFolder;
+		private final boolean ordered;
+		private final HashMap pendingItems = new HashMap();
+		private final int reorderWindow;
+		private final Object reorderLock = new Object();
+		private int nextSeqNumber = 0;
+		private final long startTime = System.currentTimeMillis();
+		private long lastReportTime = this.startTime;
+		private int docCount = 0;
+		private int errorCount = 0;
+		private long tokenCount = 0;
+		BatchWriter(File outputFolder, boolean ordered, int capacity, int reorderWindow) {
+			super("AnalyzerRunnerWriter");
+			this.outputFolder = outputFolder;
+			this.ordered = ordered;
+			this.queue = new BatchQueue(capacity);
+			this.reorderWindow = Math.max(1, reorderWindow);
+		}
+		void put(BatchItem item) {
+			
+			//	in ordered mode, hold back items too far ahead of the next one to write, so pending items don't pile up behind a slow document
+			if (this.ordered) synchronized (this.reorderLock) {
+				while ((item.seqNumber - this.nextSeqNumber) >= this.reorderWindow) try {
+					this.reorderLock.wait();
+				} catch (InterruptedException ie) {}
+			}
+			this.queue.put(item);
+		}
+		public void run() {
+			for (BatchItem item; (item = this.queue.take()) != BatchItem.END;) {
+				
+				//	write right away in unordered mode
+				if (!this.ordered) {
+					this.write(item);
+					continue;
+				}
+				
+				//	hold back item until all its predecessors are written
+				this.pendingItems.put(new Integer(item.seqNumber), item);
+				while ((item = ((BatchItem) this.pendingItems.remove(new Integer(this.nextSeqNumber)))) != null) {
+					this.write(item);
+					synchronized (this.reorderLock) {
+						this.nextSeqNumber++;
+						this.reorderLock.notifyAll();
+					}
+				}
+			}
+		}
+		private void write(BatchItem item) {
+			if (item.error == null) try {
+				File saveFile = new File(this.outputFolder, item.file.getName());
+				Writer out = new BufferedWriter(new FileWriter(saveFile), (1024 * 64));
+				AnnotationUtils.writeXML(item.doc, out);
+				out.close();
+				this.docCount++;
+				this.tokenCount += item.doc.size();
+				System.out.println("File " + item.file.toString() + " done, saved as " + saveFile.toString() + ".");
+			}
+			catch (IOException ioe) {
+				item.error = (ioe.getClass().getName() + " (" + ioe.getMessage() + ") while processing " + item.file.toString() + " ...");
+			}
+			if (item.error != null) {
+				this.errorCount++;
+				System.out.println(item.error);
+			}
+			this.report(false);
+		}
+		void report(boolean isFinal) {
+			long time = System.currentTimeMillis();
+			if (!isFinal && ((time - this.lastReportTime) < REPORT_INTERVAL))
+				return;
+			this.lastReportTime = time;
+			long runTime = Math.max(1, (time - this.startTime));
+			System.out.println((isFinal ? "Finished: " : "Progress: ") + this.docCount + " documents with " + this.tokenCount + " tokens in " + (runTime / 1000) + " seconds (" + ((this.docCount * 1000L) / runTime) + " documents/s, " + ((this.tokenCount * 1000) / runTime) + " tokens/s), " + this.errorCount + " errors");
+		}
 	}
 }
@@ -28,13 +28,27 @@
 package de.uka.ipd.idaho.gamta.util;
 
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
 import de.uka.ipd.idaho.easyIO.util.HashUtils.MD5;
+import de.uka.ipd.idaho.gamta.Annotation;
+import de.uka.ipd.idaho.gamta.AnnotationListener;
+import de.uka.ipd.idaho.gamta.Attributed;
+import de.uka.ipd.idaho.gamta.CharSequenceListener;
+import de.uka.ipd.idaho.gamta.DocumentRoot;
+import de.uka.ipd.idaho.gamta.MutableAnnotation;
+import de.uka.ipd.idaho.gamta.MutableCharSequence.CharSequenceEvent;
+import de.uka.ipd.idaho.gamta.MutableTokenSequence.TokenSequenceEvent;
 import de.uka.ipd.idaho.gamta.QueriableAnnotation;
+import de.uka.ipd.idaho.gamta.TokenSequenceListener;
 
 /**
  * Utility class computing the MD5 checksum of an annotation.
@@ -218,6 +232,579 @@ public class AnnotationChecksumDigest {
 //		return new String(RandomByteSource.getHexCode(checksumBytes));
 		return checksumDigest.digestHex();
 	}
+	
+	/**
+	 * Create an incremental checksum for a mutable annotation, usually a
+	 * document. The returned object listens for changes to the argument
+	 * annotation and keeps individual hashes for all nested annotations, so
+	 * asking for the current checksum only costs time proportional to the
+	 * number of annotations modified since the last call. Any type and
+	 * attribute filters added to this digest at the time of the call also
+	 * apply to the incremental checksum; filters added later on do not. Note
+	 * that the resulting checksum is not comparable to the one produced by
+	 * <code>computeChecksum()</code>, but only to other checksums computed by
+	 * an incremental checksum created with the same filters.
+	 * @param doc the mutable annotation to observe
+	 * @return the incremental checksum for the argument annotation
+	 */
+	public IncrementalChecksum getIncrementalChecksum(MutableAnnotation doc) {
+		return this.getIncrementalChecksum(doc, null, null);
+	}
+	
+	/**
+	 * Create an incremental checksum for a mutable annotation, usually a
+	 * document. The returned object listens for changes to the argument
+	 * annotation and keeps individual hashes for all nested annotations, so
+	 * asking for the current checksum only costs time proportional to the
+	 * number of annotations modified since the last call. Any type and
+	 * attribute filters added to this digest at the time of the call also
+	 * apply to the incremental checksum; filters added later on do not. Note
+	 * that the resulting checksum is not comparable to the one produced by
+	 * <code>computeChecksum()</code>, but only to other checksums computed by
+	 * an incremental checksum created with the same filters.
+	 * @param doc the mutable annotation to observe
+	 * @param typeFilter an annotation type filter to use on top of the ones
+	 *            permanently added to the digest
+	 * @param attributeFilter an attribute filter to use on top of the ones
+	 *            permanently added to the digest
+	 * @return the incremental checksum for the argument annotation
+	 */
+	public IncrementalChecksum getIncrementalChecksum(MutableAnnotation doc, TypeFilter typeFilter, AttributeFilter attributeFilter) {
+		Set icTypeFilter = (((this.typeFilters == null) && (typeFilter == null)) ? null : new TypeFilterSet(typeFilter, this.typeFilters));
+		Set icAttributeFilter = (((this.attributeFilters == null) && (attributeFilter == null)) ? null : new AttributeFilterSet(attributeFilter, this.attributeFilters));
+		return new IncrementalChecksum(doc, icTypeFilter, icAttributeFilter);
+	}
+	
+	/**
+	 * Incrementally maintained checksum of a mutable annotation. Instances
+	 * keep a hash for each token and each nested annotation, and combine them
+	 * into a polynomial over token positions modulo the prime 2^61-1: each
+	 * token contributes the hash of its value and trailing whitespace plus the
+	 * hashes of all annotations starting at it, weighted with a fixed base to
+	 * the power of its position. The per token contributions live in a list of
+	 * blocks, each of which caches its own weighted sum relative to its first
+	 * token, so inserting or removing tokens only touches the affected blocks,
+	 * and tokens and annotations after an edit keep their hashes even though
+	 * their indices shift. Annotation related changes are only recorded as
+	 * they happen, and the affected hashes are updated on the next call to
+	 * <code>getChecksum()</code>; edits to the underlying text update the
+	 * hashes of the affected tokens and of the annotations overlapping them
+	 * right away, or on the next call for changes to whitespace only. Asking
+	 * for the checksum then costs time proportional to the number of modified
+	 * tokens and annotations, plus the number of blocks.
+	 * For annotations other than document roots, whose token events are not
+	 * relative to themselves, text edits still cause a complete re-computation
+	 * on the next call.<br>
+	 * Client code should call <code>dispose()</code> when done with an
+	 * instance, so it stops listening to the observed annotation.
+	 * 
+	 * @author sautter
+	 */
+	public static class IncrementalChecksum implements AnnotationListener, CharSequenceListener, TokenSequenceListener {
+		private static final long PRIME = 0x1FFFFFFFFFFFFFFFL; // 2^61-1
+		private static final long BASE = 0x0F4D3C2B1A09E8D7L; // < 2^61
+		private static final int BLOCK_SIZE = 256;
+		
+		private MutableAnnotation doc;
+		private boolean docIsRoot;
+		private Set typeFilter;
+		private Set attributeFilter;
+		private MD5 hasher = new MD5();
+		private MD5 attributeHasher = new MD5();
+		
+		private ArrayList blocks = new ArrayList();
+		private int[] blockStarts = null; // index of first token in each block, plus total, computed on demand
+		private HashMap annotationHashes = new HashMap();
+		private LinkedHashMap dirtyAnnotations = new LinkedHashMap();
+		private int charChangeFrom = -1;
+		private int charChangeTo = -1;
+		private ArrayList staleSlots = new ArrayList();
+		
+		private byte[] docAttributeHash = null;
+		private boolean rebuild = true;
+		
+		private String checksum = null;
+		
+		/* the contribution of a single token, i.e., the hash of its value and
+		 * whitespace, plus the sum of the hashes of the annotations starting
+		 * at it; slots are marked dead when their token is removed, so hashes
+		 * of annotations pointing to them are no longer subtracted */
+		private static class Slot {
+			long tokenHash;
+			long annotationHash;
+			Block block;
+			boolean live = true;
+		}
+		
+		private static class Block {
+			Slot[] slots = new Slot[BLOCK_SIZE * 2];
+			int size = 0;
+			long hash = 0;
+			long weight = 1; // base to the power of size
+			boolean dirty = true;
+		}
+		
+		private static class AnnotationHash {
+			final Slot slot;
+			final long hash;
+			AnnotationHash(Slot slot, long hash) {
+				this.slot = slot;
+				this.hash = hash;
+			}
+		}
+		
+		IncrementalChecksum(MutableAnnotation doc, Set typeFilter, Set attributeFilter) {
+			this.doc = doc;
+			this.docIsRoot = (doc instanceof DocumentRoot);
+			this.typeFilter = typeFilter;
+			this.attributeFilter = attributeFilter;
+			this.doc.addAnnotationListener(this);
+			this.doc.addCharSequenceListener(this);
+			this.doc.addTokenSequenceListener(this);
+		}
+		
+		/**
+		 * Retrieve the current checksum of the observed annotation.
+		 * @return the checksum as a hex string
+		 */
+		public synchronized String getChecksum() {
+			if (this.rebuild)
+				this.rebuild();
+			else {
+				if (this.staleSlots.size() != 0)
+					this.updateStaleSlots();
+				if (this.dirtyAnnotations.size() != 0)
+					this.update();
+			}
+			if (this.checksum != null)
+				return this.checksum;
+			if (this.docAttributeHash == null)
+				this.docAttributeHash = this.hashAttributes(this.doc);
+			
+			//	add up blocks, weighting each with base to the power of its start position
+			long sum = 0;
+			long weight = 1;
+			for (int b = 0; b < this.blocks.size(); b++) {
+				Block block = ((Block) this.blocks.get(b));
+				if (block.dirty) {
+					block.hash = 0;
+					for (int s = (block.size - 1); s >= 0; s--)
+						block.hash = addMod(mulMod(block.hash, BASE), addMod(block.slots[s].tokenHash, block.slots[s].annotationHash));
+					block.weight = powMod(BASE, block.size);
+					block.dirty = false;
+				}
+				sum = addMod(sum, mulMod(weight, block.hash));
+				weight = mulMod(weight, block.weight);
+			}
+			
+			this.hasher.reset();
+			updateHasher(this.hasher, this.doc.getLeadingWhitespace());
+			updateHasher(this.hasher, this.doc.size());
+			this.hasher.update(this.docAttributeHash);
+			updateHasher(this.hasher, sum);
+			this.checksum = this.hasher.digestHex();
+			return this.checksum;
+		}
+		
+		/**
+		 * Stop observing the underlying annotation. After this method has been
+		 * called, the checksum does not reflect any further changes.
+		 */
+		public synchronized void dispose() {
+			this.doc.removeAnnotationListener(this);
+			this.doc.removeCharSequenceListener(this);
+			this.doc.removeTokenSequenceListener(this);
+			this.blocks.clear();
+			this.blockStarts = null;
+			this.annotationHashes.clear();
+			this.dirtyAnnotations.clear();
+			this.staleSlots.clear();
+		}
+		
+		private void rebuild() {
+			this.blocks.clear();
+			this.blockStarts = null;
+			this.annotationHashes.clear();
+			this.dirtyAnnotations.clear();
+			this.staleSlots.clear();
+			this.insertSlots(0, 0, this.doc.size());
+			Annotation[] annotations = this.doc.getAnnotations();
+			for (int a = 0; a < annotations.length; a++)
+				this.updateAnnotationHash(annotations[a].getAnnotationID(), annotations[a]);
+			this.docAttributeHash = null;
+			this.checksum = null;
+			this.rebuild = false;
+		}
+		
+		private void update() {
+			for (Iterator idit = this.dirtyAnnotations.keySet().iterator(); idit.hasNext();) {
+				String annotId = ((String) idit.next());
+				this.updateAnnotationHash(annotId, ((Annotation) this.dirtyAnnotations.get(annotId)));
+			}
+			this.dirtyAnnotations.clear();
+			this.checksum = null;
+		}
+		
+		private void updateAnnotationHash(String annotId, Annotation annot) {
+			AnnotationHash oldHash = ((AnnotationHash) this.annotationHashes.remove(annotId));
+			if ((oldHash != null) && oldHash.slot.live) {
+				oldHash.slot.annotationHash = subMod(oldHash.slot.annotationHash, oldHash.hash);
+				oldHash.slot.block.dirty = true;
+			}
+			if ((annot == null) || (annot.getStartIndex() < 0) || (annot.getStartIndex() >= this.doc.size()))
+				return;
+			long hash = this.hashAnnotation(annot);
+			if (hash == -1)
+				return;
+			Slot slot = this.getSlot(annot.getStartIndex());
+			slot.annotationHash = addMod(slot.annotationHash, hash);
+			slot.block.dirty = true;
+			this.annotationHashes.put(annotId, new AnnotationHash(slot, hash));
+		}
+		
+		/* replace the slots of removeCount tokens at index with the ones of insertCount current tokens */
+		private void replaceSlots(int index, int removeCount, int insertCount) {
+			this.removeSlots(index, removeCount);
+			this.insertSlots(index, index, insertCount);
+		}
+		
+		private void removeSlots(int index, int count) {
+			if (this.blocks.isEmpty())
+				return;
+			int b = this.getBlockIndex(index);
+			int blockStart = this.blockStarts[b];
+			this.blockStarts = null;
+			while ((b < this.blocks.size()) && (count > 0)) {
+				Block block = ((Block) this.blocks.get(b));
+				if ((blockStart + block.size) <= index) {
+					blockStart += block.size;
+					b++;
+					continue;
+				}
+				int from = (index - blockStart);
+				int remove = Math.min(count, (block.size - from));
+				for (int s = from; s < (from + remove); s++)
+					block.slots[s].live = false;
+				System.arraycopy(block.slots, (from + remove), block.slots, from, (block.size - from - remove));
+				for (int s = (block.size - remove); s < block.size; s++)
+					block.slots[s] = null;
+				block.size -= remove;
+				block.dirty = true;
+				count -= remove;
+				if (block.size == 0)
+					this.blocks.remove(b);
+				else {
+					blockStart += block.size;
+					b++;
+				}
+			}
+		}
+		
+		/* insert slots for count current tokens, starting with the one at tokenIndex, at slot index */
+		private void insertSlots(int index, int tokenIndex, int count) {
+			if (count == 0)
+				return;
+			
+			//	find block to insert into
+			int blockStart = 0;
+			int b = 0;
+			Block block;
+			if (this.blocks.isEmpty()) {
+				block = new Block();
+				this.blocks.add(block);
+			}
+			else {
+				b = this.getBlockIndex(index);
+				if ((b != 0) && (index == this.blockStarts[b]))
+					b--; // append to end of preceding block rather than prepending to this one
+				blockStart = this.blockStarts[b];
+				block = ((Block) this.blocks.get(b));
+			}
+			this.blockStarts = null;
+			
+			//	insert slots, splitting block whenever it gets full
+			int at = (index - blockStart);
+			for (int t = 0; t < count; t++) {
+				if (block.size == block.slots.length) {
+					Block right = new Block();
+					right.size = (block.size - at);
+					System.arraycopy(block.slots, at, right.slots, 0, right.size);
+					for (int s = 0; s < right.size; s++) {
+						right.slots[s].block = right;
+						block.slots[at + s] = null;
+					}
+					block.size = at;
+					block.dirty = true;
+					if (right.size != 0)
+						this.blocks.add((b + 1), right);
+					if (at >= BLOCK_SIZE) {
+						block = new Block(); // start a new block, as this one is half full already
+						at = 0;
+						this.blocks.add((b + 1), block);
+						b++;
+					}
+				}
+				System.arraycopy(block.slots, at, block.slots, (at + 1), (block.size - at));
+				Slot slot = new Slot();
+				slot.tokenHash = this.hashToken(tokenIndex + t);
+				slot.block = block;
+				block.slots[at++] = slot;
+				block.size++;
+				block.dirty = true;
+			}
+		}
+		
+		private Slot getSlot(int index) {
+			if (this.blocks.isEmpty())
+				return null;
+			int b = this.getBlockIndex(index);
+			Block block = ((Block) this.blocks.get(b));
+			index -= this.blockStarts[b];
+			return ((index < block.size) ? block.slots[index] : null);
+		}
+		
+		/* find the block holding the slot at a given index via binary search over block starts, the last block for indexes at or beyond the end */
+		private int getBlockIndex(int index) {
+			if (this.blockStarts == null) {
+				this.blockStarts = new int[this.blocks.size() + 1];
+				for (int b = 0; b < this.blocks.size(); b++)
+					this.blockStarts[b + 1] = (this.blockStarts[b] + ((Block) this.blocks.get(b)).size);
+			}
+			int low = 0;
+			int high = (this.blocks.size() - 1);
+			while (low < high) {
+				int middle = ((low + high + 1) / 2);
+				if (this.blockStarts[middle] <= index)
+					low = middle;
+				else high = (middle - 1);
+			}
+			return low;
+		}
+		
+		/* re-hash tokens whose whitespace changed without any change to the tokens themselves */
+		private void updateStaleSlots() {
+			for (int s = 0; s < this.staleSlots.size(); s++) {
+				Slot slot = ((Slot) this.staleSlots.get(s));
+				if (!slot.live)
+					continue; // removed by later token change
+				int index = 0;
+				for (int b = 0; this.blocks.get(b) != slot.block; b++)
+					index += ((Block) this.blocks.get(b)).size;
+				for (int i = 0; slot.block.slots[i] != slot; i++)
+					index++;
+				slot.tokenHash = this.hashToken(index);
+				slot.block.dirty = true;
+			}
+			this.staleSlots.clear();
+		}
+		
+		private int getTokenIndexAtOffset(int offset) {
+			int low = 0;
+			int high = (this.doc.size() - 1);
+			while (low < high) {
+				int middle = ((low + high + 1) / 2);
+				if (this.doc.tokenAt(middle).getStartOffset() <= offset)
+					low = middle;
+				else high = (middle - 1);
+			}
+			return low;
+		}
+		
+		private long hashToken(int index) {
+			long hash = 0;
+			String value = this.doc.valueAt(index);
+			for (int c = 0; c < value.length(); c++)
+				hash = addMod(mulMod(hash, 0x1000193), value.charAt(c));
+			hash = addMod(mulMod(hash, 0x1000193), 0x10000); // separator outside char range
+			String whitespace = this.doc.getWhitespaceAfter(index);
+			for (int c = 0; c < whitespace.length(); c++)
+				hash = addMod(mulMod(hash, 0x1000193), whitespace.charAt(c));
+			return mix(hash);
+		}
+		
+		private long hashAnnotation(Annotation annot) {
+			if ((this.typeFilter != null) && !this.typeFilter.contains(annot.getType()))
+				return -1;
+			this.hasher.reset();
+			updateHasher(this.hasher, annot.getType());
+			updateHasher(this.hasher, annot.size());
+			this.hasher.update(this.hashAttributes(annot));
+			byte[] hash = this.hasher.digest();
+			long hashLong = 0;
+			for (int b = 0; b < 8; b++)
+				hashLong = ((hashLong << 8) | (hash[b] & 0xFF));
+			return reduce(hashLong >>> 3);
+		}
+		
+		private byte[] hashAttributes(Attributed attributed) {
+			this.attributeHasher.reset();
+			String[] attributeNames = attributed.getAttributeNames();
+			Arrays.sort(attributeNames);
+			for (int a = 0; a < attributeNames.length; a++) {
+				if ((this.attributeFilter != null) && !this.attributeFilter.contains(attributeNames[a]))
+					continue;
+				Object value = attributed.getAttribute(attributeNames[a]);
+				if (value == null)
+					continue;
+				updateHasher(this.attributeHasher, attributeNames[a]);
+				updateHasher(this.attributeHasher, value.toString());
+			}
+			return this.attributeHasher.digest();
+		}
+		
+		private static void updateHasher(MD5 hasher, String str) {
+			try {
+				hasher.update(str.getBytes("UTF-8"));
+			} catch (UnsupportedEncodingException uee) { /* never gonna happen, but Java don't know */ }
+			hasher.update((byte) 0);
+		}
+		
+		private static void updateHasher(MD5 hasher, long l) {
+			for (int s = 56; s >= 0; s -= 8)
+				hasher.update((byte) (l >>> s));
+		}
+		
+		/* arithmetics modulo 2^61-1, all arguments in [0, 2^61-1) */
+		
+		private static long reduce(long l) {
+			l = ((l & PRIME) + (l >>> 61));
+			return ((l >= PRIME) ? (l - PRIME) : l);
+		}
+		
+		private static long addMod(long a, long b) {
+			return reduce(a + b);
+		}
+		
+		private static long subMod(long a, long b) {
+			return reduce(a + PRIME - b);
+		}
+		
+		private static long mulMod(long a, long b) {
+			long aHigh = (a >>> 31);
+			long aLow = (a & 0x7FFFFFFFL);
+			long bHigh = (b >>> 31);
+			long bLow = (b & 0x7FFFFFFFL);
+			long middle = ((aHigh * bLow) + (aLow * bHigh)); // middle * 2^31 = (middle >>> 30) * 2^61 + (middle & (2^30-1)) * 2^31
+			long result = ((aHigh * bHigh) << 1); // 2^62 = 2 * 2^61 = 2 (mod 2^61-1)
+			result = reduce(result + (middle >>> 30));
+			result = reduce(result + ((middle & 0x3FFFFFFFL) << 31));
+			return reduce(result + reduce(aLow * bLow));
+		}
+		
+		private static long powMod(long base, int exponent) {
+			long result = 1;
+			for (; exponent != 0; exponent >>>= 1) {
+				if ((exponent & 1) != 0)
+					result = mulMod(result, base);
+				base = mulMod(base, base);
+			}
+			return result;
+		}
+		
+		private static long mix(long l) {
+			l ^= (l >>> 29);
+			l *= 0xBF58476D1CE4E5B9L;
+			l ^= (l >>> 32);
+			return reduce(l >>> 3);
+		}
+		
+		private boolean isDocument(Annotation annot) {
+			return this.doc.getAnnotationID().equals(annot.getAnnotationID());
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uka.ipd.idaho.gamta.AnnotationListener#annotationAdded(de.uka.ipd.idaho.gamta.QueriableAnnotation, de.uka.ipd.idaho.gamta.Annotation)
+		 */
+		public synchronized void annotationAdded(QueriableAnnotation doc, Annotation annotation) {
+			if (!this.rebuild)
+				this.dirtyAnnotations.put(annotation.getAnnotationID(), annotation);
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uka.ipd.idaho.gamta.AnnotationListener#annotationRemoved(de.uka.ipd.idaho.gamta.QueriableAnnotation, de.uka.ipd.idaho.gamta.Annotation)
+		 */
+		public synchronized void annotationRemoved(QueriableAnnotation doc, Annotation annotation) {
+			if (!this.rebuild)
+				this.dirtyAnnotations.put(annotation.getAnnotationID(), null);
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uka.ipd.idaho.gamta.AnnotationListener#annotationTypeChanged(de.uka.ipd.idaho.gamta.QueriableAnnotation, de.uka.ipd.idaho.gamta.Annotation, java.lang.String)
+		 */
+		public synchronized void annotationTypeChanged(QueriableAnnotation doc, Annotation annotation, String oldType) {
+			if (!this.rebuild)
+				this.dirtyAnnotations.put(annotation.getAnnotationID(), annotation);
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uka.ipd.idaho.gamta.AnnotationListener#annotationAttributeChanged(de.uka.ipd.idaho.gamta.QueriableAnnotation, de.uka.ipd.idaho.gamta.Annotation, java.lang.String, java.lang.Object)
+		 */
+		public synchronized void annotationAttributeChanged(QueriableAnnotation doc, Annotation annotation, String attributeName, Object oldValue) {
+			if (this.rebuild)
+				return;
+			if (Annotation.ANNOTATION_ID_ATTRIBUTE.equals(attributeName)) {
+				this.rebuild = true; // ID change breaks our mapping
+				return;
+			}
+			if ((attributeName != null) && (this.attributeFilter != null) && !this.attributeFilter.contains(attributeName))
+				return;
+			if (this.isDocument(annotation)) {
+				this.docAttributeHash = null;
+				this.checksum = null;
+			}
+			else this.dirtyAnnotations.put(annotation.getAnnotationID(), annotation);
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uka.ipd.idaho.gamta.CharSequenceListener#charSequenceChanged(de.uka.ipd.idaho.gamta.MutableCharSequence.CharSequenceEvent)
+		 */
+		public synchronized void charSequenceChanged(CharSequenceEvent change) {
+			this.checksum = null;
+			if (this.rebuild)
+				return;
+			if (!this.docIsRoot) {
+				this.rebuild = true;
+				return;
+			}
+			
+			//	tokens are already adjusted, get range of tokens whose value or whitespace might have changed
+			this.charChangeFrom = Math.max(0, (this.getTokenIndexAtOffset(change.offset) - 1));
+			this.charChangeTo = Math.min(this.doc.size(), (this.getTokenIndexAtOffset(change.offset + change.inserted.length()) + 2));
+			
+			//	changes to whitespace only come without token event, so mark slots for re-hashing (slots mix up if token event follows, but re-hashing is harmless)
+			for (int t = this.charChangeFrom; t < this.charChangeTo; t++) {
+				Slot slot = this.getSlot(t);
+				if (slot != null)
+					this.staleSlots.add(slot);
+			}
+		}
+		
+		/* (non-Javadoc)
+		 * @see de.uka.ipd.idaho.gamta.TokenSequenceListener#tokenSequenceChanged(de.uka.ipd.idaho.gamta.MutableTokenSequence.TokenSequenceEvent)
+		 */
+		public synchronized void tokenSequenceChanged(TokenSequenceEvent change) {
+			this.checksum = null;
+			if (this.rebuild || !this.docIsRoot)
+				return;
+			
+			//	replace slots of changed tokens, plus the ones before and after, as well as any ones affected by the text change, whose whitespace might have changed
+			int from = Math.max(0, (change.index - 1));
+			int to = Math.min(this.doc.size(), (change.index + change.inserted.size() + 1));
+			if (this.charChangeFrom != -1) {
+				from = Math.min(from, this.charChangeFrom);
+				to = Math.max(to, this.charChangeTo);
+			}
+			this.charChangeFrom = -1;
+			this.charChangeTo = -1;
+			int shift = (change.inserted.size() - change.removed.size());
+			this.replaceSlots(from, (to - shift - from), (to - from));
+			
+			//	annotations were adjusted before we got notified, re-hash the ones touching the change
+			Annotation[] annotations = this.doc.getAnnotationsOverlapping(from, to);
+			for (int a = 0; a < annotations.length; a++)
+				this.updateAnnotationHash(annotations[a].getAnnotationID(), annotations[a]);
+		}
+	}
 //	
 //	private static LinkedList checksumDigestPool = new LinkedList();
 //	private static synchronized MessageDigest getChecksumDigest() {
@@ -244,7 +831,7 @@ public class AnnotationChecksumDigest {
 	private static class TypeFilterSet extends HashSet {
 		private ChainTypeFilter typeFilter;
 		TypeFilterSet(TypeFilter typeFilter, Set typeFilters) {
-			if (typeFilter == null)
+			if (typeFilter != null)
 				this.typeFilter = new ChainTypeFilter(typeFilter);
 			if (typeFilters != null)
 				for (Iterator tfit = typeFilters.iterator(); tfit.hasNext();) {
@@ -874,6 +874,16 @@ public class AnnotationPatternMatcher {
 	 * @return an array holding the matches of the pattern
 	 */
 	public static MatchTree[] getMatchTrees(TokenSequence tokens, AnnotationIndex annotationIndex, String pattern) {
+		AnalyzerInstrumentation.Probe probe = AnalyzerInstrumentation.startProbe(AnalyzerInstrumentation.PATTERN_OPERATION, pattern);
+		try {
+			return doGetMatchTrees(tokens, annotationIndex, pattern);
+		}
+		finally {
+			if (probe != null)
+				probe.stop();
+		}
+	}
+	private static MatchTree[] doGetMatchTrees(TokenSequence tokens, AnnotationIndex annotationIndex, String pattern) {
 		
 		//	compile pattern
 		AnnotationPattern ap = getPattern(tokens.getTokenizer(), pattern);
@@ -0,0 +1,695 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.gamta.util;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Counting set that keeps its elements and their counts in an open addressing
+ * hash table with linear probing, i.e., in an array of elements and a parallel
+ * array of primitive counts. In comparison to the <code>Map</code> based
+ * counting set, this saves the map entry and the counter object for each
+ * distinct element, as well as the respective memory indirections, which
+ * makes a difference for sets that receive millions of increments. The
+ * order of the elements is arbitrary. The <code>first()</code> and
+ * <code>last()</code> methods thus throw an
+ * <code>UnsupportedOperationException</code>.<br>
+ * Like its superclass, this class is not thread safe. For counting from
+ * multiple threads in parallel, use the <code>Concurrent</code> inner class.
+ * 
+ * @author sautter
+ */
+public class CompactCountingSet extends CountingSet {
+	private static final Object NULL = new Object();
+	private static final float LOAD_FACTOR = 0.625f;
+	
+	private Object[] elements;
+	private int[] counts;
+	private int mask;
+	private int shift;
+	private int elementCount = 0;
+	private int threshold;
+	
+	/** Constructor
+	 */
+	public CompactCountingSet() {
+		this(16);
+	}
+	
+	/** Constructor
+	 * @param capacity the number of distinct elements to expect
+	 */
+	public CompactCountingSet(int capacity) {
+		super((HashMap) null);
+		this.allocate(getTableSize(capacity));
+	}
+	
+	private static int getTableSize(int capacity) {
+		int tableSize = 8;
+		while ((tableSize * LOAD_FACTOR) <= capacity)
+			tableSize <<= 1;
+		return tableSize;
+	}
+	
+	private void allocate(int tableSize) {
+		this.elements = new Object[tableSize];
+		this.counts = new int[tableSize];
+		this.mask = (tableSize - 1);
+		this.shift = (32 - Integer.numberOfTrailingZeros(tableSize));
+		this.threshold = ((int) (tableSize * LOAD_FACTOR));
+	}
+	
+	private int getSlot(Object elem) {
+		int h = elem.hashCode();
+		h ^= (h >>> 16);
+		return ((h * 0x9E3779B9) >>> this.shift);
+	}
+	
+	private int indexOf(Object elem) {
+		for (int s = this.getSlot(elem);; s = ((s + 1) & this.mask)) {
+			Object e = this.elements[s];
+			if (e == null)
+				return -1;
+			if ((e == elem) || e.equals(elem))
+				return s;
+		}
+	}
+	
+	private void ensureCapacity(int elementCount) {
+		if (elementCount <= this.threshold)
+			return;
+		Object[] elements = this.elements;
+		int[] counts = this.counts;
+		this.allocate(getTableSize(elementCount));
+		for (int o = 0; o < elements.length; o++) {
+			if (elements[o] == null)
+				continue;
+			int s = this.getSlot(elements[o]);
+			while (this.elements[s] != null)
+				s = ((s + 1) & this.mask);
+			this.elements[s] = elements[o];
+			this.counts[s] = counts[o];
+		}
+	}
+	
+	private void removeSlot(int s) {
+		this.size -= this.counts[s];
+		this.elementCount--;
+		
+		//	shift back subsequent elements of cluster to keep probe sequences intact
+		for (int n = ((s + 1) & this.mask);; n = ((n + 1) & this.mask)) {
+			Object e = this.elements[n];
+			if (e == null)
+				break;
+			int h = this.getSlot(e);
+			if (((n - h) & this.mask) >= ((n - s) & this.mask)) {
+				this.elements[s] = e;
+				this.counts[s] = this.counts[n];
+				s = n;
+			}
+		}
+		this.elements[s] = null;
+		this.counts[s] = 0;
+	}
+	
+	public int elementCount() {
+		return this.elementCount;
+	}
+	
+	public boolean isEmpty() {
+		return (this.elementCount == 0);
+	}
+	
+	public boolean contains(Object obj) {
+		return (this.indexOf((obj == null) ? NULL : obj) != -1);
+	}
+	
+	public Object first() {
+		throw new UnsupportedOperationException("The method first() only works on sorted counting sets");
+	}
+	
+	public Object last() {
+		throw new UnsupportedOperationException("The method last() only works on sorted counting sets");
+	}
+	
+	public Object min(boolean preferLast) {
+		int minSlot = -1;
+		for (int s = 0; s < this.elements.length; s++) {
+			if (this.elements[s] == null)
+				continue;
+			if ((minSlot == -1) || (this.counts[s] < this.counts[minSlot]) || (preferLast && (this.counts[s] == this.counts[minSlot])))
+				minSlot = s;
+		}
+		return ((minSlot == -1) ? null : unmask(this.elements[minSlot]));
+	}
+	
+	public Object max(boolean preferLast) {
+		int maxSlot = -1;
+		for (int s = 0; s < this.elements.length; s++) {
+			if (this.elements[s] == null)
+				continue;
+			if ((maxSlot == -1) || (this.counts[maxSlot] < this.counts[s]) || (preferLast && (this.counts[maxSlot] == this.counts[s])))
+				maxSlot = s;
+		}
+		return ((maxSlot == -1) ? null : unmask(this.elements[maxSlot]));
+	}
+	
+	public Object[] getMostFrequent(int k) {
+		TopElements top = new TopElements(Math.min(k, this.elementCount));
+		for (int s = 0; s < this.elements.length; s++) {
+			if (this.elements[s] != null)
+				top.offer(unmask(this.elements[s]), this.counts[s]);
+		}
+		return top.toArray();
+	}
+	
+	public int getCount(Object obj) {
+		int s = this.indexOf((obj == null) ? NULL : obj);
+		return ((s == -1) ? 0 : this.counts[s]);
+	}
+	
+	private static Object unmask(Object elem) {
+		return ((elem == NULL) ? null : elem);
+	}
+	
+	public Iterator iterator() {
+		return new Iterator() {
+			private int start = findEmptySlot();
+			private int pos = 0;
+			private int current = -1;
+			private int findEmptySlot() {
+				for (int s = 0;; s++) {
+					if (elements[s] == null)
+						return s;
+				}
+			}
+			/* starting right after an empty slot, elements shifted back on
+			 * removal of the current element always come from slots not
+			 * yet visited, so we can simply stay on the current slot */
+			private int nextSlot() {
+				for (int p = this.pos; p < elements.length; p++) {
+					int s = ((this.start + 1 + p) & mask);
+					if (elements[s] != null)
+						return p;
+				}
+				return -1;
+			}
+			public boolean hasNext() {
+				return (this.nextSlot() != -1);
+			}
+			public Object next() {
+				int p = this.nextSlot();
+				if (p == -1)
+					throw new NoSuchElementException();
+				this.current = ((this.start + 1 + p) & mask);
+				this.pos = (p + 1);
+				return unmask(elements[this.current]);
+			}
+			public void remove() {
+				if (this.current == -1)
+					throw new IllegalStateException();
+				removeSlot(this.current);
+				this.pos--;
+				this.current = -1;
+			}
+		};
+	}
+	
+	public Object[] toArray() {
+		return this.toArray(new Object[this.elementCount]);
+	}
+	
+	public Object[] toArray(Object[] a) {
+		if (a.length < this.elementCount)
+			a = ((Object[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), this.elementCount));
+		int i = 0;
+		for (int s = 0; s < this.elements.length; s++) {
+			if (this.elements[s] != null)
+				a[i++] = unmask(this.elements[s]);
+		}
+		if (i < a.length)
+			a[i] = null;
+		return a;
+	}
+	
+	public boolean add(Object obj, int count) {
+		if (count <= 0)
+			return false;
+		if (obj == null)
+			obj = NULL;
+		this.size += count;
+		int s = this.getSlot(obj);
+		for (;; s = ((s + 1) & this.mask)) {
+			Object e = this.elements[s];
+			if (e == null)
+				break;
+			if ((e == obj) || e.equals(obj)) {
+				this.counts[s] += count;
+				return false;
+			}
+		}
+		if (this.elementCount == this.threshold) {
+			this.ensureCapacity(this.elementCount + 1);
+			for (s = this.getSlot(obj); this.elements[s] != null; s = ((s + 1) & this.mask)) {}
+		}
+		this.elements[s] = obj;
+		this.counts[s] = count;
+		this.elementCount++;
+		return true;
+	}
+	
+	public boolean remove(Object obj, int count) {
+		if (count <= 0)
+			return false;
+		int s = this.indexOf((obj == null) ? NULL : obj);
+		if (s == -1)
+			return false;
+		if (this.counts[s] <= count) {
+			this.removeSlot(s);
+			return true;
+		}
+		else {
+			this.counts[s] -= count;
+			this.size -= count;
+			return false;
+		}
+	}
+	
+	public int removeAll(Object obj) {
+		int s = this.indexOf((obj == null) ? NULL : obj);
+		if (s == -1)
+			return 0;
+		int count = this.counts[s];
+		this.removeSlot(s);
+		return count;
+	}
+	
+	public boolean containsAll(Collection c) {
+		if (c instanceof CountingSet)
+			return this.containsAll((CountingSet) c);
+		for (Iterator oit = c.iterator(); oit.hasNext();) {
+			if (!this.contains(oit.next()))
+				return false;
+		}
+		return true;
+	}
+	
+	public boolean addAll(CountingSet cs) {
+		if (cs == this)
+			return false;
+		boolean changed = false;
+		if (cs instanceof CompactCountingSet) {
+			CompactCountingSet ccs = ((CompactCountingSet) cs);
+			this.ensureCapacity(this.elementCount + ccs.elementCount);
+			for (int s = 0; s < ccs.elements.length; s++) {
+				if (ccs.elements[s] != null)
+					changed = (this.add(ccs.elements[s], ccs.counts[s]) | changed);
+			}
+		}
+		else {
+			this.ensureCapacity(this.elementCount + cs.elementCount());
+			for (Iterator oit = cs.iterator(); oit.hasNext();) {
+				Object obj = oit.next();
+				changed = (this.add(obj, cs.getCount(obj)) | changed);
+			}
+		}
+		return changed;
+	}
+	
+	public boolean retainAll(Collection c) {
+		if (c instanceof CountingSet)
+			return this.retainAll((CountingSet) c);
+		boolean changed = false;
+		for (Iterator eit = this.iterator(); eit.hasNext();) {
+			Object e = eit.next();
+			if (c.contains(e))
+				continue;
+			if (this.getCount(e) == 1)
+				eit.remove(); // removing via set would shift back elements, making the iterator skip them
+			else this.remove(e, 1);
+			changed = true;
+		}
+		return changed;
+	}
+	
+	public boolean retainAll(CountingSet cs) {
+		if (cs == this)
+			return false;
+		boolean changed = false;
+		for (Iterator eit = this.iterator(); eit.hasNext();) {
+			Object e = eit.next();
+			int count = this.getCount(e);
+			int rc = cs.getCount(e);
+			if (count <= rc)
+				continue;
+			if (rc == 0)
+				eit.remove();
+			else this.remove(e, (count - rc));
+			changed = true;
+		}
+		return changed;
+	}
+	
+	public void clear() {
+		for (int s = 0; s < this.elements.length; s++) {
+			this.elements[s] = null;
+			this.counts[s] = 0;
+		}
+		this.elementCount = 0;
+		this.size = 0;
+	}
+	
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append("{");
+		for (int s = 0; s < this.elements.length; s++) {
+			if (this.elements[s] == null)
+				continue;
+			if (sb.length() > 1)
+				sb.append(", ");
+			sb.append(unmask(this.elements[s]) + ": " + this.counts[s]);
+		}
+		sb.append("}");
+		return sb.toString();
+	}
+	
+	/**
+	 * Counting set for use by multiple threads in parallel. Instances of this
+	 * class distribute their elements over a number of stripes by hash, each
+	 * stripe being a <code>CompactCountingSet</code> with its own lock. As
+	 * each element only ever goes into one stripe, producer threads rarely
+	 * contend for the same lock, and there is no need to reconcile counts
+	 * between stripes. Once all producers are finished, client code can
+	 * obtain a merged <code>CompactCountingSet</code> from the
+	 * <code>toCountingSet()</code> method.
+	 * 
+	 * @author sautter
+	 */
+	public static class Concurrent {
+		private CompactCountingSet[] stripes;
+		
+		/** Constructor using two stripes per available CPU core
+		 */
+		public Concurrent() {
+			this(Runtime.getRuntime().availableProcessors() * 2);
+		}
+		
+		/** Constructor
+		 * @param stripes the number of stripes to use (rounded up to the
+		 *            next power of 2)
+		 */
+		public Concurrent(int stripes) {
+			int stripeCount = 1;
+			while (stripeCount < stripes)
+				stripeCount <<= 1;
+			this.stripes = new CompactCountingSet[stripeCount];
+			for (int s = 0; s < this.stripes.length; s++)
+				this.stripes[s] = new CompactCountingSet();
+		}
+		
+		private CompactCountingSet getStripe(Object obj) {
+			if (this.stripes.length == 1)
+				return this.stripes[0];
+			int h = ((obj == null) ? 0 : obj.hashCode());
+			h ^= (h >>> 16);
+			return this.stripes[((h * 0x85EBCA6B) >>> 16) & (this.stripes.length - 1)]; // use different bits than stripes for slots
+		}
+		
+		/**
+		 * Add an element to the set.
+		 * @param obj the element to add
+		 * @return true if the element was added for the first time
+		 */
+		public boolean add(Object obj) {
+			return this.add(obj, 1);
+		}
+		
+		/**
+		 * Add an element to the set with a custom count.
+		 * @param obj the element to add
+		 * @param count the count
+		 * @return true if the element was added for the first time
+		 */
+		public boolean add(Object obj, int count) {
+			CompactCountingSet stripe = this.getStripe(obj);
+			synchronized (stripe) {
+				return stripe.add(obj, count);
+			}
+		}
+		
+		/**
+		 * Add all elements of a counting set to this one, e.g. the counts a
+		 * producer thread collected locally.
+		 * @param cs the counting set whose elements to add
+		 */
+		public void addAll(CountingSet cs) {
+			for (Iterator oit = cs.iterator(); oit.hasNext();) {
+				Object obj = oit.next();
+				this.add(obj, cs.getCount(obj));
+			}
+		}
+		
+		/**
+		 * Remove an element from the set with a custom count.
+		 * @param obj the element to remove
+		 * @param count the count
+		 * @return true if the element was removed completely
+		 */
+		public boolean remove(Object obj, int count) {
+			CompactCountingSet stripe = this.getStripe(obj);
+			synchronized (stripe) {
+				return stripe.remove(obj, count);
+			}
+		}
+		
+		/**
+		 * Retrieve the count of an element.
+		 * @param obj the element to retrieve the count for
+		 * @return the count of the argument element
+		 */
+		public int getCount(Object obj) {
+			CompactCountingSet stripe = this.getStripe(obj);
+			synchronized (stripe) {
+				return stripe.getCount(obj);
+			}
+		}
+		
+		/**
+		 * Retrieve the sum of all element counts.
+		 * @return the size of the set
+		 */
+		public int size() {
+			int size = 0;
+			for (int s = 0; s < this.stripes.length; s++)
+				synchronized (this.stripes[s]) {
+					size += this.stripes[s].size();
+				}
+			return size;
+		}
+		
+		/**
+		 * Retrieve the number of distinct elements in the set.
+		 * @return the number of distinct elements
+		 */
+		public int elementCount() {
+			int elementCount = 0;
+			for (int s = 0; s < this.stripes.length; s++)
+				synchronized (this.stripes[s]) {
+					elementCount += this.stripes[s].elementCount();
+				}
+			return elementCount;
+		}
+		
+		/**
+		 * Retrieve the <code>k</code> most frequent elements in the set, in
+		 * order of decreasing count.
+		 * @param k the maximum number of elements to retrieve
+		 * @return an array holding the most frequent elements in the set
+		 */
+		public Object[] getMostFrequent(int k) {
+			TopElements top = new TopElements(Math.min(k, this.elementCount()));
+			for (int s = 0; s < this.stripes.length; s++)
+				synchronized (this.stripes[s]) {
+					CompactCountingSet stripe = this.stripes[s];
+					for (int e = 0; e < stripe.elements.length; e++) {
+						if (stripe.elements[e] != null)
+							top.offer(unmask(stripe.elements[e]), stripe.counts[e]);
+					}
+				}
+			return top.toArray();
+		}
+		
+		/**
+		 * Merge the stripes into a single counting set. The returned set is a
+		 * copy, so subsequent changes to this concurrent set do not reflect
+		 * in it.
+		 * @return a counting set holding all elements of this one
+		 */
+		public CompactCountingSet toCountingSet() {
+			CompactCountingSet cs = new CompactCountingSet(this.elementCount());
+			for (int s = 0; s < this.stripes.length; s++)
+				synchronized (this.stripes[s]) {
+					cs.addAll(this.stripes[s]);
+				}
+			return cs;
+		}
+	}
+	
+	/* check against map based multiset on random operations, including retainAll(), which removes while iterating */
+	private static boolean selfCheck(long seed) {
+		java.util.Random rnd = new java.util.Random(seed);
+		CompactCountingSet ccs = new CompactCountingSet(4);
+		HashMap counts = new HashMap();
+		for (int op = 0; op < 20000; op++) {
+			Integer e = new Integer(rnd.nextInt(64));
+			int count = (1 + rnd.nextInt(3));
+			int oldCount = (counts.containsKey(e) ? ((Integer) counts.get(e)).intValue() : 0);
+			int action = rnd.nextInt(10);
+			if (action < 5)
+				ccs.add(e, count);
+			else if (action < 8)
+				ccs.remove(e, count);
+			if (action < 8) {
+				int newCount = Math.max(0, ((action < 5) ? (oldCount + count) : (oldCount - count)));
+				if (newCount == 0)
+					counts.remove(e);
+				else counts.put(e, new Integer(newCount));
+			}
+			else if (action == 8) {
+				java.util.HashSet retain = new java.util.HashSet();
+				for (int r = 0; r < 32; r++)
+					retain.add(new Integer(rnd.nextInt(64)));
+				ccs.retainAll(retain);
+				for (Iterator eit = counts.keySet().iterator(); eit.hasNext();) {
+					Object k = eit.next();
+					if (retain.contains(k))
+						continue;
+					int kc = ((Integer) counts.get(k)).intValue();
+					if (kc == 1)
+						eit.remove();
+					else counts.put(k, new Integer(kc - 1));
+				}
+			}
+			else {
+				CountingSet retain = new CountingSet();
+				for (int r = 0; r < 32; r++)
+					retain.add(new Integer(rnd.nextInt(64)), (1 + rnd.nextInt(3)));
+				ccs.retainAll(retain);
+				for (Iterator eit = counts.keySet().iterator(); eit.hasNext();) {
+					Object k = eit.next();
+					int kc = Math.min(((Integer) counts.get(k)).intValue(), retain.getCount(k));
+					if (kc == 0)
+						eit.remove();
+					else counts.put(k, new Integer(kc));
+				}
+			}
+			int size = 0;
+			for (Iterator kit = counts.keySet().iterator(); kit.hasNext();) {
+				Object k = kit.next();
+				size += ((Integer) counts.get(k)).intValue();
+				if (ccs.getCount(k) != ((Integer) counts.get(k)).intValue()) {
+					System.out.println("Self check failed after operation " + op + ": count of " + k + " is " + ccs.getCount(k) + ", expected " + counts.get(k));
+					return false;
+				}
+			}
+			if ((ccs.elementCount() != counts.size()) || (ccs.size() != size)) {
+				System.out.println("Self check failed after operation " + op + ": " + ccs.size() + " increments of " + ccs.elementCount() + " elements, expected " + size + " of " + counts.size());
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/* benchmark comparing map based and compact counting sets, as well as
+	 * parallel counting via concurrent set and merged per-thread sets */
+	public static void main(String[] args) throws Exception {
+		for (long seed = 0; seed < 20; seed++) {
+			if (!selfCheck(seed))
+				return;
+		}
+		System.out.println("Self check passed");
+		
+		final int distinct = ((args.length < 1) ? 100000 : Integer.parseInt(args[0]));
+		final int increments = ((args.length < 2) ? 20000000 : Integer.parseInt(args[1]));
+		final String[] terms = new String[distinct];
+		for (int t = 0; t < terms.length; t++)
+			terms[t] = ("term" + t);
+		final int[] picks = new int[increments];
+		long seed = 4711;
+		for (int i = 0; i < picks.length; i++) {
+			seed = ((seed * 0x5DEECE66DL + 0xBL) & ((1L << 48) - 1));
+			int r = ((int) (seed >>> 17));
+			picks[i] = ((r % distinct) * (r & 3)) / 3; // skewed toward low indexes
+		}
+		
+		for (int round = 0; round < 2; round++) {
+			CountingSet[] css = {new CountingSet(), new CompactCountingSet()};
+			for (int c = 0; c < css.length; c++) {
+				long start = System.currentTimeMillis();
+				for (int i = 0; i < picks.length; i++)
+					css[c].add(terms[picks[i]]);
+				long time = (System.currentTimeMillis() - start);
+				start = System.currentTimeMillis();
+				Object[] top = css[c].getMostFrequent(10);
+				long topTime = (System.currentTimeMillis() - start);
+				System.out.println(((c == 0) ? "map" : "compact") + ": " + css[c].size() + " increments of " + css[c].elementCount() + " elements in " + time + "ms, top 10 in " + topTime + "ms: " + top[0] + "=" + css[c].getCount(top[0]));
+			}
+			
+			final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+			final int chunk = ((picks.length + threads - 1) / threads);
+			final Concurrent ccs = new Concurrent();
+			long start = System.currentTimeMillis();
+			ParallelJobRunner.runParallelFor(new ParallelJobRunner.ParallelFor() {
+				public void doFor(int index) throws Exception {
+					for (int i = (index * chunk); i < Math.min(picks.length, ((index + 1) * chunk)); i++)
+						ccs.add(terms[picks[i]]);
+				}
+			}, threads, threads);
+			CompactCountingSet merged = ccs.toCountingSet();
+			System.out.println("concurrent (" + threads + " threads): " + merged.size() + " increments of " + merged.elementCount() + " elements in " + (System.currentTimeMillis() - start) + "ms");
+			
+			final CompactCountingSet[] locals = new CompactCountingSet[threads];
+			start = System.currentTimeMillis();
+			ParallelJobRunner.runParallelFor(new ParallelJobRunner.ParallelFor() {
+				public void doFor(int index) throws Exception {
+					CompactCountingSet local = new CompactCountingSet();
+					for (int i = (index * chunk); i < Math.min(picks.length, ((index + 1) * chunk)); i++)
+						local.add(terms[picks[i]]);
+					locals[index] = local;
+				}
+			}, threads, threads);
+			merged = new CompactCountingSet();
+			for (int t = 0; t < locals.length; t++)
+				merged.addAll(locals[t]);
+			System.out.println("per-thread (" + threads + " threads): " + merged.size() + " increments of " + merged.elementCount() + " elements in " + (System.currentTimeMillis() - start) + "ms");
+		}
+	}
+}
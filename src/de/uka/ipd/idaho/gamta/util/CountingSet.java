@@ -189,6 +189,96 @@ public class CountingSet implements Set {
 		return maxElem;
 	}
 	
+	/**
+	 * Retrieve the <code>k</code> most frequent elements in the set, in order
+	 * of decreasing count. Elements with the same count come in iteration
+	 * order. This method does not sort the whole set, but selects the
+	 * elements via a bounded heap, so it runs in <code>O(n log k)</code> time
+	 * for a set with <code>n</code> distinct elements.
+	 * @param k the maximum number of elements to retrieve
+	 * @return an array holding the most frequent elements in the set
+	 */
+	public Object[] getMostFrequent(int k) {
+		TopElements top = new TopElements(Math.min(k, this.elementCount()));
+		for (Iterator eit = this.iterator(); eit.hasNext();) {
+			Object elem = eit.next();
+			top.offer(elem, this.getCount(elem));
+		}
+		return top.toArray();
+	}
+	
+	/* bounded min-heap keeping the elements with the highest counts offered
+	 * so far, earlier elements winning ties */
+	static class TopElements {
+		private Object[] elems;
+		private int[] counts;
+		private int[] seqs;
+		private int size = 0;
+		private int seq = 0;
+		TopElements(int k) {
+			k = Math.max(0, k);
+			this.elems = new Object[k];
+			this.counts = new int[k];
+			this.seqs = new int[k];
+		}
+		void offer(Object elem, int count) {
+			int seq = this.seq++;
+			if (this.size < this.elems.length) {
+				int i = this.size++;
+				this.set(i, elem, count, seq);
+				while (i > 0) {
+					int p = ((i - 1) >> 1);
+					if (!this.less(i, p))
+						break;
+					this.swap(i, p);
+					i = p;
+				}
+			}
+			else if ((this.size != 0) && (this.counts[0] < count)) {
+				this.set(0, elem, count, seq);
+				this.siftDown(0, this.size);
+			}
+		}
+		private boolean less(int i, int j) {
+			return ((this.counts[i] < this.counts[j]) || ((this.counts[i] == this.counts[j]) && (this.seqs[i] > this.seqs[j])));
+		}
+		private void set(int i, Object elem, int count, int seq) {
+			this.elems[i] = elem;
+			this.counts[i] = count;
+			this.seqs[i] = seq;
+		}
+		private void swap(int i, int j) {
+			Object elem = this.elems[i];
+			int count = this.counts[i];
+			int seq = this.seqs[i];
+			this.set(i, this.elems[j], this.counts[j], this.seqs[j]);
+			this.set(j, elem, count, seq);
+		}
+		private void siftDown(int i, int size) {
+			while (true) {
+				int c = ((i << 1) + 1);
+				if (c >= size)
+					break;
+				if (((c + 1) < size) && this.less((c + 1), c))
+					c++;
+				if (!this.less(c, i))
+					break;
+				this.swap(i, c);
+				i = c;
+			}
+		}
+		Object[] toArray() {
+			Object[] top = new Object[this.size];
+			for (int s = this.size; s > 0; s--) {
+				top[s - 1] = this.elems[0];
+				this.swap(0, (s - 1));
+				this.siftDown(0, (s - 1));
+			}
+			this.size = 0;
+			return top;
+		}
+	}
+	
 	/**
 	 * Returns the number of times the set contains the argument element.
 	 * @param obj the element whose frequency in this set to obtain
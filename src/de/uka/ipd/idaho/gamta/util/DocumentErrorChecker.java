@@ -774,7 +774,7 @@ public abstract class DocumentErrorChecker {
 	 */
 	public static DocumentErrorChecker[] getObservingErrorCheckers(String target) {
 		LinkedHashSet ecl = getErrorCheckerList(("target:" + target), false);
-		return ((ecl == null) ? new DocumentErrorChecker[0] : ((DocumentErrorChecker[]) ecl.toArray(new String[ecl.size()])));
+		return ((ecl == null) ? new DocumentErrorChecker[0] : ((DocumentErrorChecker[]) ecl.toArray(new DocumentErrorChecker[ecl.size()])));
 	}
 	
 	/**
@@ -786,7 +786,7 @@ public abstract class DocumentErrorChecker {
 	 */
 	public static DocumentErrorChecker[] getInspectingErrorCheckers(String subject) {
 		LinkedHashSet ecl = getErrorCheckerList(("subject:" + subject), false);
-		return ((ecl == null) ? new DocumentErrorChecker[0] : ((DocumentErrorChecker[]) ecl.toArray(new String[ecl.size()])));
+		return ((ecl == null) ? new DocumentErrorChecker[0] : ((DocumentErrorChecker[]) ecl.toArray(new DocumentErrorChecker[ecl.size()])));
 	}
 	
 	private static synchronized LinkedHashSet getErrorCheckerList(String key, boolean create) {
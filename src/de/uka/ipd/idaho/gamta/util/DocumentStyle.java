@@ -1389,6 +1389,12 @@ public class DocumentStyle implements Attributed {
 	
 	private boolean rememberPropertyNames = true;
 	
+	/* full keys of properties in subsets, subsets, and parsed property values */
+	private HashMap fullKeys = null;
+	private HashMap subsets = null;
+	private HashMap parsedValues = null;
+	private Data parsedValuesData = null;
+	
 	/** Constructor for root object
 	 * @param data the document style data object to wrap
 	 */
@@ -1514,7 +1520,90 @@ public class DocumentStyle implements Attributed {
 				mapParameterValueClass(key, valueClass);
 			return this.getPropertyData(key);
 		}
-		else return this.base.getPropertyData((this.prefix + key), valueClass);
+		else return this.base.getPropertyData(this.getFullKey(key), valueClass);
+	}
+	
+	/* resolve a key against the prefix of a subset, remembering the result for subsequent lookups */
+	private String getFullKey(String key) {
+		if (this.base == null)
+			return key;
+		synchronized (this) {
+			if (this.fullKeys == null)
+				this.fullKeys = new HashMap();
+			String fullKey = ((String) this.fullKeys.get(key));
+			if (fullKey == null) {
+				fullKey = (this.prefix + key);
+				this.fullKeys.put(key, fullKey);
+			}
+			return fullKey;
+		}
+	}
+	
+	/* marker for property values that failed to parse */
+	private static final Object INVALID_VALUE = new Object();
+	
+	/* a parsed property value, alongside the string value it was parsed from */
+	private static class ParsedValue {
+		final String data;
+		final String sep;
+		final Object value;
+		ParsedValue(String data, String sep, Object value) {
+			this.data = data;
+			this.sep = sep;
+			this.value = value;
+		}
+	}
+	
+	/* parser for property values of a specific class, returning INVALID_VALUE for values that fail to parse */
+	private static abstract class ValueParser {
+		abstract Object parse(String valStr, String sep);
+	}
+	
+	/**
+	 * Retrieve the value of a document style parameter, parsed into its
+	 * value class. Parsed values are cached in the root of the subset
+	 * hierarchy, by full key and value class, so each value is parsed only
+	 * once. Cached values are validated against the string value from the
+	 * underlying source on every lookup, so changes to the latter are never
+	 * masked by the cache.
+	 * @param key the hashtable key
+	 * @param valueClass the class off the property value
+	 * @param sep the separator for list values
+	 * @param parser the parser for the value
+	 * @return the parsed value, or null if the parameter is not set or its
+	 *            value fails to parse
+	 */
+	private Object getParsedProperty(String key, Class valueClass, String sep, ValueParser parser) {
+		String valStr = this.getPropertyData(key, valueClass);
+		if (valStr == null)
+			return null;
+		DocumentStyle root = ((this.base == null) ? this : this.base);
+		return root.getParsedValue(this.getFullKey(key), valueClass, sep, valStr, parser);
+	}
+	
+	private Object getParsedValue(String fullKey, Class valueClass, String sep, String valStr, ValueParser parser) {
+		HashMap classParsedValues;
+		synchronized (this) {
+			if (this.parsedValuesData != this.data) {
+				this.parsedValues = null; // data object replaced
+				this.parsedValuesData = this.data;
+			}
+			if (this.parsedValues == null)
+				this.parsedValues = new HashMap();
+			classParsedValues = ((HashMap) this.parsedValues.get(valueClass));
+			if (classParsedValues == null) {
+				classParsedValues = new HashMap();
+				this.parsedValues.put(valueClass, classParsedValues);
+			}
+			ParsedValue pv = ((ParsedValue) classParsedValues.get(fullKey));
+			if ((pv != null) && pv.data.equals(valStr) && ((sep == null) ? (pv.sep == null) : sep.equals(pv.sep)))
+				return ((pv.value == INVALID_VALUE) ? null : pv.value);
+		}
+		Object value = parser.parse(valStr, sep);
+		synchronized (this) {
+			classParsedValues.put(fullKey, new ParsedValue(valStr, sep, value));
+		}
+		return ((value == INVALID_VALUE) ? null : value);
 	}
 	
 	/**
@@ -1538,7 +1627,19 @@ public class DocumentStyle implements Attributed {
 	 * @return a sublist with the argument prefix
 	 */
 	public DocumentStyle getSubset(String prefix) {
-		return (((prefix == null) || (prefix.trim().length() == 0)) ? this : new DocumentStyle(this, prefix.trim()));
+		if ((prefix == null) || (prefix.trim().length() == 0))
+			return this;
+		prefix = prefix.trim();
+		synchronized (this) {
+			if (this.subsets == null)
+				this.subsets = new HashMap();
+			DocumentStyle subset = ((DocumentStyle) this.subsets.get(prefix));
+			if (subset == null) {
+				subset = new DocumentStyle(this, prefix);
+				this.subsets.put(prefix, subset);
+			}
+			return subset;
+		}
 	}
 	
 	/**
@@ -1563,16 +1664,8 @@ public class DocumentStyle implements Attributed {
 	 * @return the value in this property list with the specified key value.
 	 */
 	public Pattern getPatternProperty(String key, Pattern defVal) {
-		String val = this.getPropertyData(key, Pattern.class);
-		if (val == null)
-			return defVal;
-		try {
-			return Pattern.compile(val);
-		}
-		catch (PatternSyntaxException pse) {
-			pse.printStackTrace(System.out);
-			return defVal;
-		}
+		Object val = this.getParsedProperty(key, Pattern.class, null, patternParser);
+		return ((val == null) ? defVal : ((Pattern) val));
 	}
 	
 	/**
@@ -1584,11 +1677,8 @@ public class DocumentStyle implements Attributed {
 	 * @return the value in this property list with the specified key value.
 	 */
 	public int getIntProperty(String key, int defVal) {
-		String valStr = this.getPropertyData(key, Integer.class);
-		if ((valStr != null) && (valStr.trim().length() != 0)) try {
-			return Integer.parseInt(valStr);
-		} catch (NumberFormatException nfe) {}
-		return defVal;
+		Object val = this.getParsedProperty(key, Integer.class, null, intParser);
+		return ((val == null) ? defVal : ((Integer) val).intValue());
 	}
 	
 	/**
@@ -1600,11 +1690,8 @@ public class DocumentStyle implements Attributed {
 	 * @return the value in this property list with the specified key value.
 	 */
 	public float getFloatProperty(String key, float defVal) {
-		String valStr = this.getPropertyData(key, Float.class);
-		if ((valStr != null) && (valStr.trim().length() != 0)) try {
-			return Float.parseFloat(valStr);
-		} catch (NumberFormatException nfe) {}
-		return defVal;
+		Object val = this.getParsedProperty(key, Float.class, null, floatParser);
+		return ((val == null) ? defVal : ((Float) val).floatValue());
 	}
 	
 	/**
@@ -1616,11 +1703,8 @@ public class DocumentStyle implements Attributed {
 	 * @return the value in this property list with the specified key value.
 	 */
 	public double getDoubleProperty(String key, double defVal) {
-		String valStr = this.getPropertyData(key, Double.class);
-		if ((valStr != null) && (valStr.trim().length() != 0)) try {
-			return Double.parseDouble(valStr);
-		} catch (NumberFormatException nfe) {}
-		return defVal;
+		Object val = this.getParsedProperty(key, Double.class, null, doubleParser);
+		return ((val == null) ? defVal : ((Double) val).doubleValue());
 	}
 	
 	/**
@@ -1632,8 +1716,8 @@ public class DocumentStyle implements Attributed {
 	 * @return the value in this property list with the specified key value.
 	 */
 	public boolean getBooleanProperty(String key, boolean defVal) {
-		String valStr = this.getPropertyData(key, Boolean.class);
-		return (((valStr == null) || (valStr.trim().length() == 0)) ? defVal : Boolean.parseBoolean(valStr));
+		Object val = this.getParsedProperty(key, Boolean.class, null, booleanParser);
+		return ((val == null) ? defVal : ((Boolean) val).booleanValue());
 	}
 	
 	/**
@@ -1644,10 +1728,8 @@ public class DocumentStyle implements Attributed {
 	 * @return the value in this property list with the specified key value.
 	 */
 	public String[] getStringListProperty(String key, String[] defVal, String sep) {
-		String valStr = this.getPropertyData(key, stringListClass);
-		if ((valStr == null) || (valStr.trim().length() == 0))
-			return defVal;
-		else return valStr.split("\\s*" + RegExUtils.escapeForRegEx(sep) + "\\s*");
+		Object val = this.getParsedProperty(key, stringListClass, sep, stringListParser);
+		return ((val == null) ? defVal : ((String[]) val).clone());
 	}
 	
 	/**
@@ -1658,20 +1740,8 @@ public class DocumentStyle implements Attributed {
 	 * @return the value in this property list with the specified key value.
 	 */
 	public Pattern[] getPatternListProperty(String key, Pattern[] defVal, String sep) {
-		String valStr = this.getPropertyData(key, patternListClass);
-		if ((valStr == null) || (valStr.trim().length() == 0))
-			return defVal;
-		String[] valStrs = valStr.split("\\s*" + RegExUtils.escapeForRegEx(sep) + "\\s*");
-		Pattern[] vals = new Pattern[valStrs.length];
-		try {
-			for (int v = 0; v < valStrs.length; v++)
-				vals[v] = Pattern.compile(valStrs[v]);
-			return vals;
-		}
-		catch (PatternSyntaxException pse) {
-			pse.printStackTrace(System.out);
-			return defVal;
-		}
+		Object val = this.getParsedProperty(key, patternListClass, sep, patternListParser);
+		return ((val == null) ? defVal : ((Pattern[]) val).clone());
 	}
 	
 	/**
@@ -1683,17 +1753,8 @@ public class DocumentStyle implements Attributed {
 	 * @return the value in this property list with the specified key value.
 	 */
 	public int[] getIntListProperty(String key, int[] defVal) {
-		String valStr = this.getPropertyData(key, intListClass);
-		if ((valStr == null) || (valStr.trim().length() == 0))
-			return defVal;
-		String[] valStrs = valStr.split("[^0-9]+");
-		int[] vals = new int[valStrs.length];
-		try {
-			for (int v = 0; v < valStrs.length; v++)
-				vals[v] = Integer.parseInt(valStrs[v]);
-			return vals;
-		} catch (NumberFormatException nfe) {}
-		return defVal;
+		Object val = this.getParsedProperty(key, intListClass, null, intListParser);
+		return ((val == null) ? defVal : ((int[]) val).clone());
 	}
 	
 	/**
@@ -1705,17 +1766,8 @@ public class DocumentStyle implements Attributed {
 	 * @return the value in this property list with the specified key value.
 	 */
 	public float[] getFloatListProperty(String key, float[] defVal) {
-		String valStr = this.getPropertyData(key, floatListClass);
-		if ((valStr == null) || (valStr.trim().length() == 0))
-			return defVal;
-		String[] valStrs = valStr.split("[^0-9\\,\\.]+");
-		float[] vals = new float[valStrs.length];
-		try {
-			for (int v = 0; v < valStrs.length; v++)
-				vals[v] = Float.parseFloat(valStrs[v]);
-			return vals;
-		} catch (NumberFormatException nfe) {}
-		return defVal;
+		Object val = this.getParsedProperty(key, floatListClass, null, floatListParser);
+		return ((val == null) ? defVal : ((float[]) val).clone());
 	}
 	
 	/**
@@ -1727,17 +1779,8 @@ public class DocumentStyle implements Attributed {
 	 * @return the value in this property list with the specified key value.
 	 */
 	public double[] getDoubleListProperty(String key, double[] defVal) {
-		String valStr = this.getPropertyData(key, doubleListClass);
-		if ((valStr == null) || (valStr.trim().length() == 0))
-			return defVal;
-		String[] valStrs = valStr.split("[^0-9\\,\\.]+");
-		double[] vals = new double[valStrs.length];
-		try {
-			for (int v = 0; v < valStrs.length; v++)
-				vals[v] = Double.parseDouble(valStrs[v]);
-			return vals;
-		} catch (NumberFormatException nfe) {}
-		return defVal;
+		Object val = this.getParsedProperty(key, doubleListClass, null, doubleListParser);
+		return ((val == null) ? defVal : ((double[]) val).clone());
 	}
 	
 	/**
@@ -1749,18 +1792,127 @@ public class DocumentStyle implements Attributed {
 	 * @return the value in this property list with the specified key value.
 	 */
 	public boolean[] getBooleanListProperty(String key, boolean[] defVal) {
-		String valStr = this.getPropertyData(key, booleanListClass);
-		if ((valStr == null) || (valStr.trim().length() == 0))
-			return defVal;
-		String[] valStrs = valStr.split("[^a-zA-Z]+");
-		boolean[] vals = new boolean[valStrs.length];
-		try {
+		Object val = this.getParsedProperty(key, booleanListClass, null, booleanListParser);
+		return ((val == null) ? defVal : ((boolean[]) val).clone());
+	}
+	
+	private static final ValueParser patternParser = new ValueParser() {
+		Object parse(String valStr, String sep) {
+			try {
+				return Pattern.compile(valStr);
+			}
+			catch (PatternSyntaxException pse) {
+				pse.printStackTrace(System.out);
+				return INVALID_VALUE;
+			}
+		}
+	};
+	private static final ValueParser intParser = new ValueParser() {
+		Object parse(String valStr, String sep) {
+			if (valStr.trim().length() != 0) try {
+				return new Integer(Integer.parseInt(valStr));
+			} catch (NumberFormatException nfe) {}
+			return INVALID_VALUE;
+		}
+	};
+	private static final ValueParser floatParser = new ValueParser() {
+		Object parse(String valStr, String sep) {
+			if (valStr.trim().length() != 0) try {
+				return new Float(Float.parseFloat(valStr));
+			} catch (NumberFormatException nfe) {}
+			return INVALID_VALUE;
+		}
+	};
+	private static final ValueParser doubleParser = new ValueParser() {
+		Object parse(String valStr, String sep) {
+			if (valStr.trim().length() != 0) try {
+				return new Double(Double.parseDouble(valStr));
+			} catch (NumberFormatException nfe) {}
+			return INVALID_VALUE;
+		}
+	};
+	private static final ValueParser booleanParser = new ValueParser() {
+		Object parse(String valStr, String sep) {
+			return ((valStr.trim().length() == 0) ? INVALID_VALUE : Boolean.valueOf(valStr));
+		}
+	};
+	private static final ValueParser stringListParser = new ValueParser() {
+		Object parse(String valStr, String sep) {
+			if (valStr.trim().length() == 0)
+				return INVALID_VALUE;
+			else return valStr.split("\\s*" + RegExUtils.escapeForRegEx(sep) + "\\s*");
+		}
+	};
+	private static final ValueParser patternListParser = new ValueParser() {
+		Object parse(String valStr, String sep) {
+			if (valStr.trim().length() == 0)
+				return INVALID_VALUE;
+			String[] valStrs = valStr.split("\\s*" + RegExUtils.escapeForRegEx(sep) + "\\s*");
+			Pattern[] vals = new Pattern[valStrs.length];
+			try {
+				for (int v = 0; v < valStrs.length; v++)
+					vals[v] = Pattern.compile(valStrs[v]);
+				return vals;
+			}
+			catch (PatternSyntaxException pse) {
+				pse.printStackTrace(System.out);
+				return INVALID_VALUE;
+			}
+		}
+	};
+	private static final ValueParser intListParser = new ValueParser() {
+		Object parse(String valStr, String sep) {
+			if (valStr.trim().length() == 0)
+				return INVALID_VALUE;
+			String[] valStrs = valStr.split("[^0-9]+");
+			int[] vals = new int[valStrs.length];
+			try {
+				for (int v = 0; v < valStrs.length; v++)
+					vals[v] = Integer.parseInt(valStrs[v]);
+				return vals;
+			} catch (NumberFormatException nfe) {}
+			return INVALID_VALUE;
+		}
+	};
+	private static final ValueParser floatListParser = new ValueParser() {
+		Object parse(String valStr, String sep) {
+			if (valStr.trim().length() == 0)
+				return INVALID_VALUE;
+			String[] valStrs = valStr.split("[^0-9\\,\\.]+");
+			float[] vals = new float[valStrs.length];
+			try {
+				for (int v = 0; v < valStrs.length; v++)
+					vals[v] = Float.parseFloat(valStrs[v]);
+				return vals;
+			} catch (NumberFormatException nfe) {}
+			return INVALID_VALUE;
+		}
+	};
+	private static final ValueParser doubleListParser = new ValueParser() {
+		Object parse(String valStr, String sep) {
+			if (valStr.trim().length() == 0)
+				return INVALID_VALUE;
+			String[] valStrs = valStr.split("[^0-9\\,\\.]+");
+			double[] vals = new double[valStrs.length];
+			try {
+				for (int v = 0; v < valStrs.length; v++)
+					vals[v] = Double.parseDouble(valStrs[v]);
+				return vals;
+			} catch (NumberFormatException nfe) {}
+			return INVALID_VALUE;
+		}
+	};
+	private static final ValueParser booleanListParser = new ValueParser() {
+		Object parse(String valStr, String sep) {
+			if (valStr.trim().length() == 0)
+				return INVALID_VALUE;
+			String[] valStrs = valStr.split("[^a-zA-Z]+");
+			boolean[] vals = new boolean[valStrs.length];
 			for (int v = 0; v < valStrs.length; v++)
 				vals[v] = Boolean.parseBoolean(valStrs[v]);
 			return vals;
-		} catch (NumberFormatException nfe) {}
-		return defVal;
-	}
+		}
+	};
 	
 	/**
 	 * Retrieve the names of all properties present in the document style
@@ -0,0 +1,506 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.gamta.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+
+import de.uka.ipd.idaho.gamta.Annotation;
+import de.uka.ipd.idaho.gamta.AnnotationListener;
+import de.uka.ipd.idaho.gamta.Attributed;
+import de.uka.ipd.idaho.gamta.EditableAnnotation;
+import de.uka.ipd.idaho.gamta.QueriableAnnotation;
+import de.uka.ipd.idaho.gamta.util.DocumentErrorProtocol.DocumentError;
+import de.uka.ipd.idaho.gamta.util.ParallelJobRunner.ParallelFor;
+
+/**
+ * Engine for incremental, change driven error checking on an editable
+ * document. Once attached to a document, the engine listens for annotation
+ * events and uses the observed targets and checked subjects of its error
+ * checkers to determine which checks an edit affects, and which annotations
+ * need re-checking. On <code>recheck()</code>, it removes the errors those
+ * checks reported for the affected subjects from the error protocol and runs
+ * the checks on the affected subjects only, rather than on the whole document.
+ * Checks that require the top level document, or that do not specify their
+ * checked subjects, are re-run on the whole document whenever an edit affects
+ * them.<br>
+ * Checks of different error checkers run in parallel, while all checks of
+ * the same error checker run in one thread, so error checkers do not need to
+ * be thread safe. Errors are collected in per-check buffers and only added to
+ * the error protocol in a final, sequential step, so the latter does not
+ * need to be thread safe, either. Client code should call
+ * <code>recheck()</code> after completing an edit, as a single edit usually
+ * consists of multiple individual annotation events.<br>
+ * Changes to the tokens of a document do not trigger any annotation events,
+ * so client code has to call <code>checkAll()</code> after respective edits.
+ * 
+ * @author sautter
+ */
+public class IncrementalErrorChecker implements AnnotationListener {
+	private EditableAnnotation doc;
+	private DocumentErrorProtocol dep;
+	
+	private ErrorCheck[] checks;
+	private HashMap checksByTarget = new HashMap();
+	private HashMap checksBySubject = new HashMap();
+	private ArrayList wildcardChecks = new ArrayList();
+	
+	private LinkedHashSet dirtyChecks = new LinkedHashSet();
+	private int maxCores = -1;
+	
+	/** Constructor
+	 * @param doc the document to check
+	 * @param dep the error protocol to keep up to date
+	 * @param checkers the error checkers to run
+	 */
+	public IncrementalErrorChecker(EditableAnnotation doc, DocumentErrorProtocol dep, DocumentErrorChecker[] checkers) {
+		this.doc = doc;
+		this.dep = dep;
+		
+		//	expand error checkers into individual checks, and index them by observed targets and checked subjects
+		ArrayList checks = new ArrayList();
+		for (int c = 0; c < checkers.length; c++) {
+			String[] categories = checkers[c].getErrorCategories();
+			for (int cc = 0; cc < categories.length; cc++) {
+				String[] types = checkers[c].getErrorTypes(categories[cc]);
+				for (int t = 0; t < types.length; t++) {
+					ErrorCheck check = new ErrorCheck(checkers[c], categories[cc], types[t]);
+					checks.add(check);
+					String[] targets = checkers[c].getObservedTargets(categories[cc], types[t]);
+					if (targets == null)
+						this.wildcardChecks.add(check);
+					else for (int tt = 0; tt < targets.length; tt++)
+						indexCheck(this.checksByTarget, targets[tt], check);
+					if (check.subjectTypes != null) {
+						for (int s = 0; s < check.subjectTypes.length; s++)
+							indexCheck(this.checksBySubject, check.subjectTypes[s], check);
+					}
+				}
+			}
+		}
+		this.checks = ((ErrorCheck[]) checks.toArray(new ErrorCheck[checks.size()]));
+	}
+	
+	/** Constructor using all error checkers registered with the static
+	 * registry of <code>DocumentErrorChecker</code>
+	 * @param doc the document to check
+	 * @param dep the error protocol to keep up to date
+	 */
+	public IncrementalErrorChecker(EditableAnnotation doc, DocumentErrorProtocol dep) {
+		this(doc, dep, DocumentErrorChecker.getRegisteredErrorCheckers());
+	}
+	
+	private static void indexCheck(HashMap index, String key, ErrorCheck check) {
+		ArrayList checks = ((ArrayList) index.get(key));
+		if (checks == null) {
+			checks = new ArrayList(2);
+			index.put(key, checks);
+		}
+		checks.add(check);
+	}
+	
+	/**
+	 * Start listening for annotation events on the document.
+	 */
+	public void attach() {
+		this.doc.addAnnotationListener(this);
+	}
+	
+	/**
+	 * Stop listening for annotation events on the document. Any changes
+	 * recorded so far remain pending until the next <code>recheck()</code>.
+	 */
+	public void detach() {
+		this.doc.removeAnnotationListener(this);
+	}
+	
+	/**
+	 * Retrieve the maximum number of CPU cores to use for re-checking.
+	 * @return the maximum number of CPU cores to use
+	 */
+	public int getMaxCores() {
+		return this.maxCores;
+	}
+	
+	/**
+	 * Set the maximum number of CPU cores to use for re-checking. A value less
+	 * than 1 indicates using as many cores as the
+	 * <code>ParallelJobRunner</code> permits (the default), a value of 1
+	 * indicates running all checks in the calling thread.
+	 * @param maxCores the maximum number of CPU cores to use
+	 */
+	public void setMaxCores(int maxCores) {
+		this.maxCores = maxCores;
+	}
+	
+	/**
+	 * Check whether or not there are pending changes to the document that
+	 * require re-checking.
+	 * @return true if there are pending changes
+	 */
+	public synchronized boolean isDirty() {
+		return (this.dirtyChecks.size() != 0);
+	}
+	
+	/**
+	 * Run all checks on the whole document, replacing any errors they
+	 * previously added to the error protocol.
+	 * @return the number of errors added to the error protocol
+	 */
+	public synchronized int checkAll() {
+		for (int c = 0; c < this.checks.length; c++) {
+			this.checks[c].markFull();
+			this.dirtyChecks.add(this.checks[c]);
+		}
+		return this.recheck();
+	}
+	
+	/**
+	 * Re-run all checks affected by changes to the document since the last
+	 * re-check on the subjects the changes affected, replacing any errors the
+	 * checks previously added to the error protocol for these subjects.
+	 * @return the number of errors added to the error protocol
+	 */
+	public synchronized int recheck() {
+		if (this.dirtyChecks.isEmpty())
+			return 0;
+		
+		//	determine what to check for each affected check, grouping by error checker
+		LinkedHashMap runsByChecker = new LinkedHashMap();
+		ArrayList runs = new ArrayList();
+		for (Iterator cit = this.dirtyChecks.iterator(); cit.hasNext();) {
+			CheckRun run = this.getCheckRun((ErrorCheck) cit.next());
+			if (run == null)
+				continue;
+			runs.add(run);
+			ArrayList checkerRuns = ((ArrayList) runsByChecker.get(run.check.checker));
+			if (checkerRuns == null) {
+				checkerRuns = new ArrayList(2);
+				runsByChecker.put(run.check.checker, checkerRuns);
+			}
+			checkerRuns.add(run);
+		}
+		this.dirtyChecks.clear();
+		
+		//	run checks of different error checkers in parallel, collecting errors in buffers
+		final ArrayList[] checkerRuns = ((ArrayList[]) runsByChecker.values().toArray(new ArrayList[runsByChecker.size()]));
+		ParallelFor pf = new ParallelFor() {
+			public void doFor(int index) throws Exception {
+				for (int r = 0; r < checkerRuns[index].size(); r++)
+					((CheckRun) checkerRuns[index].get(r)).execute(doc);
+			}
+		};
+		ParallelJobRunner.runParallelFor(pf, checkerRuns.length, this.maxCores);
+		if (pf.hasException()) {
+			Exception e = pf.getException();
+			if (e instanceof RuntimeException)
+				throw ((RuntimeException) e);
+			else throw new RuntimeException(e);
+		}
+		
+		//	replace stale errors with fresh ones
+		int errorCount = 0;
+		for (int r = 0; r < runs.size(); r++) {
+			CheckRun run = ((CheckRun) runs.get(r));
+			run.removeStaleErrors(this.dep);
+			errorCount += run.buffer.flush(this.dep);
+		}
+		return errorCount;
+	}
+	
+	private CheckRun getCheckRun(ErrorCheck check) {
+		if (check.fullRecheck) {
+			check.reset();
+			return new CheckRun(check, null, null);
+		}
+		
+		//	collect subjects affected by changes
+		LinkedHashMap subjectsById = new LinkedHashMap();
+		for (int s = 0; s < check.subjectTypes.length; s++)
+			for (int c = 0; c < check.changedSpans.size(); c++) {
+				int[] span = ((int[]) check.changedSpans.get(c));
+				QueriableAnnotation[] subjects = this.doc.getAnnotationsOverlapping(check.subjectTypes[s], span[0], span[1]);
+				for (int a = 0; a < subjects.length; a++)
+					subjectsById.put(subjects[a].getAnnotationID(), subjects[a]);
+			}
+		HashSet staleSubjectIds = new HashSet(check.removedSubjectIds);
+		staleSubjectIds.addAll(subjectsById.keySet());
+		check.reset();
+		if (subjectsById.isEmpty())
+			return (staleSubjectIds.isEmpty() ? null : new CheckRun(check, new QueriableAnnotation[0], staleSubjectIds));
+		
+		//	reduce to outmost subjects, as checking those includes the ones nested in them
+		QueriableAnnotation[] subjects = ((QueriableAnnotation[]) subjectsById.values().toArray(new QueriableAnnotation[subjectsById.size()]));
+		Arrays.sort(subjects, nestingOrder);
+		ArrayList outmostSubjects = new ArrayList();
+		int coveredEnd = -1;
+		for (int a = 0; a < subjects.length; a++) {
+			int end = subjects[a].getEndIndex();
+			if ((end <= coveredEnd) && (subjects[a].getStartIndex() < coveredEnd))
+				continue;
+			outmostSubjects.add(subjects[a]);
+			coveredEnd = Math.max(coveredEnd, end);
+		}
+		
+		//	errors of subjects nested in outmost ones are stale as well
+		for (int o = 0; o < outmostSubjects.size(); o++) {
+			QueriableAnnotation subject = ((QueriableAnnotation) outmostSubjects.get(o));
+			for (int s = 0; s < check.subjectTypes.length; s++) {
+				QueriableAnnotation[] nested = subject.getAnnotations(check.subjectTypes[s]);
+				for (int n = 0; n < nested.length; n++)
+					staleSubjectIds.add(nested[n].getAnnotationID());
+			}
+		}
+		return new CheckRun(check, ((QueriableAnnotation[]) outmostSubjects.toArray(new QueriableAnnotation[outmostSubjects.size()])), staleSubjectIds);
+	}
+	
+	private static final Comparator nestingOrder = new Comparator() {
+		public int compare(Object obj1, Object obj2) {
+			Annotation a1 = ((Annotation) obj1);
+			Annotation a2 = ((Annotation) obj2);
+			int c = (a1.getStartIndex() - a2.getStartIndex());
+			return ((c == 0) ? (a2.size() - a1.size()) : c);
+		}
+	};
+	
+	public synchronized void annotationAdded(QueriableAnnotation doc, Annotation annotation) {
+		this.annotationChanged(annotation, annotation.getType(), false);
+	}
+	
+	public synchronized void annotationRemoved(QueriableAnnotation doc, Annotation annotation) {
+		this.annotationChanged(annotation, annotation.getType(), true);
+	}
+	
+	public synchronized void annotationTypeChanged(QueriableAnnotation doc, Annotation annotation, String oldType) {
+		this.annotationChanged(annotation, oldType, true);
+		this.annotationChanged(annotation, annotation.getType(), false);
+	}
+	
+	public synchronized void annotationAttributeChanged(QueriableAnnotation doc, Annotation annotation, String attributeName, Object oldValue) {
+		int[] span = this.getSpan(annotation);
+		this.markDirty(((ArrayList) this.checksByTarget.get("@" + attributeName)), span, null);
+		this.markDirty(this.wildcardChecks, span, null);
+	}
+	
+	private void annotationChanged(Annotation annotation, String type, boolean removed) {
+		int[] span = this.getSpan(annotation);
+		this.markDirty(((ArrayList) this.checksByTarget.get(type)), span, null);
+		this.markDirty(this.wildcardChecks, span, null);
+		this.markDirty(((ArrayList) this.checksBySubject.get(type)), span, (removed ? annotation.getAnnotationID() : null));
+	}
+	
+	private int[] getSpan(Annotation annotation) {
+		int start = annotation.getStartIndex();
+		if (annotation instanceof QueriableAnnotation)
+			start = (((QueriableAnnotation) annotation).getAbsoluteStartIndex() - this.doc.getAbsoluteStartIndex());
+		int[] span = {start, (start + annotation.size())};
+		return span;
+	}
+	
+	private void markDirty(ArrayList checks, int[] span, String removedSubjectId) {
+		if (checks == null)
+			return;
+		for (int c = 0; c < checks.size(); c++) {
+			ErrorCheck check = ((ErrorCheck) checks.get(c));
+			if (check.subjectTypes == null)
+				check.markFull();
+			else {
+				check.changedSpans.add(span);
+				if (removedSubjectId != null)
+					check.removedSubjectIds.add(removedSubjectId);
+			}
+			this.dirtyChecks.add(check);
+		}
+	}
+	
+	private static class ErrorCheck {
+		final DocumentErrorChecker checker;
+		final String category;
+		final String type;
+		final String[] subjectTypes;
+		boolean fullRecheck = false;
+		ArrayList changedSpans = new ArrayList();
+		HashSet removedSubjectIds = new HashSet();
+		ErrorCheck(DocumentErrorChecker checker, String category, String type) {
+			this.checker = checker;
+			this.category = category;
+			this.type = type;
+			String[] subjectTypes = checker.getCheckedSubjects(category, type);
+			if (checker.requiresTopLevelDocument(category, type) || (subjectTypes == null) || (subjectTypes.length == 0))
+				this.subjectTypes = null;
+			else this.subjectTypes = subjectTypes;
+		}
+		void markFull() {
+			this.fullRecheck = true;
+			this.changedSpans.clear();
+			this.removedSubjectIds.clear();
+		}
+		void reset() {
+			this.fullRecheck = false;
+			this.changedSpans.clear();
+			this.removedSubjectIds.clear();
+		}
+	}
+	
+	private static class CheckRun {
+		final ErrorCheck check;
+		final QueriableAnnotation[] subjects;
+		final HashSet staleSubjectIds;
+		final ErrorBuffer buffer = new ErrorBuffer();
+		CheckRun(ErrorCheck check, QueriableAnnotation[] subjects, HashSet staleSubjectIds) {
+			this.check = check;
+			this.subjects = subjects;
+			this.staleSubjectIds = staleSubjectIds;
+		}
+		void execute(QueriableAnnotation doc) {
+			if (this.subjects == null)
+				this.check.checker.addDocumentErrors(doc, this.buffer, this.check.category, this.check.type);
+			else for (int s = 0; s < this.subjects.length; s++)
+				this.check.checker.addDocumentErrors(this.subjects[s], this.buffer, this.check.category, this.check.type);
+		}
+		void removeStaleErrors(DocumentErrorProtocol dep) {
+			DocumentError[] errors = dep.getErrors(this.check.category, this.check.type);
+			for (int e = 0; e < errors.length; e++) {
+				if (!this.check.checker.name.equals(errors[e].source))
+					continue;
+				if (this.subjects == null)
+					dep.removeError(errors[e]);
+				else if ((errors[e].subject instanceof Annotation) && this.staleSubjectIds.contains(((Annotation) errors[e].subject).getAnnotationID()))
+					dep.removeError(errors[e]);
+			}
+		}
+	}
+	
+	/* error protocol buffering errors for adding them to the actual protocol
+	 * later on, also decoupling error checkers running in different threads */
+	static class ErrorBuffer extends DocumentErrorProtocol {
+		private ArrayList errors = new ArrayList();
+		public Attributed findErrorSubject(Attributed doc, String[] data) {
+			return null;
+		}
+		public void addError(String source, Attributed subject, Attributed parent, String category, String type, String description, String severity, boolean falsePositive) {
+			this.errors.add(new BufferedError(source, subject, parent, category, type, description, severity, falsePositive));
+		}
+		int flush(DocumentErrorProtocol dep) {
+			dep.copyErrorMetadata(this, false);
+			for (int e = 0; e < this.errors.size(); e++) {
+				BufferedError error = ((BufferedError) this.errors.get(e));
+				dep.addError(error.source, error.subject, error.parent, error.category, error.type, error.description, error.severity, error.falsePositive);
+			}
+			int errorCount = this.errors.size();
+			this.errors.clear();
+			return errorCount;
+		}
+		public int getErrorCount() {
+			return this.errors.size();
+		}
+		public int getErrorSeverityCount(String severity) {
+			return this.getErrors(null, null, severity).length;
+		}
+		public DocumentError[] getErrors() {
+			return this.getErrors(null, null, null);
+		}
+		public int getErrorCount(String category) {
+			return this.getErrors(category, null, null).length;
+		}
+		public int getErrorSeverityCount(String category, String severity) {
+			return this.getErrors(category, null, severity).length;
+		}
+		public DocumentError[] getErrors(String category) {
+			return this.getErrors(category, null, null);
+		}
+		public int getErrorCount(String category, String type) {
+			return this.getErrors(category, type, null).length;
+		}
+		public int getErrorSeverityCount(String category, String type, String severity) {
+			return this.getErrors(category, type, severity).length;
+		}
+		public DocumentError[] getErrors(String category, String type) {
+			return this.getErrors(category, type, null);
+		}
+		private DocumentError[] getErrors(String category, String type, String severity) {
+			ArrayList errors = new ArrayList();
+			for (int e = 0; e < this.errors.size(); e++) {
+				DocumentError error = ((DocumentError) this.errors.get(e));
+				if ((category != null) && !category.equals(error.category))
+					continue;
+				if ((type != null) && !type.equals(error.type))
+					continue;
+				if ((severity != null) && !severity.equals(error.severity))
+					continue;
+				errors.add(error);
+			}
+			return ((DocumentError[]) errors.toArray(new DocumentError[errors.size()]));
+		}
+		public void removeError(DocumentError error) {
+			this.errors.remove(error);
+		}
+		public boolean isFalsePositive(DocumentError error) {
+			return ((error instanceof BufferedError) && ((BufferedError) error).falsePositive);
+		}
+		public boolean markFalsePositive(DocumentError error) {
+			return false;
+		}
+		public boolean unmarkFalsePositive(DocumentError error) {
+			return false;
+		}
+		public DocumentError[] getFalsePositives() {
+			return new DocumentError[0];
+		}
+		public Comparator getErrorComparator() {
+			return bufferedErrorOrder;
+		}
+	}
+	
+	private static class BufferedError extends DocumentError {
+		final Attributed parent;
+		final boolean falsePositive;
+		BufferedError(String source, Attributed subject, Attributed parent, String category, String type, String description, String severity, boolean falsePositive) {
+			super(source, subject, category, type, description, severity);
+			this.parent = parent;
+			this.falsePositive = falsePositive;
+		}
+	}
+	
+	private static final Comparator bufferedErrorOrder = new Comparator() {
+		public int compare(Object obj1, Object obj2) {
+			DocumentError de1 = ((DocumentError) obj1);
+			DocumentError de2 = ((DocumentError) obj2);
+			int c = de1.category.compareTo(de2.category);
+			if (c == 0)
+				c = de1.type.compareTo(de2.type);
+			return ((c == 0) ? de1.description.compareTo(de2.description) : c);
+		}
+	};
+}
@@ -0,0 +1,630 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.gamta.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+
+import de.uka.ipd.idaho.gamta.Annotation;
+import de.uka.ipd.idaho.gamta.Attributed;
+import de.uka.ipd.idaho.gamta.Gamta;
+import de.uka.ipd.idaho.gamta.MutableAnnotation;
+import de.uka.ipd.idaho.gamta.QueriableAnnotation;
+
+/**
+ * Thread safe in-memory document error protocol that indexes errors by
+ * subject, by category, and by category and type, counting severities in
+ * each index bucket. This makes all counts available in constant time, and
+ * retrieving the errors pertaining to a specific subject takes time linear
+ * in their number rather than in the size of the whole protocol. Subjects
+ * that are annotations are identified by their annotation ID, all others by
+ * object identity.<br>
+ * Index buckets are plain arrays rather than linked collections, so memory
+ * use grows only slightly more than linearly with the number of errors,
+ * even for the hundreds of thousands of errors a problematic document can
+ * produce. Removed errors are only flagged as such and compacted away in
+ * bulk, so removing errors one by one does not incur any array copying.
+ * Strings used for error sources, categories, and types are pooled.<br>
+ * Adding an error that is already present in the protocol, i.e., one with
+ * the same subject, category, type, and description, has no effect, nor has
+ * adding an error marked as a false positive.
+ * 
+ * @author sautter
+ */
+public class IndexedDocumentErrorProtocol extends DocumentErrorProtocol {
+	private static final DocumentError[] NO_ERRORS = {};
+	private static final Object NO_SUBJECT = new Object();
+	
+	private ErrorList errors = new ErrorList();
+	private HashMap errorsBySubject = new HashMap();
+	private HashMap errorsByCategory = new HashMap();
+	private HashMap errorsByType = new HashMap();
+	
+	private ErrorList falsePositives = new ErrorList();
+	private HashMap falsePositivesBySubject = new HashMap();
+	
+	private HashMap stringPool = new HashMap();
+	
+	/** Constructor
+	 */
+	public IndexedDocumentErrorProtocol() {}
+	
+	/** Constructor
+	 * @param dep the error protocol to copy errors and metadata from
+	 */
+	public IndexedDocumentErrorProtocol(DocumentErrorProtocol dep) {
+		this.copyErrorMetadata(dep, true);
+		this.addErrors(dep.getErrors());
+		DocumentError[] fps = dep.getFalsePositives();
+		for (int e = 0; e < fps.length; e++)
+			this.addError(fps[e].source, fps[e].subject, null, fps[e].category, fps[e].type, fps[e].description, fps[e].severity, true);
+	}
+	
+	public Attributed findErrorSubject(Attributed doc, String[] data) {
+		if ((data.length == 0) || !(doc instanceof Annotation))
+			return null;
+		if (data[0].equals(((Annotation) doc).getAnnotationID()))
+			return doc;
+		if (doc instanceof QueriableAnnotation)
+			return ((QueriableAnnotation) doc).getAnnotation(data[0]);
+		return null;
+	}
+	
+	public synchronized void addError(String source, Attributed subject, Attributed parent, String category, String type, String description, String severity, boolean falsePositive) {
+		IndexedError error = new IndexedError(this.pool(source), subject, parent, this.pool(category), this.pool(type), description, severity, getSubjectKey(subject));
+		
+		//	register category and type if not done before
+		if (this.getErrorCategoryLabel(error.category) == null)
+			this.setErrorCategoryLabel(error.category, error.category);
+		if (this.getErrorTypeLabel(error.category, error.type) == null)
+			this.setErrorTypeLabel(error.category, error.type, error.type);
+		
+		//	add false positive
+		if (falsePositive) {
+			if (findError(this.falsePositivesBySubject, error) != null)
+				return;
+			this.falsePositives.add(error);
+			getErrorList(this.falsePositivesBySubject, error.subjectKey, true).add(error);
+		}
+		
+		//	add error proper, unless known as a false positive or duplicate
+		else {
+			if (findError(this.falsePositivesBySubject, error) != null)
+				return;
+			if (findError(this.errorsBySubject, error) != null)
+				return;
+			this.errors.add(error);
+			getErrorList(this.errorsBySubject, error.subjectKey, true).add(error);
+			getErrorList(this.errorsByCategory, error.category, true).add(error);
+			getErrorList(this.errorsByType, (error.category + "." + error.type), true).add(error);
+		}
+	}
+	
+	/**
+	 * Add a batch of errors to the protocol, e.g. the result of a checker
+	 * run. This method acquires the lock on the protocol only once for the
+	 * whole batch. The parent of the errors is not available from the
+	 * argument objects, so the errors are added with a null parent.
+	 * @param errors the errors to add
+	 * @return the number of errors actually added
+	 */
+	public synchronized int addErrors(DocumentError[] errors) {
+		int errorCount = this.errors.live;
+		for (int e = 0; e < errors.length; e++)
+			this.addError(errors[e].source, errors[e].subject, null, errors[e].category, errors[e].type, errors[e].description, errors[e].severity, false);
+		return (this.errors.live - errorCount);
+	}
+	
+	public synchronized int getErrorCount() {
+		return this.errors.live;
+	}
+	
+	public synchronized int getErrorSeverityCount(String severity) {
+		return this.errors.getSeverityCount(severity);
+	}
+	
+	public synchronized DocumentError[] getErrors() {
+		return this.errors.getErrors();
+	}
+	
+	public synchronized int getErrorCount(String category) {
+		ErrorList el = this.getErrorList(category, null);
+		return ((el == null) ? 0 : el.live);
+	}
+	
+	public synchronized int getErrorSeverityCount(String category, String severity) {
+		ErrorList el = this.getErrorList(category, null);
+		return ((el == null) ? 0 : el.getSeverityCount(severity));
+	}
+	
+	public synchronized DocumentError[] getErrors(String category) {
+		ErrorList el = this.getErrorList(category, null);
+		return ((el == null) ? NO_ERRORS : el.getErrors());
+	}
+	
+	public synchronized int getErrorCount(String category, String type) {
+		ErrorList el = this.getErrorList(category, type);
+		return ((el == null) ? 0 : el.live);
+	}
+	
+	public synchronized int getErrorSeverityCount(String category, String type, String severity) {
+		ErrorList el = this.getErrorList(category, type);
+		return ((el == null) ? 0 : el.getSeverityCount(severity));
+	}
+	
+	public synchronized DocumentError[] getErrors(String category, String type) {
+		ErrorList el = this.getErrorList(category, type);
+		return ((el == null) ? NO_ERRORS : el.getErrors());
+	}
+	
+	private ErrorList getErrorList(String category, String type) {
+		if (category == null)
+			return this.errors;
+		else if (type == null)
+			return ((ErrorList) this.errorsByCategory.get(category));
+		else return ((ErrorList) this.errorsByType.get(category + "." + type));
+	}
+	
+	/**
+	 * Retrieve the number of errors pertaining to a specific subject.
+	 * @param subject the subject to count the errors for
+	 * @return the number of errors pertaining to the argument subject
+	 */
+	public synchronized int getErrorCount(Attributed subject) {
+		ErrorList el = getErrorList(this.errorsBySubject, getSubjectKey(subject), false);
+		return ((el == null) ? 0 : el.live);
+	}
+	
+	/**
+	 * Retrieve the number of errors of a specific severity pertaining to a
+	 * specific subject.
+	 * @param subject the subject to count the errors for
+	 * @param severity the severity to count
+	 * @return the number of errors pertaining to the argument subject
+	 */
+	public synchronized int getErrorSeverityCount(Attributed subject, String severity) {
+		ErrorList el = getErrorList(this.errorsBySubject, getSubjectKey(subject), false);
+		return ((el == null) ? 0 : el.getSeverityCount(severity));
+	}
+	
+	/**
+	 * Retrieve the errors pertaining to a specific subject.
+	 * @param subject the subject to retrieve the errors for
+	 * @return an array holding the errors pertaining to the argument subject
+	 */
+	public synchronized DocumentError[] getErrors(Attributed subject) {
+		ErrorList el = getErrorList(this.errorsBySubject, getSubjectKey(subject), false);
+		return ((el == null) ? NO_ERRORS : el.getErrors());
+	}
+	
+	public synchronized void removeError(DocumentError error) {
+		IndexedError ie = this.getIndexedError(this.errorsBySubject, error);
+		if (ie != null)
+			this.removeError(ie);
+	}
+	
+	private void removeError(IndexedError error) {
+		error.removed = true;
+		this.errors.remove(error);
+		getErrorList(this.errorsBySubject, error.subjectKey, false).remove(error);
+		getErrorList(this.errorsByCategory, error.category, false).remove(error);
+		getErrorList(this.errorsByType, (error.category + "." + error.type), false).remove(error);
+	}
+	
+	/**
+	 * Remove all errors pertaining to a specific subject from the protocol.
+	 * @param subject the subject to remove the errors for
+	 * @return the number of errors removed
+	 */
+	public synchronized int removeErrors(Attributed subject) {
+		ErrorList el = getErrorList(this.errorsBySubject, getSubjectKey(subject), false);
+		return ((el == null) ? 0 : this.removeErrors(el, null, null, null));
+	}
+	
+	/**
+	 * Remove all errors of a specific source, category, and type from the
+	 * protocol, e.g. in preparation of re-running an error checker. Null
+	 * values in any of the arguments act as wildcards.
+	 * @param source the source of the errors to remove
+	 * @param category the category of the errors to remove
+	 * @param type the type of the errors to remove
+	 * @return the number of errors removed
+	 */
+	public synchronized int removeErrors(String source, String category, String type) {
+		ErrorList el = this.getErrorList(category, type);
+		return ((el == null) ? 0 : this.removeErrors(el, source, category, type));
+	}
+	
+	private int removeErrors(ErrorList el, String source, String category, String type) {
+		IndexedError[] errors = ((IndexedError[]) el.getErrors());
+		int removed = 0;
+		for (int e = 0; e < errors.length; e++) {
+			if ((source != null) && !source.equals(errors[e].source))
+				continue;
+			if ((category != null) && !category.equals(errors[e].category))
+				continue;
+			if ((type != null) && !type.equals(errors[e].type))
+				continue;
+			this.removeError(errors[e]);
+			removed++;
+		}
+		return removed;
+	}
+	
+	public synchronized boolean isFalsePositive(DocumentError error) {
+		return (this.getIndexedError(this.falsePositivesBySubject, error) != null);
+	}
+	
+	public synchronized boolean markFalsePositive(DocumentError error) {
+		if (this.getIndexedError(this.falsePositivesBySubject, error) != null)
+			return false;
+		IndexedError ie = this.getIndexedError(this.errorsBySubject, error);
+		if (ie != null)
+			this.removeError(ie);
+		IndexedError fp = new IndexedError(this.pool(error.source), error.subject, ((ie == null) ? null : ie.parent), this.pool(error.category), this.pool(error.type), error.description, error.severity, getSubjectKey(error.subject));
+		this.falsePositives.add(fp);
+		getErrorList(this.falsePositivesBySubject, fp.subjectKey, true).add(fp);
+		return true;
+	}
+	
+	public synchronized boolean unmarkFalsePositive(DocumentError error) {
+		IndexedError fp = this.getIndexedError(this.falsePositivesBySubject, error);
+		if (fp == null)
+			return false;
+		fp.removed = true;
+		this.falsePositives.remove(fp);
+		getErrorList(this.falsePositivesBySubject, fp.subjectKey, false).remove(fp);
+		return true;
+	}
+	
+	public synchronized DocumentError[] getFalsePositives() {
+		return this.falsePositives.getErrors();
+	}
+	
+	/**
+	 * Retrieve the number of errors marked as false positives.
+	 * @return the number of false positives
+	 */
+	public synchronized int getFalsePositiveCount() {
+		return this.falsePositives.live;
+	}
+	
+	public Comparator getErrorComparator() {
+		return errorOrder;
+	}
+	
+	private static final Comparator errorOrder = new Comparator() {
+		public int compare(Object obj1, Object obj2) {
+			DocumentError de1 = ((DocumentError) obj1);
+			DocumentError de2 = ((DocumentError) obj2);
+			int c = de1.category.compareTo(de2.category);
+			if (c != 0)
+				return c;
+			c = de1.type.compareTo(de2.type);
+			if (c != 0)
+				return c;
+			if ((de1.subject instanceof Annotation) && (de2.subject instanceof Annotation)) {
+				c = (((Annotation) de1.subject).getStartIndex() - ((Annotation) de2.subject).getStartIndex());
+				if (c != 0)
+					return c;
+			}
+			return de1.description.compareTo(de2.description);
+		}
+	};
+	
+	/**
+	 * Remove all errors and false positives from the protocol. The error
+	 * metadata remains unaffected.
+	 */
+	public synchronized void clear() {
+		this.errors = new ErrorList();
+		this.errorsBySubject.clear();
+		this.errorsByCategory.clear();
+		this.errorsByType.clear();
+		this.falsePositives = new ErrorList();
+		this.falsePositivesBySubject.clear();
+	}
+	
+	private IndexedError getIndexedError(HashMap index, DocumentError error) {
+		if (error instanceof IndexedError) {
+			IndexedError ie = ((IndexedError) error);
+			if (!ie.removed) {
+				ErrorList el = getErrorList(index, ie.subjectKey, false);
+				if ((el != null) && el.contains(ie))
+					return ie;
+			}
+		}
+		return findError(index, error);
+	}
+	
+	private static IndexedError findError(HashMap index, DocumentError error) {
+		ErrorList el = getErrorList(index, getSubjectKey(error.subject), false);
+		return ((el == null) ? null : el.find(error));
+	}
+	
+	private static ErrorList getErrorList(HashMap index, Object key, boolean create) {
+		ErrorList el = ((ErrorList) index.get(key));
+		if ((el == null) && create) {
+			el = new ErrorList();
+			index.put(key, el);
+		}
+		return el;
+	}
+	
+	private static Object getSubjectKey(Attributed subject) {
+		if (subject == null)
+			return NO_SUBJECT;
+		else if (subject instanceof Annotation)
+			return ((Annotation) subject).getAnnotationID();
+		else return subject;
+	}
+	
+	private String pool(String str) {
+		if (str == null)
+			return null;
+		String pStr = ((String) this.stringPool.get(str));
+		if (pStr == null) {
+			this.stringPool.put(str, str);
+			pStr = str;
+		}
+		return pStr;
+	}
+	
+	private static int getSeverityIndex(String severity) {
+		if (DocumentError.SEVERITY_BLOCKER.equalsIgnoreCase(severity))
+			return 0;
+		else if (DocumentError.SEVERITY_CRITICAL.equalsIgnoreCase(severity))
+			return 1;
+		else if (DocumentError.SEVERITY_MAJOR.equalsIgnoreCase(severity))
+			return 2;
+		else if (DocumentError.SEVERITY_MINOR.equalsIgnoreCase(severity))
+			return 3;
+		else return -1;
+	}
+	
+	private static class IndexedError extends DocumentError {
+		final Attributed parent;
+		final Object subjectKey;
+		final int severityIndex;
+		boolean removed = false;
+		IndexedError(String source, Attributed subject, Attributed parent, String category, String type, String description, String severity, Object subjectKey) {
+			super(source, subject, category, type, description, severity);
+			this.parent = parent;
+			this.subjectKey = subjectKey;
+			this.severityIndex = getSeverityIndex(this.severity);
+		}
+		boolean matches(DocumentError error) {
+			return (this.category.equals(error.category) && this.type.equals(error.type) && this.description.equals(error.description));
+		}
+		public String[] getSubjectData() {
+			if (this.subject instanceof Annotation) {
+				String[] data = {((Annotation) this.subject).getAnnotationID()};
+				return data;
+			}
+			else return super.getSubjectData();
+		}
+	}
+	
+	/* array based list of errors that only flags removed errors and compacts
+	 * in bulk, keeping counts of non-removed errors by severity */
+	private static class ErrorList {
+		IndexedError[] errors = new IndexedError[2];
+		int size = 0;
+		int live = 0;
+		int[] severityCounts = new int[4];
+		void add(IndexedError error) {
+			if (this.size == this.errors.length) {
+				if ((this.live * 2) < this.size)
+					this.compact();
+				if (this.size == this.errors.length) {
+					IndexedError[] errors = new IndexedError[this.errors.length * 2];
+					System.arraycopy(this.errors, 0, errors, 0, this.size);
+					this.errors = errors;
+				}
+			}
+			this.errors[this.size++] = error;
+			this.live++;
+			this.severityCounts[error.severityIndex]++;
+		}
+		void remove(IndexedError error) {
+			this.live--;
+			this.severityCounts[error.severityIndex]--;
+			if ((this.size > 16) && ((this.live * 2) < this.size))
+				this.compact();
+		}
+		private void compact() {
+			int live = 0;
+			for (int e = 0; e < this.size; e++) {
+				if (!this.errors[e].removed)
+					this.errors[live++] = this.errors[e];
+			}
+			for (int e = live; e < this.size; e++)
+				this.errors[e] = null;
+			this.size = live;
+		}
+		boolean contains(IndexedError error) {
+			for (int e = 0; e < this.size; e++) {
+				if (this.errors[e] == error)
+					return true;
+			}
+			return false;
+		}
+		IndexedError find(DocumentError error) {
+			for (int e = 0; e < this.size; e++) {
+				if (!this.errors[e].removed && this.errors[e].matches(error))
+					return this.errors[e];
+			}
+			return null;
+		}
+		int getSeverityCount(String severity) {
+			int si = getSeverityIndex(severity);
+			return ((si == -1) ? 0 : this.severityCounts[si]);
+		}
+		DocumentError[] getErrors() {
+			IndexedError[] errors = new IndexedError[this.live];
+			for (int e = 0, l = 0; e < this.size; e++) {
+				if (!this.errors[e].removed)
+					errors[l++] = this.errors[e];
+			}
+			return errors;
+		}
+	}
+	
+	/* naive list based error protocol, only for benchmarking */
+	private static class ListDocumentErrorProtocol extends DocumentErrorProtocol {
+		private ArrayList errors = new ArrayList();
+		public Attributed findErrorSubject(Attributed doc, String[] data) {
+			return null;
+		}
+		public synchronized void addError(String source, Attributed subject, Attributed parent, String category, String type, String description, String severity, boolean falsePositive) {
+			this.errors.add(new IndexedError(source, subject, parent, category, type, description, severity, getSubjectKey(subject)));
+		}
+		public int getErrorCount() {
+			return this.errors.size();
+		}
+		public int getErrorSeverityCount(String severity) {
+			return this.getErrors(null, null, severity, null).length;
+		}
+		public DocumentError[] getErrors() {
+			return this.getErrors(null, null, null, null);
+		}
+		public int getErrorCount(String category) {
+			return this.getErrors(category, null, null, null).length;
+		}
+		public int getErrorSeverityCount(String category, String severity) {
+			return this.getErrors(category, null, severity, null).length;
+		}
+		public DocumentError[] getErrors(String category) {
+			return this.getErrors(category, null, null, null);
+		}
+		public int getErrorCount(String category, String type) {
+			return this.getErrors(category, type, null, null).length;
+		}
+		public int getErrorSeverityCount(String category, String type, String severity) {
+			return this.getErrors(category, type, severity, null).length;
+		}
+		public DocumentError[] getErrors(String category, String type) {
+			return this.getErrors(category, type, null, null);
+		}
+		synchronized DocumentError[] getErrors(String category, String type, String severity, Attributed subject) {
+			ArrayList errors = new ArrayList();
+			for (int e = 0; e < this.errors.size(); e++) {
+				DocumentError error = ((DocumentError) this.errors.get(e));
+				if ((category != null) && !category.equals(error.category))
+					continue;
+				if ((type != null) && !type.equals(error.type))
+					continue;
+				if ((severity != null) && !severity.equals(error.severity))
+					continue;
+				if ((subject != null) && (subject != error.subject))
+					continue;
+				errors.add(error);
+			}
+			return ((DocumentError[]) errors.toArray(new DocumentError[errors.size()]));
+		}
+		public synchronized void removeError(DocumentError error) {
+			this.errors.remove(error);
+		}
+		public boolean isFalsePositive(DocumentError error) {
+			return false;
+		}
+		public boolean markFalsePositive(DocumentError error) {
+			return false;
+		}
+		public boolean unmarkFalsePositive(DocumentError error) {
+			return false;
+		}
+		public DocumentError[] getFalsePositives() {
+			return NO_ERRORS;
+		}
+		public Comparator getErrorComparator() {
+			return errorOrder;
+		}
+	}
+	
+	/* benchmark comparing indexed and naive list based error protocols on the
+	 * typical access pattern of a QC UI: fill protocol, then repeatedly ask
+	 * for the errors on individual paragraphs and the counts by severity */
+	public static void main(String[] args) throws Exception {
+		int paragraphCount = ((args.length < 1) ? 20000 : Integer.parseInt(args[0]));
+		int errorsPerParagraph = ((args.length < 2) ? 10 : Integer.parseInt(args[1]));
+		String[] severities = {DocumentError.SEVERITY_BLOCKER, DocumentError.SEVERITY_CRITICAL, DocumentError.SEVERITY_MAJOR, DocumentError.SEVERITY_MINOR};
+		
+		StringBuffer text = new StringBuffer();
+		for (int p = 0; p < paragraphCount; p++)
+			text.append("word" + p + " ");
+		MutableAnnotation doc = Gamta.newDocument(Gamta.newTokenSequence(text, null));
+		for (int p = 0; p < paragraphCount; p++)
+			doc.addAnnotation("paragraph", p, 1);
+		QueriableAnnotation[] paragraphs = doc.getAnnotations("paragraph");
+		
+		DocumentErrorProtocol[] deps = {new ListDocumentErrorProtocol(), new IndexedDocumentErrorProtocol()};
+		for (int d = 0; d < deps.length; d++) {
+			DocumentErrorProtocol dep = deps[d];
+			String name = ((d == 0) ? "list" : "indexed");
+			
+			long start = System.currentTimeMillis();
+			for (int p = 0; p < paragraphs.length; p++)
+				for (int e = 0; e < errorsPerParagraph; e++)
+					dep.addError("checker", paragraphs[p], doc, ("category" + (e % 5)), ("type" + (e % 3)), ("Error " + e + " in paragraph " + p), severities[(p + e) % severities.length]);
+			System.out.println(name + ": added " + dep.getErrorCount() + " errors in " + (System.currentTimeMillis() - start) + "ms");
+			
+			start = System.currentTimeMillis();
+			int queries = 0;
+			int found = 0;
+			for (int q = 0; q < 1000; q++) {
+				QueriableAnnotation paragraph = paragraphs[(q * 7919) % paragraphs.length];
+				DocumentError[] errors = ((dep instanceof IndexedDocumentErrorProtocol) ? ((IndexedDocumentErrorProtocol) dep).getErrors(paragraph) : ((ListDocumentErrorProtocol) dep).getErrors(null, null, null, paragraph));
+				found += errors.length;
+				for (int s = 0; s < severities.length; s++)
+					found += dep.getErrorSeverityCount(("category" + (q % 5)), ("type" + (q % 3)), severities[s]);
+				queries++;
+			}
+			long time = (System.currentTimeMillis() - start);
+			System.out.println(name + ": " + queries + " repaint queries (" + found + " results) in " + time + "ms, " + ((time * 1000) / queries) + "us per repaint");
+			
+			start = System.currentTimeMillis();
+			int removed = 0;
+			for (int p = 0; p < paragraphs.length; p += 10) {
+				DocumentError[] errors = ((dep instanceof IndexedDocumentErrorProtocol) ? ((IndexedDocumentErrorProtocol) dep).getErrors(paragraphs[p]) : ((ListDocumentErrorProtocol) dep).getErrors(null, null, null, paragraphs[p]));
+				for (int e = 0; e < errors.length; e++) {
+					dep.removeError(errors[e]);
+					removed++;
+				}
+			}
+			System.out.println(name + ": removed " + removed + " errors in " + (System.currentTimeMillis() - start) + "ms, " + dep.getErrorCount() + " errors left");
+			
+			Runtime rt = Runtime.getRuntime();
+			for (int g = 0; g < 3; g++)
+				System.gc();
+			System.out.println(name + ": " + ((rt.totalMemory() - rt.freeMemory()) >> 20) + "MB heap in use");
+			deps[d] = null;
+		}
+	}
+}
@@ -31,6 +31,8 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class provides the facilities to run a chunk of code on multiple CPU
@@ -141,10 +143,18 @@ public class ParallelJobRunner {
 	 * the <code>maxCores</code> parameter is set to a value less than 1, the
 	 * job runs in as many parallel threads as possible, which is the number of
 	 * available CPU cores less 1; the latter is the core running the thread
-	 * that called this method. This method creates a new <code>Thread</code>
-	 * for every parallel execution, which incurs some overhead. Thus, client
-	 * code should only make use of this method if the overhead is offset by
-	 * the performance it gains from parallel execution.
+	 * that called this method. The <code>run()</code> method of the argument
+	 * job is called exactly <code>maxCores</code> times, once in the calling
+	 * thread, and the other times in threads from a shared pool of worker
+	 * threads. If there is no idle worker thread for one of these calls by the
+	 * time the calling thread has finished its own one, the calling thread
+	 * executes the call itself rather than waiting for a worker thread to
+	 * become available. This prevents nested parallel jobs from deadlocking if
+	 * all worker threads are busy with the enclosing jobs. If any of the calls
+	 * throws an exception or error, this method re-throws it in the calling
+	 * thread after all calls have finished, regardless of which thread made
+	 * the call; if several calls fail, it re-throws the failure of the first
+	 * one in the order the calls were handed out.
 	 * @param job the job to execute
 	 * @param maxCores the maximum number of CPU cores to use
 	 */
@@ -155,35 +165,157 @@ public class ParallelJobRunner {
 			return;
 		}
 		
-		Thread[] threads = new Thread[maxCores];
-		for (int t = 0; t < threads.length; t++)
-			threads[t] = new Thread(job);
-		for (int t = 0; t < threads.length; t++)
-			threads[t].start();
+		//	hand all but one execution to worker pool, attributing them to instrumented Analyzer running in calling thread (if any)
+		Object analyzer = (AnalyzerInstrumentation.isEnabled() ? AnalyzerInstrumentation.getCurrentAnalyzer() : null);
+		JobExecution[] executions = new JobExecution[maxCores];
+		for (int e = 0; e < executions.length; e++)
+			executions[e] = new JobExecution(job, analyzer);
+		for (int e = 1; e < executions.length; e++)
+			workerPool.execute(executions[e]);
 		TracerThread tracer = null;
 		if (jobThreadTraceInterval > 0)
-			tracer = new TracerThread(threads);
-		for (int t = 0; t < threads.length; t++) try {
-			threads[t].join();
-		} catch (InterruptedException ie) {t--; /* we have to make sure all threads are finished before returning */}
+			tracer = new TracerThread(executions);
+		
+		//	run first execution ourselves, as well as any others no worker has picked up meanwhile, and wait for the rest
+		for (int e = 0; e < executions.length; e++) {
+			if (executions[e].claim())
+				executions[e].run();
+			else executions[e].awaitFinished();
+		}
 		if (tracer != null)
 			tracer.shutdown();
+		
+		//	propagate exceptions only after all executions have finished, no matter which thread ran them
+		for (int e = 0; e < executions.length; e++) {
+			Throwable t = executions[e].getThrowable();
+			if (t instanceof RuntimeException)
+				throw ((RuntimeException) t);
+			else if (t instanceof Error)
+				throw ((Error) t);
+			else if (t != null)
+				throw new RuntimeException(t);
+		}
 	}
 	
+	/* A single execution of a parallel job, to be run either by a worker
+	 * thread or by the thread that started the job, whichever claims it
+	 * first. */
+	private static class JobExecution implements Runnable {
+		private static final int QUEUED = 0;
+		private static final int RUNNING = 1;
+		private static final int FINISHED = 2;
+		private final Runnable job;
+		private final Object analyzer;
+		private final AtomicInteger state = new AtomicInteger(QUEUED);
+		private volatile Thread thread = null;
+		private Throwable throwable = null; // published via state and monitor, read only after execution finished
+		JobExecution(Runnable job, Object analyzer) {
+			this.job = job;
+			this.analyzer = analyzer;
+		}
+		boolean claim() {
+			return this.state.compareAndSet(QUEUED, RUNNING);
+		}
+		public void run() {
+			this.thread = Thread.currentThread();
+			Object parentAnalyzer = ((this.analyzer == null) ? null : AnalyzerInstrumentation.setCurrentAnalyzer(this.analyzer));
+			try {
+				this.job.run();
+			}
+			catch (Throwable t) {
+				this.throwable = t; // job starter thread re-throws it
+			}
+			finally {
+				if (this.analyzer != null)
+					AnalyzerInstrumentation.setCurrentAnalyzer(parentAnalyzer);
+				this.thread = null;
+				synchronized (this) {
+					this.state.set(FINISHED);
+					this.notifyAll();
+				}
+			}
+		}
+		synchronized void awaitFinished() {
+			while (this.state.get() != FINISHED) try {
+				this.wait();
+			} catch (InterruptedException ie) { /* we have to make sure all executions are finished before returning */ }
+		}
+		Thread getThread() {
+			return this.thread;
+		}
+		synchronized Throwable getThrowable() {
+			return this.throwable;
+		}
+	}
+	
+	/* Shared pool of daemon worker threads, bounded to the number of available
+	 * CPU cores. Idle workers terminate after a while, so an application only
+	 * pays for the threads while it uses parallel jobs. */
+	private static class WorkerPool {
+		private static final long KEEP_ALIVE_MILLIS = (60 * 1000);
+		private final LinkedList queue = new LinkedList();
+		private int workerCount = 0;
+		private int idleWorkerCount = 0;
+		private int workerNumber = 0;
+		synchronized void execute(JobExecution execution) {
+			this.queue.addLast(execution);
+			this.notify();
+			if ((this.idleWorkerCount < this.queue.size()) && (this.workerCount < Runtime.getRuntime().availableProcessors())) {
+				Worker worker = new Worker("ParallelJobRunnerWorker-" + this.workerNumber++);
+				this.workerCount++;
+				worker.start();
+			}
+			//	no worker available right now, execution will be picked up either by next free worker or by job starter thread
+		}
+		synchronized JobExecution getExecution() {
+			long idleStart = System.currentTimeMillis();
+			while (this.queue.isEmpty()) {
+				long idleTime = (System.currentTimeMillis() - idleStart);
+				if (idleTime >= KEEP_ALIVE_MILLIS) {
+					this.workerCount--;
+					return null;
+				}
+				this.idleWorkerCount++;
+				try {
+					this.wait(KEEP_ALIVE_MILLIS - idleTime);
+				} catch (InterruptedException ie) {}
+				this.idleWorkerCount--;
+			}
+			return ((JobExecution) this.queue.removeFirst());
+		}
+		private class Worker extends Thread {
+			Worker(String name) {
+				super(name);
+				this.setDaemon(true);
+			}
+			public void run() {
+				for (JobExecution execution; (execution = getExecution()) != null;) {
+					if (execution.claim())
+						execution.run(); // records any exception for job starter thread to re-throw
+				}
+			}
+		}
+	}
+	private static WorkerPool workerPool = new WorkerPool();
+	
 	private static class TracerThread extends Thread {
 		private int traceInterval = jobThreadTraceInterval;
-		private Thread[] threads;
-		TracerThread(Thread[] threads) {
-			this.threads = threads;
+		private JobExecution[] executions;
+		TracerThread(JobExecution[] executions) {
+			this.executions = executions;
+			this.setDaemon(true);
 			this.start();
 		}
 		public void run() {
 			while (this.traceInterval > 0) {
-				for (int t = 0; t < this.threads.length; t++) {
-					StackTraceElement[] stes = this.threads[t].getStackTrace();
-					System.out.println(this.threads[t].getName() + ":");
-					for (int e = 0; e < stes.length; e++)
-						System.out.println("  at " + stes[e].toString());
+				for (int e = 0; e < this.executions.length; e++) {
+					Thread thread = this.executions[e].getThread();
+					if (thread == null)
+						continue;
+					StackTraceElement[] stes = thread.getStackTrace();
+					System.out.println(thread.getName() + ":");
+					for (int s = 0; s < stes.length; s++)
+						System.out.println("  at " + stes[s].toString());
 				}
 				try {
 					sleep(this.traceInterval);
@@ -196,15 +328,15 @@ public class ParallelJobRunner {
 	}
 	
 	private static abstract class ParallelLoop {
-		private Exception loopBodyException = null;
-		private boolean breakLoop = false;
+		private volatile Exception loopBodyException = null;
+		private volatile boolean breakLoop = false;
 		
 		/**
 		 * Check if an exception has occurred in one of the parallel executions
 		 * of the loop.
 		 * @return true if there is an exception, false otherwise
 		 */
-		public synchronized boolean hasException() {
+		public boolean hasException() {
 			return (this.loopBodyException != null);
 		}
 		
@@ -213,7 +345,7 @@ public class ParallelJobRunner {
 		 * executions of the loop.
 		 * @return the exception
 		 */
-		public synchronized Exception getException() {
+		public Exception getException() {
 			return this.loopBodyException;
 		}
 		
@@ -222,13 +354,15 @@ public class ParallelJobRunner {
 		 * of the loop, and throw it if throw it if there is one.
 		 * @throws Exception
 		 */
-		public synchronized void checkException() throws Exception {
-			if (this.loopBodyException != null)
-				throw this.loopBodyException;
+		public void checkException() throws Exception {
+			Exception e = this.loopBodyException;
+			if (e != null)
+				throw e;
 		}
 		
 		synchronized void setException(Exception e) {
-			this.loopBodyException = e;
+			if (this.loopBodyException == null)
+				this.loopBodyException = e; // retain first exception
 		}
 		
 		/**
@@ -237,13 +371,47 @@ public class ParallelJobRunner {
 		 * execution threads will finish their current run through the loop
 		 * body and then finish.
 		 */
-		public synchronized void breakLoop() {
+		public void breakLoop() {
 			this.breakLoop = true;
 		}
 		
-		synchronized boolean checkBreakLoop() {
+		boolean checkBreakLoop() {
 			return this.breakLoop;
 		}
+		
+		/* check for exception in parallel executions, or for cross-thread 'break' call */
+		boolean isStopped() {
+			return ((this.loopBodyException != null) || this.breakLoop);
+		}
+	}
+	
+	/* Range of indexes shared between the executions of a parallel loop, from
+	 * which executions claim chunks with a single atomic operation. Chunks
+	 * start large and get smaller as the range depletes (guided scheduling),
+	 * so executions claim few chunks overall, but still finish about the same
+	 * time. */
+	private static class IndexRange {
+		private final AtomicInteger next;
+		private final int to;
+		private final int divisor;
+		IndexRange(int from, int to, int executions) {
+			this.next = new AtomicInteger(from);
+			this.to = to;
+			this.divisor = (Math.max(1, executions) * 2);
+		}
+		/* claim a chunk, returning its start, or -1 if the range is depleted; the end is obtained from getChunkEnd() */
+		int claimChunk() {
+			while (true) {
+				int start = this.next.get();
+				if (start >= this.to)
+					return -1;
+				if (this.next.compareAndSet(start, this.getChunkEnd(start)))
+					return start;
+			}
+		}
+		int getChunkEnd(int start) {
+			return (start + Math.max(1, ((this.to - start) / this.divisor)));
+		}
 	}
 	
 	/**
@@ -251,10 +419,11 @@ public class ParallelJobRunner {
 	 * the <code>maxCores</code> parameter is set to a value less than 1, the
 	 * job runs in as many parallel threads as possible, which is the number of
 	 * available CPU cores less 1; the latter is the core running the thread
-	 * that called this method. This method creates a new <code>Thread</code>
-	 * for every parallel execution, which incurs some overhead. Thus, client
-	 * code should only make use of this method if the overhead is offset by
-	 * the performance it gains from parallel execution.
+	 * that called this method. The calling thread takes part in the execution,
+	 * the others come from a shared pool of worker threads. This keeps the
+	 * overhead per loop low, but client code should still only make use of
+	 * this method if the overhead is offset by the performance it gains from
+	 * parallel execution.
 	 * The <code>doFor()</code> method of the argument <code>ParallelFor</code>
 	 * is called exactly once for each integer between 0 (inclusive) and
 	 * <code>count</code> (exclusive). The numbers are generally in increasing
@@ -275,10 +444,11 @@ public class ParallelJobRunner {
 	 * the <code>maxCores</code> parameter is set to a value less than 1, the
 	 * job runs in as many parallel threads as possible, which is the number of
 	 * available CPU cores less 1; the latter is the core running the thread
-	 * that called this method. This method creates a new <code>Thread</code>
-	 * for every parallel execution, which incurs some overhead. Thus, client
-	 * code should only make use of this method if the overhead is offset by
-	 * the performance it gains from parallel execution.
+	 * that called this method. The calling thread takes part in the execution,
+	 * the others come from a shared pool of worker threads. This keeps the
+	 * overhead per loop low, but client code should still only make use of
+	 * this method if the overhead is offset by the performance it gains from
+	 * parallel execution.
 	 * The <code>doFor()</code> method of the argument <code>ParallelFor</code>
 	 * is called exactly once for each integer between <code>from</code>
 	 * (inclusive) and <code>to</code> (exclusive). The numbers are generally
@@ -295,8 +465,10 @@ public class ParallelJobRunner {
 	public static void runParallelFor(ParallelFor loop, int from, int to, int maxCores) {
 		if (to <= from)
 			return;
-		if (((to - from) != 1) && (maxCores != 1) && !runLinear)
-			runParallelJob(new ParallelForJob(loop, from, to), Math.min(maxCores, (to - from)));
+		if (((to - from) != 1) && (maxCores != 1) && !runLinear) {
+			maxCores = checkMaxCores(Math.min(maxCores, (to - from)));
+			runParallelJob(new ParallelForJob(loop, from, to, maxCores), maxCores);
+		}
 		else try {
 			if ((to - from) == 1)
 				loop.doFor(from);
@@ -329,40 +501,29 @@ public class ParallelJobRunner {
 	
 	private static class ParallelForJob implements Runnable {
 		private ParallelFor loop;
-		private LinkedList indices = new LinkedList();
-		ParallelForJob(ParallelFor loop, int from, int to) {
+		private IndexRange indices;
+		ParallelForJob(ParallelFor loop, int from, int to, int maxCores) {
 			this.loop = loop;
-			for (int i = from; i < to; i++)
-				this.indices.addLast(new Integer(i));
+			this.indices = new IndexRange(from, to, maxCores);
 		}
 		public void run() {
-			while (true) {
-				
-				//	check for exception in parallel executions
-				if (this.loop.hasException())
-					return;
-				
-				//	check for cross-thread 'break' call
-				if (this.loop.checkBreakLoop())
-					return;
-				
-				//	get next index
-				int index;
-				synchronized (this.indices) {
-					if (this.indices.isEmpty())
+			for (int start; (start = this.indices.claimChunk()) != -1;) {
+				for (int index = start, end = this.indices.getChunkEnd(start); index < end; index++) {
+					
+					//	check for exception in parallel executions or cross-thread 'break' call
+					if (this.loop.isStopped())
 						return;
-					else index = ((Integer) this.indices.removeFirst()).intValue();
-				}
-				
-				//	do the work
-				try {
-					if (jobThreadTraceInterval > 0)
-						System.out.println(Thread.currentThread().getName() + ": processing index " + index);
-					this.loop.doFor(index);
-				}
-				catch (Exception t) {
-					this.loop.setException(t);
-					return;
+					
+					//	do the work
+					try {
+						if (jobThreadTraceInterval > 0)
+							System.out.println(Thread.currentThread().getName() + ": processing index " + index);
+						this.loop.doFor(index);
+					}
+					catch (Exception t) {
+						this.loop.setException(t);
+						return;
+					}
 				}
 			}
 		}
@@ -373,10 +534,11 @@ public class ParallelJobRunner {
 	 * the <code>maxCores</code> parameter is set to a value less than 1, the
 	 * job runs in as many parallel threads as possible, which is the number of
 	 * available CPU cores less 1; the latter is the core running the thread
-	 * that called this method. This method creates a new <code>Thread</code>
-	 * for every parallel execution, which incurs some overhead. Thus, client
-	 * code should only make use of this method if the overhead is offset by
-	 * the performance it gains from parallel execution.
+	 * that called this method. The calling thread takes part in the execution,
+	 * the others come from a shared pool of worker threads. This keeps the
+	 * overhead per loop low, but client code should still only make use of
+	 * this method if the overhead is offset by the performance it gains from
+	 * parallel execution.
 	 * The <code>doIteration()</code> method of the argument
 	 * <code>ParallelIteration</code> is called exactly once for each object in
 	 * the argument array, generally in increasing order. The runtime type of
@@ -390,7 +552,7 @@ public class ParallelJobRunner {
 		if (objects.length == 0)
 			return;
 		if ((objects.length != 1) && (maxCores != 1) && !runLinear)
-			runParallelIteration(loop, Arrays.asList(objects).iterator(), Math.min(maxCores, objects.length));
+			runParallelIteration(loop, Arrays.asList(objects), Math.min(maxCores, objects.length));
 		else try {
 			if (objects.length == 1)
 				loop.doIteration(objects[0]);
@@ -407,10 +569,11 @@ public class ParallelJobRunner {
 	 * the <code>maxCores</code> parameter is set to a value less than 1, the
 	 * job runs in as many parallel threads as possible, which is the number of
 	 * available CPU cores less 1; the latter is the core running the thread
-	 * that called this method. This method creates a new <code>Thread</code>
-	 * for every parallel execution, which incurs some overhead. Thus, client
-	 * code should only make use of this method if the overhead is offset by
-	 * the performance it gains from parallel execution.
+	 * that called this method. The calling thread takes part in the execution,
+	 * the others come from a shared pool of worker threads. This keeps the
+	 * overhead per loop low, but client code should still only make use of
+	 * this method if the overhead is offset by the performance it gains from
+	 * parallel execution.
 	 * The <code>doIteration()</code> method of the argument
 	 * <code>ParallelIteration</code> is called exactly once for each element
 	 * of the argument <code>List</code>, generally in increasing order. The
@@ -423,7 +586,11 @@ public class ParallelJobRunner {
 	public static void runParallelIteration(ParallelIteration loop, List list, int maxCores) {
 		if (list.isEmpty())
 			return;
-		if (list.size() != 1)
+		if ((list.size() != 1) && (list instanceof RandomAccess) && (maxCores != 1) && !runLinear) {
+			maxCores = checkMaxCores(Math.min(maxCores, list.size()));
+			runParallelJob(new ParallelListIterationJob(loop, list, maxCores), maxCores);
+		}
+		else if (list.size() != 1)
 			runParallelIteration(loop, list.iterator(), Math.min(maxCores, list.size()));
 		else try {
 			loop.doIteration(list.get(0));
@@ -438,10 +605,11 @@ public class ParallelJobRunner {
 	 * the <code>maxCores</code> parameter is set to a value less than 1, the
 	 * job runs in as many parallel threads as possible, which is the number of
 	 * available CPU cores less 1; the latter is the core running the thread
-	 * that called this method. This method creates a new <code>Thread</code>
-	 * for every parallel execution, which incurs some overhead. Thus, client
-	 * code should only make use of this method if the overhead is offset by
-	 * the performance it gains from parallel execution.
+	 * that called this method. The calling thread takes part in the execution,
+	 * the others come from a shared pool of worker threads. This keeps the
+	 * overhead per loop low, but client code should still only make use of
+	 * this method if the overhead is offset by the performance it gains from
+	 * parallel execution.
 	 * The <code>doIteration()</code> method of the argument
 	 * <code>ParallelIteration</code> is called exactly once for each element
 	 * returned by <code>next()</code> method of the argument <code>Iterator</code>.
@@ -485,6 +653,39 @@ public class ParallelJobRunner {
 		public abstract void doIteration(Object obj) throws Exception;
 	}
 	
+	private static class ParallelListIterationJob implements Runnable {
+		private ParallelIteration loop;
+		private List list;
+		private IndexRange indices;
+		ParallelListIterationJob(ParallelIteration loop, List list, int maxCores) {
+			this.loop = loop;
+			this.list = list;
+			this.indices = new IndexRange(0, list.size(), maxCores);
+		}
+		public void run() {
+			for (int start; (start = this.indices.claimChunk()) != -1;) {
+				for (int index = start, end = this.indices.getChunkEnd(start); index < end; index++) {
+					
+					//	check for exception in parallel executions or cross-thread 'break' call
+					if (this.loop.isStopped())
+						return;
+					
+					//	do the work
+					Object object = this.list.get(index);
+					try {
+						if (jobThreadTraceInterval > 0)
+							System.out.println(Thread.currentThread().getName() + ": processing object " + object);
+						this.loop.doIteration(object);
+					}
+					catch (Exception t) {
+						this.loop.setException(t);
+						return;
+					}
+				}
+			}
+		}
+	}
+	
 	private static class ParallelIterationJob implements Runnable {
 		private ParallelIteration loop;
 		private Iterator iterator;
@@ -495,12 +696,8 @@ public class ParallelJobRunner {
 		public void run() {
 			while (true) {
 				
-				//	check for exception in parallel executions
-				if (this.loop.hasException())
-					return;
-				
-				//	check for cross-thread 'break' call
-				if (this.loop.checkBreakLoop())
+				//	check for exception in parallel executions or cross-thread 'break' call
+				if (this.loop.isStopped())
 					return;
 				
 				//	get next object
@@ -530,10 +727,11 @@ public class ParallelJobRunner {
 	 * the <code>maxCores</code> parameter is set to a value less than 1, the
 	 * job runs in as many parallel threads as possible, which is the number of
 	 * available CPU cores less 1; the latter is the core running the thread
-	 * that called this method. This method creates a new <code>Thread</code>
-	 * for every parallel execution, which incurs some overhead. Thus, client
-	 * code should only make use of this method if the overhead is offset by
-	 * the performance it gains from parallel execution.
+	 * that called this method. The calling thread takes part in the execution,
+	 * the others come from a shared pool of worker threads. This keeps the
+	 * overhead per loop low, but client code should still only make use of
+	 * this method if the overhead is offset by the performance it gains from
+	 * parallel execution.
 	 * @param loop the loop body to execute
 	 * @param maxCores the maximum number of CPU cores to use
 	 */
@@ -576,12 +774,8 @@ public class ParallelJobRunner {
 		public void run() {
 			while (true) {
 				
-				//	check for exception in parallel executions
-				if (this.loop.hasException())
-					return;
-				
-				//	check for cross-thread 'break' call
-				if (this.loop.checkBreakLoop())
+				//	check for exception in parallel executions or cross-thread 'break' call
+				if (this.loop.isStopped())
 					return;
 				
 				//	do the work
@@ -596,4 +790,107 @@ public class ParallelJobRunner {
 			}
 		}
 	}
+	
+	//	microbenchmark for the per-loop overhead, comparing to starting a new thread for every execution
+	public static void main(String[] args) throws Exception {
+		final int loops = ((args.length < 1) ? 10000 : Integer.parseInt(args[0]));
+		final int count = ((args.length < 2) ? 64 : Integer.parseInt(args[1]));
+		final int maxCores = Math.max(1, checkMaxCores(-1));
+		System.out.println("Running " + loops + " loops of " + count + " iterations on up to " + maxCores + " cores");
+		final int[] sums = new int[count];
+		ParallelFor pf = new ParallelFor() {
+			public void doFor(int index) throws Exception {
+				sums[index]++;
+			}
+		};
+		
+		//	warm up
+		for (int l = 0; l < 1000; l++)
+			runParallelFor(pf, count, -1);
+		
+		//	individual threads (the way this class used to work)
+		long start = System.nanoTime();
+		for (int l = 0; l < loops; l++) {
+			final LinkedList indices = new LinkedList();
+			for (int i = 0; i < count; i++)
+				indices.addLast(new Integer(i));
+			Thread[] threads = new Thread[maxCores];
+			for (int t = 0; t < threads.length; t++)
+				threads[t] = new Thread() {
+					public void run() {
+						while (true) {
+							int index;
+							synchronized (indices) {
+								if (indices.isEmpty())
+									return;
+								index = ((Integer) indices.removeFirst()).intValue();
+							}
+							sums[index]++;
+						}
+					}
+				};
+			for (int t = 0; t < threads.length; t++)
+				threads[t].start();
+			for (int t = 0; t < threads.length; t++)
+				threads[t].join();
+		}
+		long threadTime = (System.nanoTime() - start);
+		System.out.println("Thread per execution: " + (threadTime / loops) + "ns per loop");
+		
+		//	shared worker pool
+		start = System.nanoTime();
+		for (int l = 0; l < loops; l++)
+			runParallelFor(pf, count, -1);
+		long poolTime = (System.nanoTime() - start);
+		System.out.println("Shared worker pool: " + (poolTime / loops) + "ns per loop");
+		
+		//	nested loops
+		ParallelFor nested = new ParallelFor() {
+			public void doFor(int index) throws Exception {
+				ParallelFor inner = new ParallelFor() {
+					public void doFor(int index) throws Exception {
+						synchronized (sums) {
+							sums[index]++;
+						}
+					}
+				};
+				runParallelFor(inner, count, -1);
+			}
+		};
+		start = System.nanoTime();
+		for (int l = 0; l < (loops / count); l++)
+			runParallelFor(nested, count, -1);
+		long nestedTime = (System.nanoTime() - start);
+		System.out.println("Nested loops: " + (nestedTime / Math.max(1, (loops / count))) + "ns per outer loop");
+		
+		//	exceptions thrown in worker threads have to reach the job starter thread
+		if (maxCores < 2)
+			return;
+		final Thread starter = Thread.currentThread();
+		final AtomicInteger workerRuns = new AtomicInteger(0);
+		Runnable failing = new Runnable() {
+			public void run() {
+				if (Thread.currentThread() == starter) try {
+					Thread.sleep(50); // give workers time to pick up the other executions
+				} catch (InterruptedException ie) {}
+				else {
+					workerRuns.incrementAndGet();
+					throw new IllegalStateException("worker failure");
+				}
+			}
+		};
+		boolean propagated = true;
+		for (int r = 0; r < 10; r++) {
+			workerRuns.set(0);
+			boolean thrown = false;
+			try {
+				runParallelJob(failing, maxCores);
+			}
+			catch (IllegalStateException ise) {
+				thrown = true;
+			}
+			propagated = (propagated && (thrown == (workerRuns.get() != 0)));
+		}
+		System.out.println("Exception propagation from worker threads: check " + (propagated ? "passed" : "failed"));
+	}
 }
\ No newline at end of file
@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.gamta.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+
+import de.uka.ipd.idaho.gamta.Annotation;
+import de.uka.ipd.idaho.gamta.AnnotationListener;
+import de.uka.ipd.idaho.gamta.CharSequenceListener;
+import de.uka.ipd.idaho.gamta.DocumentRoot;
+import de.uka.ipd.idaho.gamta.Gamta;
+import de.uka.ipd.idaho.gamta.MutableAnnotation;
+import de.uka.ipd.idaho.gamta.MutableCharSequence.CharSequenceEvent;
+import de.uka.ipd.idaho.gamta.MutableTokenSequence.TokenSequenceEvent;
+import de.uka.ipd.idaho.gamta.QueriableAnnotation;
+import de.uka.ipd.idaho.gamta.TokenSequenceListener;
+import de.uka.ipd.idaho.gamta.util.ParallelJobRunner.ParallelFor;
+
+/**
+ * Utility for running analyzers and error checkers on non-overlapping regions
+ * of a document in parallel, e.g. on all paragraphs or sections. Running an
+ * analyzer on the regions of a document directly would funnel all mutations
+ * through the synchronized annotation store of the document. Instead, this
+ * class runs the analyzer on a detached copy of each region. The copies are
+ * independent documents, so analyzers working on different regions do not
+ * contend for any locks. An annotation listener on each copy records the
+ * mutations in a region-local log. After all regions are processed, this
+ * class commits the logs to the actual regions one by one, in document
+ * order. If the analyzer fails on any region, none of the logs is committed,
+ * leaving the document unmodified. Copying a region costs about as much as
+ * tokenizing its text, so running an analyzer through this class only pays
+ * off if the analyzer does considerably more work than that per region, or
+ * if there are enough CPU cores to make up for the copying.<br>
+ * The logs cover annotations added and removed, as well as changes to the
+ * types and attributes of existing annotations, including the regions
+ * themselves. Edits to tokens or whitespace cannot be committed this way;
+ * if the analyzer modifies the tokens of a region copy, the log of that
+ * region is discarded, and the analyzer is re-run on the actual region in the
+ * commit phase. Analyzers that require user interaction or that access the
+ * document outside the region handed to them must not run through this
+ * class.<br>
+ * Error checkers only read the document, so they run on the actual regions
+ * in parallel, adding the errors they report to region-local buffers, which
+ * are then added to the error protocol in document order.
+ * 
+ * @author sautter
+ */
+public class PartitionedProcessor {
+	private PartitionedProcessor() {}
+	
+	/**
+	 * Retrieve the non-overlapping regions of a document. If annotations of
+	 * the argument types nest or overlap, only the first and outmost ones
+	 * make it into the result. The regions are in document order.
+	 * @param doc the document to retrieve the regions from
+	 * @param regionTypes the annotation types to use as regions
+	 * @return an array holding the regions
+	 */
+	public static MutableAnnotation[] getRegions(MutableAnnotation doc, String[] regionTypes) {
+		ArrayList regionList = new ArrayList();
+		for (int t = 0; t < regionTypes.length; t++)
+			regionList.addAll(Arrays.asList(doc.getMutableAnnotations(regionTypes[t])));
+		MutableAnnotation[] regions = ((MutableAnnotation[]) regionList.toArray(new MutableAnnotation[regionList.size()]));
+		Arrays.sort(regions, regionOrder);
+		regionList.clear();
+		int coveredEnd = 0;
+		for (int r = 0; r < regions.length; r++) {
+			if (regions[r].getStartIndex() < coveredEnd)
+				continue;
+			regionList.add(regions[r]);
+			coveredEnd = regions[r].getEndIndex();
+		}
+		return ((MutableAnnotation[]) regionList.toArray(new MutableAnnotation[regionList.size()]));
+	}
+	
+	private static final Comparator regionOrder = new Comparator() {
+		public int compare(Object obj1, Object obj2) {
+			Annotation a1 = ((Annotation) obj1);
+			Annotation a2 = ((Annotation) obj2);
+			int c = (a1.getStartIndex() - a2.getStartIndex());
+			return ((c == 0) ? (a2.size() - a1.size()) : c);
+		}
+	};
+	
+	/**
+	 * Run an analyzer on the non-overlapping regions of a document in
+	 * parallel. The analyzer has to be thread safe, as it processes multiple
+	 * regions concurrently.
+	 * @param analyzer the analyzer to run
+	 * @param doc the document to process
+	 * @param regionType the annotation type to use as regions
+	 * @param parameters the parameters for the analyzer
+	 * @param maxCores the maximum number of CPU cores to use
+	 */
+	public static void process(Analyzer analyzer, MutableAnnotation doc, String regionType, Properties parameters, int maxCores) {
+		String[] regionTypes = {regionType};
+		process(analyzer, getRegions(doc, regionTypes), parameters, maxCores);
+	}
+	
+	/**
+	 * Run an analyzer on a series of regions of a document in parallel. The
+	 * regions must not overlap, and the analyzer has to be thread safe, as it
+	 * processes multiple regions concurrently.
+	 * @param analyzer the analyzer to run
+	 * @param regions the regions to process
+	 * @param parameters the parameters for the analyzer
+	 * @param maxCores the maximum number of CPU cores to use
+	 */
+	public static void process(final Analyzer analyzer, final MutableAnnotation[] regions, final Properties parameters, int maxCores) {
+		final MutationLog[] logs = new MutationLog[regions.length];
+		
+		//	process region copies in parallel, recording mutations
+		ParallelFor pf = new ParallelFor() {
+			public void doFor(int index) throws Exception {
+				DocumentRoot copy = Gamta.copyDocument(regions[index]);
+				MutationLog log = new MutationLog(copy);
+				copy.addAnnotationListener(log);
+				copy.addTokenSequenceListener(log);
+				copy.addCharSequenceListener(log);
+				analyzer.process(copy, parameters);
+				copy.removeAnnotationListener(log);
+				copy.removeTokenSequenceListener(log);
+				copy.removeCharSequenceListener(log);
+				logs[index] = log;
+			}
+		};
+		ParallelJobRunner.runParallelFor(pf, regions.length, maxCores);
+		if (pf.hasException()) {
+			Exception e = pf.getException();
+			if (e instanceof RuntimeException)
+				throw ((RuntimeException) e);
+			else throw new RuntimeException(e);
+		}
+		
+		//	resolve mutated annotations before committing anything, as querying in between mutations incurs re-sorting the annotations
+		for (int r = 0; r < regions.length; r++) {
+			if (!logs[r].tokensModified)
+				logs[r].resolve(regions[r]);
+		}
+		
+		//	commit logs in document order, re-running analyzer on regions whose tokens it modified
+		for (int r = 0; r < regions.length; r++) {
+			if (!logs[r].tokensModified)
+				logs[r].commit(regions[r]);
+		}
+		for (int r = 0; r < regions.length; r++) {
+			if (logs[r].tokensModified)
+				analyzer.process(regions[r], parameters);
+		}
+	}
+	
+	/**
+	 * Run an error checker on the non-overlapping regions of a document in
+	 * parallel. If the checks for the argument category and type require the
+	 * top level document, this method runs the error checker on the whole
+	 * document instead. The error checker has to be thread safe, as it
+	 * checks multiple regions concurrently.
+	 * @param checker the error checker to run
+	 * @param doc the document to check
+	 * @param regionType the annotation type to use as regions
+	 * @param dep the error protocol to add detected errors to
+	 * @param category the category of errors to check for
+	 * @param type the type of errors to check for
+	 * @param maxCores the maximum number of CPU cores to use
+	 * @return the number of detected errors
+	 */
+	public static int addDocumentErrors(DocumentErrorChecker checker, MutableAnnotation doc, String regionType, DocumentErrorProtocol dep, String category, String type, int maxCores) {
+		if (checker.requiresTopLevelDocument(category, type))
+			return checker.addDocumentErrors(doc, dep, category, type);
+		String[] regionTypes = {regionType};
+		return addDocumentErrors(checker, getRegions(doc, regionTypes), dep, category, type, maxCores);
+	}
+	
+	/**
+	 * Run an error checker on a series of regions of a document in parallel.
+	 * The regions must not overlap, and the error checker has to be thread
+	 * safe, as it checks multiple regions concurrently. This method does not
+	 * check whether or not the checks for the argument category and type
+	 * require the top level document, this is up to client code.
+	 * @param checker the error checker to run
+	 * @param regions the regions to check
+	 * @param dep the error protocol to add detected errors to
+	 * @param category the category of errors to check for
+	 * @param type the type of errors to check for
+	 * @param maxCores the maximum number of CPU cores to use
+	 * @return the number of detected errors
+	 */
+	public static int addDocumentErrors(final DocumentErrorChecker checker, final QueriableAnnotation[] regions, DocumentErrorProtocol dep, final String category, final String type, int maxCores) {
+		final IncrementalErrorChecker.ErrorBuffer[] buffers = new IncrementalErrorChecker.ErrorBuffer[regions.length];
+		ParallelFor pf = new ParallelFor() {
+			public void doFor(int index) throws Exception {
+				IncrementalErrorChecker.ErrorBuffer buffer = new IncrementalErrorChecker.ErrorBuffer();
+				checker.addDocumentErrors(regions[index], buffer, category, type);
+				buffers[index] = buffer;
+			}
+		};
+		ParallelJobRunner.runParallelFor(pf, regions.length, maxCores);
+		if (pf.hasException()) {
+			Exception e = pf.getException();
+			if (e instanceof RuntimeException)
+				throw ((RuntimeException) e);
+			else throw new RuntimeException(e);
+		}
+		int errorCount = 0;
+		for (int r = 0; r < regions.length; r++)
+			errorCount += buffers[r].flush(dep);
+		return errorCount;
+	}
+	
+	/* log of the mutations to a region copy, recording for each annotation
+	 * what happened to it, and taking the final state from the copy when
+	 * committing, so multiple changes to the same annotation coalesce */
+	private static class MutationLog implements AnnotationListener, TokenSequenceListener, CharSequenceListener {
+		private final DocumentRoot copy;
+		private LinkedHashMap mutations = new LinkedHashMap();
+		private HashMap annotationsById = null;
+		boolean tokensModified = false;
+		MutationLog(DocumentRoot copy) {
+			this.copy = copy;
+		}
+		private Mutation getMutation(Annotation annotation) {
+			String id = annotation.getAnnotationID();
+			Mutation mutation = ((Mutation) this.mutations.get(id));
+			if (mutation == null) {
+				mutation = new Mutation(annotation, (annotation.getAnnotationID().equals(this.copy.getAnnotationID())));
+				this.mutations.put(id, mutation);
+			}
+			return mutation;
+		}
+		public void annotationAdded(QueriableAnnotation doc, Annotation annotation) {
+			Mutation mutation = this.getMutation(annotation);
+			mutation.added = true;
+			mutation.annotation = annotation;
+		}
+		public void annotationRemoved(QueriableAnnotation doc, Annotation annotation) {
+			Mutation mutation = this.getMutation(annotation);
+			if (mutation.added)
+				this.mutations.remove(annotation.getAnnotationID());
+			else mutation.removed = true;
+		}
+		public void annotationTypeChanged(QueriableAnnotation doc, Annotation annotation, String oldType) {
+			this.getMutation(annotation).typeChanged = true;
+		}
+		public void annotationAttributeChanged(QueriableAnnotation doc, Annotation annotation, String attributeName, Object oldValue) {
+			Mutation mutation = this.getMutation(annotation);
+			if (mutation.attributeNames == null)
+				mutation.attributeNames = new LinkedHashSet();
+			mutation.attributeNames.add(attributeName);
+		}
+		public void tokenSequenceChanged(TokenSequenceEvent change) {
+			this.tokensModified = true;
+		}
+		public void charSequenceChanged(CharSequenceEvent change) {
+			this.tokensModified = true;
+		}
+		void resolve(MutableAnnotation region) {
+			boolean resolve = false;
+			for (Iterator mit = this.mutations.values().iterator(); mit.hasNext();) {
+				Mutation mutation = ((Mutation) mit.next());
+				if (!mutation.added && !mutation.isRegion) {
+					resolve = true;
+					break;
+				}
+			}
+			if (!resolve)
+				return;
+			
+			//	index existing annotations in region (including region proper)
+			this.annotationsById = new HashMap();
+			MutableAnnotation[] annotations = region.getMutableAnnotations();
+			for (int a = 0; a < annotations.length; a++) {
+				Mutation mutation = ((Mutation) this.mutations.get(annotations[a].getAnnotationID()));
+				if ((mutation != null) && !mutation.added)
+					this.annotationsById.put(annotations[a].getAnnotationID(), annotations[a]);
+			}
+		}
+		void commit(MutableAnnotation region) {
+			for (Iterator mit = this.mutations.values().iterator(); mit.hasNext();) {
+				Mutation mutation = ((Mutation) mit.next());
+				if (mutation.added) {
+					region.addAnnotation(mutation.annotation);
+					continue;
+				}
+				Annotation target = (mutation.isRegion ? region : ((this.annotationsById == null) ? null : ((Annotation) this.annotationsById.get(mutation.annotation.getAnnotationID()))));
+				if (target == null)
+					continue;
+				if (mutation.removed) {
+					if (!mutation.isRegion)
+						region.removeAnnotation(target);
+					continue;
+				}
+				if (mutation.typeChanged)
+					target.changeTypeTo(mutation.annotation.getType());
+				if (mutation.attributeNames != null)
+					for (Iterator anit = mutation.attributeNames.iterator(); anit.hasNext();) {
+						String attributeName = ((String) anit.next());
+						Object value = mutation.annotation.getAttribute(attributeName);
+						if (value == null)
+							target.removeAttribute(attributeName);
+						else target.setAttribute(attributeName, value);
+					}
+			}
+		}
+	}
+	
+	private static class Mutation {
+		Annotation annotation;
+		final boolean isRegion;
+		boolean added = false;
+		boolean removed = false;
+		boolean typeChanged = false;
+		LinkedHashSet attributeNames = null;
+		Mutation(Annotation annotation, boolean isRegion) {
+			this.annotation = annotation;
+			this.isRegion = isRegion;
+		}
+	}
+}
@@ -27,7 +27,8 @@
  */
 package de.uka.ipd.idaho.gamta.util;
 
-
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Observer for retrieving information on some process.
@@ -145,6 +146,279 @@ public interface ProgressMonitor {
 		}
 	}
 	
+	/**
+	 * Coalescing wrapper for arbitrary implementations of
+	 * <code>ProgressMonitor</code>. This wrapper does not hand updates through
+	 * to the wrapped instance right away, but only stores them in volatile
+	 * fields, without any locking. A single publisher thread shared between
+	 * all instances of this class hands the latest values through to the
+	 * wrapped instance at most once per publishing interval, and only if they
+	 * changed, so tight loops do not incur any lock contention or redundant
+	 * updates of user interface sinks. Step changes are published right away
+	 * if no other thread is publishing at the time.<br>
+	 * This wrapper is inherently thread safe, and it ensures that the wrapped
+	 * instance only ever receives updates from one thread at a time. It also
+	 * replaces any <code>SynchronizedProgressMonitor</code>, and it should be
+	 * placed in front of any <code>CascadingProgressMonitor</code> to save
+	 * the latter its progress computation on every update.<br>
+	 * If the wrapped instance throws a runtime exception, e.g. a controlling
+	 * progress monitor aborting the monitored process, this wrapper re-throws
+	 * it from the next update call. Client code should call
+	 * <code>flush()</code> after the monitored process is finished to make
+	 * sure the wrapped instance receives the final updates.
+	 */
+	public static class CoalescingProgressMonitor implements ProgressMonitor {
+		private static final int UNSET = Integer.MIN_VALUE;
+		
+		private ProgressMonitor pm;
+		private long interval;
+		
+		private volatile String step = null;
+		private volatile String info = null;
+		private volatile int baseProgress = UNSET;
+		private volatile int maxProgress = UNSET;
+		private volatile int progress = UNSET;
+		private volatile boolean dirty = false;
+		private volatile RuntimeException error = null;
+		
+		private AtomicBoolean publishing = new AtomicBoolean(false);
+		private String pubStep = null;
+		private String pubInfo = null;
+		private int pubBaseProgress = UNSET;
+		private int pubMaxProgress = UNSET;
+		private int pubProgress = UNSET;
+		private volatile long nextPublishTime = 0;
+		
+		/** Constructor using a publishing interval of 100 milliseconds
+		 * @param pm the <code>ProgressMonitor</code> to wrap
+		 */
+		public CoalescingProgressMonitor(ProgressMonitor pm) {
+			this(pm, 100);
+		}
+		
+		/** Constructor
+		 * @param pm the <code>ProgressMonitor</code> to wrap
+		 * @param interval the publishing interval in milliseconds
+		 */
+		public CoalescingProgressMonitor(ProgressMonitor pm, int interval) {
+			this.pm = pm;
+			this.interval = Math.max(1, interval);
+		}
+		
+		public void setStep(String step) {
+			this.checkError();
+			if (step == this.step)
+				return;
+			this.step = step;
+			this.dirty = true;
+			this.publish(); // steps are rare and significant, so publish right away if possible
+			if (this.dirty)
+				Publisher.schedule(this);
+		}
+		public void setInfo(String info) {
+			this.checkError();
+			if (info == this.info)
+				return;
+			this.info = info;
+			this.markDirty();
+		}
+		public void setBaseProgress(int baseProgress) {
+			this.checkError();
+			if (baseProgress == this.baseProgress)
+				return;
+			this.baseProgress = baseProgress;
+			this.markDirty();
+		}
+		public void setMaxProgress(int maxProgress) {
+			this.checkError();
+			if (maxProgress == this.maxProgress)
+				return;
+			this.maxProgress = maxProgress;
+			this.markDirty();
+		}
+		public void setProgress(int progress) {
+			this.checkError();
+			if (progress == this.progress)
+				return;
+			this.progress = progress;
+			this.markDirty();
+		}
+		
+		private void checkError() {
+			RuntimeException error = this.error;
+			if (error != null) {
+				this.error = null;
+				throw error;
+			}
+		}
+		
+		private void markDirty() {
+			if (this.dirty)
+				return; // already scheduled for publishing
+			this.dirty = true;
+			Publisher.schedule(this);
+		}
+		
+		/**
+		 * Hand the latest updates through to the wrapped progress monitor
+		 * right away, waiting for any ongoing publishing to finish first.
+		 */
+		public void flush() {
+			while (!this.publish())
+				Thread.yield();
+			this.checkError();
+		}
+		
+		/* hand through changed values to wrapped monitor, unless another
+		 * thread is publishing right now */
+		private boolean publish() {
+			if (!this.publishing.compareAndSet(false, true))
+				return false;
+			try {
+				this.dirty = false; // clear before reading values, so concurrent updates re-schedule
+				int baseProgress = this.baseProgress;
+				if (baseProgress != this.pubBaseProgress) {
+					this.pm.setBaseProgress(baseProgress);
+					this.pubBaseProgress = baseProgress;
+				}
+				int maxProgress = this.maxProgress;
+				if (maxProgress != this.pubMaxProgress) {
+					this.pm.setMaxProgress(maxProgress);
+					this.pubMaxProgress = maxProgress;
+				}
+				String step = this.step;
+				if (step != this.pubStep) {
+					this.pm.setStep(step);
+					this.pubStep = step;
+				}
+				String info = this.info;
+				if (info != this.pubInfo) {
+					this.pm.setInfo(info);
+					this.pubInfo = info;
+				}
+				int progress = this.progress;
+				if (progress != this.pubProgress) {
+					this.pm.setProgress(progress);
+					this.pubProgress = progress;
+				}
+			}
+			catch (RuntimeException re) {
+				this.error = re;
+			}
+			finally {
+				this.nextPublishTime = (System.currentTimeMillis() + this.interval);
+				this.publishing.set(false);
+			}
+			return true;
+		}
+		
+		/* single daemon thread publishing updates of all coalescing monitors,
+		 * each one no sooner than its publishing interval after the last */
+		private static class Publisher extends Thread {
+			private static LinkedList queue = new LinkedList();
+			private static Publisher publisher = null;
+			Publisher() {
+				super("ProgressMonitorPublisher");
+				this.setDaemon(true);
+			}
+			static void schedule(CoalescingProgressMonitor cpm) {
+				synchronized (queue) {
+					queue.addLast(cpm);
+					if (publisher == null) {
+						publisher = new Publisher();
+						publisher.start();
+					}
+					else if (queue.size() == 1)
+						queue.notify();
+				}
+			}
+			public void run() {
+				while (true) try {
+					CoalescingProgressMonitor cpm;
+					synchronized (queue) {
+						if (queue.isEmpty())
+							queue.wait(60000);
+						if (queue.isEmpty()) {
+							publisher = null; // idle for a minute, shut down
+							return;
+						}
+						cpm = ((CoalescingProgressMonitor) queue.removeFirst());
+					}
+					long wait = (cpm.nextPublishTime - System.currentTimeMillis());
+					if (wait > 0)
+						Thread.sleep(wait);
+					if (cpm.dirty && !cpm.publish())
+						schedule(cpm); // some other thread publishing, try again later
+				}
+				catch (InterruptedException ie) {
+					return;
+				}
+			}
+		}
+		
+		/* benchmark measuring the cost per update call of different progress
+		 * monitor wrappers, with the wrapped monitor doing some string work,
+		 * as many user interface sinks do */
+		public static void main(String[] args) throws Exception {
+			final int updates = ((args.length < 1) ? 10000000 : Integer.parseInt(args[0]));
+			final int threads = ((args.length < 2) ? Math.max(2, Runtime.getRuntime().availableProcessors()) : Integer.parseInt(args[1]));
+			final int[] sinkCalls = {0};
+			ProgressMonitor sink = new ProgressMonitor() {
+				private String label = "";
+				public void setBaseProgress(int baseProgress) {}
+				public void setMaxProgress(int maxProgress) {}
+				public void setProgress(int progress) {
+					this.label = ("Progress: " + progress + "%");
+					sinkCalls[0]++;
+				}
+				public void setStep(String step) {
+					sinkCalls[0]++;
+				}
+				public void setInfo(String info) {
+					this.label = ("Info: " + info);
+					sinkCalls[0]++;
+				}
+				public String toString() {
+					return this.label;
+				}
+			};
+			
+			for (int round = 0; round < 2; round++) {
+				for (int w = 0; w < 3; w++) {
+					final ProgressMonitor pm;
+					String name;
+					if (w == 0) {
+						pm = new SynchronizedProgressMonitor(new CascadingProgressMonitor(sink));
+						name = "synchronized";
+					}
+					else if (w == 1) {
+						pm = new CascadingProgressMonitor(new SynchronizedProgressMonitor(sink));
+						name = "cascading";
+					}
+					else {
+						pm = new CoalescingProgressMonitor(new CascadingProgressMonitor(sink));
+						name = "coalescing";
+					}
+					pm.setBaseProgress(10);
+					pm.setMaxProgress(90);
+					sinkCalls[0] = 0;
+					final int chunk = (updates / threads);
+					long start = System.nanoTime();
+					ParallelJobRunner.runParallelFor(new ParallelJobRunner.ParallelFor() {
+						public void doFor(int index) throws Exception {
+							for (int u = 0; u < chunk; u++)
+								pm.setProgress((u * 100) / chunk);
+						}
+					}, threads, threads);
+					if (pm instanceof CoalescingProgressMonitor)
+						((CoalescingProgressMonitor) pm).flush();
+					long time = (System.nanoTime() - start);
+					System.out.println(name + " (" + threads + " threads): " + (chunk * threads) + " updates in " + (time / 1000000) + "ms, " + (time / (chunk * threads)) + "ns per update, " + sinkCalls[0] + " updates reached sink");
+				}
+			}
+		}
+	}
+	
 	/**
 	 * Set the processing step, indicating a major phase of the monitored
 	 * process.
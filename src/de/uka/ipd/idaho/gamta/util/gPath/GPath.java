@@ -57,6 +57,7 @@ public class GPath implements GPathConstants {
 	}
 	
 	GPathStep[] steps = new GPathStep[0];
+	private String string = null; // cached, as instrumentation uses it on every evaluation
 	
 	/**	Constructor
 	 */
@@ -86,10 +87,13 @@ public class GPath implements GPathConstants {
 	public String toString() {
 		if (this.steps == null) return "";
 		if (this.steps.length == 0) return "";
-		String string = this.steps[0].toString();
-		for (int s = 1; s < this.steps.length; s++)
-			string = string + "/" + this.steps[s].toString();
-		return string;
+		if (this.string == null) {
+			String string = this.steps[0].toString();
+			for (int s = 1; s < this.steps.length; s++)
+				string = string + "/" + this.steps[s].toString();
+			this.string = string;
+		}
+		return this.string;
 	}
 	
 	public static final GPathEngine DEFAULT_ENGINE = new GPathEngine(true);
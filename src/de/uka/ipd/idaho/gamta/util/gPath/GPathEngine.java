@@ -56,6 +56,7 @@ import de.uka.ipd.idaho.gamta.TokenSequenceListener;
 import de.uka.ipd.idaho.gamta.TokenSequenceUtils;
 import de.uka.ipd.idaho.gamta.Tokenizer;
 import de.uka.ipd.idaho.gamta.defaultImplementation.PlainTokenSequence;
+import de.uka.ipd.idaho.gamta.util.AnalyzerInstrumentation;
 import de.uka.ipd.idaho.gamta.util.gPath.exceptions.GPathException;
 import de.uka.ipd.idaho.gamta.util.gPath.exceptions.InvalidArgumentsException;
 import de.uka.ipd.idaho.gamta.util.gPath.exceptions.UndefinedFunctionException;
@@ -110,6 +111,16 @@ public class GPathEngine implements GPathConstants {
 	 * @throws GPathException
 	 */
 	public QueriableAnnotation[] evaluatePath(QueriableAnnotation context, GPath path, GPathVariableResolver variableBindings) throws GPathException {
+		AnalyzerInstrumentation.Probe probe = (AnalyzerInstrumentation.isEnabled() ? AnalyzerInstrumentation.startProbe(AnalyzerInstrumentation.GPATH_OPERATION, path.toString()) : null);
+		try {
+			return this.doEvaluatePath(context, path, variableBindings);
+		}
+		finally {
+			if (probe != null)
+				probe.stop();
+		}
+	}
+	private QueriableAnnotation[] doEvaluatePath(QueriableAnnotation context, GPath path, GPathVariableResolver variableBindings) throws GPathException {
 		
 		//	check resolver
 		if (variableBindings == null)
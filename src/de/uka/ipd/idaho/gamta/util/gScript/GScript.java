@@ -33,6 +33,7 @@ import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -44,12 +45,16 @@ import java.util.Set;
 import java.util.Vector;
 
 import de.uka.ipd.idaho.gamta.Annotation;
+import de.uka.ipd.idaho.gamta.Gamta;
 import de.uka.ipd.idaho.gamta.MutableAnnotation;
 import de.uka.ipd.idaho.gamta.QueriableAnnotation;
+import de.uka.ipd.idaho.gamta.util.ParallelJobRunner;
+import de.uka.ipd.idaho.gamta.util.ParallelJobRunner.ParallelFor;
 import de.uka.ipd.idaho.gamta.util.gPath.GPath;
 import de.uka.ipd.idaho.gamta.util.gPath.GPathExpression;
 import de.uka.ipd.idaho.gamta.util.gPath.GPathParser;
 import de.uka.ipd.idaho.gamta.util.gPath.GPathVariableResolver;
+import de.uka.ipd.idaho.gamta.util.gPath.exceptions.GPathException;
 import de.uka.ipd.idaho.gamta.util.gPath.exceptions.VariableNotBoundException;
 import de.uka.ipd.idaho.gamta.util.gPath.types.GPathAnnotationSet;
 import de.uka.ipd.idaho.gamta.util.gPath.types.GPathObject;
@@ -276,6 +281,36 @@ import de.uka.ipd.idaho.stringUtils.StringVector;
  * enclosing for loop, or the end the script is assumed to be the end of the
  * loop, whichever occurs first. There may be an arbitrary number of statements
  * in a for loop.<br>
+ * <br> - <b>parallel for loops</b>:<br>
+ * <code><b>parFor</b> $vName {GPathExpression}<br>
+ * &nbsp;&nbsp;statement1<br>
+ * &nbsp;&nbsp;...<br>
+ * &nbsp;&nbsp;statementN<br>
+ * <b>end</b> $vName<br></code> <br>
+ * Parallel for loops work like for loops, but run the loop body for the
+ * individual Annotations in multiple threads. This is safe only if each run
+ * of the loop body confines itself to the subtree of the Annotation bound to
+ * $vName, so the body is checked for this when the script is compiled, and
+ * compilation fails with an explanation if the check does not pass. The body
+ * may only contain variable definitions, if-elseIf-else blocks, nested for
+ * loops, and invocations of functions registered as subtree local (see
+ * <code>addSubtreeLocalFunction()</code>; out of the built-in functions, these
+ * are setAttribute, removeAttribute, renameAttribute, copyAttributes,
+ * annotate, remove, and rename). All GPath expressions in the body have to start from $vName, or
+ * from a variable defined in the body before, and must not use absolute paths,
+ * the parent, ancestor, sibling, preceding, or following axes. Variables
+ * defined in the body are local to each run; after the loop, they retain the
+ * value from the last run that defined them, as with for loops. Statements
+ * that add, remove, or rename Annotations (annotate, remove, and rename) do
+ * not modify the document right away; each run buffers them, and they are
+ * applied after the body has completed for all Annotations, run by run in
+ * document order, and in the order they were issued within each run. So the
+ * body always sees the document as it was before any Annotations were added,
+ * removed, or renamed in the loop. The loop runs sequentially if the
+ * Annotations to iterate over overlap, if there are fewer than two of them,
+ * if debugging is active, and if it is nested in the body of another parallel
+ * for loop, whose buffer then takes the statements. Either way, the results
+ * of the individual runs are returned in document order.<br>
  * <br> - <b>sub scripts</b>:<br>
  * <code><b>sub</b> sName<br>
  * &nbsp;&nbsp;statement1<br>
@@ -309,6 +344,7 @@ public class GScript {
 	public static final String COMMENT_LINE_START = "--";
 	
 	public static final String START_FOR_LOOP_COMMAND = "for";
+	public static final String START_PARALLEL_FOR_LOOP_COMMAND = "parFor";
 	public static final String END_FOR_LOOP_COMMAND = "end";
 	
 	public static final String START_SUB_SCRIPT_COMMAND = "sub";
@@ -344,6 +380,54 @@ public class GScript {
 		addFunction(new CopyAttributesFunction());
 	}
 	
+	private static HashMap subtreeLocalFunctions = new HashMap();
+	
+	static {
+		addSubtreeLocalFunction("setAttribute", false);
+		addSubtreeLocalFunction("removeAttribute", false);
+		addSubtreeLocalFunction("renameAttribute", false);
+		addSubtreeLocalFunction("copyAttributes", false);
+		
+		addSubtreeLocalFunction("annotate", true);
+		addSubtreeLocalFunction("remove", true);
+		addSubtreeLocalFunction("rename", true);
+	}
+	
+	/**
+	 * Register a function as subtree local, i.e., as only reading and
+	 * modifying the Annotations handed to it as parameters, and their
+	 * content, but nothing outside them. Only subtree local functions may be
+	 * used in the body of a parallel for loop. If a function adds or removes
+	 * Annotations, or changes their type, it is structural, and its
+	 * invocations are buffered and executed after all runs of the loop body,
+	 * in document order. A function that modifies tokens must not be
+	 * registered at all.
+	 * @param functionName the name of the function
+	 * @param structural does the function add, remove, or rename Annotations?
+	 */
+	public static void addSubtreeLocalFunction(String functionName, boolean structural) {
+		synchronized (subtreeLocalFunctions) {
+			subtreeLocalFunctions.put(functionName, new Boolean(structural));
+		}
+	}
+	
+	/**
+	 * Remove a function from the functions registered as subtree local. This
+	 * does not affect scripts that are compiled already.
+	 * @param functionName the name of the function
+	 */
+	public static void removeSubtreeLocalFunction(String functionName) {
+		synchronized (subtreeLocalFunctions) {
+			subtreeLocalFunctions.remove(functionName);
+		}
+	}
+	
+	private static Boolean getSubtreeLocality(String functionName) {
+		synchronized (subtreeLocalFunctions) {
+			return ((Boolean) subtreeLocalFunctions.get(functionName));
+		}
+	}
+	
 	/**
 	 * Interface to be implemented by components that can resolve the name of an
 	 * included or called GAMTA script to the actual script
@@ -611,6 +695,7 @@ public class GScript {
 	public static boolean isValidCommand(String command) {
 		return (
 			START_FOR_LOOP_COMMAND.equals(command) ||
+			START_PARALLEL_FOR_LOOP_COMMAND.equals(command) ||
 			END_FOR_LOOP_COMMAND.equals(command) ||
 			
 			START_SUB_SCRIPT_COMMAND.equals(command) ||
@@ -869,411 +954,14 @@ public class GScript {
 	 */
 	public static String[] executeScript(MutableAnnotation data, String[][] tokenizedCommands, int cStartIndex, int cEndIndex, GPathVariableResolver globalBindings, DebugLogger debug) throws GScriptException {
 		
-		StringVector results = new StringVector();
-		int cIndex = cStartIndex;
-		while (cIndex < Math.min(cEndIndex, tokenizedCommands.length)) {
-			String[] commandTokens = tokenizedCommands[cIndex];
-			
-			//	jump blank lines  and comments
-			if ((commandTokens.length == 0) || COMMENT_LINE_START.equals(commandTokens[0])) {
-				cIndex++;
-				continue;
-			}
-			
-			//	get name of what to do
-			String functionName = commandTokens[0];
-			
-			//	clear all variable bindings
-			if (CLEAR_VARIABLE_DEFINITIONS_COMMAND.equals(functionName)) {
-				if (commandTokens.length == 1) {
-					
-					//	write debug info
-					if (debug != null) {
-						String[] vNames = globalBindings.getVariableNames();
-						for (int v = 0; v < vNames.length; v++)
-							debug.variableAssigned(vNames[v], null);
-					}
-					
-					//	clear bindings & move on to next command
-					globalBindings.clear();
-					cIndex++;
-				}
-				else throw new GScriptException((CLEAR_VARIABLE_DEFINITIONS_COMMAND + " requires no parameters."), results.toStringArray());
-			}
-			
-			//	clear one specific variable binding
-			else if (CLEAR_VARIABLE_DEFINITION_COMMAND.equals(functionName)) {
-				if ((commandTokens.length == 2) && commandTokens[1].startsWith("$")) {
-					
-					//	write debug info
-					if (debug != null) debug.variableAssigned(commandTokens[1], null);
-					
-					//	clear binding & move on to next command
-					globalBindings.removeVariable(commandTokens[1]);
-					cIndex++;
-				}
-				else throw new GScriptException((CLEAR_VARIABLE_DEFINITION_COMMAND + " requires the name of the variable to clear as its only parameter. Variable names have to start with '$'."), results.toStringArray());
-			}
-			
-			//	bind a variable to a (new) value
-			else if (DEFINE_VARIABLE_COMMAND.equals(functionName)) {
-				
-				//	compute value (if necessary) & set binding
-				if ((commandTokens.length == 3) && commandTokens[1].startsWith("$")) {
-					String value = commandTokens[2];
-					
-					//	binding to value of annotation set
-					if (isAnnotationSetConstructor(value)) {
-						
-						//	cut annotation set constructor brackets
-						value = value.substring(1, (value.length() - 1));
-						
-						//	create annotation set
-						QueriableAnnotation[] annotations = GPath.evaluatePath(data, value, globalBindings);
-						GPathAnnotationSet gpas = new GPathAnnotationSet();
-						for (int a = 0; a < annotations.length; a++)
-							gpas.add(annotations[a]);
-						
-						//	write debug info
-						if (debug != null) debug.expressionEvaluated(commandTokens[2], gpas.asString().value);
-						
-						//	convert annotation set to literal according to XPath specification
-						globalBindings.setVariable(commandTokens[1], gpas);
-					}
-					
-					//	binding to value of expression
-					else if (isExpression(value)) {
-						GPathObject exRes = GPath.evaluateExpression(value, data, globalBindings);
-						globalBindings.setVariable(commandTokens[1], exRes);
-						
-						//	write debug info
-						if (debug != null) debug.expressionEvaluated(commandTokens[2], exRes.asString().value);
-					}
-					
-					//	straight literal
-					else globalBindings.setVariable(commandTokens[1], new GPathString(value));
-					
-					//	write debug info
-					if (debug != null) debug.variableAssigned(commandTokens[1], globalBindings.getVariable(commandTokens[1]).asString().value);
-					
-					//	move on to next command
-					cIndex++;
-				}
-				else throw new GScriptException((DEFINE_VARIABLE_COMMAND + " requires the name and content of the variable to define as its only parameters. Variable names have to start with '$'."), results.toStringArray());
-			}
-			
-			//	start of for loop
-			else if (START_FOR_LOOP_COMMAND.equals(functionName)) {
-				
-				//	compute value (if necessary) & set binding
-				if ((commandTokens.length == 3) && commandTokens[1].startsWith("$") && isAnnotationSetConstructor(commandTokens[2])) {
-					String pathExpression = commandTokens[2];
-					
-					//	cut annotation set constructor brackets
-					pathExpression = pathExpression.substring(1, (pathExpression.length() - 1));
-					
-					//	create annotation set
-					QueriableAnnotation[] annotations = GPath.evaluatePath(data, pathExpression, globalBindings);
-					
-					//	find end of for loop
-					int forEndIndex = (cIndex + 1);
-					while (forEndIndex < cEndIndex) {
-						String[] forLoopCommandTokens = tokenizedCommands[forEndIndex];
-						if ((forLoopCommandTokens.length == 2) && END_FOR_LOOP_COMMAND.equals(forLoopCommandTokens[0]) && commandTokens[1].equals(forLoopCommandTokens[1])) break;
-						else forEndIndex++;
-					}
-					
-					//	execute for loop
-					for (int a = 0; a < annotations.length; a++) {
-						
-						//	bind loop variable to current value
-						GPathAnnotationSet gpas = new GPathAnnotationSet();
-						gpas.add(annotations[a]);
-						globalBindings.setVariable(commandTokens[1], gpas);
-						
-						//	write debug info
-						if (debug != null) debug.forLoopVariableAssigned(commandTokens[1], commandTokens[2], annotations[a].getValue());
-						
-						//	execute commands in loop
-						System.out.println("running FOR loop " + (cIndex + 1) + "-" + forEndIndex);
-						String[] forLoopResults = executeScript(data, tokenizedCommands, (cIndex + 1), forEndIndex, globalBindings, debug);
-						results.addContent(forLoopResults);
-						
-						//	unbind loop variable
-						globalBindings.removeVariable(commandTokens[1]);
-						
-						//	write debug info
-						if (debug != null) debug.forLoopVariableAssigned(commandTokens[1], commandTokens[2], null);
-					}
-					
-					//	jump to first command after for loop
-					cIndex = forEndIndex + 1;
-				}
-				else throw new GScriptException((START_FOR_LOOP_COMMAND + " requires the name of the variable to use and the annotation set to iterate through as its only parameters. Variable names have to start with '$', annotation set constructors are to be enclosed in '{' and '}'."), results.toStringArray());
-			}
-			
-			//	end of for loop, without foor loop open
-			else if (END_FOR_LOOP_COMMAND.equals(functionName))
-				throw new GScriptException((END_FOR_LOOP_COMMAND + " without " + START_FOR_LOOP_COMMAND + ": '" + concatTokens(commandTokens) + "'"), results.toStringArray());
-			
-			//	start of if-elseIf-else block
-			else if (IF_COMMAND.equals(functionName)) {
-				
-				if ((commandTokens.length == 2) && isExpression(commandTokens[1])) {
-					
-					//	collect condition / command pairs
-					ArrayList ccPairs = new ArrayList();
-					
-					//	find end of if-elseIf-else block, and bind commands to conditions
-					int ifEndIndex = (cIndex + 1);
-					
-					//	create pair for if condition
-					CcPair currentCcPair = new CcPair(commandTokens[1]);
-					ccPairs.add(currentCcPair);
-					
-					while (ifEndIndex < cEndIndex) {
-						String[] ifBlockTokens = tokenizedCommands[ifEndIndex];
-						if (ELSE_IF_COMMAND.equals(ifBlockTokens[0])) {
-							if (currentCcPair.condition == null) { // pair is from else command, no elseIf may follow
-								throw new GScriptException((ELSE_COMMAND + " has to be the last in an if-elseIf-else block, no " + ELSE_IF_COMMAND + " may follow it."), results.toStringArray());
-							}
-							else if ((ifBlockTokens.length == 2) && isExpression(ifBlockTokens[1])) {
-								if (ccPairs.get(ccPairs.size()-1) != currentCcPair)
-									ccPairs.add(currentCcPair);
-								currentCcPair = new CcPair(ifBlockTokens[1]);
-								ifEndIndex++;
-							}
-							else throw new GScriptException((ELSE_IF_COMMAND + " requires an expression as its only parameter."), results.toStringArray());
-						}
-						else if (ELSE_COMMAND.equals(ifBlockTokens[0])) {
-							if (currentCcPair.condition == null) { // pair is from else command, no other else may follow
-								throw new GScriptException(("There can be only one " + ELSE_COMMAND + " in an if-elseIf-else block."), results.toStringArray());
-							}
-							else if (ifBlockTokens.length == 1) {
-								if (ccPairs.get(ccPairs.size()-1) != currentCcPair)
-									ccPairs.add(currentCcPair);
-								currentCcPair = new CcPair(null);
-								ifEndIndex++;
-							}
-							else throw new GScriptException((ELSE_IF_COMMAND + " requires no parameters."), results.toStringArray());
-						}
-						else if (currentCcPair.command == null) { // no command since last control statement
-							currentCcPair.command = ifBlockTokens;//ifCommand;
-							ifEndIndex++;
-						}
-						else break;
-					}
-					
-					//	add last pair
-					if (ccPairs.get(ccPairs.size()-1) != currentCcPair)
-						ccPairs.add(currentCcPair);
-					
-					//	determine the command to execute
-					String[] ifCommand = null;
-					for (int ic = 0; ic < ccPairs.size(); ic++) {
-						CcPair p = ((CcPair) ccPairs.get(ic));
-						if (p.condition == null) {
-							ifCommand = p.command;
-							break;
-						}
-						else {
-							
-							//	evaluate expression
-							String expression = p.condition.substring(1, (p.condition.length() - 1));
-							GPathObject condRes = GPath.evaluateExpression(expression, data, globalBindings);
-							
-							//	write debug info
-							if (debug != null) debug.expressionEvaluated(p.condition, condRes.asString().value);
-							
-							//	test expression
-							if (condRes.asBoolean().value) {
-								ifCommand = p.command;
-								break; // necessary, for subsequent conditions may also be true
-							}
-						}
-					}
-					
-					//	execute command
-					if (ifCommand != null) {
-						
-						//	conditional one-line command, recurse
-						if (CLEAR_VARIABLE_DEFINITIONS_COMMAND.equals(ifCommand[0]) || CLEAR_VARIABLE_DEFINITION_COMMAND.equals(ifCommand[0]) || DEFINE_VARIABLE_COMMAND.equals(ifCommand[0]) || CALL_COMMAND.equals(ifCommand[0]) || INCLUDE_COMMAND.equals(ifCommand[0])) {
-							String[][] ifScript = {ifCommand};
-							String[] ifResult = executeScript(data, ifScript, 0, 1, globalBindings, debug);
-							results.addContent(ifResult);
-						}
-						
-						//	function invocation
-						else {
-							
-							//	gather parameters
-							GPathObject[] scriptParameters = new GPathObject[ifCommand.length - 1];
-							for (int p = 0; p < scriptParameters.length; p++)
-								scriptParameters[p] = new GPathString(ifCommand[p+1]);
-							GScriptFunction function = getFunction(ifCommand[0], scriptParameters);
-							
-							//	unknown function
-							if (function == null) {
-								throw new GScriptException(("Unknown Function: '" + ifCommand[0] + "'"), results.toStringArray());
-							}
-							
-							//	write debug info
-							if (debug != null) {
-								String[] pValues = new String[scriptParameters.length];
-								for (int p = 0; p < pValues.length; p++)
-									pValues[p] = scriptParameters[p].asString().value;
-								debug.functionInvoking(ifCommand[0], pValues);
-							}
-							
-							//	execute function
-							String[] parameterTypes = function.getParameterTypes();
-							GPathObject[] functionParameters = new GPathObject[scriptParameters.length];
-							String[] commandResults = executeCommand(data, function, functionParameters, parameterTypes, scriptParameters, 0, new GPathVariableResolver(globalBindings), debug);
-							results.addContent(commandResults);
-						}
-					}
-					
-					//	jump to first command after if-elseIf-else block
-					cIndex = ifEndIndex;
-				}
-				else throw new GScriptException((IF_COMMAND + " requires an expression as its only parameter."), results.toStringArray());
-			}
-			
-			//	elseIf command without if-elseIf-else block open
-			else if (ELSE_IF_COMMAND.equals(functionName))
-				throw new GScriptException((ELSE_IF_COMMAND + " without " + IF_COMMAND + ": '" + concatTokens(commandTokens) + "'"), results.toStringArray());
-			
-			//	else command without if-elseIf-else block open
-			else if (ELSE_COMMAND.equals(functionName))
-				throw new GScriptException((ELSE_COMMAND + " without " + IF_COMMAND + ": '" + concatTokens(commandTokens) + "'"), results.toStringArray());
-			
-			//	call to other script
-			else if (CALL_COMMAND.equals(functionName)) {
-				if ((commandTokens.length == 2) || ((commandTokens.length == 3) && isAnnotationSetConstructor(commandTokens[2]))) {
-					
-					//	obtain called script
-					String script = resolveScriptName(commandTokens[1]);
-					if (script == null)
-						throw new GScriptException(("Cannot resolve called script name: '" + commandTokens[1] + "'"), results.toStringArray());
-					
-					//	call to context
-					else if (commandTokens.length == 2) {
-						
-						//	execute called script & move on to next command
-						String[] scriptRes = executeScript(data, script, GPath.getDummyVariableResolver(), debug);
-						results.addContent(scriptRes);
-						cIndex++;
-					}
-					
-					//	call for annotation set
-					else {
-						
-						//	get annotation set constructor and cut brackets
-						String pathExpression = commandTokens[2];
-						pathExpression = pathExpression.substring(1, (pathExpression.length() - 1));
-						
-						//	create annotation set & collect IDs
-						Annotation[] annotations = GPath.evaluatePath(data, pathExpression, globalBindings);
-						HashSet annotationIDs = new HashSet();
-						for (int a = 0; a < annotations.length; a++)
-							annotationIDs.add(annotations[a].getAnnotationID());
-						
-						//	execute called script for each selected annotation
-						MutableAnnotation[] dataAnnotations = data.getMutableAnnotations();
-						for (int a = 0; a < dataAnnotations.length; a++)
-							if (annotationIDs.contains(dataAnnotations[a].getAnnotationID())) {
-								String[] scriptRes = executeScript(dataAnnotations[a], script, GPath.getDummyVariableResolver(), debug);
-								results.addContent(scriptRes);
-							}
-						
-						//	move on to next command
-						cIndex++;
-					}
-					
-				}
-				else throw new GScriptException((CALL_COMMAND + " requires the name of the script to call as a parameter, plus an optional GPathAnnotationSet to execute the called script on. Annotation set constructors are to be enclosed in '{' and '}'."), results.toStringArray());
-			}
-			
-			//	inclusion of other script
-			else if (INCLUDE_COMMAND.equals(functionName)) {
-				if ((commandTokens.length == 2) || ((commandTokens.length == 3) && isAnnotationSetConstructor(commandTokens[2]))) {
-					
-					//	obtain called script
-					String script = resolveScriptName(commandTokens[1]);
-					if (script == null)
-						throw new GScriptException(("Cannot resolve included script name: '" + commandTokens[1] + "'"), results.toStringArray());
-					
-					//	include to context
-					else if (commandTokens.length == 2) {
-						
-						//	execute called script & move on to next command
-						String[] scriptRes = executeScript(data, script, globalBindings, debug);
-						results.addContent(scriptRes);
-						cIndex++;
-					}
-					
-					//	include for annotation set
-					else {
-						
-						//	get annotation set constructor and cut brackets
-						String pathExpression = commandTokens[2];
-						pathExpression = pathExpression.substring(1, (pathExpression.length() - 1));
-						
-						//	create annotation set & collect IDs
-						Annotation[] annotations = GPath.evaluatePath(data, pathExpression, globalBindings);
-						HashSet annotationIDs = new HashSet();
-						for (int a = 0; a < annotations.length; a++)
-							annotationIDs.add(annotations[a].getAnnotationID());
-						
-						//	execute called script for each selected annotation
-						MutableAnnotation[] dataAnnotations = data.getMutableAnnotations();
-						for (int a = 0; a < dataAnnotations.length; a++)
-							if (annotationIDs.contains(dataAnnotations[a].getAnnotationID())) {
-								String[] scriptRes = executeScript(dataAnnotations[a], script, globalBindings, debug);
-								results.addContent(scriptRes);
-							}
-						
-						//	move on to next command
-						cIndex++;
-					}
-					
-				}
-				else throw new GScriptException((INCLUDE_COMMAND + " requires the name of the script to call as a parameter, plus an optional GPathAnnotationSet to execute the included script on. Annotation set constructors are to be enclosed in '{' and '}'."), results.toStringArray());
-			}
-			
-			//	other command
-			else {
-				
-				//	gather parameters
-				GPathObject[] scriptParameters = new GPathObject[commandTokens.length - 1];
-				for (int p = 0; p < scriptParameters.length; p++)
-					scriptParameters[p] = new GPathString(commandTokens[p+1]);
-				GScriptFunction function = getFunction(functionName, scriptParameters);
-				
-				//	unknown function
-				if (function == null)
-					throw new GScriptException(("Unknown Function: '" + functionName + "'"), results.toStringArray());
-				
-				//	write debug info
-				if (debug != null) {
-					String[] pValues = new String[scriptParameters.length];
-					for (int p = 0; p < pValues.length; p++)
-						pValues[p] = scriptParameters[p].asString().value;
-					debug.functionInvoking(functionName, pValues);
-				}
-				
-				//	execute function
-				String[] parameterTypes = function.getParameterTypes();
-				GPathObject[] functionParameters = new GPathObject[scriptParameters.length];
-				String[] commandResults = executeCommand(data, function, functionParameters, parameterTypes, scriptParameters, 0, new GPathVariableResolver(globalBindings), debug);
-				results.addContent(commandResults);
-				
-				//	move on to next command
-				cIndex++;
-			}
-		}
+		//	compile commands, so all GPath paths and expressions are parsed only once, not on every execution of a loop body
+		Set toResolve = new HashSet();
+		GScript script = new GScript(compileScriptBody(tokenizedCommands, cStartIndex, Math.min(cEndIndex, tokenizedCommands.length), toResolve));
 		
-		return results.toStringArray();
+		//	no need to link script invocations, they resolve (globally, no sub scripts in interpreter mode) on first execution, just like the interpreter did
+		
+		//	execute compiled commands
+		return script.execute(data, globalBindings, debug);
 	}
 	
 	/**
@@ -1697,8 +1385,8 @@ public class GScript {
 				else throw new GScriptException(DEFINE_VARIABLE_COMMAND + " requires the name and content of the variable to define as its only parameters. Variable names have to start with '$'.");
 			}
 			
-			//	start of for loop
-			else if (START_FOR_LOOP_COMMAND.equals(functionName)) {
+			//	start of (parallel) for loop
+			else if (START_FOR_LOOP_COMMAND.equals(functionName) || START_PARALLEL_FOR_LOOP_COMMAND.equals(functionName)) {
 				
 				//	compute value (if necessary) & set binding
 				if ((commandTokens.length == 3) && commandTokens[1].startsWith("$") && isAnnotationSetConstructor(commandTokens[2])) {
@@ -1717,12 +1405,15 @@ public class GScript {
 					}
 					
 					//	store for loop
-					commands.add(new ForLoop(commandTokens[1], GPathParser.parsePath(pathExpression), compileScriptBody(tokenizedCommands, (cIndex + 1), forEndIndex, toResolve)));
+					GScriptCommand[] body = compileScriptBody(tokenizedCommands, (cIndex + 1), forEndIndex, toResolve);
+					if (START_PARALLEL_FOR_LOOP_COMMAND.equals(functionName))
+						commands.add(new ParallelForLoop(commandTokens[1], pathExpression, body));
+					else commands.add(new ForLoop(commandTokens[1], pathExpression, body));
 					
 					//	jump to first command after for loop
 					cIndex = forEndIndex + 1;
 				}
-				else throw new GScriptException(START_FOR_LOOP_COMMAND + " requires the name of the variable to use and the annotation set to iterate through as its only parameters. Variable names have to start with '$', annotation set constructors are to be enclosed in '{' and '}'.");
+				else throw new GScriptException(functionName + " requires the name of the variable to use and the annotation set to iterate through as its only parameters. Variable names have to start with '$', annotation set constructors are to be enclosed in '{' and '}'.");
 			}
 			
 			//	end of for loop, without foor loop open
@@ -1777,7 +1468,7 @@ public class GScript {
 							else throw new GScriptException(ELSE_COMMAND + " requires no parameters.");
 						}
 						else if (lastWasCondition) { // no command since last control statement
-							ifBlockParts.add(new IfBlockPart(((condition == null) ? null : GPathParser.parseExpression(condition.substring(1, (condition.length() - 1)))), parseCommand(ifBlockTokens, toResolve)));
+							ifBlockParts.add(new IfBlockPart(((condition == null) ? null : condition.substring(1, (condition.length() - 1))), parseCommand(ifBlockTokens, toResolve)));
 							lastWasCondition = false;
 							ifEndIndex++;
 						}
@@ -2161,20 +1852,30 @@ public class GScript {
 	 */
 	private static class ForLoop extends GScriptCommand {
 		final String variable;
+		final String annotationSetDefinitionString;
 		final GPath annotationSetDefinition;
 		final GScriptCommand[] body;
-		ForLoop(String variable, GPath annotationSetDefinition, GScriptCommand[] body) {
-			super(START_FOR_LOOP_COMMAND);
+		ForLoop(String variable, String annotationSetDefinition, GScriptCommand[] body) {
+			this(START_FOR_LOOP_COMMAND, variable, annotationSetDefinition, body);
+		}
+		ForLoop(String command, String variable, String annotationSetDefinition, GScriptCommand[] body) {
+			super(command);
 			this.variable = variable;
-			this.annotationSetDefinition = annotationSetDefinition;
+			this.annotationSetDefinitionString = annotationSetDefinition;
+			this.annotationSetDefinition = GPathParser.parsePath(annotationSetDefinition);
 			this.body = body;
 		}
 		String[] execute(MutableAnnotation data, GPathVariableResolver globalBindings, DebugLogger debug) throws GScriptException {
-			StringVector results = new StringVector();
 			
 			//	create annotation set
 			QueriableAnnotation[] annotations = GPath.evaluatePath(data, this.annotationSetDefinition, globalBindings);
 			
+			//	execute for loop
+			return this.execute(data, annotations, globalBindings, debug);
+		}
+		String[] execute(MutableAnnotation data, QueriableAnnotation[] annotations, GPathVariableResolver globalBindings, DebugLogger debug) throws GScriptException {
+			StringVector results = new StringVector();
+			
 			//	execute for loop
 			for (int a = 0; a < annotations.length; a++) {
 				
@@ -2203,7 +1904,7 @@ public class GScript {
 			return results.toStringArray();
 		}
 		String toString(String indent) {
-			StringBuffer string = new StringBuffer(indent + START_FOR_LOOP_COMMAND + " " + this.variable + " " + ANNOTATION_SET_CONSTRUCTOR_START + this.annotationSetDefinition.toString() + ANNOTATION_SET_CONSTRUCTOR_END);
+			StringBuffer string = new StringBuffer(indent + this.command + " " + this.variable + " " + ANNOTATION_SET_CONSTRUCTOR_START + this.annotationSetDefinition.toString() + ANNOTATION_SET_CONSTRUCTOR_END);
 			for (int b = 0; b < this.body.length; b++)
 				string.append("\n" + this.body[b].toString(indent + "  "));
 			string.append("\n" + indent + END_FOR_LOOP_COMMAND + " " + this.variable);
@@ -2211,6 +1912,283 @@ public class GScript {
 		}
 	}
 	
+	/**
+	 * A parallel for loop and its enclosed statements. The constructor checks
+	 * if the loop body confines itself to the subtree of the loop variable,
+	 * and throws an exception explaining why if it does not.
+	 * 
+	 * @author sautter
+	 */
+	private static class ParallelForLoop extends ForLoop {
+		ParallelForLoop(String variable, String annotationSetDefinition, GScriptCommand[] body) throws GScriptException {
+			super(START_PARALLEL_FOR_LOOP_COMMAND, variable, annotationSetDefinition, body);
+			
+			//	check body
+			HashSet bodyVariables = new HashSet();
+			collectDefinedVariables(this.body, bodyVariables);
+			if (bodyVariables.contains(this.variable))
+				throw new GScriptException("The body of a " + START_PARALLEL_FOR_LOOP_COMMAND + " loop must not re-define the loop variable " + this.variable + ".");
+			HashSet localVariables = new HashSet();
+			localVariables.add(this.variable);
+			for (int b = 0; b < this.body.length; b++)
+				checkSubtreeLocal(this.body[b], localVariables, bodyVariables);
+		}
+		String[] execute(final MutableAnnotation data, final GPathVariableResolver globalBindings, final DebugLogger debug) throws GScriptException {
+			
+			//	create annotation set
+			final QueriableAnnotation[] annotations = GPath.evaluatePath(data, this.annotationSetDefinition, globalBindings);
+			
+			//	nested in body of other parallel loop, run sequentially, with structural edits going to buffer of that loop
+			if (structuralEdits.get() != null)
+				return this.execute(data, annotations, globalBindings, debug);
+			
+			//	execute loop body, with one variable scope and one buffer for structural edits per run
+			final GPathVariableResolver[] runBindings = new GPathVariableResolver[annotations.length];
+			final StringVector[] runResults = new StringVector[annotations.length];
+			final ArrayList[] runEdits = new ArrayList[annotations.length];
+			ParallelFor pf = new ParallelFor() {
+				public void doFor(int index) throws Exception {
+					runBindings[index] = new GPathVariableResolver(globalBindings);
+					runResults[index] = new StringVector();
+					runEdits[index] = new ArrayList();
+					
+					//	bind loop variable to current value
+					GPathAnnotationSet gpas = new GPathAnnotationSet();
+					gpas.add(annotations[index]);
+					runBindings[index].setVariable(variable, gpas);
+					
+					//	write debug info
+					if (debug != null) debug.forLoopVariableAssigned(variable, annotationSetDefinition.toString(), annotations[index].getValue());
+					
+					//	execute commands in loop, buffering structural edits
+					structuralEdits.set(runEdits[index]);
+					try {
+						for (int b = 0; b < body.length; b++)
+							runResults[index].addContent(body[b].execute(data, runBindings[index], debug));
+					}
+					finally {
+						structuralEdits.set(null);
+					}
+					
+					//	write debug info
+					if (debug != null) debug.forLoopVariableAssigned(variable, annotationSetDefinition.toString(), null);
+				}
+			};
+			
+			//	run sequentially if debugging, if nothing to parallelize, or if annotations overlap
+			boolean sequential = ((debug != null) || (annotations.length < 2) || !areDisjoint(annotations));
+			ParallelJobRunner.runParallelFor(pf, annotations.length, (sequential ? 1 : -1));
+			if (pf.hasException()) {
+				Exception e = pf.getException();
+				if (e instanceof GScriptException)
+					throw ((GScriptException) e);
+				else if (e instanceof RuntimeException)
+					throw ((RuntimeException) e);
+				else throw new GScriptException(e);
+			}
+			
+			//	apply structural edits in document order (subtrees are disjoint, so running body ahead of them makes no difference to the individual runs)
+			for (int a = 0; a < annotations.length; a++) {
+				for (int e = 0; e < runEdits[a].size(); e++)
+					runResults[a].addContent(((StructuralEdit) runEdits[a].get(e)).apply(debug));
+			}
+			
+			//	collect results in document order, and hand variables defined in loop body to enclosing scope, last definition winning, as in sequential loop
+			StringVector results = new StringVector();
+			for (int a = 0; a < annotations.length; a++) {
+				results.addContent(runResults[a]);
+				String[] variables = runBindings[a].getVariableNames();
+				for (int v = 0; v < variables.length; v++) {
+					if (!this.variable.equals(variables[v]))
+						globalBindings.setVariable(variables[v], runBindings[a].getVariable(variables[v]));
+				}
+			}
+			
+			//	unbind loop variable, as in sequential loop
+			globalBindings.removeVariable(this.variable);
+			
+			//	return log
+			return results.toStringArray();
+		}
+	}
+	
+	/* buffer for structural edits of current run through the body of a parallel for loop, null outside such loops */
+	private static final ThreadLocal structuralEdits = new ThreadLocal();
+	
+	/**
+	 * An invocation of a structural function buffered in a run through the
+	 * body of a parallel for loop, with its parameter values resolved.
+	 * 
+	 * @author sautter
+	 */
+	private static class StructuralEdit {
+		final GScriptFunction function;
+		final MutableAnnotation data;
+		final GPathObject[] parameters;
+		final GPathVariableResolver variables;
+		StructuralEdit(GScriptFunction function, MutableAnnotation data, GPathObject[] parameters, GPathVariableResolver variables) {
+			this.function = function;
+			this.data = data;
+			this.parameters = parameters;
+			this.variables = variables;
+		}
+		String[] apply(DebugLogger debug) {
+			
+			//	write debug info
+			if (debug != null) {
+				String[] pValues = new String[this.parameters.length];
+				for (int p = 0; p < pValues.length; p++)
+					pValues[p] = this.parameters[p].asString().value;
+				debug.functionInvoking(this.function.getName(), pValues);
+			}
+			
+			String[] result = {this.function.process(this.data, this.parameters, this.variables)};
+			
+			//	write debug info
+			if (debug != null) debug.functionInvoked(this.function.getName(), result);
+			
+			//	return result
+			return result;
+		}
+	}
+	
+	private static boolean areDisjoint(QueriableAnnotation[] annotations) {
+		for (int a = 1; a < annotations.length; a++) {
+			if ((annotations[a-1].getAbsoluteStartIndex() + annotations[a-1].size()) > annotations[a].getAbsoluteStartIndex())
+				return false;
+		}
+		return true;
+	}
+	
+	private static void collectDefinedVariables(GScriptCommand[] commands, Set variables) {
+		for (int c = 0; c < commands.length; c++)
+			collectDefinedVariables(commands[c], variables);
+	}
+	
+	private static void collectDefinedVariables(GScriptCommand command, Set variables) {
+		if (command instanceof VariableDefinition)
+			variables.add(((VariableDefinition) command).variable);
+		else if (command instanceof IfBlock) {
+			IfBlockPart[] parts = ((IfBlock) command).body;
+			for (int p = 0; p < parts.length; p++)
+				collectDefinedVariables(parts[p].command, variables);
+		}
+		else if (command instanceof ForLoop) {
+			variables.add(((ForLoop) command).variable);
+			collectDefinedVariables(((ForLoop) command).body, variables);
+		}
+	}
+	
+	private static void checkSubtreeLocal(GScriptCommand command, Set localVariables, Set bodyVariables) throws GScriptException {
+		
+		//	check definition, and mark variable as defined
+		if (command instanceof VariableDefinition) {
+			VariableDefinition vd = ((VariableDefinition) command);
+			if (vd.annotationSetDefinition != null)
+				checkSubtreeLocal(vd.definition.substring(1, (vd.definition.length() - 1)), true, localVariables, bodyVariables);
+			else if (vd.expression != null)
+				checkSubtreeLocal(vd.definition, false, localVariables, bodyVariables);
+			localVariables.add(vd.variable);
+		}
+		
+		//	check function and parameters
+		else if (command instanceof FunctionInvocation) {
+			FunctionInvocation fi = ((FunctionInvocation) command);
+			if (getSubtreeLocality(fi.function.getName()) == null)
+				throw new GScriptException("'" + fi.function.getName() + "' cannot be used in " + START_PARALLEL_FOR_LOOP_COMMAND + " loops, as it is not registered as subtree local.");
+			for (int p = 0; p < fi.parameterDefinitions.length; p++) {
+				String parameterDefinition = fi.parameterDefinitions[p].asString().value;
+				boolean isAnnotationSet = GPATH_ANNOTATION_SET_TYPE.equals(fi.parameterTypes[p]);
+				if (isAnnotationSetConstructor(parameterDefinition))
+					checkSubtreeLocal(parameterDefinition.substring(1, (parameterDefinition.length() - 1)), true, localVariables, bodyVariables);
+				else if (isExpression(parameterDefinition))
+					checkSubtreeLocal(parameterDefinition, false, localVariables, bodyVariables);
+				else if (parameterDefinition.startsWith("$") || (isAnnotationSet && (parameterDefinition.length() != 0)))
+					checkSubtreeLocal(parameterDefinition, isAnnotationSet, localVariables, bodyVariables);
+			}
+		}
+		
+		//	check conditions and commands (variables defined in conditional commands remain local to them)
+		else if (command instanceof IfBlock) {
+			IfBlockPart[] parts = ((IfBlock) command).body;
+			for (int p = 0; p < parts.length; p++) {
+				if (parts[p].conditionString != null)
+					checkSubtreeLocal(parts[p].conditionString, false, localVariables, bodyVariables);
+				checkSubtreeLocal(parts[p].command, new HashSet(localVariables), bodyVariables);
+			}
+		}
+		
+		//	check nested loop (variables defined in loop body remain local to it, as it might not run at all)
+		else if (command instanceof ForLoop) {
+			ForLoop fl = ((ForLoop) command);
+			checkSubtreeLocal(fl.annotationSetDefinitionString, true, localVariables, bodyVariables);
+			HashSet loopLocalVariables = new HashSet(localVariables);
+			loopLocalVariables.add(fl.variable);
+			for (int b = 0; b < fl.body.length; b++)
+				checkSubtreeLocal(fl.body[b], loopLocalVariables, bodyVariables);
+		}
+		
+		//	variable clearings as well as script calls and inclusions might affect anything
+		else throw new GScriptException("'" + command.command + "' cannot be used in " + START_PARALLEL_FOR_LOOP_COMMAND + " loops.");
+	}
+	
+	private static final Set nonLocalAxes = new HashSet(Arrays.asList(new String[] {
+		"ancestor",
+		"ancestor-or-self",
+		"parent",
+		"following",
+		"following-sibling",
+		"preceding",
+		"preceding-sibling",
+	}));
+	private static final Set operators = new HashSet(Arrays.asList(new String[] {
+		"=", "!=", "<", "<=", ">", ">=", "+", "-", "|", "and", "or", "div", "mod",
+	}));
+	
+	private static void checkSubtreeLocal(String source, boolean isPath, Set localVariables, Set bodyVariables) throws GScriptException {
+		String[] tokens = GPathParser.tokenize(source);
+		boolean[] isOperator = new boolean[tokens.length];
+		int predicateDepth = 0;
+		for (int t = 0; t < tokens.length; t++) {
+			String token = tokens[t];
+			String prev = ((t == 0) ? null : tokens[t-1]);
+			String next = (((t+1) == tokens.length) ? null : tokens[t+1]);
+			boolean afterOperand = !((prev == null) || "(".equals(prev) || ",".equals(prev) || "[".equals(prev) || isOperator[t-1]);
+			isOperator[t] = (operators.contains(token) || ("*".equals(token) && afterOperand && !"/".equals(prev) && !"::".equals(prev) && !"@".equals(prev)));
+			
+			//	variables have to be defined before use if they are defined in loop body at all, and paths have to start from local ones
+			if (token.startsWith("$")) {
+				if (bodyVariables.contains(token) && !localVariables.contains(token))
+					throw new GScriptException("'" + source + "' cannot be used in " + START_PARALLEL_FOR_LOOP_COMMAND + " loops, as " + token + " is read before it is defined in the loop body.");
+				boolean isPathStart = ("/".equals(next) || "[".equals(next) || (isPath && (predicateDepth == 0) && ((prev == null) || "|".equals(prev))));
+				if (isPathStart && !localVariables.contains(token) && !isInLineVariable(token))
+					throw new GScriptException("'" + source + "' cannot be used in " + START_PARALLEL_FOR_LOOP_COMMAND + " loops, as " + token + " is not defined in the loop body.");
+			}
+			
+			//	absolute paths
+			else if ("/".equals(token) && !afterOperand)
+				throw new GScriptException("'" + source + "' cannot be used in " + START_PARALLEL_FOR_LOOP_COMMAND + " loops, as absolute paths reach outside the loop variable.");
+			
+			//	axes leaving the subtree of the context annotation
+			else if ("..".equals(token) || ("::".equals(token) && nonLocalAxes.contains(prev)))
+				throw new GScriptException("'" + source + "' cannot be used in " + START_PARALLEL_FOR_LOOP_COMMAND + " loops, as the " + ("..".equals(token) ? "parent" : prev) + " axis reaches outside the loop variable.");
+			
+			//	predicates (in which relative paths start from the local context annotation)
+			else if ("[".equals(token))
+				predicateDepth++;
+			else if ("]".equals(token))
+				predicateDepth--;
+			
+			//	relative paths outside predicates (which start from the whole document)
+			else if ((predicateDepth == 0) && !afterOperand && !"(".equals(next) && (".".equals(token) || ("*".equals(token) && !isOperator[t]) || ((token.length() != 0) && (Character.isLetter(token.charAt(0)) || (token.charAt(0) == '_')) && !operators.contains(token))))
+				throw new GScriptException("'" + source + "' cannot be used in " + START_PARALLEL_FOR_LOOP_COMMAND + " loops, as relative paths reach outside the loop variable unless in predicates.");
+		}
+	}
+	
+	private static boolean isInLineVariable(String variable) {
+		return ((variable.length() == 2) && ('1' <= variable.charAt(1)) && (variable.charAt(1) <= '9'));
+	}
+	
 	/**
 	 * An if-block and its enclosed pairs of conditions and statements
 	 * 
@@ -2259,10 +2237,12 @@ public class GScript {
 	 * @author sautter
 	 */
 	private static class IfBlockPart {
+		final String conditionString;
 		final GPathExpression condition;
 		final GScriptCommand command;
-		IfBlockPart(GPathExpression condition, GScriptCommand command) {
-			this.condition = condition;
+		IfBlockPart(String conditionString, GScriptCommand command) {
+			this.conditionString = conditionString;
+			this.condition = ((conditionString == null) ? null : GPathParser.parseExpression(conditionString));
 			this.command = command;
 		}
 	}
@@ -2276,11 +2256,37 @@ public class GScript {
 		final GScriptFunction function;
 		final String[] parameterTypes;
 		final GPathObject[] parameterDefinitions;
-		FunctionInvocation(GScriptFunction function, GPathObject[] parameterDefinitions) {
+		final GPath[] parameterPaths;
+		final GPathExpression[] parameterExpressions;
+		final boolean structural;
+		FunctionInvocation(GScriptFunction function, GPathObject[] parameterDefinitions) throws GScriptException {
 			super(function.getName());
 			this.function = function;
+			this.structural = Boolean.TRUE.equals(getSubtreeLocality(this.function.getName()));
 			this.parameterTypes = this.function.getParameterTypes();
 			this.parameterDefinitions = parameterDefinitions;
+			
+			//	check parameter count right away instead of failing on execution
+			if (this.parameterDefinitions.length > this.parameterTypes.length)
+				throw new GScriptException("'" + this.function.getName() + "' takes at most " + this.parameterTypes.length + " parameters, but got " + this.parameterDefinitions.length + ".");
+			
+			//	pre-parse literal annotation set constructors and expressions (variables can only be resolved on execution)
+			this.parameterPaths = new GPath[this.parameterDefinitions.length];
+			this.parameterExpressions = new GPathExpression[this.parameterDefinitions.length];
+			for (int p = 0; p < this.parameterDefinitions.length; p++) {
+				String parameterDefinition = this.parameterDefinitions[p].asString().value;
+				try {
+					if (isAnnotationSetConstructor(parameterDefinition))
+						this.parameterPaths[p] = GPathParser.parsePath(parameterDefinition.substring(1, (parameterDefinition.length() - 1)));
+					else if (isExpression(parameterDefinition))
+						this.parameterExpressions[p] = GPathParser.parseExpression(parameterDefinition);
+					else if (GPATH_ANNOTATION_SET_TYPE.equals(this.parameterTypes[p]) && (parameterDefinition.length() != 0) && !parameterDefinition.startsWith("$"))
+						this.parameterPaths[p] = GPathParser.parsePath(parameterDefinition);
+				}
+				
+				//	leave erroneous parameters to execution, as before, as they might be in a branch never executed
+				catch (GPathException gpe) {}
+			}
 		}
 		String[] execute(MutableAnnotation data, GPathVariableResolver globalBindings, DebugLogger debug) throws GScriptException {
 			GPathObject[] resolvedParameterDefinitions = new GPathObject[this.parameterDefinitions.length];
@@ -2294,6 +2300,17 @@ public class GScript {
 			//	all parameters inspected
 			if (pIndex == parameterValues.length) {
 				
+				//	buffer structural invocation if in parallel for loop body
+				ArrayList edits = (this.structural ? ((ArrayList) structuralEdits.get()) : null);
+				if (edits != null) {
+					GPathVariableResolver variables = new GPathVariableResolver(inLineBindings);
+					String[] inLineVariables = inLineBindings.getVariableNames();
+					for (int v = 0; v < inLineVariables.length; v++)
+						variables.setVariable(inLineVariables[v], inLineBindings.getVariable(inLineVariables[v]));
+					edits.add(new StructuralEdit(this.function, data, ((GPathObject[]) parameterValues.clone()), variables));
+					return new String[0];
+				}
+				
 				//	write debug info
 				if (debug != null) {
 					String[] pValues = new String[parameterValues.length];
@@ -2338,8 +2355,16 @@ public class GScript {
 						GPathAnnotationSet gpas = new GPathAnnotationSet();
 						String pathExpression = resolvedParameterDefinitions[pIndex].asString().value;
 						
+						//	use pre-parsed path if parameter is literal
+						GPath path = ((resolvedParameterDefinitions[pIndex] == this.parameterDefinitions[pIndex]) ? this.parameterPaths[pIndex] : null);
+						if (path != null) {
+							QueriableAnnotation[] annotations = GPath.evaluatePath(data, path, inLineBindings);
+							for (int a = 0; a < annotations.length; a++)
+								gpas.add(annotations[a]);
+						}
+						
 						//	check if value OK
-						if (pathExpression.length() != 0) {
+						else if (pathExpression.length() != 0) {
 							
 							//	cut annotation set constructor brackets
 							if (isAnnotationSetConstructor(pathExpression))
@@ -2347,7 +2372,7 @@ public class GScript {
 							
 							//	annotation set constructor coded as expression
 							else if (isExpression(pathExpression)) {
-								GPathObject exRes = GPath.evaluateExpression(pathExpression, data, inLineBindings);
+								GPathObject exRes = this.evaluateExpression(data, resolvedParameterDefinitions, pIndex, inLineBindings);
 								pathExpression = exRes.asString().value;
 								
 								//	write debug info
@@ -2379,14 +2404,15 @@ public class GScript {
 					
 					//	check if annotation set constructor
 					else {
+						GPath path = ((resolvedParameterDefinitions[pIndex] == this.parameterDefinitions[pIndex]) ? this.parameterPaths[pIndex] : null);
 						String pathExpression = resolvedParameterDefinitions[pIndex].asString().value;
-						if (isAnnotationSetConstructor(pathExpression)) {
-							
-							//	cut annotation set constructor brackets
-							pathExpression = pathExpression.substring(1, (pathExpression.length() - 1));
+						if ((path != null) || isAnnotationSetConstructor(pathExpression)) {
 							
-							//	create annotation set
-							QueriableAnnotation[] annotations = GPath.evaluatePath(data, pathExpression, inLineBindings);
+							//	create annotation set, from pre-parsed path if possible
+							QueriableAnnotation[] annotations;
+							if (path == null)
+								annotations = GPath.evaluatePath(data, pathExpression.substring(1, (pathExpression.length() - 1)), inLineBindings);
+							else annotations = GPath.evaluatePath(data, path, inLineBindings);
 							gpas = new GPathAnnotationSet();
 							for (int a = 0; a < annotations.length; a++)
 								gpas.add(annotations[a]);
@@ -2396,15 +2422,14 @@ public class GScript {
 					//	regular value
 					if (gpas == null) {
 						
-						//	execute expression if given
+						//	execute expression if given, deferring evaluation if it fails here due to non-existing inline binding
 						GPathObject gpo = null;
-						if (isExpression(resolvedParameterDefinitions[pIndex].asString().value)) {
-							
-							//	cut expression brackets
-							String pathExpression = resolvedParameterDefinitions[pIndex].asString().value;
-							
-							//	evaluate expression
-							gpo = GPath.evaluateExpression(pathExpression, data, inLineBindings);
+						if (isExpression(resolvedParameterDefinitions[pIndex].asString().value)) try {
+							gpo = this.evaluateExpression(data, resolvedParameterDefinitions, pIndex, inLineBindings);
+						}
+						catch (VariableNotBoundException vnbe) {
+							if (!vnbe.getMessage().matches(".*\\$[1-9].*"))
+								throw vnbe;
 						}
 						
 						//	set inline binding
@@ -2461,6 +2486,14 @@ public class GScript {
 				return resultCollector.toStringArray();
 			}
 		}
+		
+		private GPathObject evaluateExpression(MutableAnnotation data, GPathObject[] resolvedParameterDefinitions, int pIndex, GPathVariableResolver inLineBindings) {
+			GPathExpression expression = ((resolvedParameterDefinitions[pIndex] == this.parameterDefinitions[pIndex]) ? this.parameterExpressions[pIndex] : null);
+			if (expression == null)
+				return GPath.evaluateExpression(resolvedParameterDefinitions[pIndex].asString().value, data, inLineBindings);
+			else return GPath.evaluateExpression(expression, data, inLineBindings);
+		}
+		
 		String toString(String indent) {
 			StringBuffer string = new StringBuffer(indent + this.command);
 			for (int p = 0; p < this.parameterDefinitions.length; p++) {
@@ -2492,6 +2525,7 @@ public class GScript {
 		final String variable;
 		final GPath annotationSetDefinition;
 		private GScript script;
+		private String scriptString;
 		GScriptInvocation(String command, String scriptName, String variable, GPath annotationSetDefinition, Set toResolve) {
 			super(command);
 			this.scriptName = scriptName;
@@ -2505,24 +2539,35 @@ public class GScript {
 			//	obtain local sub script
 			this.script = ((GScript) localScriptNameResolver.get(this.scriptName));
 			
-			//	not found, check global resolvers
-			if (this.script == null) {
-				String scriptString = resolveScriptName(this.scriptName);
-				if (scriptString != null)
-					this.script = compileScript(parseScript(scriptString));
-			}
+			//	not found, check global resolvers (compile only on first execution, as included script might include this one)
+			if (this.script == null)
+				this.scriptString = resolveScriptName(this.scriptName);
 			
 			//	not found
-			if (this.script == null)
+			if ((this.script == null) && (this.scriptString == null))
 				throw new GScriptException("Cannot resolve included script name: '" + this.scriptName + "'");
 		}
 		
-		String[] execute(MutableAnnotation data, GPathVariableResolver globalBindings, DebugLogger debug) throws GScriptException {
+		/* resolve and compile script on first actual execution, so includes never taken do not fail */
+		private synchronized GScript getScript() throws GScriptException {
+			if (this.script != null)
+				return this.script;
+			
+			//	not resolved before (interpreter mode), check global resolvers
+			if (this.scriptString == null)
+				this.scriptString = resolveScriptName(this.scriptName);
 			
 			//	not found
-			if (this.script == null)
+			if (this.scriptString == null)
 				throw new GScriptException("Cannot resolve included script name: '" + this.scriptName + "'");
 			
+			//	compile script
+			this.script = compileScript(parseScript(this.scriptString));
+			this.scriptString = null;
+			return this.script;
+		}
+		
+		String[] execute(MutableAnnotation data, GPathVariableResolver globalBindings, DebugLogger debug) throws GScriptException {
 			StringVector results = new StringVector();
 			
 			//	include to variable
@@ -2543,7 +2588,7 @@ public class GScript {
 					MutableAnnotation[] dataAnnotations = data.getMutableAnnotations();
 					for (int a = 0; a < dataAnnotations.length; a++)
 						if (annotationIDs.contains(dataAnnotations[a].getAnnotationID())) {
-							String[] scriptResults = this.script.execute(dataAnnotations[a], this.getResolver(globalBindings), debug);
+							String[] scriptResults = this.getScript().execute(dataAnnotations[a], this.getResolver(globalBindings), debug);
 							results.addContent(scriptResults);
 						}
 				}
@@ -2563,7 +2608,7 @@ public class GScript {
 				MutableAnnotation[] dataAnnotations = data.getMutableAnnotations();
 				for (int a = 0; a < dataAnnotations.length; a++)
 					if (annotationIDs.contains(dataAnnotations[a].getAnnotationID())) {
-						String[] scriptResults = this.script.execute(dataAnnotations[a], this.getResolver(globalBindings), debug);
+						String[] scriptResults = this.getScript().execute(dataAnnotations[a], this.getResolver(globalBindings), debug);
 						results.addContent(scriptResults);
 					}
 			}
@@ -2572,7 +2617,7 @@ public class GScript {
 			else {
 				
 				//	execute called script & move on to next command
-				String[] scriptResults = this.script.execute(data, this.getResolver(globalBindings), debug);
+				String[] scriptResults = this.getScript().execute(data, this.getResolver(globalBindings), debug);
 				results.addContent(scriptResults);
 			}
 			
@@ -2636,19 +2681,6 @@ public class GScript {
 		}
 	}
 	
-	/**
-	 * A pair of a condition and the assigned statement in if-elseIf-else blocks
-	 * 
-	 * @author sautter
-	 */
-	private static class CcPair {
-		final String condition;
-		String[] command;
-		CcPair(String condition) {
-			this.condition = condition;
-		}
-	}
-	
 	/**
 	 * Specify an inplementation of this interface as the last argument to the
 	 * executeScript(DocumentPart, String[], int, int, Properties, DebugLogger)
@@ -2720,6 +2752,85 @@ public class GScript {
 		 */
 		public void variableAssigned(String name, String value) {}
 	}
+	
+	/**
+	 * Benchmark for executing a loop-heavy cleanup script on a large document,
+	 * both in interpreter mode (compiling on every call) and from a script
+	 * compiled beforehand. Takes the number of paragraphs to generate as an
+	 * optional first argument, defaulting to 10,000.
+	 * @param args the arguments
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		int paragraphs = ((args.length == 0) ? 10000 : Integer.parseInt(args[0]));
+		StringBuffer text = new StringBuffer();
+		for (int p = 0; p < paragraphs; p++)
+			text.append("This is paragraph number " + p + " of the benchmark document, it has a few more words in it. ");
+		MutableAnnotation doc = Gamta.newDocument(Gamta.newTokenSequence(text, Gamta.INNER_PUNCTUATION_TOKENIZER));
+		int pStart = 0;
+		for (int t = 0; t < doc.size(); t++)
+			if (".".equals(doc.valueAt(t))) {
+				Annotation paragraph = doc.addAnnotation(MutableAnnotation.PARAGRAPH_TYPE, pStart, (t - pStart + 1));
+				paragraph.setAttribute("junk", "junk");
+				if ((t % 3) == 0)
+					paragraph.setAttribute("pageNumber", ("" + (t / 100)));
+				pStart = (t + 1);
+			}
+		System.out.println("Document generated with " + doc.size() + " tokens and " + paragraphs + " paragraphs");
+		
+		String script = 
+			"for $p {//paragraph}\n" +
+			"  def $n {$p/@pageNumber}\n" +
+			"  if ($n and not($n = ''))\n" +
+			"    setAttribute $p 'checked' 'true'\n" +
+			"  else\n" +
+			"    setAttribute $p 'pageNumber' ('0')\n" +
+			"  removeAttribute {$p[./@junk]} 'junk'\n" +
+			"  setAttribute {$p} 'junk' 'junk'\n" +
+			"end $p";
+		
+		GScript compiled = compile(script);
+		GScript parallel = compile(START_PARALLEL_FOR_LOOP_COMMAND + script.substring(START_FOR_LOOP_COMMAND.length()));
+		for (int r = 0; r < 5; r++) {
+			long start = System.currentTimeMillis();
+			executeScript(doc, script);
+			long interpreted = (System.currentTimeMillis() - start);
+			start = System.currentTimeMillis();
+			compiled.execute(doc);
+			long precompiled = (System.currentTimeMillis() - start);
+			start = System.currentTimeMillis();
+			parallel.execute(doc);
+			long parallelized = (System.currentTimeMillis() - start);
+			System.out.println("Round " + r + ": interpreter mode " + interpreted + "ms, pre-compiled " + precompiled + "ms, parallel loop " + parallelized + "ms");
+		}
+		
+		//	check that structural edits buffered in parallel loop have the same effect as in sequential loop
+		String structuralScript = 
+			"for $p {//paragraph}\n" +
+			"  rename {$p/marker} 'checkedMarker'\n" +
+			"  annotate 'firstWord' ($p/@START_INDEX) ($p/@START_INDEX + 1)\n" +
+			"  setAttribute {$p} 'checked' 'true'\n" +
+			"end $p";
+		Annotation[][] checkAnnotations = new Annotation[2][];
+		for (int d = 0; d < checkAnnotations.length; d++) {
+			MutableAnnotation checkDoc = Gamta.newDocument(Gamta.newTokenSequence(text.substring(0, (text.length() / 10)), Gamta.INNER_PUNCTUATION_TOKENIZER));
+			pStart = 0;
+			for (int t = 0; t < checkDoc.size(); t++)
+				if (".".equals(checkDoc.valueAt(t))) {
+					checkDoc.addAnnotation(MutableAnnotation.PARAGRAPH_TYPE, pStart, (t - pStart + 1));
+					checkDoc.addAnnotation("marker", (pStart + 3), 1);
+					pStart = (t + 1);
+				}
+			if (d == 0)
+				compile(structuralScript).execute(checkDoc);
+			else compile(START_PARALLEL_FOR_LOOP_COMMAND + structuralScript.substring(START_FOR_LOOP_COMMAND.length())).execute(checkDoc);
+			checkAnnotations[d] = checkDoc.getAnnotations();
+		}
+		boolean structuralCheck = (checkAnnotations[0].length == checkAnnotations[1].length);
+		for (int a = 0; structuralCheck && (a < checkAnnotations[0].length); a++)
+			structuralCheck = (checkAnnotations[0][a].getType().equals(checkAnnotations[1][a].getType()) && (checkAnnotations[0][a].getStartIndex() == checkAnnotations[1][a].getStartIndex()) && (checkAnnotations[0][a].size() == checkAnnotations[1][a].size()) && (checkAnnotations[0][a].hasAttribute("checked") == checkAnnotations[1][a].hasAttribute("checked")));
+		System.out.println("Structural edits in parallel loop: " + checkAnnotations[1].length + " annotations, check " + (structuralCheck ? "passed" : "failed"));
+	}
 //	
 //	public static void main(String[] args) throws Exception {
 //		String docId = "8AD0DAEF2180649D27DBA7CE08E4FF93"; // Anochetus boltoni
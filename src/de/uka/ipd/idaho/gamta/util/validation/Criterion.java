@@ -111,13 +111,16 @@ public class Criterion extends ProcessPart {
 		}
 		
 		ValidationResult validate(QueriableAnnotation[] annotations) {
+			long start = System.nanoTime();
 			try {
 				ArrayList failedList = new ArrayList();
 				for (int a = 0; a < annotations.length; a++) {
 					if (GPath.evaluateExpression(this.predicate, annotations[a], null).asBoolean().value)
 						failedList.add(annotations[a]);
 				}
-				return new CriterionValidationResult(this, annotations.length, ((Annotation[]) failedList.toArray(new Annotation[failedList.size()])));
+				CriterionValidationResult criterionResult = new CriterionValidationResult(this, annotations.length, ((Annotation[]) failedList.toArray(new Annotation[failedList.size()])));
+				criterionResult.validationTime = (System.nanoTime() - start);
+				return criterionResult;
 			}
 			catch (GPathException gpe) {
 				return new CriterionValidationResult(this, 0, 0);
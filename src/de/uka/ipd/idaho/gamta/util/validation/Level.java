@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
 import de.uka.ipd.idaho.gamta.QueriableAnnotation;
 import de.uka.ipd.idaho.gamta.util.validation.Validator.AbstractValidationResult;
@@ -148,17 +149,27 @@ public class Level extends ProcessPart {
 		 * @see de.uka.ipd.idaho.gamta.util.validation.Validator#validate(de.uka.ipd.idaho.gamta.MutableAnnotation)
 		 */
 		public ValidationResult validate(QueriableAnnotation data) {
+			return this.validate(data, new HashMap());
+		}
+		
+		/*
+		 * @see de.uka.ipd.idaho.gamta.util.validation.Validator#validate(de.uka.ipd.idaho.gamta.QueriableAnnotation, java.util.Map)
+		 */
+		ValidationResult validate(QueriableAnnotation data, Map contextInstances) {
+			long start = System.nanoTime();
 			String firstError = null;
 			ValidationResult[] taskResults = new ValidationResult[this.tasks.length];
 			for (int t = 0; t < this.tasks.length; t++) {
 				if (firstError == null) {
-					ValidationResult tvr = this.tasks[t].validate(data);
+					ValidationResult tvr = this.tasks[t].validate(data, contextInstances);
 					taskResults[t] = tvr;
 					firstError = tvr.getErrorDescription();
 				}
 				else taskResults[t] = new SkippedPartResult(this.tasks[t]);
 			}
-			return new LevelValidationResult(this, firstError, taskResults/*, criterionResults*/);
+			LevelValidationResult levelResult = new LevelValidationResult(this, firstError, taskResults/*, criterionResults*/);
+			levelResult.validationTime = (System.nanoTime() - start);
+			return levelResult;
 		}
 		
 		/*
@@ -38,6 +38,7 @@ import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
 import de.uka.ipd.idaho.gamta.QueriableAnnotation;
 import de.uka.ipd.idaho.gamta.util.validation.Validator.AbstractValidationResult;
@@ -153,17 +154,27 @@ public class Process extends ProcessPart {
 		 * @see de.uka.ipd.idaho.gamta.util.validation.Validator#validate(de.uka.ipd.idaho.gamta.MutableAnnotation)
 		 */
 		public ValidationResult validate(QueriableAnnotation data) {
+			return this.validate(data, new HashMap());
+		}
+		
+		/*
+		 * @see de.uka.ipd.idaho.gamta.util.validation.Validator#validate(de.uka.ipd.idaho.gamta.QueriableAnnotation, java.util.Map)
+		 */
+		ValidationResult validate(QueriableAnnotation data, Map contextInstances) {
+			long start = System.nanoTime();
 			String firstError = null;
 			ValidationResult[] levelResults = new ValidationResult[this.levels.length];
 			for (int l = 0; l < this.levels.length; l++) {
 				if (firstError == null) {
-					ValidationResult svr = this.levels[l].validate(data);
+					ValidationResult svr = this.levels[l].validate(data, contextInstances);
 					levelResults[l] = svr;
 					firstError = svr.getErrorDescription();
 				}
 				else levelResults[l] = new SkippedPartResult(this.levels[l]);
 			}
-			return new ProcessValidationResult(this, firstError, levelResults);
+			ProcessValidationResult processResult = new ProcessValidationResult(this, firstError, levelResults);
+			processResult.validationTime = (System.nanoTime() - start);
+			return processResult;
 		}
 		
 		/*
@@ -38,6 +38,8 @@ import java.util.Map;
 
 import de.uka.ipd.idaho.gamta.Annotation;
 import de.uka.ipd.idaho.gamta.QueriableAnnotation;
+import de.uka.ipd.idaho.gamta.util.ParallelJobRunner;
+import de.uka.ipd.idaho.gamta.util.ParallelJobRunner.ParallelFor;
 import de.uka.ipd.idaho.gamta.util.gPath.GPath;
 import de.uka.ipd.idaho.gamta.util.gPath.exceptions.GPathException;
 import de.uka.ipd.idaho.gamta.util.validation.Criterion.CriterionValidationResult;
@@ -115,6 +117,7 @@ public class Step extends ProcessPart {
 	
 	private static class StepValidator extends Validator {
 		
+		private String context;
 		private GPath contextPath;
 		private CriterionValidator[] criterions;
 		
@@ -122,6 +125,7 @@ public class Step extends ProcessPart {
 		
 		StepValidator(String context, CriterionValidator[] criterions, String name, String label, String description, String errorDescription) {
 			super(name, label, description, errorDescription);
+			this.context = context;
 			this.contextPath = new GPath(context);
 			this.criterions = criterions;
 			for (int c = 0; c < this.criterions.length; c++)
@@ -132,19 +136,45 @@ public class Step extends ProcessPart {
 		 * @see de.uka.ipd.idaho.gamta.util.validation.Validator#validate(de.uka.ipd.idaho.gamta.MutableAnnotation)
 		 */
 		public ValidationResult validate(QueriableAnnotation data) {
+			return this.validate(data, new HashMap());
+		}
+		
+		/*
+		 * @see de.uka.ipd.idaho.gamta.util.validation.Validator#validate(de.uka.ipd.idaho.gamta.QueriableAnnotation, java.util.Map)
+		 */
+		ValidationResult validate(QueriableAnnotation data, Map contextInstances) {
+			long start = System.nanoTime();
 			if (this.failIgnoreAttribute == null)
 				this.failIgnoreAttribute = ("_ignore_" + this.getFullName().hashCode());
 			
 			try {
 				
-				//	get context instances
-				QueriableAnnotation[] instances = this.contextPath.evaluate(data, null);
+				//	get context instances (shared with other steps using the same context)
+				QueriableAnnotation[] cInstances = ((QueriableAnnotation[]) contextInstances.get(this.context));
+				if (cInstances == null) {
+					cInstances = this.contextPath.evaluate(data, null);
+					contextInstances.put(this.context, cInstances);
+				}
+				final QueriableAnnotation[] instances = cInstances;
+				
+				//	validate individual criterions (in parallel, as they only read the document)
+				final CriterionValidationResult[] criterionResults = new CriterionValidationResult[this.criterions.length];
+				ParallelFor pf = new ParallelFor() {
+					public void doFor(int index) throws Exception {
+						criterionResults[index] = ((CriterionValidationResult) criterions[index].validate(instances));
+					}
+				};
+				ParallelJobRunner.runParallelFor(pf, this.criterions.length, ((instances.length == 0) ? 1 : -1));
+				if (pf.hasException()) {
+					Exception e = pf.getException();
+					if (e instanceof RuntimeException)
+						throw ((RuntimeException) e);
+					else throw new RuntimeException(e);
+				}
 				
-				//	collect annotations failing individual criterions
+				//	collect annotations failing individual criterions (in criterion order, to keep error details in order)
 				HashMap errorDetailLists = new HashMap();
-				CriterionValidationResult[] criterionResults = new CriterionValidationResult[this.criterions.length];
 				for (int c = 0; c < this.criterions.length; c++) {
-					criterionResults[c] = ((CriterionValidationResult) this.criterions[c].validate(instances));
 					Annotation[] failed = criterionResults[c].getFailed();
 					for (int f = 0; f < failed.length; f++)
 						if (!"true".equals(failed[f].getAttribute(this.failIgnoreAttribute))) {
@@ -167,7 +197,9 @@ public class Step extends ProcessPart {
 				}
 				
 				//	return validation result
-				return new StepValidationResult(this, instances, errorDetails, criterionResults);
+				StepValidationResult stepResult = new StepValidationResult(this, instances, errorDetails, criterionResults);
+				stepResult.validationTime = (System.nanoTime() - start);
+				return stepResult;
 			}
 			catch (GPathException gpe) {
 				return new StepValidationResult(this, 0, 0);
@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
 import de.uka.ipd.idaho.gamta.QueriableAnnotation;
 import de.uka.ipd.idaho.gamta.util.validation.Validator.AbstractValidationResult;
@@ -118,17 +119,27 @@ public class Task extends ProcessPart {
 		 * @see de.uka.ipd.idaho.gamta.util.validation.Validator#validate(de.uka.ipd.idaho.gamta.MutableAnnotation)
 		 */
 		public ValidationResult validate(QueriableAnnotation data) {
+			return this.validate(data, new HashMap());
+		}
+		
+		/*
+		 * @see de.uka.ipd.idaho.gamta.util.validation.Validator#validate(de.uka.ipd.idaho.gamta.QueriableAnnotation, java.util.Map)
+		 */
+		ValidationResult validate(QueriableAnnotation data, Map contextInstances) {
+			long start = System.nanoTime();
 			String firstError = null;
 			ValidationResult[] stepResults = new ValidationResult[this.steps.length];
 			for (int s = 0; s < this.steps.length; s++) {
 				if (firstError == null) {
-					ValidationResult svr = this.steps[s].validate(data);
+					ValidationResult svr = this.steps[s].validate(data, contextInstances);
 					stepResults[s] = svr;
 					firstError = svr.getErrorDescription();
 				}
 				else stepResults[s] = new SkippedPartResult(this.steps[s]);
 			}
-			return new TaskValidationResult(this, firstError, stepResults);
+			TaskValidationResult taskResult = new TaskValidationResult(this, firstError, stepResults);
+			taskResult.validationTime = (System.nanoTime() - start);
+			return taskResult;
 		}
 		
 		/*
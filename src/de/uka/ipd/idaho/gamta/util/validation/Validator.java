@@ -30,6 +30,7 @@ package de.uka.ipd.idaho.gamta.util.validation;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Map;
 
 import de.uka.ipd.idaho.gamta.QueriableAnnotation;
 
@@ -52,6 +53,7 @@ public abstract class Validator {
 	public static abstract class AbstractValidationResult implements ValidationResult {
 		protected Validator validator;
 		protected String description;
+		protected long validationTime = 0;
 		/**
 		 * Constructor
 		 * @param validator the validator that created the result
@@ -66,6 +68,20 @@ public abstract class Validator {
 		public Validator getValidator() {
 			return this.validator;
 		}
+		/**
+		 * Retrieve the time spent on producing the validation result. This
+		 * method is not part of the ValidationResult interface, so client
+		 * code has to check for this class before calling it.
+		 * @return the time spent on producing the validation result, in
+		 *         nanoseconds, or 0 if the result was not produced by an
+		 *         actual validation, e.g. if it was loaded from its XML
+		 *         representation; for results of parts whose criterions are
+		 *         validated in parallel, this is the elapsed time, so it can
+		 *         be less than the sum of the times of the partial results
+		 */
+		public long getValidationTime() {
+			return this.validationTime;
+		}
 		/* (non-Javadoc)
 		 * @see de.uka.ipd.idaho.goldenGateScf.cms.process.ValidationResult#getFailureRate()
 		 */
@@ -204,6 +220,27 @@ public abstract class Validator {
 	 */
 	public abstract ValidationResult validate(QueriableAnnotation data);
 	
+	/**
+	 * Test whether a document complies with the requirements of this
+	 * Validator, sharing the annotations selected by context paths with other
+	 * validators in the same validation run. This default implementation
+	 * simply loops through to the single-argument version of this method.
+	 * The built-in process, level, and task validators hand the argument map
+	 * down to their parts, and step validators take the annotations selected
+	 * by their context paths from the map, or evaluate the context paths and
+	 * add the result to the map, so each context path is evaluated only once
+	 * per validation run. As the map is
+	 * filled in the course of a validation run, the document must not be
+	 * modified before the run is finished.
+	 * @param data the document to test
+	 * @param contextInstances a map holding the annotations selected by
+	 *            context paths, keyed by the context paths proper
+	 * @return a ValidationResult describing the result of the test
+	 */
+	ValidationResult validate(QueriableAnnotation data, Map contextInstances) {
+		return this.validate(data);
+	}
+	
 	/**
 	 * @return a name identifying the Validator, in particular the name of the
 	 *         backing markup process part
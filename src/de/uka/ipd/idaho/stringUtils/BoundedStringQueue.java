@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.stringUtils;
+
+
+/**
+ * A ConcurrentStringQueue with a capacity limit. The addLast() and addAll()
+ * methods block while the queue is full, until consuming threads make room or
+ * the queue is cleared. This exerts back-pressure on producing threads that
+ * are faster than the consuming ones, keeping the memory consumption of the
+ * queue in check. The offerLast() methods return instead of blocking if the
+ * queue is full.
+ * 
+ * @author sautter
+ */
+public class BoundedStringQueue extends ConcurrentStringQueue {
+	
+	/**	Constructor
+	 * @param	capacity	the maximum number of Strings in the queue
+	 */
+	public BoundedStringQueue(int capacity) {
+		super(capacity);
+	}
+	
+	/**	add a String to the end of this Queue if there is room for it, without blocking
+	 * @param	s	the String to be added 
+	 * @return	true if the String was added, false if the queue is full
+	 */
+	public boolean offerLast(String s) {
+		return (this.offer(new String[] {s}, 0, 1, -1) == 1);
+	}
+	
+	/**	add a String to the end of this Queue, waiting for the timeout if the queue is full
+	 * @param	s			the String to be added 
+	 * @param	timeout		the number of seconds to wait if the queue is full
+	 * @return	true if the String was added, false if the queue remained full until the timeout was over
+	 */
+	public boolean offerLast(String s, int timeout) {
+		return (this.offer(new String[] {s}, 0, 1, Math.max(timeout, 1)) == 1);
+	}
+	
+	/**	add as many Strings from an array to the end of this Queue as there is room for, without blocking
+	 * @param	strings		the array holding the Strings to be added
+	 * @param	offset		the index of the first String to add
+	 * @param	count		the number of Strings to add
+	 * @return	the number of Strings added
+	 */
+	public int offerAll(String[] strings, int offset, int count) {
+		return this.offer(strings, offset, count, -1);
+	}
+	
+	/**	@return	the maximum number of Strings in the queue
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+	
+	/**	@return	the number of Strings that can be added without blocking
+	 */
+	public int remainingCapacity() {
+		return Math.max(0, (this.capacity - this.size()));
+	}
+}
@@ -0,0 +1,847 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.stringUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Immutable, compact Dictionary. All entries are stored as UTF-8 bytes in a
+ * single byte buffer, sorted in byte order. Entries are front coded in blocks
+ * of a fixed number of entries, i.e., each entry only stores the suffix it
+ * does not share with its predecessor, except for the first entry in each
+ * block, which is stored in full. Lookups binary search the block heads and
+ * then scan a single block. For case insensitive lookups, a second section
+ * holds the distinct case folded entries. With the front coding, sorted
+ * lists of names and places take up about as many bytes as the list file
+ * they are built from, a small fraction of the memory required by a
+ * StringVector, which holds every entry as a String object, plus two
+ * indexes.<br>
+ * Beside exact lookups, the dictionary supports prefix lookups, which tell
+ * whether or not any entries start with a given string, and enumerate these
+ * entries.<br>
+ * The byte buffer can be written to a file and memory mapped from there, so
+ * the dictionary can be opened without parsing any entries, and the
+ * operating system can share the dictionary data between processes. As all
+ * reads from the buffer are absolute, instances of this class are thread
+ * safe. The <code>main()</code> method converts list files into dictionary
+ * files.
+ * 
+ * @author sautter
+ */
+public class CompactDictionary implements Dictionary {
+	private static final int MAGIC = 0x43444943; // 'CDIC'
+	private static final int VERSION_PLAIN = 1;
+	private static final int VERSION_FRONT_CODED = 2;
+	
+	/*
+	 * Buffer layout of version 1 (big endian):
+	 * - int magic number
+	 * - int format version
+	 * - int default case sensitivity (1 or 0)
+	 * - int number of entries
+	 * - int number of case folded entries
+	 * - int[number of entries + 1] start offsets of entries in data
+	 * - int[number of case folded entries + 1] start offsets of case folded entries in data
+	 * - byte[] data (entries, then case folded entries)
+	 * 
+	 * Buffer layout of version 2 (big endian):
+	 * - int magic number
+	 * - int format version
+	 * - int default case sensitivity (1 or 0)
+	 * - int number of entries
+	 * - int number of case folded entries
+	 * - int number of entries per block
+	 * - int[number of entry blocks + 1] start offsets of entry blocks in data
+	 * - int[number of case folded entry blocks + 1] start offsets of case folded entry blocks in data
+	 * - int[number of entry blocks] first four bytes of first entry in each block, padded with 0
+	 * - int[number of case folded entry blocks] first four bytes of first case folded entry in each block, padded with 0
+	 * - byte[] data (entries, then case folded entries)
+	 * Each entry in the data consists of the number of leading bytes shared
+	 * with the previous entry (always 0 for the first entry in a block), the
+	 * number of remaining bytes, both as variable length integers, and the
+	 * remaining bytes proper.
+	 * 
+	 * The block head prefixes keep the first steps of a binary search in a
+	 * small, contiguous part of the buffer. Version 1 is read as a version 2
+	 * dictionary with single-entry blocks whose entries lack the two length
+	 * prefixes, and without block head prefixes.
+	 */
+	private static final int HEADER_SIZE_PLAIN = 20;
+	private static final int HEADER_SIZE_FRONT_CODED = 24;
+	
+	private static final int DEFAULT_BLOCK_SIZE = 8;
+	
+	private final ByteBuffer buffer;
+	private final boolean caseSensitive;
+	private final Section entries;
+	private final Section folded;
+	
+	private CompactDictionary(ByteBuffer buffer, boolean caseSensitive) {
+		this.buffer = buffer;
+		if (this.buffer.getInt(0) != MAGIC)
+			throw new IllegalArgumentException("Invalid dictionary data");
+		int version = this.buffer.getInt(4);
+		this.caseSensitive = caseSensitive;
+		int entryCount = this.buffer.getInt(12);
+		int foldedCount = this.buffer.getInt(16);
+		if (version == VERSION_PLAIN) {
+			int foldedOffsetsStart = (HEADER_SIZE_PLAIN + ((entryCount + 1) * 4));
+			int dataStart = (foldedOffsetsStart + ((foldedCount + 1) * 4));
+			this.entries = new Section(entryCount, 1, HEADER_SIZE_PLAIN, -1, dataStart, false);
+			this.folded = new Section(foldedCount, 1, foldedOffsetsStart, -1, dataStart, false);
+		}
+		else if (version == VERSION_FRONT_CODED) {
+			int blockSize = this.buffer.getInt(20);
+			int entryBlockCount = getBlockCount(entryCount, blockSize);
+			int foldedBlockCount = getBlockCount(foldedCount, blockSize);
+			int foldedOffsetsStart = (HEADER_SIZE_FRONT_CODED + ((entryBlockCount + 1) * 4));
+			int entryHeadsStart = (foldedOffsetsStart + ((foldedBlockCount + 1) * 4));
+			int foldedHeadsStart = (entryHeadsStart + (entryBlockCount * 4));
+			int dataStart = (foldedHeadsStart + (foldedBlockCount * 4));
+			this.entries = new Section(entryCount, blockSize, HEADER_SIZE_FRONT_CODED, entryHeadsStart, dataStart, true);
+			this.folded = new Section(foldedCount, blockSize, foldedOffsetsStart, foldedHeadsStart, dataStart, true);
+		}
+		else throw new IllegalArgumentException("Unsupported dictionary version " + version);
+	}
+	
+	private static int getBlockCount(int count, int blockSize) {
+		return ((count + blockSize - 1) / blockSize);
+	}
+	
+	/**
+	 * Wrap a byte buffer holding dictionary data, e.g. a buffer memory mapped
+	 * from a file written by the <code>store()</code> method. The buffer has
+	 * to start at position 0 of the dictionary data, and must not be modified
+	 * afterward.
+	 * @param buffer the buffer holding the dictionary data
+	 * @return a dictionary wrapping the argument buffer
+	 */
+	public static CompactDictionary wrap(ByteBuffer buffer) {
+		return new CompactDictionary(buffer, (buffer.getInt(8) != 0));
+	}
+	
+	/**
+	 * Load a dictionary from a file written by the <code>store()</code>
+	 * method. The file is memory mapped, so the data does not occupy any heap
+	 * space, and the file must not be modified while the dictionary is in use.
+	 * @param file the file to load the dictionary from
+	 * @return the dictionary
+	 * @throws IOException
+	 */
+	public static CompactDictionary load(File file) throws IOException {
+		return load(file, 0);
+	}
+	
+	/**
+	 * Load a dictionary from a file that contains the data written by the
+	 * <code>store()</code> method, starting at a given offset. The file is
+	 * memory mapped, so the data does not occupy any heap space, and the file
+	 * must not be modified while the dictionary is in use.
+	 * @param file the file to load the dictionary from
+	 * @param offset the offset of the dictionary data in the file
+	 * @return the dictionary
+	 * @throws IOException
+	 */
+	public static CompactDictionary load(File file, long offset) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel fc = raf.getChannel();
+			ByteBuffer buffer = fc.map(FileChannel.MapMode.READ_ONLY, offset, (fc.size() - offset));
+			try {
+				return wrap(buffer);
+			}
+			catch (IllegalArgumentException iae) {
+				throw new IOException(iae.getMessage());
+			}
+		}
+		finally {
+			raf.close(); // mapping stays valid after closing
+		}
+	}
+	
+	/**
+	 * Build a dictionary from the entries of another one.
+	 * @param dictionary the dictionary to copy
+	 * @return the compact dictionary
+	 */
+	public static CompactDictionary build(Dictionary dictionary) {
+		return build(dictionary.getEntryIterator(), dictionary.isDefaultCaseSensitive());
+	}
+	
+	/**
+	 * Build a dictionary from an array of strings. Duplicates are eliminated.
+	 * @param entries the entries of the dictionary
+	 * @param caseSensitive the default case sensitivity of the dictionary
+	 * @return the compact dictionary
+	 */
+	public static CompactDictionary build(String[] entries, boolean caseSensitive) {
+		HashSet entrySet = new HashSet(Arrays.asList(entries));
+		return buildDistinct(((String[]) entrySet.toArray(new String[entrySet.size()])), caseSensitive);
+	}
+	
+	/**
+	 * Build a dictionary from the strings returned by an iterator. Duplicates
+	 * are eliminated.
+	 * @param entries an iterator over the entries of the dictionary
+	 * @param caseSensitive the default case sensitivity of the dictionary
+	 * @return the compact dictionary
+	 */
+	public static CompactDictionary build(StringIterator entries, boolean caseSensitive) {
+		HashSet entrySet = new HashSet();
+		while (entries.hasMoreStrings())
+			entrySet.add(entries.nextString());
+		return buildDistinct(((String[]) entrySet.toArray(new String[entrySet.size()])), caseSensitive);
+	}
+	
+	/**
+	 * Build a dictionary from a list in the format written by the
+	 * <code>storeContent()</code> methods of StringVector, i.e., one entry per
+	 * line, with line breaks inside entries substituted with the default line
+	 * separator. Duplicates are eliminated. Unlike loading the list into a
+	 * StringVector, this does not build any intermediate indexes.
+	 * @param list the reader to read the list from
+	 * @param caseSensitive the default case sensitivity of the dictionary
+	 * @return the compact dictionary
+	 * @throws IOException
+	 */
+	public static CompactDictionary build(Reader list, boolean caseSensitive) throws IOException {
+		BufferedReader br = ((list instanceof BufferedReader) ? ((BufferedReader) list) : new BufferedReader(list));
+		HashSet entrySet = new HashSet();
+		for (String line; (line = br.readLine()) != null;) {
+			if (line.indexOf(StringVector.LINE_SEPARATOR) != -1)
+				line = line.replaceAll(StringVector.LINE_SEPARATOR, "\n");
+			entrySet.add(line);
+		}
+		return buildDistinct(((String[]) entrySet.toArray(new String[entrySet.size()])), caseSensitive);
+	}
+	
+	private static CompactDictionary buildDistinct(String[] entries, boolean caseSensitive) {
+		byte[][] entryBytes = new byte[entries.length][];
+		HashSet foldedSet = new HashSet();
+		for (int e = 0; e < entries.length; e++) {
+			entryBytes[e] = encode(entries[e]);
+			foldedSet.add(foldCase(entries[e]));
+		}
+		byte[][] foldedBytes = new byte[foldedSet.size()][];
+		int f = 0;
+		for (Iterator fit = foldedSet.iterator(); fit.hasNext();)
+			foldedBytes[f++] = encode((String) fit.next());
+		foldedSet = null; // allow for garbage collection
+		Arrays.sort(entryBytes, byteOrder);
+		Arrays.sort(foldedBytes, byteOrder);
+		
+		int blockSize = DEFAULT_BLOCK_SIZE;
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		int[] entryBlockOffsets = frontCode(entryBytes, blockSize, data);
+		int[] foldedBlockOffsets = frontCode(foldedBytes, blockSize, data);
+		
+		int entryBlockCount = (entryBlockOffsets.length - 1);
+		int foldedBlockCount = (foldedBlockOffsets.length - 1);
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE_FRONT_CODED + ((entryBlockOffsets.length + foldedBlockOffsets.length + entryBlockCount + foldedBlockCount) * 4) + data.size());
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION_FRONT_CODED);
+		buffer.putInt(caseSensitive ? 1 : 0);
+		buffer.putInt(entryBytes.length);
+		buffer.putInt(foldedBytes.length);
+		buffer.putInt(blockSize);
+		for (int b = 0; b < entryBlockOffsets.length; b++)
+			buffer.putInt(entryBlockOffsets[b]);
+		for (int b = 0; b < foldedBlockOffsets.length; b++)
+			buffer.putInt(foldedBlockOffsets[b]);
+		for (int b = 0; b < entryBlockCount; b++)
+			buffer.putInt(getHeadPrefix(entryBytes[b * blockSize]));
+		for (int b = 0; b < foldedBlockCount; b++)
+			buffer.putInt(getHeadPrefix(foldedBytes[b * blockSize]));
+		buffer.put(data.toByteArray());
+		buffer.position(0);
+		return new CompactDictionary(buffer, caseSensitive);
+	}
+	
+	/* front code sorted entries into the argument data stream, returning block offsets */
+	private static int[] frontCode(byte[][] entryBytes, int blockSize, ByteArrayOutputStream data) {
+		int[] blockOffsets = new int[getBlockCount(entryBytes.length, blockSize) + 1];
+		for (int e = 0; e < entryBytes.length; e++) {
+			int shared = 0;
+			if ((e % blockSize) == 0)
+				blockOffsets[e / blockSize] = data.size();
+			else {
+				byte[] previous = entryBytes[e-1];
+				int maxShared = Math.min(previous.length, entryBytes[e].length);
+				while ((shared < maxShared) && (previous[shared] == entryBytes[e][shared]))
+					shared++;
+			}
+			writeVarInt(data, shared);
+			writeVarInt(data, (entryBytes[e].length - shared));
+			data.write(entryBytes[e], shared, (entryBytes[e].length - shared));
+		}
+		blockOffsets[blockOffsets.length - 1] = data.size();
+		return blockOffsets;
+	}
+	
+	/* pack first four bytes into an int, padding with 0 */
+	private static int getHeadPrefix(byte[] bytes) {
+		int prefix = 0;
+		for (int b = 0; b < 4; b++)
+			prefix = ((prefix << 8) | ((b < bytes.length) ? (bytes[b] & 0xFF) : 0));
+		return prefix;
+	}
+	
+	private static void writeVarInt(ByteArrayOutputStream data, int i) {
+		while (i >= 0x80) {
+			data.write((i & 0x7F) | 0x80);
+			i >>>= 7;
+		}
+		data.write(i);
+	}
+	
+	private static final Comparator byteOrder = new Comparator() {
+		public int compare(Object obj1, Object obj2) {
+			byte[] b1 = ((byte[]) obj1);
+			byte[] b2 = ((byte[]) obj2);
+			for (int b = 0; b < Math.min(b1.length, b2.length); b++) {
+				int c = ((b1[b] & 0xFF) - (b2[b] & 0xFF));
+				if (c != 0)
+					return c;
+			}
+			return (b1.length - b2.length);
+		}
+	};
+	
+	/**
+	 * Write the data of this dictionary to an output stream. The data can be
+	 * loaded back via the <code>load()</code> methods, or wrapped via the
+	 * <code>wrap()</code> method.
+	 * @param out the output stream to write to
+	 * @throws IOException
+	 */
+	public void store(OutputStream out) throws IOException {
+		DataOutputStream dos = new DataOutputStream(out);
+		ByteBuffer buffer = this.buffer.duplicate();
+		buffer.position(0);
+		byte[] bytes = new byte[1024 * 64];
+		dos.writeInt(buffer.getInt());
+		dos.writeInt(buffer.getInt());
+		dos.writeInt(this.caseSensitive ? 1 : 0);
+		buffer.getInt(); // skip original case sensitivity
+		while (buffer.hasRemaining()) {
+			int length = Math.min(bytes.length, buffer.remaining());
+			buffer.get(bytes, 0, length);
+			dos.write(bytes, 0, length);
+		}
+		dos.flush();
+	}
+	
+	/**
+	 * Obtain a view of this dictionary with a different default case
+	 * sensitivity. The view shares the data with this dictionary.
+	 * @param caseSensitive the default case sensitivity of the view
+	 * @return a dictionary with the argument default case sensitivity
+	 */
+	public CompactDictionary withDefaultCaseSensitivity(boolean caseSensitive) {
+		return ((caseSensitive == this.caseSensitive) ? this : new CompactDictionary(this.buffer, caseSensitive));
+	}
+	
+	/**
+	 * Retrieve the number of bytes the data of this dictionary occupies.
+	 * @return the size of the dictionary data
+	 */
+	public int getDataSize() {
+		return this.buffer.capacity();
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.stringUtils.Dictionary#lookup(java.lang.String)
+	 */
+	public boolean lookup(String string) {
+		return this.lookup(string, this.caseSensitive);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.stringUtils.Dictionary#lookup(java.lang.String, boolean)
+	 */
+	public boolean lookup(String string, boolean caseSensitive) {
+		if (string == null)
+			return false;
+		byte[] bytes = encode(caseSensitive ? string : foldCase(string));
+		Cursor cursor = (caseSensitive ? this.entries : this.folded).seek(bytes);
+		return ((cursor != null) && (cursor.compareTo(bytes) == 0));
+	}
+	
+	/**
+	 * Check whether or not any entries of this dictionary start with a given
+	 * prefix, using the dictionary's default case sensitivity. This is useful,
+	 * for instance, to stop extending a token sequence as soon as no entry can
+	 * match any more.
+	 * @param prefix the prefix to check
+	 * @return true if at least one entry starts with the argument prefix
+	 */
+	public boolean lookupPrefix(String prefix) {
+		return this.lookupPrefix(prefix, this.caseSensitive);
+	}
+	
+	/**
+	 * Check whether or not any entries of this dictionary start with a given
+	 * prefix. This is useful, for instance, to stop extending a token sequence
+	 * as soon as no entry can match any more.
+	 * @param prefix the prefix to check
+	 * @param caseSensitive do lookup case sensitive?
+	 * @return true if at least one entry starts with the argument prefix
+	 */
+	public boolean lookupPrefix(String prefix, boolean caseSensitive) {
+		if (prefix == null)
+			return false;
+		byte[] bytes = encode(caseSensitive ? prefix : foldCase(prefix));
+		Cursor cursor = (caseSensitive ? this.entries : this.folded).seek(bytes);
+		return ((cursor != null) && cursor.startsWith(bytes));
+	}
+	
+	/**
+	 * Retrieve an iterator over all entries of this dictionary that start with
+	 * a given prefix, in the byte order of their UTF-8 encoding. In case
+	 * insensitive mode, the iterator returns the case folded (lower case) forms
+	 * of the matching entries, as the dictionary does not keep track which
+	 * original entries a case folded entry stems from.
+	 * @param prefix the prefix of the entries to retrieve
+	 * @param caseSensitive do lookup case sensitive?
+	 * @return an iterator over the entries starting with the argument prefix
+	 */
+	public StringIterator getPrefixIterator(String prefix, boolean caseSensitive) {
+		final byte[] bytes = encode(caseSensitive ? prefix : foldCase(prefix));
+		final Cursor cursor = (caseSensitive ? this.entries : this.folded).seek(bytes);
+		return new StringIterator() {
+			private boolean hasNext = ((cursor != null) && cursor.startsWith(bytes));
+			public boolean hasNext() {
+				return this.hasNext;
+			}
+			public Object next() {
+				return this.nextString();
+			}
+			public void remove() {
+				throw new UnsupportedOperationException("CompactDictionary is immutable");
+			}
+			public boolean hasMoreStrings() {
+				return this.hasNext;
+			}
+			public String nextString() {
+				if (!this.hasNext)
+					throw new NoSuchElementException();
+				String entry = cursor.getEntry();
+				this.hasNext = (cursor.next() && cursor.startsWith(bytes));
+				return entry;
+			}
+		};
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.stringUtils.Dictionary#isDefaultCaseSensitive()
+	 */
+	public boolean isDefaultCaseSensitive() {
+		return this.caseSensitive;
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.stringUtils.Dictionary#isEmpty()
+	 */
+	public boolean isEmpty() {
+		return (this.entries.count == 0);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.stringUtils.Dictionary#size()
+	 */
+	public int size() {
+		return this.entries.count;
+	}
+	
+	/**
+	 * Retrieve the entry at a given index. Entries are sorted in the byte
+	 * order of their UTF-8 encoding, which is the same as the order of their
+	 * Unicode code points.
+	 * @param index the index of the entry
+	 * @return the entry at the argument index
+	 */
+	public String getEntry(int index) {
+		if ((index < 0) || (index >= this.entries.count))
+			throw new IndexOutOfBoundsException("" + index);
+		Cursor cursor = new Cursor(this.entries, (index / this.entries.blockSize));
+		while (cursor.index <= index)
+			cursor.next();
+		return cursor.getEntry();
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.stringUtils.Dictionary#getEntryIterator()
+	 */
+	public StringIterator getEntryIterator() {
+		return new StringIterator() {
+			private Cursor cursor = new Cursor(entries, 0);
+			public boolean hasNext() {
+				return (this.cursor.index < entries.count);
+			}
+			public Object next() {
+				return this.nextString();
+			}
+			public void remove() {
+				throw new UnsupportedOperationException("CompactDictionary is immutable");
+			}
+			public boolean hasMoreStrings() {
+				return this.hasNext();
+			}
+			public String nextString() {
+				if (!this.cursor.next())
+					throw new NoSuchElementException();
+				return this.cursor.getEntry();
+			}
+		};
+	}
+	
+	/* a sorted section of entries, i.e., the original or the case folded ones */
+	private class Section {
+		final int count;
+		final int blockSize;
+		final int blockCount;
+		final int blockOffsetsStart;
+		final int blockHeadsStart;
+		final int dataStart;
+		final boolean frontCoded;
+		Section(int count, int blockSize, int blockOffsetsStart, int blockHeadsStart, int dataStart, boolean frontCoded) {
+			this.count = count;
+			this.blockSize = blockSize;
+			this.blockCount = getBlockCount(count, blockSize);
+			this.blockOffsetsStart = blockOffsetsStart;
+			this.blockHeadsStart = blockHeadsStart;
+			this.dataStart = dataStart;
+			this.frontCoded = frontCoded;
+		}
+		int getBlockStart(int block) {
+			return (this.dataStart + buffer.getInt(this.blockOffsetsStart + (block * 4)));
+		}
+		
+		/* compare first entry of argument block to argument byte sequence */
+		int compareBlockHead(int block, byte[] bytes) {
+			int start = this.getBlockStart(block);
+			int length;
+			if (this.frontCoded) {
+				start++; // number of shared bytes is 0 in block head
+				length = 0;
+				for (int shift = 0;; shift += 7) {
+					byte b = buffer.get(start++);
+					length |= ((b & 0x7F) << shift);
+					if (b >= 0)
+						break;
+				}
+			}
+			else length = (this.getBlockStart(block + 1) - start);
+			for (int b = 0; b < bytes.length; b++) {
+				if (b == length)
+					return -1; // entry is prefix of byte sequence
+				int c = ((buffer.get(start + b) & 0xFF) - (bytes[b] & 0xFF));
+				if (c != 0)
+					return c;
+			}
+			return (length - bytes.length);
+		}
+		
+		/* find first entry greater than or equal to argument byte sequence,
+		 * returning cursor holding that entry, or null if there is none */
+		Cursor seek(byte[] bytes) {
+			
+			//	binary search last block whose head is less than or equal to byte sequence
+			int prefix = (getHeadPrefix(bytes) ^ 0x80000000); // flip sign bit for unsigned comparison
+			int block = 0;
+			int low = 0;
+			int high = (this.blockCount - 1);
+			while (low <= high) {
+				int mid = ((low + high) >>> 1);
+				int c;
+				if (this.blockHeadsStart == -1)
+					c = this.compareBlockHead(mid, bytes);
+				else {
+					int headPrefix = (buffer.getInt(this.blockHeadsStart + (mid * 4)) ^ 0x80000000);
+					if (headPrefix < prefix)
+						c = -1;
+					else if (headPrefix > prefix)
+						c = 1;
+					else c = this.compareBlockHead(mid, bytes); // prefixes are equal, or padding hides difference
+				}
+				if (c <= 0) {
+					block = mid;
+					if (c == 0)
+						break;
+					low = (mid + 1);
+				}
+				else high = (mid - 1);
+			}
+			
+			//	scan block (running into subsequent block if byte sequence is greater than all entries in block)
+			Cursor cursor = new Cursor(this, block);
+			while (cursor.next()) {
+				if (cursor.compareTo(bytes) >= 0)
+					return cursor;
+			}
+			return null;
+		}
+	}
+	
+	/* sequential decoder for the entries of a section, starting at some block */
+	private class Cursor {
+		final Section section;
+		int index; // index of entry to decode next
+		int position;
+		byte[] bytes = new byte[64];
+		int length = 0;
+		Cursor(Section section, int block) {
+			this.section = section;
+			this.index = (block * section.blockSize);
+			this.position = ((this.index < section.count) ? section.getBlockStart(block) : -1);
+		}
+		boolean next() {
+			if (this.index >= this.section.count)
+				return false;
+			int shared;
+			int suffix;
+			if (this.section.frontCoded) {
+				shared = this.readVarInt();
+				suffix = this.readVarInt();
+			}
+			else {
+				shared = 0;
+				suffix = (this.section.getBlockStart(this.index + 1) - this.position);
+			}
+			this.length = (shared + suffix);
+			if (this.bytes.length < this.length) {
+				byte[] bytes = new byte[Math.max(this.length, (this.bytes.length * 2))];
+				System.arraycopy(this.bytes, 0, bytes, 0, shared);
+				this.bytes = bytes;
+			}
+			for (int b = 0; b < suffix; b++)
+				this.bytes[shared + b] = buffer.get(this.position + b);
+			this.position += suffix;
+			this.index++;
+			return true;
+		}
+		private int readVarInt() {
+			int i = 0;
+			for (int shift = 0;; shift += 7) {
+				byte b = buffer.get(this.position++);
+				i |= ((b & 0x7F) << shift);
+				if (b >= 0)
+					return i;
+			}
+		}
+		int compareTo(byte[] bytes) {
+			for (int b = 0; b < Math.min(this.length, bytes.length); b++) {
+				int c = ((this.bytes[b] & 0xFF) - (bytes[b] & 0xFF));
+				if (c != 0)
+					return c;
+			}
+			return (this.length - bytes.length);
+		}
+		boolean startsWith(byte[] bytes) {
+			if (this.length < bytes.length)
+				return false;
+			for (int b = 0; b < bytes.length; b++) {
+				if (this.bytes[b] != bytes[b])
+					return false;
+			}
+			return true;
+		}
+		String getEntry() {
+			return decode(this.bytes, this.length);
+		}
+	}
+	
+	/* fold case the same way String.CASE_INSENSITIVE_ORDER does */
+	private static String foldCase(String string) {
+		char[] chars = new char[string.length()];
+		for (int c = 0; c < chars.length; c++)
+			chars[c] = Character.toLowerCase(Character.toUpperCase(string.charAt(c)));
+		return new String(chars);
+	}
+	
+	private static byte[] encode(String string) {
+		try {
+			return string.getBytes("UTF-8");
+		}
+		catch (UnsupportedEncodingException uee) {
+			return null; // never gonna happen, but Java don't know
+		}
+	}
+	
+	private static String decode(byte[] bytes, int length) {
+		try {
+			return new String(bytes, 0, length, "UTF-8");
+		}
+		catch (UnsupportedEncodingException uee) {
+			return null; // never gonna happen, but Java don't know
+		}
+	}
+	
+	/**
+	 * Convert a list file in the format written by the
+	 * <code>storeContent()</code> methods of StringVector into a dictionary
+	 * file that the <code>load()</code> methods can memory map. Without
+	 * arguments, this method runs a benchmark comparing a synthetic list
+	 * loaded as a StringVector to the same list as a CompactDictionary.
+	 * @param args the list file, the dictionary file, and optionally
+	 *            <code>-ci</code> to make the dictionary case insensitive by
+	 *            default
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length >= 2) {
+			long start = System.currentTimeMillis();
+			Reader list = new FileReader(args[0]);
+			CompactDictionary dictionary = build(list, !((args.length > 2) && "-ci".equals(args[2])));
+			list.close();
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(args[1]));
+			dictionary.store(out);
+			out.close();
+			System.out.println("Converted " + dictionary.size() + " entries into " + dictionary.getDataSize() + " bytes in " + (System.currentTimeMillis() - start) + "ms");
+			return;
+		}
+		else if (args.length != 0) {
+			System.out.println("Usage: CompactDictionary <listFile> <dictionaryFile> [-ci]");
+			return;
+		}
+		
+		//	generate list of place-like names
+		String[] syllables = {"ber", "lin", "ham", "burg", "m\u00FCn", "chen", "karls", "ruhe", "frei", "stadt", "dorf", "bach", "heim", "au", "feld", "stein", "wald", "see", "tal", "hof", "new", "york", "san", "ta", "ro", "sa", "ri", "o", "del", "mar"};
+		int entryCount = 1000000;
+		Random random = new Random(42);
+		StringBuffer listData = new StringBuffer();
+		String[] entries = new String[entryCount];
+		for (int e = 0; e < entryCount; e++) {
+			StringBuffer entry = new StringBuffer();
+			int words = (1 + random.nextInt(3));
+			for (int w = 0; w < words; w++) {
+				if (w != 0)
+					entry.append(' ');
+				int wordStart = entry.length();
+				int wordSyllables = (1 + random.nextInt(3));
+				for (int s = 0; s < wordSyllables; s++)
+					entry.append(syllables[random.nextInt(syllables.length)]);
+				entry.setCharAt(wordStart, Character.toUpperCase(entry.charAt(wordStart)));
+			}
+			entries[e] = entry.toString();
+			listData.append(entries[e]).append('\n');
+		}
+		String[] queries = new String[100000];
+		for (int q = 0; q < queries.length; q++)
+			queries[q] = (((q % 2) == 0) ? entries[random.nextInt(entryCount)] : (entries[random.nextInt(entryCount)] + "x"));
+		Runtime rt = Runtime.getRuntime();
+		
+		//	StringVector
+		System.gc();
+		long heapBefore = (rt.totalMemory() - rt.freeMemory());
+		long start = System.currentTimeMillis();
+		StringVector sv = StringVector.loadList(new java.io.StringReader(listData.toString()));
+		long loadTime = (System.currentTimeMillis() - start);
+		System.gc();
+		long heap = ((rt.totalMemory() - rt.freeMemory()) - heapBefore);
+		System.out.println("StringVector: " + sv.size() + " entries, loaded in " + loadTime + "ms, " + (heap / sv.size()) + " bytes per entry on heap");
+		long[] times = new long[2];
+		int hits = 0;
+		for (int r = 0; r < 3; r++) {
+			start = System.nanoTime();
+			for (int q = 0; q < queries.length; q++) {
+				if (sv.lookup(queries[q], true))
+					hits++;
+			}
+			times[0] = (System.nanoTime() - start);
+			start = System.nanoTime();
+			for (int q = 0; q < queries.length; q++) {
+				if (sv.lookup(queries[q], false))
+					hits++;
+			}
+			times[1] = (System.nanoTime() - start);
+		}
+		System.out.println("StringVector: " + (times[0] / queries.length) + "ns per exact lookup, " + (times[1] / queries.length) + "ns per case insensitive lookup");
+		sv = null;
+		
+		//	CompactDictionary
+		start = System.currentTimeMillis();
+		CompactDictionary built = build(new java.io.StringReader(listData.toString()), true);
+		long buildTime = (System.currentTimeMillis() - start);
+		File file = File.createTempFile("CompactDictionary", ".dic");
+		file.deleteOnExit();
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		built.store(out);
+		out.close();
+		System.out.println("CompactDictionary: " + built.size() + " entries, built in " + buildTime + "ms, " + built.getDataSize() + " bytes (" + (built.getDataSize() / built.size()) + " per entry), list has " + listData.length() + " chars");
+		built = null;
+		System.gc();
+		heapBefore = (rt.totalMemory() - rt.freeMemory());
+		start = System.nanoTime();
+		CompactDictionary dictionary = load(file);
+		loadTime = (System.nanoTime() - start);
+		System.gc();
+		heap = ((rt.totalMemory() - rt.freeMemory()) - heapBefore);
+		System.out.println("CompactDictionary: mapped in " + (loadTime / 1000) + "us, " + Math.max(heap, 0) + " bytes on heap");
+		times = new long[3];
+		for (int r = 0; r < 3; r++) {
+			start = System.nanoTime();
+			for (int q = 0; q < queries.length; q++) {
+				if (dictionary.lookup(queries[q], true))
+					hits++;
+			}
+			times[0] = (System.nanoTime() - start);
+			start = System.nanoTime();
+			for (int q = 0; q < queries.length; q++) {
+				if (dictionary.lookup(queries[q], false))
+					hits++;
+			}
+			times[1] = (System.nanoTime() - start);
+			start = System.nanoTime();
+			for (int q = 0; q < queries.length; q++) {
+				if (dictionary.lookupPrefix(queries[q].substring(0, ((queries[q].length() + 1) / 2)), false))
+					hits++;
+			}
+			times[2] = (System.nanoTime() - start);
+		}
+		System.out.println("CompactDictionary: " + (times[0] / queries.length) + "ns per exact lookup, " + (times[1] / queries.length) + "ns per case insensitive lookup, " + (times[2] / queries.length) + "ns per prefix lookup (" + hits + " hits)");
+	}
+}
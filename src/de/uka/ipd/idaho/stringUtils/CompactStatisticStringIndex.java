@@ -0,0 +1,603 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.stringUtils;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * A compact counterpart of StatisticStringIndex for large n-gram models. This
+ * class does not store the strings themselves, but only 64 bit hash keys,
+ * together with their counts and their counts as Markov prefixes, in parallel
+ * primitive arrays of an open addressing hash table. The hash keys are
+ * polynomial hashes, which can be rolled over a CharSequence, so the scoring
+ * methods work on ranges of CharSequences without creating any substrings.
+ * With 64 bit keys, hash collisions are practically impossible for models of
+ * any realistic size. In turn, the strings in the index cannot be listed.<br>
+ * Strings longer than the maximum length are ignored. Other than that, the
+ * counting and scoring methods behave like the ones in StatisticStringIndex.
+ * The writeModel() and readModel() methods store and load an index in binary
+ * form. After the freeze() method is invoked, the index does not allow any
+ * further modification, and is safe to use for scoring in multiple threads.
+ * 
+ * @author sautter
+ */
+public class CompactStatisticStringIndex {
+	
+	private static final int MAGIC = 0x43535349; // 'CSSI'
+	private static final int VERSION = 1;
+	private static final float LOAD_FACTOR = 0.625f;
+	
+	private static final long HASH_BASE = 0x9E3779B97F4A7C15L; // odd, so it has a multiplicative inverse
+	private static final long HASH_BASE_INVERSE;
+	static {
+		long inverse = HASH_BASE; // Newton iteration, doubling the number of correct bits each round
+		for (int i = 0; i < 5; i++)
+			inverse *= (2 - (HASH_BASE * inverse));
+		HASH_BASE_INVERSE = inverse;
+	}
+	
+	private final boolean caseSensitive;
+	private final int maxLength;
+	private int[] lengthCounts;
+	private int[] prefixLengthCounts;
+	
+	private long[] keys;
+	private int[] counts;
+	private int[] prefixCounts;
+	private int mask;
+	private int threshold;
+	private int distinctSize = 0;
+	
+	private boolean frozen = false;
+	
+	/**	Constructor
+	 * @param	caseSensitive	compare strings in a case sensitive way?
+	 * @param	maxLength		the maximum length of the strings to count
+	 */
+	public CompactStatisticStringIndex(boolean caseSensitive, int maxLength) {
+		this(caseSensitive, maxLength, 16);
+	}
+	
+	/**	Constructor
+	 * @param	maxLength		the maximum length of the strings to count
+	 */
+	public CompactStatisticStringIndex(int maxLength) {
+		this(false, maxLength, 16);
+	}
+	
+	/**	Constructor copying the counts from a StatisticStringIndex
+	 * @param	index	the index to copy
+	 */
+	public CompactStatisticStringIndex(StatisticStringIndex index) {
+		this(index.isCaseSensitive(), index.getMaxLength(), index.distinctSize());
+		String[] strings = index.getStrings();
+		for (int s = 0; s < strings.length; s++)
+			this.add(strings[s], index.getCount(strings[s]));
+	}
+	
+	private CompactStatisticStringIndex(boolean caseSensitive, int maxLength, int capacity) {
+		this.caseSensitive = caseSensitive;
+		this.maxLength = maxLength;
+		this.lengthCounts = new int[maxLength];
+		this.prefixLengthCounts = new int[Math.max((maxLength - 1), 0)];
+		this.allocate(getTableSize(capacity));
+	}
+	
+	private static int getTableSize(int capacity) {
+		int tableSize = 8;
+		while ((tableSize * LOAD_FACTOR) <= capacity)
+			tableSize <<= 1;
+		return tableSize;
+	}
+	
+	private void allocate(int tableSize) {
+		this.keys = new long[tableSize];
+		this.counts = new int[tableSize];
+		this.prefixCounts = new int[tableSize];
+		this.mask = (tableSize - 1);
+		this.threshold = ((int) (tableSize * LOAD_FACTOR));
+	}
+	
+	/* hashing */
+	
+	private char getChar(CharSequence cs, int index) {
+		char ch = cs.charAt(index);
+		if (this.caseSensitive)
+			return ch;
+		if (ch < 128)
+			return (((ch >= 'A') && (ch <= 'Z')) ? ((char) (ch + ('a' - 'A'))) : ch);
+		return Character.toLowerCase(Character.toUpperCase(ch));
+	}
+	
+	private long hash(CharSequence cs, int start, int end) {
+		long hash = 0;
+		for (int c = start; c < end; c++)
+			hash = ((hash * HASH_BASE) + this.getChar(cs, c));
+		return hash;
+	}
+	
+	/* turn a polynomial hash into a table key, mixing in the length */
+	private static long getKey(long hash, int length) {
+		long key = (hash + (length * 0xC2B2AE3D27D4EB4FL));
+		key ^= (key >>> 33);
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= (key >>> 33);
+		key *= 0xC4CEB9FE1A85EC53L;
+		key ^= (key >>> 33);
+		return ((key == 0) ? 1 : key); // 0 marks empty slots
+	}
+	
+	/* find the slot of a key, or -1 if the key is not in the table */
+	private int indexOf(long key) {
+		for (int s = (((int) key) & this.mask);; s = ((s + 1) & this.mask)) {
+			if (this.keys[s] == key)
+				return s;
+			if (this.keys[s] == 0)
+				return -1;
+		}
+	}
+	
+	/* find the slot of a key, inserting it if necessary */
+	private int slotOf(long key) {
+		int s = this.indexOf(key);
+		if (s != -1)
+			return s;
+		if (this.distinctSize >= this.threshold)
+			this.rehash(this.keys.length * 2);
+		for (s = (((int) key) & this.mask); this.keys[s] != 0; s = ((s + 1) & this.mask)) {}
+		this.keys[s] = key;
+		this.distinctSize++;
+		return s;
+	}
+	
+	private void rehash(int tableSize) {
+		long[] keys = this.keys;
+		int[] counts = this.counts;
+		int[] prefixCounts = this.prefixCounts;
+		this.allocate(tableSize);
+		for (int o = 0; o < keys.length; o++) {
+			if (keys[o] == 0)
+				continue;
+			int s = (((int) keys[o]) & this.mask);
+			while (this.keys[s] != 0)
+				s = ((s + 1) & this.mask);
+			this.keys[s] = keys[o];
+			this.counts[s] = counts[o];
+			this.prefixCounts[s] = prefixCounts[o];
+		}
+	}
+	
+	private int getCount(long key) {
+		int s = this.indexOf(key);
+		return ((s == -1) ? 0 : this.counts[s]);
+	}
+	
+	private int getPrefixCount(long key) {
+		int s = this.indexOf(key);
+		return ((s == -1) ? 0 : this.prefixCounts[s]);
+	}
+	
+	/* scoring */
+	
+	/**	@return		the number of times string was added to this index
+	 */
+	public int getCount(CharSequence string) {
+		return this.getCount(string, 0, string.length());
+	}
+	
+	/**	@return		the number of times the part of string between start (inclusive) and end (exclusive) was added to this index
+	 */
+	public int getCount(CharSequence string, int start, int end) {
+		int length = (end - start);
+		if ((length < 1) || (length > this.maxLength))
+			return 0;
+		return this.getCount(getKey(this.hash(string, start, end), length));
+	}
+	
+	/**	@return		the relative frequency of string among all strings of the same length
+	 */
+	public double getFactor(CharSequence string) {
+		return this.getFactor(string, 0, string.length());
+	}
+	
+	/**	@return		the relative frequency of the part of string between start (inclusive) and end (exclusive) among all strings of the same length
+	 */
+	public double getFactor(CharSequence string, int start, int end) {
+		int length = (end - start);
+		if ((length < 1) || (length > this.maxLength))
+			return 0;
+		return this.getFactor(this.hash(string, start, end), length);
+	}
+	
+	private double getFactor(long hash, int length) {
+		double c = this.lengthCounts[length - 1];
+		return ((c > 0) ? (this.getCount(getKey(hash, length)) / c) : 0);
+	}
+	
+	/**	@return		the conditional relative frequency of string among all strings of the same length,
+	 * 				given the first string.length()-1 characters
+	 */
+	public double getMarkovFactor(CharSequence string) {
+		return this.getMarkovFactor(string, 0, string.length());
+	}
+	
+	/**	@return		the conditional relative frequency of the part of string between start (inclusive) and end (exclusive)
+	 * 				among all strings of the same length, given all but its last character
+	 */
+	public double getMarkovFactor(CharSequence string, int start, int end) {
+		int length = (end - start);
+		if ((length < 1) || (length > this.maxLength))
+			return 0;
+		return this.getMarkovFactor(this.hash(string, start, end), length, this.getChar(string, (end - 1)));
+	}
+	
+	private double getMarkovFactor(long hash, int length, char lastChar) {
+		double f = this.getFactor(hash, length);
+		if (length == 1)
+			return f;
+		
+		//	hash of prefix is hash of string without last char, divided by base
+		double c = this.prefixLengthCounts[length - 2];
+		double mf = ((c > 0) ? (this.getPrefixCount(getKey(((hash - lastChar) * HASH_BASE_INVERSE), (length - 1))) / c) : 0);
+		return ((mf > 0) ? (f / mf) : 0);
+	}
+	
+	/**	compute the Markov chain log likelihood of a string, i.e., the sum of the logarithms of the Markov factors of the n-grams ending at each character of the string, with the n-grams ending at the first n-1 characters being correspondingly shorter
+	 * @param	string	the string to score
+	 * @param	n		the length of the n-grams to use (capped at the maximum length of this index)
+	 * @return the log likelihood of the string, or negative infinity if any n-gram has a Markov factor of 0
+	 */
+	public double getMarkovScore(CharSequence string, int n) {
+		return this.getMarkovScore(string, 0, string.length(), n);
+	}
+	
+	/**	compute the Markov chain log likelihood of the part of a string between start (inclusive) and end (exclusive), i.e., the sum of the logarithms of the Markov factors of the n-grams ending at each character of that part, with the n-grams ending at its first n-1 characters being correspondingly shorter
+	 * @param	string	the string to score
+	 * @param	start	the index of the first character to score
+	 * @param	end		the index after the last character to score
+	 * @param	n		the length of the n-grams to use (capped at the maximum length of this index)
+	 * @return the log likelihood of the string, or negative infinity if any n-gram has a Markov factor of 0
+	 */
+	public double getMarkovScore(CharSequence string, int start, int end, int n) {
+		n = Math.min(n, this.maxLength);
+		if (n < 1)
+			return 0;
+		long outFactor = 1; // base to the n-th power, factor of char leaving the rolling window
+		for (int p = 0; p < n; p++)
+			outFactor *= HASH_BASE;
+		long hash = 0;
+		int length = 0;
+		double score = 0;
+		for (int c = start; c < end; c++) {
+			char ch = this.getChar(string, c);
+			hash = ((hash * HASH_BASE) + ch);
+			if (length == n)
+				hash -= (this.getChar(string, (c - n)) * outFactor);
+			else length++;
+			double mf = this.getMarkovFactor(hash, length, ch);
+			if (mf == 0)
+				return Double.NEGATIVE_INFINITY;
+			score += Math.log(mf);
+		}
+		return score;
+	}
+	
+	/**	@return		the number of strings of the given length added to this index so far
+	 */
+	public int size(int length) {
+		int l = length - 1;
+		return (((l >= 0) && (l < this.maxLength)) ? this.lengthCounts[l] : 0);
+	}
+	
+	/**	@return		the number of distinct strings (including Markov prefixes) in this index
+	 */
+	public int distinctSize() {
+		return this.distinctSize;
+	}
+	
+	/**	@return		the maximum length of the strings counted in this index
+	 */
+	public int getMaxLength() {
+		return this.maxLength;
+	}
+	
+	/**	@return		true if this index compares strings in a case sensitive way
+	 */
+	public boolean isCaseSensitive() {
+		return this.caseSensitive;
+	}
+	
+	/* modification */
+	
+	/**	add a string to this index, using count 1
+	 * @return	true if the specified string was added for the first time, false otherwise
+	 */
+	public boolean add(CharSequence string) {
+		return this.add(string, 1);
+	}
+	
+	/**	add a string to this index, using a custom count (same as count times adding string, but faster)
+	 * @return	true if the specified string was added for the first time, false otherwise
+	 */
+	public boolean add(CharSequence string, int count) {
+		this.checkModifiable();
+		int length = string.length();
+		if ((length < 1) || (length > this.maxLength))
+			return false;
+		long hash = this.hash(string, 0, length);
+		int s = this.slotOf(getKey(hash, length));
+		boolean isNew = (this.counts[s] == 0);
+		this.counts[s] += count;
+		this.lengthCounts[length - 1] += count;
+		if (length > 1) {
+			s = this.slotOf(getKey(((hash - this.getChar(string, (length - 1))) * HASH_BASE_INVERSE), (length - 1)));
+			this.prefixCounts[s] += count;
+			this.prefixLengthCounts[length - 2] += count;
+		}
+		return isNew;
+	}
+	
+	/**	multiply the count of string times multiplier
+	 * 	The count will be increased at least by 1
+	 *  If string wasn't contained in this index before, it is added with count 1
+	 * @return	true if the specified string was added for the first time, false otherwise
+	 */
+	public boolean multiply(CharSequence string, double multiplier) {
+		int oldCount = this.getCount(string);
+		int newCount = (int) (oldCount * multiplier);
+		int diff = ((oldCount == newCount) ? 1 : (newCount - oldCount));
+		return this.add(string, diff);
+	}
+	
+	/**	remove a string from this index once, decreasing it's count by 1
+	 */
+	public boolean remove(CharSequence string) {
+		return this.remove(string, 1);
+	}
+	
+	/**	remove a string from this index, using a custom count (same as count times removing string, but faster)
+	 * @return	true if the specified string was removed completely, false otherwise
+	 */
+	public boolean remove(CharSequence string, int count) {
+		this.checkModifiable();
+		int length = string.length();
+		if ((length < 1) || (length > this.maxLength))
+			return false;
+		long hash = this.hash(string, 0, length);
+		int s = this.indexOf(getKey(hash, length));
+		if ((s == -1) || (this.counts[s] == 0))
+			return false;
+		int c = Math.min(count, this.counts[s]);
+		this.counts[s] -= c;
+		this.lengthCounts[length - 1] -= c;
+		boolean removed = (this.counts[s] == 0);
+		if (length > 1) {
+			s = this.indexOf(getKey(((hash - this.getChar(string, (length - 1))) * HASH_BASE_INVERSE), (length - 1)));
+			if (s != -1) {
+				int pc = Math.min(c, this.prefixCounts[s]);
+				this.prefixCounts[s] -= pc;
+				this.prefixLengthCounts[length - 2] -= pc;
+			}
+		}
+		return removed;
+	}
+	
+	/**	remove a string from this index totally, setting it's count to 0
+	 */
+	public void removeAll(CharSequence string) {
+		this.remove(string, Integer.MAX_VALUE);
+	}
+	
+	/**	totally clear this index
+	 */
+	public void clear() {
+		this.checkModifiable();
+		this.allocate(getTableSize(16));
+		this.distinctSize = 0;
+		this.lengthCounts = new int[this.lengthCounts.length];
+		this.prefixLengthCounts = new int[this.prefixLengthCounts.length];
+	}
+	
+	/**	make this index read-only, which also shrinks the hash table to the smallest size fitting the content. After this method returns, the index is safe to use for scoring in multiple threads, provided it is handed to those threads in a thread safe way, e.g. before they are started.
+	 */
+	public synchronized void freeze() {
+		if (this.frozen)
+			return;
+		
+		//	remove strings whose counts have dropped to 0 along the way
+		int distinctSize = 0;
+		for (int s = 0; s < this.keys.length; s++) {
+			if ((this.keys[s] != 0) && ((this.counts[s] != 0) || (this.prefixCounts[s] != 0)))
+				distinctSize++;
+			else this.keys[s] = 0;
+		}
+		long[] keys = this.keys;
+		int[] counts = this.counts;
+		int[] prefixCounts = this.prefixCounts;
+		this.allocate(getTableSize(distinctSize));
+		for (int o = 0; o < keys.length; o++) {
+			if (keys[o] == 0)
+				continue;
+			int s = (((int) keys[o]) & this.mask);
+			while (this.keys[s] != 0)
+				s = ((s + 1) & this.mask);
+			this.keys[s] = keys[o];
+			this.counts[s] = counts[o];
+			this.prefixCounts[s] = prefixCounts[o];
+		}
+		this.distinctSize = distinctSize;
+		this.frozen = true;
+	}
+	
+	/**	@return		true if this index is read-only
+	 */
+	public boolean isFrozen() {
+		return this.frozen;
+	}
+	
+	private void checkModifiable() {
+		if (this.frozen)
+			throw new IllegalStateException("Frozen index cannot be modified");
+	}
+	
+	/* persistence */
+	
+	/**	write this index to an output stream in binary form
+	 * @param	out		the output stream to write to
+	 * @throws IOException
+	 */
+	public synchronized void writeModel(OutputStream out) throws IOException {
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(out));
+		dos.writeInt(MAGIC);
+		dos.writeInt(VERSION);
+		dos.writeBoolean(this.caseSensitive);
+		dos.writeInt(this.maxLength);
+		for (int l = 0; l < this.lengthCounts.length; l++)
+			dos.writeInt(this.lengthCounts[l]);
+		for (int l = 0; l < this.prefixLengthCounts.length; l++)
+			dos.writeInt(this.prefixLengthCounts[l]);
+		int size = 0;
+		for (int s = 0; s < this.keys.length; s++) {
+			if ((this.keys[s] != 0) && ((this.counts[s] != 0) || (this.prefixCounts[s] != 0)))
+				size++;
+		}
+		dos.writeInt(size);
+		for (int s = 0; s < this.keys.length; s++)
+			if ((this.keys[s] != 0) && ((this.counts[s] != 0) || (this.prefixCounts[s] != 0))) {
+				dos.writeLong(this.keys[s]);
+				dos.writeInt(this.counts[s]);
+				dos.writeInt(this.prefixCounts[s]);
+			}
+		dos.flush();
+	}
+	
+	/**	read an index from an input stream, which has to provide data in the binary form produced by writeModel()
+	 * @param	in		the input stream to read from
+	 * @param	freeze	make the index read-only?
+	 * @return the index
+	 * @throws IOException
+	 */
+	public static CompactStatisticStringIndex readModel(InputStream in, boolean freeze) throws IOException {
+		DataInputStream dis = new DataInputStream(new BufferedInputStream(in));
+		if (dis.readInt() != MAGIC)
+			throw new IOException("Invalid data, not an n-gram model");
+		int version = dis.readInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported model version " + version);
+		boolean caseSensitive = dis.readBoolean();
+		int maxLength = dis.readInt();
+		CompactStatisticStringIndex index = new CompactStatisticStringIndex(caseSensitive, maxLength, 16);
+		for (int l = 0; l < index.lengthCounts.length; l++)
+			index.lengthCounts[l] = dis.readInt();
+		for (int l = 0; l < index.prefixLengthCounts.length; l++)
+			index.prefixLengthCounts[l] = dis.readInt();
+		int size = dis.readInt();
+		index.allocate(getTableSize(size));
+		for (int e = 0; e < size; e++) {
+			int s = index.slotOf(dis.readLong());
+			index.counts[s] = dis.readInt();
+			index.prefixCounts[s] = dis.readInt();
+		}
+		index.frozen = freeze;
+		return index;
+	}
+	
+	public static void main(String[] args) throws Exception {
+		
+		//	generate some text with a skewed character distribution
+		String alphabet = "eeeeeeeeeeeetttttttttaaaaaaaaoooooooiiiiiiinnnnnnnsssssshhhhhhrrrrrrddddlllluuucccmmmwwffggyyppbbvkjxqz";
+		Random random = new Random(42);
+		String[] words = new String[200000];
+		for (int w = 0; w < words.length; w++) {
+			StringBuffer word = new StringBuffer();
+			int length = (2 + random.nextInt(10));
+			for (int c = 0; c < length; c++)
+				word.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			words[w] = word.toString();
+		}
+		int n = 5;
+		
+		//	train both indexes
+		System.gc();
+		long memory = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+		long start = System.currentTimeMillis();
+		StatisticStringIndex index = new StatisticStringIndex(n);
+		for (int w = 0; w < words.length; w++) {
+			for (int s = 0; s < words[w].length(); s++)
+				for (int e = (s + 1); (e <= words[w].length()) && (e <= (s + n)); e++)
+					index.add(words[w].substring(s, e));
+		}
+		long time = (System.currentTimeMillis() - start);
+		System.gc();
+		long indexMemory = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory() - memory);
+		System.out.println("StatisticStringIndex: trained in " + time + "ms, " + index.distinctSize() + " n-grams, " + (indexMemory / 1024) + "KB");
+		
+		System.gc();
+		memory = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+		start = System.currentTimeMillis();
+		CompactStatisticStringIndex compactIndex = new CompactStatisticStringIndex(index);
+		compactIndex.freeze();
+		time = (System.currentTimeMillis() - start);
+		System.gc();
+		long compactIndexMemory = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory() - memory);
+		System.out.println("CompactStatisticStringIndex: converted in " + time + "ms, " + compactIndex.distinctSize() + " keys, " + (compactIndexMemory / 1024) + "KB");
+		
+		//	score all words with both indexes, the old one needs substrings for the n-grams and their prefixes
+		for (int r = 0; r < 3; r++) {
+			start = System.currentTimeMillis();
+			double scoreSum = 0;
+			for (int w = 0; w < words.length; w++) {
+				double score = 0;
+				for (int e = 1; e <= words[w].length(); e++)
+					score += Math.log(index.getMarkovFactor(words[w].substring(Math.max(0, (e - n)), e)));
+				scoreSum += score;
+			}
+			System.out.println("StatisticStringIndex: scored " + words.length + " words in " + (System.currentTimeMillis() - start) + "ms, sum " + scoreSum);
+			start = System.currentTimeMillis();
+			scoreSum = 0;
+			for (int w = 0; w < words.length; w++)
+				scoreSum += compactIndex.getMarkovScore(words[w], n);
+			System.out.println("CompactStatisticStringIndex: scored " + words.length + " words in " + (System.currentTimeMillis() - start) + "ms, sum " + scoreSum);
+		}
+		
+		//	save and load
+		java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+		compactIndex.writeModel(out);
+		start = System.currentTimeMillis();
+		CompactStatisticStringIndex loadedIndex = readModel(new java.io.ByteArrayInputStream(out.toByteArray()), true);
+		System.out.println("CompactStatisticStringIndex: " + out.size() + " bytes binary, loaded in " + (System.currentTimeMillis() - start) + "ms, score " + loadedIndex.getMarkovScore(words[0], n) + " vs " + compactIndex.getMarkovScore(words[0], n));
+	}
+}
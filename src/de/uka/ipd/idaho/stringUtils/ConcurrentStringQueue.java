@@ -0,0 +1,534 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.stringUtils;
+
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A FIFO queue for Strings, for handing Strings from one set of threads to
+ * another. Unlike StringQueue, this class does not synchronize its adding and
+ * removing methods. Instead, producing and consuming threads draw tickets from
+ * two atomic counters, and each ticket designates a slot in a chain of array
+ * segments. Adding a String is a single atomic increment plus a write to the
+ * slot, and removing a String is a single compare-and-set plus a read from the
+ * slot, so threads only contend on the two counters. The addAll() and drainTo()
+ * methods reserve whole ranges of tickets at once.<br>
+ * The methods that remove or get Strings block like the ones in StringQueue
+ * if the queue is empty, until a String is added, the timeout is over, or the
+ * queue is cleared. Only threads that actually have to wait synchronize on a
+ * monitor, and adding threads only notify that monitor if there are waiting
+ * threads. As this class is intended for FIFO hand-over only, it does not
+ * provide the methods of StringQueue that access the end of the queue. The
+ * size(), contains(), and toArray() methods reflect the state of the queue at
+ * some point during their execution. BoundedStringQueue adds a capacity limit,
+ * making adding threads wait while the queue is full.
+ * 
+ * @author sautter
+ */
+public class ConcurrentStringQueue {
+	
+	private static final int SEGMENT_SIZE = 1024;
+	private static final Object NULL = new Object(); // stands in for null Strings, as empty slots are null
+	
+	private static class Segment {
+		final long base;
+		final AtomicReferenceArray slots = new AtomicReferenceArray(SEGMENT_SIZE);
+		final AtomicReference next = new AtomicReference();
+		Segment(long base) {
+			this.base = base;
+		}
+		Segment getNext() {
+			Segment next = ((Segment) this.next.get());
+			if (next == null) {
+				next = new Segment(this.base + SEGMENT_SIZE);
+				if (!this.next.compareAndSet(null, next))
+					next = ((Segment) this.next.get());
+			}
+			return next;
+		}
+	}
+	
+	private final AtomicLong head = new AtomicLong(0); // ticket of first String
+	private final AtomicLong tail = new AtomicLong(0); // ticket after last String
+	
+	/* segments to start looking for a ticket's slot in; they are read before a
+	 * ticket is drawn, and only advanced to the segment of a drawn ticket, so
+	 * they never pass the segment of any ticket drawn after reading them */
+	private final AtomicReference headSegment;
+	private final AtomicReference tailSegment;
+	
+	final int capacity;
+	
+	private final Object notEmpty = new Object();
+	private final Object notFull = new Object();
+	private final AtomicInteger waitingConsumers = new AtomicInteger(0);
+	private final AtomicInteger waitingProducers = new AtomicInteger(0);
+	private volatile int clearCount = 0;
+	
+	/**	Constructor
+	 */
+	public ConcurrentStringQueue() {
+		this(Integer.MAX_VALUE);
+	}
+	
+	ConcurrentStringQueue(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Illegal capacity: " + capacity);
+		this.capacity = capacity;
+		Segment segment = new Segment(0);
+		this.headSegment = new AtomicReference(segment);
+		this.tailSegment = new AtomicReference(segment);
+	}
+	
+	/* ticket and slot management */
+	
+	private static Segment findSegment(Segment segment, long ticket) {
+		while ((segment.base + SEGMENT_SIZE) <= ticket)
+			segment = segment.getNext();
+		return segment;
+	}
+	
+	private static void advance(AtomicReference hint, Segment segment) {
+		for (Segment current; (current = ((Segment) hint.get())).base < segment.base;) {
+			if (hint.compareAndSet(current, segment))
+				return;
+		}
+	}
+	
+	/* reserve the tickets for up to count Strings, returning the first ticket, or -1 if the queue is full */
+	private long reserve(int count, int[] reserved) {
+		if (this.capacity == Integer.MAX_VALUE) {
+			reserved[0] = count;
+			return this.tail.getAndAdd(count);
+		}
+		while (true) {
+			long t = this.tail.get();
+			long free = (this.capacity - (t - this.head.get()));
+			if (free <= 0)
+				return -1;
+			reserved[0] = ((int) Math.min(count, free));
+			if (this.tail.compareAndSet(t, (t + reserved[0])))
+				return t;
+		}
+	}
+	
+	/* store Strings in the slots of a range of tickets */
+	private void store(Segment segment, long ticket, String[] strings, int offset, int count) {
+		for (int s = 0; s < count; s++) {
+			segment = findSegment(segment, (ticket + s));
+			segment.slots.set(((int) (ticket + s - segment.base)), ((strings[offset + s] == null) ? NULL : strings[offset + s]));
+		}
+		advance(this.tailSegment, segment);
+		if (this.waitingConsumers.get() != 0)
+			synchronized (this.notEmpty) {
+				this.notEmpty.notifyAll();
+			}
+	}
+	
+	/* claim the tickets of up to count Strings, returning the first ticket, or -1 if the queue is empty */
+	private long claim(int count, int[] claimed) {
+		while (true) {
+			long h = this.head.get();
+			long available = (this.tail.get() - h);
+			if (available <= 0)
+				return -1;
+			claimed[0] = ((int) Math.min(count, available));
+			if (this.head.compareAndSet(h, (h + claimed[0])))
+				return h;
+		}
+	}
+	
+	/* take the String from the slot of a claimed ticket, waiting for the producer that holds the ticket to store it */
+	private Segment take(Segment segment, long ticket, Object[] taken) {
+		segment = findSegment(segment, ticket);
+		int slot = ((int) (ticket - segment.base));
+		Object str;
+		while ((str = segment.slots.get(slot)) == null)
+			Thread.yield();
+		segment.slots.lazySet(slot, null);
+		taken[0] = str;
+		if (slot == (SEGMENT_SIZE - 1)) {
+			segment = segment.getNext();
+			advance(this.headSegment, segment);
+		}
+		return segment;
+	}
+	
+	private void signalNotFull() {
+		if (this.waitingProducers.get() != 0)
+			synchronized (this.notFull) {
+				this.notFull.notifyAll();
+			}
+	}
+	
+	/* remove or get the first String without blocking, returning null if the queue is empty, and NULL for null Strings */
+	private Object poll(boolean remove) {
+		Segment segment = ((Segment) this.headSegment.get());
+		if (remove) {
+			int[] claimed = {0};
+			long ticket = this.claim(1, claimed);
+			if (ticket == -1)
+				return null;
+			Object[] taken = {null};
+			this.take(segment, ticket, taken);
+			this.signalNotFull();
+			return taken[0];
+		}
+		while (true) {
+			long h = this.head.get();
+			if (h >= this.tail.get())
+				return null;
+			segment = findSegment(segment, h);
+			Object str = segment.slots.get((int) (h - segment.base));
+			if ((str != null) && (this.head.get() == h))
+				return str;
+			Thread.yield(); // String removed by another thread, or not yet stored by its producer
+		}
+	}
+	
+	/* remove or get the first String, waiting for the timeout (in seconds, 0 meaning no limit) if the queue is empty */
+	private Object poll(boolean remove, int timeout) {
+		Object str = this.poll(remove);
+		if (str != null)
+			return str;
+		int clearCount = this.clearCount;
+		long deadline = ((timeout > 0) ? (System.currentTimeMillis() + (timeout * 1000L)) : Long.MAX_VALUE);
+		synchronized (this.notEmpty) {
+			this.waitingConsumers.incrementAndGet();
+			try {
+				while ((str = this.poll(remove)) == null) {
+					long wait = ((timeout > 0) ? (deadline - System.currentTimeMillis()) : 0);
+					if ((clearCount != this.clearCount) || ((timeout > 0) && (wait <= 0)))
+						return null;
+					this.notEmpty.wait(wait);
+				}
+				return str;
+			}
+			catch (InterruptedException ie) {
+				return null;
+			}
+			finally {
+				this.waitingConsumers.decrementAndGet();
+			}
+		}
+	}
+	
+	/* add Strings, waiting for the timeout (in seconds, 0 meaning no limit, -1 meaning no waiting) while the queue is full, returning the number of Strings added */
+	int offer(String[] strings, int offset, int count, int timeout) {
+		int added = 0;
+		int[] reserved = {0};
+		long deadline = ((timeout > 0) ? (System.currentTimeMillis() + (timeout * 1000L)) : Long.MAX_VALUE);
+		while (added < count) {
+			Segment segment = ((Segment) this.tailSegment.get());
+			long ticket = this.reserve((count - added), reserved);
+			if (ticket != -1) {
+				this.store(segment, ticket, strings, (offset + added), reserved[0]);
+				added += reserved[0];
+				continue;
+			}
+			if (timeout < 0)
+				return added;
+			
+			//	wait for consumers to make room
+			int clearCount = this.clearCount;
+			synchronized (this.notFull) {
+				this.waitingProducers.incrementAndGet();
+				try {
+					while (this.isFull()) {
+						long wait = ((timeout > 0) ? (deadline - System.currentTimeMillis()) : 0);
+						if ((timeout > 0) && (wait <= 0))
+							return added;
+						if (clearCount != this.clearCount)
+							break;
+						this.notFull.wait(wait);
+					}
+				}
+				catch (InterruptedException ie) {
+					return added;
+				}
+				finally {
+					this.waitingProducers.decrementAndGet();
+				}
+			}
+		}
+		return added;
+	}
+	
+	private boolean isFull() {
+		return ((this.tail.get() - this.head.get()) >= this.capacity);
+	}
+	
+	/* access methods */
+	
+	/**	add a String to the end of this Queue
+	 * @param	s	the String to be added 
+	 */
+	public void addLast(String s) {
+		this.offer(new String[] {s}, 0, 1, 0);
+	}
+	
+	/**	add a number of Strings to the end of this Queue, in the order they are in the array
+	 * @param	strings		the Strings to be added
+	 */
+	public void addAll(String[] strings) {
+		this.offer(strings, 0, strings.length, 0);
+	}
+	
+	/**	add a part of an array of Strings to the end of this Queue, in the order they are in the array
+	 * @param	strings		the array holding the Strings to be added
+	 * @param	offset		the index of the first String to add
+	 * @param	count		the number of Strings to add
+	 */
+	public void addAll(String[] strings, int offset, int count) {
+		this.offer(strings, offset, count, 0);
+	}
+	
+	/**	get the first String in the Queue (not removing it)
+	 * @return	the first String in this Queue, if there is any, null otherwise
+	 * This method will block until there is a String to be returned, or the Queue is cleared.
+	 */
+	public String getFirst() {
+		return this.getFirst(0);
+	}
+	
+	/**	get the first String in the Queue (not removing it)
+	 * @param	timeout		the number of seconds to wait if there is no String in the queue
+	 * @return	the first String in this Queue, if there is any, null otherwise
+	 * This method will block until the timeout is over, or there is a String to be returned, or the Queue is cleared.
+	 */
+	public String getFirst(int timeout) {
+		Object str = this.poll(false, timeout);
+		return ((str == NULL) ? null : ((String) str));
+	}
+	
+	/**	remove the first String from this Queue, if there is any
+	 * @return	the first String in this Queue, if there is any, null otherwise
+	 * This method will block until there is a String to be returned, or the Queue is cleared.
+	 */
+	public String removeFirst() {
+		return this.removeFirst(0);
+	}
+	
+	/**	remove the first String from this Queue, if there is any
+	 * @param	timeout		the number of seconds to wait if there is no String in the queue
+	 * @return	the first String in this Queue, if there is any, null otherwise
+	 * This method will block until the timeout is over, or there is a String to be returned, or the Queue is cleared.
+	 */
+	public String removeFirst(int timeout) {
+		Object str = this.poll(true, timeout);
+		return ((str == NULL) ? null : ((String) str));
+	}
+	
+	/**	remove the first String from this Queue, if there is any, without blocking
+	 * @return	the first String in this Queue, if there is any, null otherwise
+	 */
+	public String pollFirst() {
+		Object str = this.poll(true);
+		return ((str == NULL) ? null : ((String) str));
+	}
+	
+	/**	remove all Strings from this Queue and add them to a StringVector, without blocking
+	 * @param	target	the StringVector to add the Strings to
+	 * @return	the number of Strings removed
+	 */
+	public int drainTo(StringVector target) {
+		return this.drainTo(target, Integer.MAX_VALUE);
+	}
+	
+	/**	remove up to a given number of Strings from this Queue and add them to a StringVector, without blocking
+	 * @param	target		the StringVector to add the Strings to
+	 * @param	maxStrings	the maximum number of Strings to remove
+	 * @return	the number of Strings removed
+	 */
+	public int drainTo(StringVector target, int maxStrings) {
+		if (maxStrings < 1)
+			return 0;
+		Segment segment = ((Segment) this.headSegment.get());
+		int[] claimed = {0};
+		long ticket = this.claim(maxStrings, claimed);
+		if (ticket == -1)
+			return 0;
+		Object[] taken = {null};
+		for (int s = 0; s < claimed[0]; s++) {
+			segment = this.take(segment, (ticket + s), taken);
+			target.addElement((taken[0] == NULL) ? null : ((String) taken[0]));
+		}
+		this.signalNotFull();
+		return claimed[0];
+	}
+	
+	/**	get the number of Strings in the Queue
+	 * @return	the number of Strings contained in this Queue
+	 */
+	public int size() {
+		long h = this.head.get();
+		return ((int) Math.min((this.tail.get() - h), Integer.MAX_VALUE));
+	}
+	
+	/**	check if the Queue is empty, i.e. if the next call to one of the get or remove methods will block
+	 * @return	true if and only if this Queue contains no Strings
+	 */
+	public boolean isEmpty() {
+		return (this.head.get() >= this.tail.get());
+	}
+	
+	/**	check is this Queue contains a given String
+	 * @param	s the String to check for
+	 * @return	true is and only if this Queue contains an String str such that s.equals(str) returns true
+	 */
+	public boolean contains(String s) {
+		String[] strings = this.toArray();
+		for (int i = 0; i < strings.length; i++) {
+			if ((s == null) ? (strings[i] == null) : s.equals(strings[i]))
+				return true;
+		}
+		return false;
+	}
+	
+	/**	remove all Strings from this Queue
+	 * Calling this method will unblock any Thread blocked on one of the get or remove methods 
+	 */
+	public void clear() {
+		Segment segment = ((Segment) this.headSegment.get());
+		int[] claimed = {0};
+		Object[] taken = {null};
+		for (long ticket; (ticket = this.claim(Integer.MAX_VALUE, claimed)) != -1;) {
+			for (int s = 0; s < claimed[0]; s++)
+				segment = this.take(segment, (ticket + s), taken);
+		}
+		this.clearCount++;
+		synchronized (this.notEmpty) {
+			this.notEmpty.notifyAll();
+		}
+		synchronized (this.notFull) {
+			this.notFull.notifyAll();
+		}
+	}
+	
+	/**	get the entire content of this Queue
+	 * @return	the Strings contained in this Queue, packed in an array
+	 */
+	public String[] toArray() {
+		StringVector strings = new StringVector();
+		Segment segment = ((Segment) this.headSegment.get());
+		long t = this.tail.get();
+		for (long ticket = this.head.get(); ticket < t; ticket++) {
+			segment = findSegment(segment, ticket);
+			Object str = segment.slots.get((int) (ticket - segment.base));
+			if (str != null) // removed since we started, or not yet stored
+				strings.addElement((str == NULL) ? null : ((String) str));
+		}
+		return strings.toStringArray();
+	}
+	
+	public static void main(String[] args) throws Exception {
+		final int strings = 1000000;
+		final String[] data = new String[1024];
+		final String END = new String("END"); // compared by identity
+		for (int d = 0; d < data.length; d++)
+			data[d] = ("String " + d);
+		int[][] setups = {{1, 1}, {1, 4}, {4, 1}, {4, 4}};
+		for (int r = 0; r < 2; r++)
+			for (int s = 0; s < setups.length; s++) {
+				final int producers = setups[s][0];
+				final int consumers = setups[s][1];
+				for (int q = 0; q < 4; q++) {
+					final StringQueue stringQueue = ((q == 0) ? new StringQueue(true) : null);
+					final ConcurrentStringQueue concurrentQueue = ((q == 0) ? null : ((q == 2) ? new BoundedStringQueue(4096) : new ConcurrentStringQueue()));
+					final boolean batch = (q == 3);
+					final AtomicInteger received = new AtomicInteger(0);
+					Thread[] threads = new Thread[producers + consumers];
+					for (int p = 0; p < producers; p++)
+						threads[p] = new Thread() {
+							public void run() {
+								for (int i = 0; i < (strings / producers); i += (batch ? 64 : 1)) {
+									if (stringQueue != null)
+										stringQueue.addLast(data[i & 1023]);
+									else if (batch)
+										concurrentQueue.addAll(data, (i & 1023), Math.min(64, ((strings / producers) - i)));
+									else concurrentQueue.addLast(data[i & 1023]);
+								}
+							}
+						};
+					for (int c = 0; c < consumers; c++)
+						threads[producers + c] = new Thread() {
+							public void run() {
+								StringVector batchTarget = new StringVector();
+								while (true) {
+									
+									//	single Strings
+									if (!batch) {
+										String str = ((stringQueue == null) ? concurrentQueue.removeFirst() : stringQueue.removeFirst());
+										if (str == END)
+											return;
+										if (str != null)
+											received.incrementAndGet();
+										continue;
+									}
+									
+									//	batches, blocking only if queue is empty, and handing on end markers meant for other consumers
+									batchTarget.clear();
+									if (concurrentQueue.drainTo(batchTarget, 64) == 0)
+										batchTarget.addElement(concurrentQueue.removeFirst());
+									int ends = 0;
+									for (int b = 0; b < batchTarget.size(); b++) {
+										if (batchTarget.get(b) == END)
+											ends++;
+									}
+									received.addAndGet(batchTarget.size() - ends);
+									for (int e = 1; e < ends; e++)
+										concurrentQueue.addLast(END);
+									if (ends != 0)
+										return;
+								}
+							}
+						};
+					long start = System.currentTimeMillis();
+					for (int t = 0; t < threads.length; t++)
+						threads[t].start();
+					for (int p = 0; p < producers; p++)
+						threads[p].join();
+					for (int c = 0; c < consumers; c++) {
+						if (stringQueue == null)
+							concurrentQueue.addLast(END);
+						else stringQueue.addLast(END);
+					}
+					for (int c = 0; c < consumers; c++)
+						threads[producers + c].join();
+					long time = Math.max(1, (System.currentTimeMillis() - start));
+					String name = ((q == 0) ? "StringQueue" : ((q == 1) ? "ConcurrentStringQueue" : ((q == 2) ? "BoundedStringQueue(4096)" : "ConcurrentStringQueue, batches of 64")));
+					if (r == 1)
+						System.out.println(name + ", " + producers + " producers, " + consumers + " consumers: " + received.get() + " Strings in " + time + "ms, " + ((received.get() / time) * 1000) + " Strings/s");
+				}
+			}
+	}
+}
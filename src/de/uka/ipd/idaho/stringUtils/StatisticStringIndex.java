@@ -92,6 +92,12 @@ public class StatisticStringIndex extends StringIndex {
 		}
 	}
 	
+	/**	@return		the maximum length of the strings counted in this index
+	 */
+	public int getMaxLength() {
+		return this.maxLength;
+	}
+	
 	/**	@return		the number of strings of the given length added to this index so far
 	 */
 	public int size(int length) {
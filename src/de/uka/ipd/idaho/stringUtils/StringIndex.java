@@ -28,17 +28,35 @@
 package de.uka.ipd.idaho.stringUtils;
 
 
-import java.util.TreeMap;
+import java.util.Arrays;
 
 /**
- * A counting index for Strings
+ * A counting index for Strings. The index keeps its strings in an open
+ * addressing hash table with linear probing, together with their hash codes
+ * and primitive counts in parallel arrays. Case insensitive indices hash the
+ * case folded strings, so they consider two strings equal exactly if
+ * <code>String.CASE_INSENSITIVE_ORDER</code> does, and keep the first added
+ * spelling of any string as its representative. As a result, adding, counting,
+ * and looking up strings are constant time operations in either case. The
+ * order of the strings in the index is arbitrary; the two-argument version of
+ * the <code>getStrings()</code> method sorts them on demand.
  * 
  * @author sautter
  */
 public class StringIndex {
 	private static final String NULL_KEY = ("_N_U_L_L_" + System.currentTimeMillis() + "_K_E_Y_"); // this should prevent all collisions in practice
+	private static final float LOAD_FACTOR = 0.625f;
 	
-	private TreeMap content; // TODO figure out how to handle large load of ordered insertions !!!
+	private final boolean caseSensitive;
+	
+	private String[] strings;
+	private int[] hashes;
+	private int[] counts;
+	private int mask;
+	private int shift;
+	private int threshold;
+	
+	private int distinctSize = 0;
 	private int size = 0;
 	
 	/**	Constructor
@@ -50,37 +68,148 @@ public class StringIndex {
 	/**	Constructor
 	 */
 	public StringIndex(boolean caseSensitive) {
-		this.content = (caseSensitive ? new TreeMap() : new TreeMap(String.CASE_INSENSITIVE_ORDER));
+		this(caseSensitive, 16);
+	}
+	
+	/**	Constructor
+	 * @param	caseSensitive	compare strings in a case sensitive way?
+	 * @param	capacity		the number of distinct strings to expect
+	 */
+	public StringIndex(boolean caseSensitive, int capacity) {
+		this.caseSensitive = caseSensitive;
+		this.allocate(getTableSize(capacity));
+	}
+	
+	private static int getTableSize(int capacity) {
+		int tableSize = 8;
+		while ((tableSize * LOAD_FACTOR) <= capacity)
+			tableSize <<= 1;
+		return tableSize;
+	}
+	
+	private void allocate(int tableSize) {
+		this.strings = new String[tableSize];
+		this.hashes = new int[tableSize];
+		this.counts = new int[tableSize];
+		this.mask = (tableSize - 1);
+		this.shift = (32 - Integer.numberOfTrailingZeros(tableSize));
+		this.threshold = ((int) (tableSize * LOAD_FACTOR));
+	}
+	
+	private int hash(String string) {
+		if (this.caseSensitive)
+			return string.hashCode();
+		int h = 0;
+		for (int c = 0; c < string.length(); c++)
+			h = ((31 * h) + foldCase(string.charAt(c)));
+		return h;
+	}
+	
+	/* folding to lower case after upper case maps two chars to the same value
+	 * exactly if String.CASE_INSENSITIVE_ORDER considers them equal */
+	private static char foldCase(char ch) {
+		if (ch < 128)
+			return (((ch >= 'A') && (ch <= 'Z')) ? ((char) (ch + ('a' - 'A'))) : ch);
+		return Character.toLowerCase(Character.toUpperCase(ch));
+	}
+	
+	private int getSlot(int hash) {
+		hash ^= (hash >>> 16);
+		return ((hash * 0x9E3779B9) >>> this.shift);
+	}
+	
+	private boolean matches(int s, String string, int hash) {
+		if (this.hashes[s] != hash)
+			return false;
+		String str = this.strings[s];
+		if (str == string)
+			return true;
+		if (this.caseSensitive)
+			return str.equals(string);
+		if (str.length() != string.length())
+			return false;
+		for (int c = 0; c < str.length(); c++) {
+			char ch1 = str.charAt(c);
+			char ch2 = string.charAt(c);
+			if ((ch1 != ch2) && (foldCase(ch1) != foldCase(ch2)))
+				return false;
+		}
+		return true;
+	}
+	
+	private int indexOf(String string) {
+		string = maskNull(string);
+		int hash = this.hash(string);
+		for (int s = this.getSlot(hash);; s = ((s + 1) & this.mask)) {
+			if (this.strings[s] == null)
+				return -1;
+			if (this.matches(s, string, hash))
+				return s;
+		}
+	}
+	
+	/**	make sure this index can hold a given number of distinct strings
+	 * without growing its hash table
+	 * @param	capacity	the number of distinct strings to expect
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity <= this.threshold)
+			return;
+		String[] strings = this.strings;
+		int[] hashes = this.hashes;
+		int[] counts = this.counts;
+		this.allocate(getTableSize(capacity));
+		for (int o = 0; o < strings.length; o++) {
+			if (strings[o] == null)
+				continue;
+			int s = this.getSlot(hashes[o]);
+			while (this.strings[s] != null)
+				s = ((s + 1) & this.mask);
+			this.strings[s] = strings[o];
+			this.hashes[s] = hashes[o];
+			this.counts[s] = counts[o];
+		}
+	}
+	
+	private void removeSlot(int s) {
+		this.size -= this.counts[s];
+		this.distinctSize--;
+		
+		//	shift back subsequent strings of cluster to keep probe sequences intact
+		for (int n = ((s + 1) & this.mask);; n = ((n + 1) & this.mask)) {
+			if (this.strings[n] == null)
+				break;
+			int h = this.getSlot(this.hashes[n]);
+			if (((n - h) & this.mask) >= ((n - s) & this.mask)) {
+				this.strings[s] = this.strings[n];
+				this.hashes[s] = this.hashes[n];
+				this.counts[s] = this.counts[n];
+				s = n;
+			}
+		}
+		this.strings[s] = null;
+		this.hashes[s] = 0;
+		this.counts[s] = 0;
 	}
 	
 	/**	@return		true if and only if this index contains the specified string
 	 */
 	public boolean contains(String string) {
-		return this.content.containsKey(maskNull(string));
+		return (this.indexOf(string) != -1);
 	}
 	
 	/**	@return		the number of times the specified string has been added to this index
 	 */
 	public int getCount(String string) {
-		Int i = ((Int) this.content.get(maskNull(string)));
-		return ((i == null) ? 0 : i.value);
+		int s = this.indexOf(string);
+		return ((s == -1) ? 0 : this.counts[s]);
 	}
 	
 	/**	add a string to this index, using count 1
 	 * @return	true if the specified string was added for the first time, false otherwise
 	 */
 	public boolean add(String string) {
-		string = maskNull(string);
-		Int i = ((Int) this.content.get(string));
-		this.size++;
-		if (i == null) {
-			this.content.put(string, new Int(1));
-			return true;
-		}
-		else {
-			i.increment();
-			return false;
-		}
+		return this.add(string, 1);
 	}
 	
 	/**	add a string to this index, using a custom count (same as count times adding string, but faster)
@@ -88,15 +217,75 @@ public class StringIndex {
 	 */
 	public boolean add(String string, int count) {
 		string = maskNull(string);
-		Int i = ((Int) this.content.get(string));
+		int hash = this.hash(string);
 		this.size += count;
-		if (i == null) {
-			this.content.put(string, new Int(count));
-			return true;
+		int s = this.getSlot(hash);
+		for (;; s = ((s + 1) & this.mask)) {
+			if (this.strings[s] == null)
+				break;
+			if (this.matches(s, string, hash)) {
+				this.counts[s] += count;
+				return false;
+			}
 		}
-		else {
-			i.increment(count);
-			return false;
+		if (this.distinctSize == this.threshold) {
+			this.ensureCapacity(this.distinctSize + 1);
+			for (s = this.getSlot(hash); this.strings[s] != null; s = ((s + 1) & this.mask)) {}
+		}
+		this.strings[s] = string;
+		this.hashes[s] = hash;
+		this.counts[s] = count;
+		this.distinctSize++;
+		return true;
+	}
+	
+	/**	add a bunch of strings to this index, each with count 1. This method
+	 * sizes the hash table only once, so building an index through this method
+	 * takes time linear in the number of strings.
+	 * @param	strings		the strings to add
+	 * @param	from		the index of the first string to add
+	 * @param	to			the index to stop adding before
+	 * @return	the number of strings that were added for the first time
+	 */
+	public int addAll(String[] strings, int from, int to) {
+		this.ensureCapacity(this.distinctSize + (to - from));
+		int added = 0;
+		for (int s = from; s < to; s++) {
+			if (this.add(strings[s]))
+				added++;
+		}
+		
+		//	we might have sized the table for many more distinct strings than there actually are
+		if ((this.distinctSize * 4) < this.threshold)
+			this.compact();
+		return added;
+	}
+	
+	/**	add a bunch of strings to this index, each with count 1
+	 * @param	strings		the strings to add
+	 * @return	the number of strings that were added for the first time
+	 */
+	public int addAll(String[] strings) {
+		return this.addAll(strings, 0, strings.length);
+	}
+	
+	private void compact() {
+		int tableSize = getTableSize(this.distinctSize);
+		if (tableSize >= this.strings.length)
+			return;
+		String[] strings = this.strings;
+		int[] hashes = this.hashes;
+		int[] counts = this.counts;
+		this.allocate(tableSize);
+		for (int o = 0; o < strings.length; o++) {
+			if (strings[o] == null)
+				continue;
+			int s = this.getSlot(hashes[o]);
+			while (this.strings[s] != null)
+				s = ((s + 1) & this.mask);
+			this.strings[s] = strings[o];
+			this.hashes[s] = hashes[o];
+			this.counts[s] = counts[o];
 		}
 	}
 	
@@ -104,17 +293,16 @@ public class StringIndex {
 	 * @return	true if the specified string was totally removed, false otherwise
 	 */
 	public boolean remove(String string) {
-		string = maskNull(string);
-		Int i = ((Int) this.content.get(string));
-		if (i == null)
+		int s = this.indexOf(string);
+		if (s == -1)
 			return false;
-		this.size--;
-		if (i.value > 1) {
-			i.decrement();
+		if (this.counts[s] > 1) {
+			this.counts[s]--;
+			this.size--;
 			return false;
 		}
 		else {
-			this.content.remove(string);
+			this.removeSlot(s);
 			return true;
 		}
 	}
@@ -123,18 +311,16 @@ public class StringIndex {
 	 * @return	true if the specified string was totally removed, false otherwise
 	 */
 	public boolean remove(String string, int count) {
-		string = maskNull(string);
-		Int i = ((Int) this.content.get(string));
-		if (i == null)
+		int s = this.indexOf(string);
+		if (s == -1)
 			return false;
-		if (i.value > count) {
+		if (this.counts[s] > count) {
+			this.counts[s] -= count;
 			this.size -= count;
-			i.decrement(count);
 			return false;
 		}
 		else {
-			this.size -= i.value;
-			this.content.remove(string);
+			this.removeSlot(s);
 			return true;
 		}
 	}
@@ -142,25 +328,27 @@ public class StringIndex {
 	/**	remove a string from this index totally, setting it's count to 0
 	 */
 	public void removeAll(String string) {
-		string = maskNull(string);
-		Int i = ((Int) this.content.get(string));
-		if (i != null) {
-			this.size -= i.value;
-			this.content.remove(string);
-		}
+		int s = this.indexOf(string);
+		if (s != -1)
+			this.removeSlot(s);
 	}
 	
 	/**	totally clear this index
 	 */
 	public void clear() {
-		this.content.clear();
+		if (this.distinctSize == 0)
+			return;
+		Arrays.fill(this.strings, null);
+		Arrays.fill(this.hashes, 0);
+		Arrays.fill(this.counts, 0);
+		this.distinctSize = 0;
 		this.size = 0;
 	}
 	
 	/**	@return		true if this index's case sensitivity property has been initialized as true
 	 */
 	public boolean isCaseSensitive() {
-		return (this.content.comparator() == String.CASE_INSENSITIVE_ORDER);
+		return this.caseSensitive;
 	}
 	
 	/**	@return		the number of strings that have been added to this index so far
@@ -172,29 +360,46 @@ public class StringIndex {
 	/**	@return		the number of distinct strings that have been added to this index so far
 	 */
 	public int distinctSize() {
-		return this.content.size();
+		return this.distinctSize;
 	}
 	
-	private static String maskNull(String str) {
-		return ((str == null) ? NULL_KEY : str);
+	/**	@return		the distinct strings contained in this index, in arbitrary order
+	 */
+	public String[] getStrings() {
+		return this.getStrings(false);
 	}
 	
-	private class Int {
-		int value;
-		Int(int val) {
-			this.value = val;
-		}
-		void increment() {
-			this.value ++;
-		}
-		void increment(int i) {
-			this.value += i;
-		}
-		void decrement() {
-			this.value --;
+	/**	retrieve the distinct strings contained in this index. If sorted, case
+	 * sensitive indices sort the strings in their natural order, case
+	 * insensitive ones use <code>String.CASE_INSENSITIVE_ORDER</code>. If the
+	 * index contains null, it comes first in either case.
+	 * @param	sorted		sort the strings?
+	 * @return	the distinct strings contained in this index
+	 */
+	public String[] getStrings(boolean sorted) {
+		String[] strings = new String[this.distinctSize];
+		int i = 0;
+		boolean containsNull = false;
+		for (int s = 0; s < this.strings.length; s++) {
+			if (this.strings[s] == null)
+				continue;
+			if (this.strings[s] == NULL_KEY)
+				containsNull = true;
+			else strings[i++] = this.strings[s];
 		}
-		void decrement(int i) {
-			this.value = ((this.value > i) ? (this.value - i) : 0);
+		if (sorted) {
+			if (this.caseSensitive)
+				Arrays.sort(strings, 0, i);
+			else Arrays.sort(strings, 0, i, String.CASE_INSENSITIVE_ORDER);
+			if (containsNull)
+				System.arraycopy(strings, 0, strings, 1, i);
 		}
+		if (containsNull)
+			strings[sorted ? 0 : i] = null;
+		return strings;
+	}
+	
+	private static String maskNull(String str) {
+		return ((str == null) ? NULL_KEY : str);
 	}
 }
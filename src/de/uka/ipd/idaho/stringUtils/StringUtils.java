@@ -2610,6 +2610,335 @@ public class StringUtils {
 	 * Note: a threshold of 0 will compute the entire editing distance, regardless of its value
 	 */
 	public static int getLevenshteinDistance(String string1, String string2, int threshold, boolean caseSensitive, int insertCost, int deleteCost) {
+		return getLevenshteinDistance(string1, string2, threshold, caseSensitive, insertCost, deleteCost, null);
+	}
+	
+	/**	compute the Levenshtein distance of two Strings, using a given buffer for all intermediate data
+	 * @param	string1			the first String
+	 * @param	string2			the second String
+	 * @param	threshold		the maximum distance (computation will stop if specified value reached)
+	 * @param	caseSensitive	use case sensitive or case insensitive comparison
+	 * @param	buffer			the buffer to use for intermediate data (specifying null uses a buffer local to the current thread)
+	 * @return the Levenshtein distance of the specified Strings, maximum the specified threshold plus one, soon as the minimum possible distance exceeds the threshold
+	 * Note: a threshold of 0 will compute the entire editing distance, regardless of its value
+	 */
+	public static int getLevenshteinDistance(String string1, String string2, int threshold, boolean caseSensitive, LevenshteinBuffer buffer) {
+		return getLevenshteinDistance(string1, string2, threshold, caseSensitive, 1, 1, buffer);
+	}
+	
+	/**	compute the Levenshtein distance of two Strings, using a given buffer for all intermediate data
+	 * If the insert cost and the delete cost are equal, this method uses the
+	 * bit-parallel algorithm by Myers and Hyyr&ouml;, which processes 64
+	 * characters of the shorter String at once, in blocks of 64 characters if
+	 * the shorter String is longer than that. Otherwise, it uses dynamic
+	 * programming, restricted to a band around the diagonal of the distance
+	 * matrix if a threshold is specified, as no path outside that band can
+	 * stay within the threshold.
+	 * @param	string1			the first String
+	 * @param	string2			the second String
+	 * @param	threshold		the maximum distance (computation will stop if specified value reached)
+	 * @param	caseSensitive	use case sensitive or case insensitive comparison
+	 * @param	insertCost		the cost for inserting a Character
+	 * @param	deleteCost		the cost for deleting a Character
+	 * @param	buffer			the buffer to use for intermediate data (specifying null uses a buffer local to the current thread)
+	 * @return the Levenshtein distance of the specified Strings, maximum the specified threshold plus one, soon as the minimum possible distance exceeds the threshold
+	 * Note: a threshold of 0 will compute the entire editing distance, regardless of its value
+	 */
+	public static int getLevenshteinDistance(String string1, String string2, int threshold, boolean caseSensitive, int insertCost, int deleteCost, LevenshteinBuffer buffer) {
+		if (string1 == null)
+			string1 = "";
+		if (string2 == null)
+			string2 = "";
+		
+		//	length difference alone exceeds threshold
+		if ((Math.abs(string1.length() - string2.length()) > threshold) && (threshold > 0))
+			return (threshold + 1);
+		
+		//	get buffer
+		if (buffer == null)
+			buffer = ((LevenshteinBuffer) levenshteinBuffers.get());
+		
+		//	uniform costs, use bit-parallel computation
+		if ((insertCost == deleteCost) && (insertCost > 0)) {
+			int maxDistance = ((threshold > 0) ? (threshold / insertCost) : -1);
+			int distance = ((string1.length() < string2.length()) ? getBitParallelLevenshteinDistance(string1, string2, maxDistance, caseSensitive, buffer) : getBitParallelLevenshteinDistance(string2, string1, maxDistance, caseSensitive, buffer));
+			return (((maxDistance != -1) && (distance > maxDistance)) ? (threshold + 1) : (distance * insertCost));
+		}
+		
+		//	varying costs, use (banded) dynamic programming
+		else return getBandedLevenshteinDistance(string1, string2, threshold, caseSensitive, insertCost, deleteCost, buffer);
+	}
+	
+	/**
+	 * Reusable buffer for the intermediate data of Levenshtein distance
+	 * computation. Handing the same instance of this class to many calls to
+	 * the getLevenshteinDistance() methods taking one saves the latter from
+	 * allocating memory for every comparison. Instances of this class are not
+	 * thread safe, so each thread needs its own.
+	 * 
+	 * @author sautter
+	 */
+	public static class LevenshteinBuffer {
+		
+		//	bit masks of positions of characters in pattern, all blocks of a character in a row
+		private int blocks = 1;
+		private long[] latinMasks = new long[256]; // characters below 256, by character
+		private int[] otherChars = new int[16]; // open addressing hash table for other characters, -1 marking empty slots
+		private long[] otherMasks = new long[16];
+		private int[] otherSlots = new int[8]; // occupied slots, for cleanup
+		private int otherCount = 0;
+		
+		//	vertical deltas and scores of blocks in bit-parallel computation
+		private long[] pv = new long[1];
+		private long[] mv = new long[1];
+		private int[] scores = new int[1];
+		
+		//	rows and case folded characters for dynamic programming
+		private int[] row = new int[16];
+		private int[] prevRow = new int[16];
+		private char[] chars = new char[16];
+		
+		/** Constructor
+		 */
+		public LevenshteinBuffer() {
+			Arrays.fill(this.otherChars, -1);
+		}
+		
+		void setPattern(String pattern, boolean caseSensitive) {
+			this.blocks = ((pattern.length() + 63) / 64);
+			if (this.latinMasks.length < (256 * this.blocks))
+				this.latinMasks = new long[256 * this.blocks];
+			if (this.pv.length < this.blocks) {
+				this.pv = new long[this.blocks];
+				this.mv = new long[this.blocks];
+				this.scores = new int[this.blocks];
+			}
+			if (this.otherChars.length < (pattern.length() * 2)) {
+				int capacity = this.otherChars.length;
+				while (capacity < (pattern.length() * 2))
+					capacity *= 2;
+				this.otherChars = new int[capacity];
+				Arrays.fill(this.otherChars, -1);
+				this.otherSlots = new int[capacity / 2];
+			}
+			if (this.otherMasks.length < (this.otherChars.length * this.blocks))
+				this.otherMasks = new long[this.otherChars.length * this.blocks];
+			for (int p = 0; p < pattern.length(); p++) {
+				char ch = pattern.charAt(p);
+				if (!caseSensitive)
+					ch = Character.toLowerCase(ch);
+				long bit = (1L << (p & 63));
+				if (ch < 256)
+					this.latinMasks[(ch * this.blocks) + (p >> 6)] |= bit;
+				else {
+					int slot = (ch & (this.otherChars.length - 1));
+					while ((this.otherChars[slot] != -1) && (this.otherChars[slot] != ch))
+						slot = ((slot + 1) & (this.otherChars.length - 1));
+					if (this.otherChars[slot] == -1) {
+						this.otherChars[slot] = ch;
+						this.otherSlots[this.otherCount++] = slot;
+					}
+					this.otherMasks[(slot * this.blocks) + (p >> 6)] |= bit;
+				}
+			}
+		}
+		
+		long getMask(char ch, int block) {
+			if (ch < 256)
+				return this.latinMasks[(ch * this.blocks) + block];
+			if (this.otherCount == 0)
+				return 0;
+			int slot = (ch & (this.otherChars.length - 1));
+			while (this.otherChars[slot] != -1) {
+				if (this.otherChars[slot] == ch)
+					return this.otherMasks[(slot * this.blocks) + block];
+				slot = ((slot + 1) & (this.otherChars.length - 1));
+			}
+			return 0;
+		}
+		
+		void clearPattern(String pattern, boolean caseSensitive) {
+			for (int p = 0; p < pattern.length(); p++) {
+				char ch = pattern.charAt(p);
+				if (!caseSensitive)
+					ch = Character.toLowerCase(ch);
+				if (ch < 256)
+					Arrays.fill(this.latinMasks, (ch * this.blocks), ((ch + 1) * this.blocks), 0);
+			}
+			for (int o = 0; o < this.otherCount; o++) {
+				this.otherChars[this.otherSlots[o]] = -1;
+				Arrays.fill(this.otherMasks, (this.otherSlots[o] * this.blocks), ((this.otherSlots[o] + 1) * this.blocks), 0);
+			}
+			this.otherCount = 0;
+		}
+		
+		void ensureRowLength(int length) {
+			if (this.row.length < length) {
+				this.row = new int[length];
+				this.prevRow = new int[length];
+				this.chars = new char[length];
+			}
+		}
+	}
+	
+	private static ThreadLocal levenshteinBuffers = new ThreadLocal() {
+		protected Object initialValue() {
+			return new LevenshteinBuffer();
+		}
+	};
+	
+	/* Compute the unit cost Levenshtein distance with the bit-parallel
+	 * algorithm by Myers, in the variant by Hyyro, using the blocked variant
+	 * for patterns longer than 64 characters. Computation stops as soon as the
+	 * distance must exceed maxDistance (unless that is -1), returning
+	 * maxDistance plus one. */
+	private static int getBitParallelLevenshteinDistance(String pattern, String text, int maxDistance, boolean caseSensitive, LevenshteinBuffer buffer) {
+		if (pattern.length() == 0)
+			return text.length();
+		buffer.setPattern(pattern, caseSensitive);
+		try {
+			
+			//	pattern fits in single machine word
+			if (buffer.blocks == 1) {
+				long pv = -1L; // all vertical deltas +1
+				long mv = 0L;
+				long last = (1L << (pattern.length() - 1));
+				int score = pattern.length();
+				for (int t = 0; t < text.length(); t++) {
+					char ch = text.charAt(t);
+					if (!caseSensitive)
+						ch = Character.toLowerCase(ch);
+					long eq = buffer.getMask(ch, 0);
+					long xv = (eq | mv);
+					long xh = ((((eq & pv) + pv) ^ pv) | eq);
+					long ph = (mv | ~(xh | pv));
+					long mh = (pv & xh);
+					if ((ph & last) != 0)
+						score++;
+					else if ((mh & last) != 0)
+						score--;
+					ph = ((ph << 1) | 1L); // top row of distance matrix increments by 1
+					mh = (mh << 1);
+					pv = (mh | ~(xv | ph));
+					mv = (ph & xv);
+					if ((maxDistance != -1) && ((score - (text.length() - t - 1)) > maxDistance))
+						return (maxDistance + 1); // score can decrease by at most 1 per remaining character
+				}
+				return score;
+			}
+			
+			//	initialize blocks
+			int blocks = buffer.blocks;
+			long[] pvs = buffer.pv;
+			long[] mvs = buffer.mv;
+			int[] scores = buffer.scores;
+			for (int b = 0; b < blocks; b++) {
+				pvs[b] = -1L;
+				mvs[b] = 0L;
+				scores[b] = Math.min(((b + 1) * 64), pattern.length());
+			}
+			long lastBlockLast = (1L << ((pattern.length() - 1) & 63));
+			
+			//	process text, handing horizontal deltas from block to block
+			for (int t = 0; t < text.length(); t++) {
+				char ch = text.charAt(t);
+				if (!caseSensitive)
+					ch = Character.toLowerCase(ch);
+				int hIn = 1; // top row of distance matrix increments by 1
+				for (int b = 0; b < blocks; b++) {
+					long eq = buffer.getMask(ch, b);
+					long pv = pvs[b];
+					long mv = mvs[b];
+					long last = (((b + 1) == blocks) ? lastBlockLast : Long.MIN_VALUE);
+					long xv = (eq | mv);
+					if (hIn < 0)
+						eq |= 1L;
+					long xh = ((((eq & pv) + pv) ^ pv) | eq);
+					long ph = (mv | ~(xh | pv));
+					long mh = (pv & xh);
+					int hOut = 0;
+					if ((ph & last) != 0)
+						hOut = 1;
+					else if ((mh & last) != 0)
+						hOut = -1;
+					ph <<= 1;
+					mh <<= 1;
+					if (hIn < 0)
+						mh |= 1L;
+					else if (hIn > 0)
+						ph |= 1L;
+					pvs[b] = (mh | ~(xv | ph));
+					mvs[b] = (ph & xv);
+					scores[b] += hOut;
+					hIn = hOut;
+				}
+				if ((maxDistance != -1) && ((scores[blocks - 1] - (text.length() - t - 1)) > maxDistance))
+					return (maxDistance + 1); // score can decrease by at most 1 per remaining character
+			}
+			return scores[blocks - 1];
+		}
+		finally {
+			buffer.clearPattern(pattern, caseSensitive);
+		}
+	}
+	
+	/* Compute the weighted Levenshtein distance with dynamic programming in
+	 * two rows, restricted to the band of the matrix whose cells can have a
+	 * value below the threshold if the latter is set. */
+	private static int getBandedLevenshteinDistance(String string1, String string2, int threshold, boolean caseSensitive, int insertCost, int deleteCost, LevenshteinBuffer buffer) {
+		int length1 = string1.length();
+		int length2 = string2.length();
+		int substitutionFactor = ((insertCost + deleteCost) / 2);
+		int minIndelCost = Math.min(insertCost, deleteCost);
+		int band = (((threshold > 0) && (minIndelCost > 0)) ? (threshold / minIndelCost) : Math.max(length1, length2));
+		if (Math.abs(length1 - length2) > band)
+			return (threshold + 1); // cannot get here without threshold
+		int infinity = (Integer.MAX_VALUE / 2);
+		
+		//	prepare rows and characters
+		buffer.ensureRowLength(length2 + 2);
+		int[] prevRow = buffer.prevRow;
+		int[] row = buffer.row;
+		char[] chars2 = buffer.chars;
+		for (int c = 0; c < length2; c++)
+			chars2[c] = (caseSensitive ? string2.charAt(c) : Character.toLowerCase(string2.charAt(c)));
+		
+		//	initialize first row
+		for (int c = 0; c <= Math.min(length2, band); c++)
+			prevRow[c] = (c * deleteCost);
+		if (band < length2)
+			prevRow[band + 1] = infinity;
+		
+		//	compute rows
+		for (int l = 1; l <= length1; l++) {
+			int from = Math.max(1, (l - band));
+			int to = Math.min(length2, (l + band));
+			row[from - 1] = ((from == 1) ? (l * insertCost) : infinity);
+			int rowMin = row[from - 1];
+			char ch1 = (caseSensitive ? string1.charAt(l - 1) : Character.toLowerCase(string1.charAt(l - 1)));
+			for (int c = from; c <= to; c++) {
+				int cost = ((ch1 == chars2[c - 1]) ? 0 : substitutionFactor);
+				int distance = min3((prevRow[c] + deleteCost), (row[c - 1] + insertCost), (prevRow[c - 1] + cost));
+				row[c] = distance;
+				if (distance < rowMin)
+					rowMin = distance;
+			}
+			if (to < length2)
+				row[to + 1] = infinity;
+			if ((rowMin > threshold) && (threshold > 0))
+				return (threshold + 1); // every path crosses every row
+			int[] swap = prevRow;
+			prevRow = row;
+			row = swap;
+		}
+		
+		//	check result against threshold
+		int distance = prevRow[length2];
+		return (((distance > threshold) && (threshold > 0)) ? (threshold + 1) : distance);
+	}
+	
+	/* the original full matrix implementation, retained for benchmarking */
+	private static int getLevenshteinDistanceFullMatrix(String string1, String string2, int threshold, boolean caseSensitive, int insertCost, int deleteCost) {
 		int[][] distanceMatrix; // matrix
 		int length1; // length of s
 		int length2; // length of t
@@ -3089,4 +3418,44 @@ public class StringUtils {
 		return dotFreeStr;
 	}
 	private static final boolean DEBUG_ABBREVIATIONS = false;
+	
+	/**
+	 * Benchmark for Levenshtein distance computation, comparing the bit-parallel
+	 * and banded implementations to the original full matrix one on random
+	 * name-like strings.
+	 * @param args the number of comparisons (optional, defaults to 1000000)
+	 */
+	public static void main(String[] args) throws Exception {
+		int comparisons = ((args.length == 0) ? 1000000 : Integer.parseInt(args[0]));
+		java.util.Random random = new java.util.Random(666);
+		String[] strings = new String[1000];
+		for (int s = 0; s < strings.length; s++) {
+			StringBuffer string = new StringBuffer();
+			int length = (((s % 10) == 0) ? (80 + random.nextInt(80)) : (4 + random.nextInt(20)));
+			for (int c = 0; c < length; c++)
+				string.append((char) ((random.nextInt(5) == 0) ? ('A' + random.nextInt(26)) : ('a' + random.nextInt(26))));
+			strings[s] = string.toString();
+		}
+		LevenshteinBuffer buffer = new LevenshteinBuffer();
+		int[][] settings = {
+			{0, 1, 1},
+			{3, 1, 1},
+			{0, 1, 2},
+			{3, 1, 2},
+		};
+		for (int r = 0; r < 3; r++)
+			for (int s = 0; s < settings.length; s++) {
+				long checksum = 0;
+				long start = System.currentTimeMillis();
+				for (int c = 0; c < comparisons; c++)
+					checksum += getLevenshteinDistanceFullMatrix(strings[c % strings.length], strings[(c * 7 + 1) % strings.length], settings[s][0], false, settings[s][1], settings[s][2]);
+				long matrixTime = (System.currentTimeMillis() - start);
+				long newChecksum = 0;
+				start = System.currentTimeMillis();
+				for (int c = 0; c < comparisons; c++)
+					newChecksum += getLevenshteinDistance(strings[c % strings.length], strings[(c * 7 + 1) % strings.length], settings[s][0], false, settings[s][1], settings[s][2], buffer);
+				long newTime = (System.currentTimeMillis() - start);
+				System.out.println("Round " + r + ", threshold " + settings[s][0] + ", costs " + settings[s][1] + "/" + settings[s][2] + ": full matrix " + matrixTime + "ms (" + checksum + "), new " + newTime + "ms (" + newChecksum + ")");
+			}
+	}
 }
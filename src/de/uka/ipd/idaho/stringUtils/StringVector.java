@@ -41,6 +41,7 @@ import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -61,7 +62,7 @@ import java.util.Vector;
  * <li>set operations (the union(), intersect() and without() methods, and the
  * isSubsetOf() and contains() methods) </li>
  * <li>O(1) lookup (the contains() and containsIgnoreCase() methods, which are
- * backed by HashMaps) </li>
+ * backed by hash based StringIndexes) </li>
  * <li>built-in sorting (the sortLexicographically() and sortByLength()
  * methods) </li>
  * <li>tokenization (the parseAndAddElements() methods) </li>
@@ -492,7 +493,7 @@ public class StringVector implements MutableDictionary {
 	 * @param	sv	the StringVector that's contant is to be added
 	 */
 	public void addContent(StringVector sv) {
-		for (int i = 0; i < sv.size(); i++) this.addElement(sv.get(i));
+		this.addElements(sv.toStringArray());
 	}
 	
 	/**	add all elements of StringVector s to this StringVector, but ignore elements already contained
@@ -514,7 +515,16 @@ public class StringVector implements MutableDictionary {
 	 * @param	s	the array containing the Strings to be added
 	 */
 	public void addContent(String[] s) {
-		if (s != null) for (int i = 0; i < s.length; i++) this.addElement(s[i]);
+		if (s != null) this.addElements(s);
+	}
+	
+	//	bulk add, sizing the indices only once and notifying listeners only once
+	private void addElements(String[] s) {
+		if (s.length == 0) return;
+		this.vector.addAll(Arrays.asList(s));
+		this.content.addAll(s);
+		this.contentIgnoreCase.addAll(s);
+		this.notifyModified();
 	}
 	
 	/**	add all elements of String array s to this StringVector, but ignore elements already contained
@@ -1412,12 +1422,14 @@ public class StringVector implements MutableDictionary {
 		StringVector sv = new StringVector();
 		if (reader == null) return sv;
 		BufferedReader buf = ((reader instanceof BufferedReader) ? ((BufferedReader) reader) : new BufferedReader(reader));
-		StringVector elementLines = new StringVector();
+		boolean replaceLineSeparator = ((lineSeparator != null) && (lineSeparator.length() != 0));
+		ArrayList lines = new ArrayList();
 		for (String line; (line = buf.readLine()) != null;) {
-			elementLines.parseAndAddElements(line, lineSeparator);
-			sv.addElement(elementLines.concatStrings("\n"));
-			elementLines.clear();
+			if (replaceLineSeparator && (line.indexOf(lineSeparator) != -1))
+				line = line.replace(lineSeparator, "\n");
+			lines.add(line);
 		}
+		sv.addElements((String[]) lines.toArray(new String[lines.size()]));
 		return sv;
 	}
 	
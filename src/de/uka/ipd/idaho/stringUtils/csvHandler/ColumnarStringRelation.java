@@ -0,0 +1,1152 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.stringUtils.csvHandler;
+
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import de.uka.ipd.idaho.stringUtils.StringVector;
+
+/**
+ * A StringRelation that stores its data column by column rather than as one
+ * StringTupel per row. Each key has its own column, which holds repeated
+ * strings as codes into a dictionary of distinct values, and falls back to a
+ * plain array of strings only if most values are distinct. Columns holding
+ * only integer or floating point numbers can be switched to primitive arrays
+ * via the setColumnType() method, as long as the numbers read back exactly as
+ * they were written. Empty values may occur in numeric columns and read back
+ * as empty strings, but count as missing numbers; like empty strings in
+ * string columns, they sort before all other values. This makes for a small
+ * fraction of the objects and memory needed for a map per row, and lets the
+ * getValues(), filter(), project(), and orderBy() methods work column by
+ * column.<br>
+ * The get() method returns lightweight views of individual rows, which read
+ * and write the columns directly. As a view refers to a row position, it
+ * points to a different row after rows are inserted, removed, or reordered
+ * before it. Views list only keys with a non-null value. The filter() and
+ * project() methods return new ColumnarStringRelations holding copies of
+ * the data, rather than sharing the tupel objects.<br>
+ * The readCsvData() methods of this class load CSV data directly into a
+ * ColumnarStringRelation. For other options, use the addCsvData() methods
+ * with a ColumnarStringRelation as the argument relation.
+ * 
+ * @author sautter
+ */
+public class ColumnarStringRelation extends StringRelation {
+	
+	/** column type for arbitrary strings, the default */
+	public static final int STRING_COLUMN = 0;
+	
+	/** column type for integer numbers */
+	public static final int INT_COLUMN = 1;
+	
+	/** column type for floating point numbers */
+	public static final int DOUBLE_COLUMN = 2;
+	
+	private ArrayList columns = new ArrayList();
+	private HashMap columnsByKey = new HashMap();
+	private int size = 0;
+	private int capacity;
+	
+	/**	Constructor
+	 */
+	public ColumnarStringRelation() {
+		this(16);
+	}
+	
+	/**	Constructor
+	 * @param	capacity	the number of rows to expect
+	 */
+	public ColumnarStringRelation(int capacity) {
+		this.capacity = Math.max(capacity, 1);
+	}
+	
+	/*
+	 * methods according to java.util.Vector, working on the columns
+	 */
+	
+	/** @see java.util.Vector#add(int, java.lang.Object)
+	 */
+	public void add(int index, StringTupel s) {
+		if ((index < 0) || (index > this.size))
+			throw new ArrayIndexOutOfBoundsException(index);
+		this.ensureCapacity(this.size + 1);
+		for (int c = 0; c < this.columns.size(); c++) {
+			Column column = ((Column) this.columns.get(c));
+			column.move(index, (index + 1), (this.size - index));
+			column.set(index, null);
+		}
+		this.size++;
+		this.setRow(index, s);
+	}
+	
+	/** @see java.util.Vector#addElement(java.lang.Object)
+	 */
+	public void addElement(StringTupel s) {
+		this.ensureCapacity(this.size + 1);
+		this.size++;
+		this.setRow((this.size - 1), s);
+	}
+	
+	/** @see java.util.Vector#clear()
+	 */
+	public void clear() {
+		this.columns.clear();
+		this.columnsByKey.clear();
+		this.size = 0;
+	}
+	
+	/** @see java.util.Vector#firstElement()
+	 */
+	public StringTupel firstElement() {
+		if (this.size == 0)
+			throw new NoSuchElementException();
+		return this.get(0);
+	}
+	
+	/** @see java.util.Vector#get(int)
+	 */
+	public StringTupel get(int index) {
+		if ((index < 0) || (index >= this.size))
+			throw new ArrayIndexOutOfBoundsException(index);
+		return new Row(index);
+	}
+	
+	/** @see java.util.Vector#insertElementAt(java.lang.Object, int)
+	 */
+	public void insertElementAt(StringTupel s, int index) {
+		this.add(index, s);
+	}
+	
+	/** @see java.util.Vector#lastElement()
+	 */
+	public StringTupel lastElement() {
+		if (this.size == 0)
+			throw new NoSuchElementException();
+		return this.get(this.size - 1);
+	}
+	
+	/**	remove a row, returning a copy of its data (a view would point to the subsequent row after the removal)
+	 * @see java.util.Vector#remove(int)
+	 */
+	public StringTupel remove(int index) {
+		StringTupel removed = this.copyRow(index);
+		this.removeElementAt(index);
+		return removed;
+	}
+	
+	/** @see java.util.Vector#remove(java.lang.Object)
+	 */
+	public void remove(StringTupel s) {
+		for (int r = 0; r < this.size; r++) {
+			if (s.equals(new Row(r))) {
+				this.removeElementAt(r);
+				return;
+			}
+		}
+	}
+	
+	/** @see java.util.Vector#removeElementAt(int)
+	 */
+	public void removeElementAt(int index) {
+		if ((index < 0) || (index >= this.size))
+			throw new ArrayIndexOutOfBoundsException(index);
+		for (int c = 0; c < this.columns.size(); c++) {
+			Column column = ((Column) this.columns.get(c));
+			column.move((index + 1), index, (this.size - index - 1));
+			column.set((this.size - 1), null);
+		}
+		this.size--;
+	}
+	
+	/**	replace a row, returning a copy of its previous data
+	 * @see java.util.Vector#set(int, java.lang.Object)
+	 */
+	public StringTupel set(int index, StringTupel s) {
+		StringTupel old = this.copyRow(index);
+		this.setElementAt(s, index);
+		return old;
+	}
+	
+	/** @see java.util.Vector#setElementAt(java.lang.Object, int)
+	 */
+	public void setElementAt(StringTupel s, int index) {
+		if ((index < 0) || (index >= this.size))
+			throw new ArrayIndexOutOfBoundsException(index);
+		for (int c = 0; c < this.columns.size(); c++)
+			((Column) this.columns.get(c)).set(index, null);
+		this.setRow(index, s);
+	}
+	
+	/** @see java.util.Vector#isEmpty()
+	 */
+	public boolean isEmpty() {
+		return (this.size == 0);
+	}
+	
+	/** @see java.util.Vector#size()
+	 */
+	public int size() {
+		return this.size;
+	}
+	
+	private void ensureCapacity(int minCapacity) {
+		if (minCapacity <= this.capacity)
+			return;
+		this.capacity = Math.max(minCapacity, (this.capacity + (this.capacity / 2)));
+		for (int c = 0; c < this.columns.size(); c++)
+			((Column) this.columns.get(c)).setCapacity(this.capacity);
+	}
+	
+	private void setRow(int row, StringTupel s) {
+		String[] keys = s.getKeyArray();
+		for (int k = 0; k < keys.length; k++)
+			this.setValue(row, keys[k], s.getValue(keys[k]));
+	}
+	
+	private StringTupel copyRow(int row) {
+		if ((row < 0) || (row >= this.size))
+			throw new ArrayIndexOutOfBoundsException(row);
+		StringTupel st = new StringTupel(this.columns.size());
+		for (int c = 0; c < this.columns.size(); c++) {
+			Column column = ((Column) this.columns.get(c));
+			String value = column.get(row);
+			if (value != null)
+				st.setValue(column.key, value);
+		}
+		return st;
+	}
+	
+	private Column getColumn(String key, boolean create) {
+		Column column = ((Column) this.columnsByKey.get(key));
+		if ((column == null) && create) {
+			column = new StringColumn(key, this.capacity);
+			this.columns.add(column);
+			this.columnsByKey.put(key, column);
+		}
+		return column;
+	}
+	
+	private void replaceColumn(Column column, Column replacement) {
+		this.columns.set(this.columns.indexOf(column), replacement);
+		this.columnsByKey.put(replacement.key, replacement);
+	}
+	
+	/**	retrieve the value of a key in a given row
+	 * @param	row		the index of the row
+	 * @param	key		the key of the desired value
+	 * @return the value assigned to the specified key in the specified row, or null if there is no such value
+	 */
+	public String getValue(int row, String key) {
+		if ((row < 0) || (row >= this.size))
+			throw new ArrayIndexOutOfBoundsException(row);
+		Column column = this.getColumn(key, false);
+		return ((column == null) ? null : column.get(row));
+	}
+	
+	/**	set the value of a key in a given row, reverting the column to the string type if the value does not fit a numeric column
+	 * @param	row		the index of the row
+	 * @param	key		the key to set the value for
+	 * @param	value	the value to set
+	 * @return the value previously assigned to the specified key in the specified row, or null if there was no such value
+	 */
+	public String setValue(int row, String key, String value) {
+		if ((row < 0) || (row >= this.size))
+			throw new ArrayIndexOutOfBoundsException(row);
+		if (key == null)
+			return value;
+		Column column = this.getColumn(key, true); // create column even for null, so we don't lose empty columns
+		String old = column.get(row);
+		if (!column.set(row, value)) {
+			Column stringColumn = column.toStringColumn(this.size, this.capacity);
+			this.replaceColumn(column, stringColumn);
+			stringColumn.set(row, value);
+		}
+		return old;
+	}
+	
+	/**	retrieve the value of a key in a given row as an integer number, parsing the value if the column is not an integer column
+	 * @param	row		the index of the row
+	 * @param	key		the key of the desired value
+	 * @param	def		the value to return if there is no value, or the value is not an integer number
+	 * @return the value assigned to the specified key in the specified row
+	 */
+	public int getIntValue(int row, String key, int def) {
+		Column column = this.getColumn(key, false);
+		if (column instanceof IntColumn)
+			return (((IntColumn) column).isNumber(row) ? ((IntColumn) column).values[row] : def);
+		String value = this.getValue(row, key);
+		if (value == null)
+			return def;
+		try {
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException nfe) {
+			return def;
+		}
+	}
+	
+	/**	retrieve the value of a key in a given row as a floating point number, parsing the value if the column is not a numeric column
+	 * @param	row		the index of the row
+	 * @param	key		the key of the desired value
+	 * @param	def		the value to return if there is no value, or the value is not a number
+	 * @return the value assigned to the specified key in the specified row
+	 */
+	public double getDoubleValue(int row, String key, double def) {
+		Column column = this.getColumn(key, false);
+		if (column instanceof IntColumn)
+			return (((IntColumn) column).isNumber(row) ? ((IntColumn) column).values[row] : def);
+		if (column instanceof DoubleColumn)
+			return (((DoubleColumn) column).isNumber(row) ? ((DoubleColumn) column).values[row] : def);
+		String value = this.getValue(row, key);
+		if (value == null)
+			return def;
+		double number = parseNumber(value.trim());
+		return ((number == number) ? number : def);
+	}
+	
+	/**	retrieve the type of the column holding the values of a given key
+	 * @param	key		the key to check
+	 * @return the column type, or -1 if there is no column for the argument key
+	 */
+	public int getColumnType(String key) {
+		Column column = this.getColumn(key, false);
+		return ((column == null) ? -1 : column.getType());
+	}
+	
+	/**	change the type of the column holding the values of a given key. Switching to a numeric type only succeeds if all values in the column are numbers that read back exactly as they are, i.e., without leading zeros, plus signs, or insignificant decimal places. Empty values are retained, but count as missing values in numeric columns.
+	 * @param	key		the key whose column to convert
+	 * @param	type	the column type to convert to
+	 * @return true if the column has the argument type after the conversion
+	 */
+	public boolean setColumnType(String key, int type) {
+		Column column = this.getColumn(key, false);
+		if (column == null)
+			return false;
+		if (column.getType() == type)
+			return true;
+		Column converted;
+		if (type == STRING_COLUMN)
+			converted = column.toStringColumn(this.size, this.capacity);
+		else if (type == INT_COLUMN)
+			converted = new IntColumn(key, this.capacity);
+		else if (type == DOUBLE_COLUMN)
+			converted = new DoubleColumn(key, this.capacity);
+		else throw new IllegalArgumentException("Invalid column type " + type);
+		for (int r = 0; r < this.size; r++) {
+			if (!converted.set(r, column.get(r)))
+				return false;
+		}
+		this.replaceColumn(column, converted);
+		return true;
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.stringUtils.csvHandler.StringRelation#getKeys()
+	 */
+	public StringVector getKeys() {
+		StringVector keys = new StringVector();
+		keys.addContent(this.getKeyArray());
+		return keys;
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.stringUtils.csvHandler.StringRelation#getKeyArray()
+	 */
+	public String[] getKeyArray() {
+		String[] keys = new String[this.columns.size()];
+		for (int c = 0; c < this.columns.size(); c++)
+			keys[c] = ((Column) this.columns.get(c)).key;
+		return keys;
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.stringUtils.csvHandler.StringRelation#getValues(java.lang.String)
+	 */
+	public StringVector getValues(String key) {
+		Column column = this.getColumn(key, false);
+		String[] values = new String[this.size];
+		if (column != null) {
+			for (int r = 0; r < this.size; r++)
+				values[r] = column.get(r);
+		}
+		StringVector sv = new StringVector();
+		sv.addContent(values);
+		return sv;
+	}
+	
+	/**	sort the rows, using the values of a key for comparison, case insensitive for string columns, numerically for numeric columns, with empty values first and missing values last in either case
+	 * @see de.uka.ipd.idaho.stringUtils.csvHandler.StringRelation#orderBy(java.lang.String)
+	 */
+	public void orderBy(String key) {
+		if (key != null)
+			this.orderBy(new String[] {key});
+	}
+	
+	/**	sort the rows, using the values of a set of keys for comparison, case insensitive for string columns, numerically for numeric columns, with empty values first and missing values last in either case
+	 * @see de.uka.ipd.idaho.stringUtils.csvHandler.StringRelation#orderBy(java.lang.String[])
+	 */
+	public void orderBy(String[] keys) {
+		if ((keys == null) || (this.size < 2))
+			return;
+		ArrayList sortColumnList = new ArrayList();
+		for (int k = 0; k < keys.length; k++) {
+			Column column = this.getColumn(keys[k], false);
+			if (column != null)
+				sortColumnList.add(column);
+		}
+		if (sortColumnList.isEmpty())
+			return;
+		Column[] sortColumns = ((Column[]) sortColumnList.toArray(new Column[sortColumnList.size()]));
+		
+		//	sort row numbers (stable, like the sort in StringRelation)
+		int[] rows = new int[this.size];
+		for (int r = 0; r < rows.length; r++)
+			rows[r] = r;
+		mergeSort(rows, new int[rows.length], 0, rows.length, sortColumns);
+		
+		//	rearrange columns
+		for (int c = 0; c < this.columns.size(); c++) {
+			Column column = ((Column) this.columns.get(c));
+			Column sorted = column.select(rows, this.size, this.capacity);
+			this.columns.set(c, sorted);
+			this.columnsByKey.put(sorted.key, sorted);
+		}
+	}
+	
+	private static void mergeSort(int[] rows, int[] buffer, int from, int to, Column[] sortColumns) {
+		if ((to - from) < 8) {
+			for (int i = (from + 1); i < to; i++) {
+				int row = rows[i];
+				int j = i;
+				for (; (j > from) && (compareRows(rows[j-1], row, sortColumns) > 0); j--)
+					rows[j] = rows[j-1];
+				rows[j] = row;
+			}
+			return;
+		}
+		int mid = ((from + to) >>> 1);
+		mergeSort(rows, buffer, from, mid, sortColumns);
+		mergeSort(rows, buffer, mid, to, sortColumns);
+		if (compareRows(rows[mid-1], rows[mid], sortColumns) <= 0)
+			return; // already in order
+		System.arraycopy(rows, from, buffer, from, (to - from));
+		for (int i = from, j = mid, k = from; k < to; k++) {
+			if ((j >= to) || ((i < mid) && (compareRows(buffer[i], buffer[j], sortColumns) <= 0)))
+				rows[k] = buffer[i++];
+			else rows[k] = buffer[j++];
+		}
+	}
+	
+	private static int compareRows(int row1, int row2, Column[] sortColumns) {
+		for (int c = 0; c < sortColumns.length; c++) {
+			int comp = sortColumns[c].compare(row1, row2);
+			if (comp != 0)
+				return comp;
+		}
+		return 0;
+	}
+	
+	/**	select all rows that match the given filtering tupel, comparing values column by column
+	 * @see de.uka.ipd.idaho.stringUtils.csvHandler.StringRelation#filter(de.uka.ipd.idaho.stringUtils.csvHandler.StringTupel)
+	 */
+	public StringRelation filter(StringTupel filter) {
+		int[] rows = new int[this.size];
+		for (int r = 0; r < rows.length; r++)
+			rows[r] = r;
+		int count = this.size;
+		String[] filterKeys = ((filter == null) ? new String[0] : filter.getKeyArray());
+		for (int k = 0; k < filterKeys.length; k++) {
+			String value = filter.getValue(filterKeys[k]);
+			Column column = this.getColumn(filterKeys[k], false);
+			if (column != null)
+				count = column.retainMatching(value, rows, count);
+			else if (value != null)
+				count = 0;
+		}
+		return this.selectRows(rows, count);
+	}
+	
+	/**	select all rows that match the given filter, returning a new ColumnarStringRelation holding copies of these rows
+	 * @see de.uka.ipd.idaho.stringUtils.csvHandler.StringRelation#filter(de.uka.ipd.idaho.stringUtils.csvHandler.StringTupelFilter)
+	 */
+	public StringRelation filter(StringTupelFilter filter) {
+		if (filter == null)
+			return this;
+		int[] rows = new int[this.size];
+		int count = 0;
+		for (int r = 0; r < this.size; r++) {
+			if (filter.matches(new Row(r)))
+				rows[count++] = r;
+		}
+		return this.selectRows(rows, count);
+	}
+	
+	private ColumnarStringRelation selectRows(int[] rows, int count) {
+		ColumnarStringRelation result = new ColumnarStringRelation(count);
+		for (int c = 0; c < this.columns.size(); c++)
+			result.addColumn(((Column) this.columns.get(c)).select(rows, count, result.capacity));
+		result.size = count;
+		return result;
+	}
+	
+	private void addColumn(Column column) {
+		this.columns.add(column);
+		this.columnsByKey.put(column.key, column);
+	}
+	
+	/**	project this relation to a given set of keys, copying the respective columns
+	 * @see de.uka.ipd.idaho.stringUtils.csvHandler.StringRelation#project(de.uka.ipd.idaho.stringUtils.StringVector)
+	 */
+	public StringRelation project(StringVector keys) {
+		int[] rows = new int[this.size];
+		for (int r = 0; r < rows.length; r++)
+			rows[r] = r;
+		ColumnarStringRelation result = new ColumnarStringRelation(this.size);
+		for (int c = 0; c < this.columns.size(); c++) {
+			Column column = ((Column) this.columns.get(c));
+			if (keys.contains(column.key))
+				result.addColumn(column.select(rows, this.size, result.capacity));
+		}
+		result.size = this.size;
+		return result;
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.stringUtils.csvHandler.StringRelation#removeDuplicates()
+	 */
+	public void removeDuplicates() {
+		if (this.size < 2)
+			return;
+		String[] keys = this.getKeyArray();
+		HashSet rowStrings = new HashSet(this.size);
+		int[] rows = new int[this.size];
+		int count = 0;
+		for (int r = 0; r < this.size; r++) {
+			if (rowStrings.add(new Row(r).toCsvString(keys)))
+				rows[count++] = r;
+		}
+		if (count == this.size)
+			return;
+		for (int c = 0; c < this.columns.size(); c++) {
+			Column column = ((Column) this.columns.get(c));
+			Column retained = column.select(rows, count, this.capacity);
+			this.columns.set(c, retained);
+			this.columnsByKey.put(retained.key, retained);
+		}
+		this.size = count;
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.stringUtils.csvHandler.StringRelation#renameKey(java.lang.String, java.lang.String)
+	 */
+	public void renameKey(String key, String newKey) {
+		if ((key == null) || (newKey == null) || key.equals(newKey))
+			return;
+		Column column = this.getColumn(key, false);
+		if (column == null)
+			return;
+		Column replaced = this.getColumn(newKey, false);
+		if (replaced != null)
+			this.columns.remove(replaced);
+		this.columnsByKey.remove(key);
+		column.key = newKey;
+		this.columnsByKey.put(newKey, column);
+	}
+	
+	/* (non-Javadoc)
+	 * @see de.uka.ipd.idaho.stringUtils.csvHandler.StringRelation#removeValue(java.lang.String)
+	 */
+	public void removeValue(String key) {
+		Column column = ((Column) this.columnsByKey.remove(key));
+		if (column != null)
+			this.columns.remove(column);
+	}
+	
+	/* view of an individual row, reading and writing the columns */
+	private class Row extends StringTupel {
+		private final int row;
+		Row(int row) {
+			super((LinkedHashMap) null);
+			this.row = row;
+		}
+		public String setValue(String key, String value) {
+			return ColumnarStringRelation.this.setValue(this.row, key, value);
+		}
+		public String getValue(String key, String def) {
+			Column column = getColumn(key, false);
+			String value = ((column == null) ? null : column.get(this.row));
+			return ((value == null) ? def : value);
+		}
+		public String removeValue(String key) {
+			Column column = getColumn(key, false);
+			if (column == null)
+				return null;
+			String old = column.get(this.row);
+			column.set(this.row, null);
+			return old;
+		}
+		void getKeys(StringVector sv) {
+			for (int c = 0; c < columns.size(); c++) {
+				Column column = ((Column) columns.get(c));
+				if (!column.isNull(this.row))
+					sv.addElementIgnoreDuplicates(column.key);
+			}
+		}
+		public String[] getKeyArray() {
+			String[] keys = new String[this.size()];
+			this.getKeys(keys);
+			return keys;
+		}
+		void getKeys(String[] keys) {
+			int k = 0;
+			for (int c = 0; c < columns.size(); c++) {
+				Column column = ((Column) columns.get(c));
+				if (!column.isNull(this.row))
+					keys[k++] = column.key;
+			}
+		}
+		public int size() {
+			int size = 0;
+			for (int c = 0; c < columns.size(); c++) {
+				if (!((Column) columns.get(c)).isNull(this.row))
+					size++;
+			}
+			return size;
+		}
+		public void clear() {
+			for (int c = 0; c < columns.size(); c++)
+				((Column) columns.get(c)).set(this.row, null);
+		}
+		public StringTupel project(StringVector keys) {
+			return this.project(keys.toStringArray());
+		}
+		public StringTupel project(String[] keys) {
+			StringTupel st = new StringTupel(keys.length);
+			for (int k = 0; k < keys.length; k++) {
+				String value = this.getValue(keys[k]);
+				if (value != null)
+					st.setValue(keys[k], value);
+			}
+			return st;
+		}
+		public int hashCode() {
+			if (this.size() == 0)
+				return 0;
+			String[] keys = this.getKeyArray();
+			Arrays.sort(keys);
+			return this.toCsvString(keys).hashCode();
+		}
+	}
+	
+	/* a column of values, with rows addressed by their index */
+	private static abstract class Column {
+		String key;
+		Column(String key) {
+			this.key = key;
+		}
+		abstract int getType();
+		abstract String get(int row);
+		abstract boolean isNull(int row);
+		/* store a value, returning false if the value does not fit the column type */
+		abstract boolean set(int row, String value);
+		abstract void setCapacity(int capacity);
+		abstract void move(int from, int to, int length);
+		/* copy the argument rows into a new column of the same type */
+		abstract Column select(int[] rows, int count, int capacity);
+		/* compare two rows, sorting null values last, and empty values first */
+		abstract int compare(int row1, int row2);
+		/* reduce the argument rows to the ones holding a given value, returning how many remain */
+		int retainMatching(String value, int[] rows, int count) {
+			int retained = 0;
+			for (int r = 0; r < count; r++) {
+				String rowValue = this.get(rows[r]);
+				if ((value == null) ? (rowValue == null) : value.equals(rowValue))
+					rows[retained++] = rows[r];
+			}
+			return retained;
+		}
+		StringColumn toStringColumn(int size, int capacity) {
+			StringColumn column = new StringColumn(this.key, capacity);
+			for (int r = 0; r < size; r++)
+				column.set(r, this.get(r));
+			return column;
+		}
+	}
+	
+	private static class StringColumn extends Column {
+		private static final int MIN_DICTIONARY_SIZE = 4096;
+		private int[] codes; // codes of values in dictionary, -1 for null, null if column not (or no longer) dictionary encoded
+		private ArrayList dictionary; // append-only, so columns selected from this one can share it
+		private HashMap codesByValue;
+		private int[] ranks; // case insensitive sort rank of dictionary values, computed on demand
+		private String[] values;
+		StringColumn(String key, int capacity) {
+			super(key);
+			this.codes = new int[capacity];
+			Arrays.fill(this.codes, -1);
+			this.dictionary = new ArrayList();
+			this.codesByValue = new HashMap();
+		}
+		private StringColumn(String key, StringColumn model, int capacity) {
+			super(key);
+			if (model.codes == null)
+				this.values = new String[capacity];
+			else {
+				this.codes = new int[capacity];
+				Arrays.fill(this.codes, -1);
+				this.dictionary = model.dictionary;
+				this.codesByValue = model.codesByValue;
+			}
+		}
+		int getType() {
+			return STRING_COLUMN;
+		}
+		String get(int row) {
+			if (this.codes == null)
+				return this.values[row];
+			int code = this.codes[row];
+			return ((code == -1) ? null : ((String) this.dictionary.get(code)));
+		}
+		boolean isNull(int row) {
+			return ((this.codes == null) ? (this.values[row] == null) : (this.codes[row] == -1));
+		}
+		boolean set(int row, String value) {
+			if (this.codes == null)
+				this.values[row] = value;
+			else if (value == null)
+				this.codes[row] = -1;
+			else {
+				Integer code = ((Integer) this.codesByValue.get(value));
+				if (code == null) {
+					
+					//	too many distinct values for the dictionary to pay off
+					if ((this.dictionary.size() >= MIN_DICTIONARY_SIZE) && (this.dictionary.size() > (row / 2))) {
+						this.decode();
+						this.values[row] = value;
+						return true;
+					}
+					code = new Integer(this.dictionary.size());
+					this.dictionary.add(value);
+					this.codesByValue.put(value, code);
+				}
+				this.codes[row] = code.intValue();
+			}
+			return true;
+		}
+		private void decode() {
+			this.values = new String[this.codes.length];
+			for (int r = 0; r < this.codes.length; r++)
+				this.values[r] = this.get(r);
+			this.codes = null;
+			this.dictionary = null;
+			this.codesByValue = null;
+			this.ranks = null;
+		}
+		void setCapacity(int capacity) {
+			if (this.codes == null) {
+				String[] values = new String[capacity];
+				System.arraycopy(this.values, 0, values, 0, Math.min(this.values.length, capacity));
+				this.values = values;
+			}
+			else {
+				int[] codes = new int[capacity];
+				System.arraycopy(this.codes, 0, codes, 0, Math.min(this.codes.length, capacity));
+				if (this.codes.length < capacity)
+					Arrays.fill(codes, this.codes.length, capacity, -1);
+				this.codes = codes;
+			}
+		}
+		void move(int from, int to, int length) {
+			if (this.codes == null)
+				System.arraycopy(this.values, from, this.values, to, length);
+			else System.arraycopy(this.codes, from, this.codes, to, length);
+		}
+		Column select(int[] rows, int count, int capacity) {
+			StringColumn column = new StringColumn(this.key, this, capacity);
+			for (int r = 0; r < count; r++) {
+				if (this.codes == null)
+					column.values[r] = this.values[rows[r]];
+				else column.codes[r] = this.codes[rows[r]];
+			}
+			return column;
+		}
+		int compare(int row1, int row2) {
+			if (this.codes == null) {
+				String value1 = this.values[row1];
+				String value2 = this.values[row2];
+				if (value1 == value2)
+					return 0;
+				if (value1 == null)
+					return 1;
+				if (value2 == null)
+					return -1;
+				return value1.compareToIgnoreCase(value2);
+			}
+			int code1 = this.codes[row1];
+			int code2 = this.codes[row2];
+			if (code1 == code2)
+				return 0;
+			if (code1 == -1)
+				return 1;
+			if (code2 == -1)
+				return -1;
+			if ((this.ranks == null) || (this.ranks.length < this.dictionary.size()))
+				this.computeRanks();
+			return (this.ranks[code1] - this.ranks[code2]);
+		}
+		private void computeRanks() {
+			final String[] values = ((String[]) this.dictionary.toArray(new String[this.dictionary.size()]));
+			Integer[] codes = new Integer[values.length];
+			for (int c = 0; c < codes.length; c++)
+				codes[c] = new Integer(c);
+			Arrays.sort(codes, new java.util.Comparator() {
+				public int compare(Object obj1, Object obj2) {
+					return values[((Integer) obj1).intValue()].compareToIgnoreCase(values[((Integer) obj2).intValue()]);
+				}
+			});
+			int[] ranks = new int[values.length];
+			int rank = 0;
+			for (int c = 0; c < codes.length; c++) {
+				if ((c != 0) && (values[codes[c-1].intValue()].compareToIgnoreCase(values[codes[c].intValue()]) != 0))
+					rank++; // values equal ignoring case need to share their rank
+				ranks[codes[c].intValue()] = rank;
+			}
+			this.ranks = ranks;
+		}
+		int retainMatching(String value, int[] rows, int count) {
+			if (this.codes == null)
+				return super.retainMatching(value, rows, count);
+			int code;
+			if (value == null)
+				code = -1;
+			else {
+				Integer valueCode = ((Integer) this.codesByValue.get(value));
+				if (valueCode == null)
+					return 0;
+				code = valueCode.intValue();
+			}
+			int retained = 0;
+			for (int r = 0; r < count; r++) {
+				if (this.codes[rows[r]] == code)
+					rows[retained++] = rows[r];
+			}
+			return retained;
+		}
+	}
+	
+	private static class IntColumn extends Column {
+		int[] values;
+		private BitSet nulls = new BitSet();
+		private BitSet empties = new BitSet(); // rows holding the empty string, which count as nulls
+		IntColumn(String key, int capacity) {
+			super(key);
+			this.values = new int[capacity];
+			this.nulls.set(0, capacity);
+		}
+		int getType() {
+			return INT_COLUMN;
+		}
+		String get(int row) {
+			if (this.nulls.get(row))
+				return (this.empties.get(row) ? "" : null);
+			return Integer.toString(this.values[row]);
+		}
+		boolean isNull(int row) {
+			return (this.nulls.get(row) && !this.empties.get(row));
+		}
+		boolean isNumber(int row) {
+			return !this.nulls.get(row);
+		}
+		boolean set(int row, String value) {
+			if ((value == null) || (value.length() == 0)) {
+				this.nulls.set(row);
+				this.empties.set(row, (value != null));
+				return true;
+			}
+			int number;
+			try {
+				number = Integer.parseInt(value);
+			}
+			catch (NumberFormatException nfe) {
+				return false;
+			}
+			if (!Integer.toString(number).equals(value))
+				return false; // would not read back exactly
+			this.values[row] = number;
+			this.nulls.clear(row);
+			this.empties.clear(row);
+			return true;
+		}
+		void setCapacity(int capacity) {
+			int[] values = new int[capacity];
+			System.arraycopy(this.values, 0, values, 0, Math.min(this.values.length, capacity));
+			if (this.values.length < capacity)
+				this.nulls.set(this.values.length, capacity);
+			this.values = values;
+		}
+		void move(int from, int to, int length) {
+			System.arraycopy(this.values, from, this.values, to, length);
+			moveNulls(this.nulls, from, to, length);
+			moveNulls(this.empties, from, to, length);
+		}
+		Column select(int[] rows, int count, int capacity) {
+			IntColumn column = new IntColumn(this.key, capacity);
+			for (int r = 0; r < count; r++) {
+				column.values[r] = this.values[rows[r]];
+				if (!this.nulls.get(rows[r]))
+					column.nulls.clear(r);
+				else if (this.empties.get(rows[r]))
+					column.empties.set(r);
+			}
+			return column;
+		}
+		int compare(int row1, int row2) {
+			if (this.nulls.get(row1) || this.nulls.get(row2))
+				return compareMissing(this.nulls, this.empties, row1, row2);
+			int value1 = this.values[row1];
+			int value2 = this.values[row2];
+			return ((value1 < value2) ? -1 : ((value1 == value2) ? 0 : 1));
+		}
+	}
+	
+	private static class DoubleColumn extends Column {
+		double[] values;
+		private BitSet nulls = new BitSet();
+		private BitSet empties = new BitSet(); // rows holding the empty string, which count as nulls
+		DoubleColumn(String key, int capacity) {
+			super(key);
+			this.values = new double[capacity];
+			this.nulls.set(0, capacity);
+		}
+		int getType() {
+			return DOUBLE_COLUMN;
+		}
+		String get(int row) {
+			if (this.nulls.get(row))
+				return (this.empties.get(row) ? "" : null);
+			return formatNumber(this.values[row]);
+		}
+		boolean isNull(int row) {
+			return (this.nulls.get(row) && !this.empties.get(row));
+		}
+		boolean isNumber(int row) {
+			return !this.nulls.get(row);
+		}
+		boolean set(int row, String value) {
+			if ((value == null) || (value.length() == 0)) {
+				this.nulls.set(row);
+				this.empties.set(row, (value != null));
+				return true;
+			}
+			double number = parseNumber(value);
+			if ((number != number) || !formatNumber(number).equals(value))
+				return false; // not a number, or would not read back exactly
+			this.values[row] = number;
+			this.nulls.clear(row);
+			this.empties.clear(row);
+			return true;
+		}
+		void setCapacity(int capacity) {
+			double[] values = new double[capacity];
+			System.arraycopy(this.values, 0, values, 0, Math.min(this.values.length, capacity));
+			if (this.values.length < capacity)
+				this.nulls.set(this.values.length, capacity);
+			this.values = values;
+		}
+		void move(int from, int to, int length) {
+			System.arraycopy(this.values, from, this.values, to, length);
+			moveNulls(this.nulls, from, to, length);
+			moveNulls(this.empties, from, to, length);
+		}
+		Column select(int[] rows, int count, int capacity) {
+			DoubleColumn column = new DoubleColumn(this.key, capacity);
+			for (int r = 0; r < count; r++) {
+				column.values[r] = this.values[rows[r]];
+				if (!this.nulls.get(rows[r]))
+					column.nulls.clear(r);
+				else if (this.empties.get(rows[r]))
+					column.empties.set(r);
+			}
+			return column;
+		}
+		int compare(int row1, int row2) {
+			if (this.nulls.get(row1) || this.nulls.get(row2))
+				return compareMissing(this.nulls, this.empties, row1, row2);
+			return Double.compare(this.values[row1], this.values[row2]);
+		}
+	}
+	
+	/* compare two rows of a numeric column at least one of which holds no number, sorting empty values first (like empty strings in string columns) and null values last */
+	private static int compareMissing(BitSet nulls, BitSet empties, int row1, int row2) {
+		int rank1 = (nulls.get(row1) ? (empties.get(row1) ? 0 : 2) : 1);
+		int rank2 = (nulls.get(row2) ? (empties.get(row2) ? 0 : 2) : 1);
+		return (rank1 - rank2);
+	}
+	
+	private static void moveNulls(BitSet nulls, int from, int to, int length) {
+		if (length <= 0)
+			return;
+		BitSet moved = nulls.get(from, (from + length));
+		nulls.clear(to, (to + length));
+		for (int n = moved.nextSetBit(0); n != -1; n = moved.nextSetBit(n + 1))
+			nulls.set(to + n);
+	}
+	
+	/**
+	 * Read a CSV file into a ColumnarStringRelation. This method assumes comma
+	 * separated and double quote delimited values in platform default
+	 * encoding, with the keys being given as the first line of the file.
+	 * @param file the file to read
+	 * @return a ColumnarStringRelation containing the data read from the
+	 *         specified file
+	 * @throws IOException
+	 */
+	public static StringRelation readCsvData(File file) throws IOException {
+		return readCsvData(file, DEFAULT_SEPARATOR, DEFAULT_VALUE_DELIMITER);
+	}
+	
+	/**
+	 * Read a CSV file into a ColumnarStringRelation, with the keys being given
+	 * as the first line of the file.
+	 * @param file the file to read
+	 * @param separator the value separator character
+	 * @param valueDelimiter the value delimiter character
+	 * @return a ColumnarStringRelation containing the data read from the
+	 *         specified file
+	 * @throws IOException
+	 */
+	public static StringRelation readCsvData(File file, char separator, char valueDelimiter) throws IOException {
+		Reader input = new FileReader(file);
+		try {
+			return readCsvData(input, separator, valueDelimiter, true, null, ((StringTupelFilter) null), null);
+		}
+		finally {
+			input.close();
+		}
+	}
+	
+	/**
+	 * Read CSV data from a Reader into a ColumnarStringRelation. This method
+	 * assumes comma separated and double quote delimited values, with the
+	 * keys being given as the first line of the data.
+	 * @param input the Reader to read from
+	 * @return a ColumnarStringRelation containing the data read from the
+	 *         specified Reader
+	 * @throws IOException
+	 */
+	public static StringRelation readCsvData(Reader input) throws IOException {
+		return readCsvData(input, DEFAULT_SEPARATOR, DEFAULT_VALUE_DELIMITER);
+	}
+	
+	/**
+	 * Read CSV data from a Reader into a ColumnarStringRelation, with the keys
+	 * being given as the first line of the data.
+	 * @param input the Reader to read from
+	 * @param separator the value separator character
+	 * @param valueDelimiter the value delimiter character
+	 * @return a ColumnarStringRelation containing the data read from the
+	 *         specified Reader
+	 * @throws IOException
+	 */
+	public static StringRelation readCsvData(Reader input, char separator, char valueDelimiter) throws IOException {
+		return readCsvData(input, separator, valueDelimiter, true, null, ((StringTupelFilter) null), null);
+	}
+	
+	/**
+	 * Read CSV data from a Reader into a ColumnarStringRelation. This method
+	 * works exactly like the respective method of StringRelation, but stores
+	 * the data column by column.
+	 * @param input the Reader to read from
+	 * @param separator the value separator character
+	 * @param valueDelimiter the value delimiter character
+	 * @param firstLineIsKeys read the keys from the first line of the data?
+	 * @param keys the keys to use if not read from the first line
+	 * @param filter a filter deciding which tupels to include (may be null)
+	 * @param projectionKeys the keys to project the tupels to (may be null)
+	 * @return a ColumnarStringRelation containing the data read from the
+	 *         specified Reader
+	 * @throws IOException
+	 */
+	public static StringRelation readCsvData(Reader input, char separator, char valueDelimiter, boolean firstLineIsKeys, StringVector keys, StringTupelFilter filter, StringVector projectionKeys) throws IOException {
+		ColumnarStringRelation data = new ColumnarStringRelation(1024);
+		addCsvData(data, input, separator, valueDelimiter, firstLineIsKeys, keys, filter, projectionKeys);
+		return data;
+	}
+	
+	/* benchmark comparing memory footprint and column operations to a StringRelation */
+	public static void main(String[] args) throws Exception {
+		int size = 1000000;
+		String[] countries = {"Germany", "France", "Brazil", "Kenya", "Australia", "Canada", "Japan", "Peru"};
+		Random random = new Random(42);
+		StringBuffer csv = new StringBuffer("\"id\",\"species\",\"country\",\"count\"\n");
+		for (int r = 0; r < size; r++)
+			csv.append("\"" + r + "\",\"Species " + random.nextInt(20000) + "\",\"" + countries[random.nextInt(countries.length)] + "\",\"" + random.nextInt(100) + "\"\n");
+		String csvData = csv.toString();
+		csv = null;
+		Runtime rt = Runtime.getRuntime();
+		
+		for (int m = 0; m < 2; m++) {
+			System.gc();
+			long heapBefore = (rt.totalMemory() - rt.freeMemory());
+			long start = System.currentTimeMillis();
+			StringRelation data = ((m == 0) ? StringRelation.readCsvData(new java.io.StringReader(csvData), DEFAULT_SEPARATOR, DEFAULT_VALUE_DELIMITER) : readCsvData(new java.io.StringReader(csvData), DEFAULT_SEPARATOR, DEFAULT_VALUE_DELIMITER));
+			long loadTime = (System.currentTimeMillis() - start);
+			if (data instanceof ColumnarStringRelation)
+				((ColumnarStringRelation) data).setColumnType("count", INT_COLUMN);
+			System.gc();
+			long heap = ((rt.totalMemory() - rt.freeMemory()) - heapBefore);
+			String name = ((m == 0) ? "StringRelation" : "ColumnarStringRelation");
+			System.out.println(name + ": loaded " + data.size() + " rows in " + loadTime + "ms, " + (heap / data.size()) + " bytes per row");
+			
+			start = System.currentTimeMillis();
+			StringVector values = data.getValues("species");
+			long valuesTime = (System.currentTimeMillis() - start);
+			StringTupel filter = new StringTupel();
+			filter.setValue("country", "Kenya");
+			start = System.currentTimeMillis();
+			StringRelation filtered = data.filter(filter);
+			long filterTime = (System.currentTimeMillis() - start);
+			start = System.currentTimeMillis();
+			data.orderBy(new String[] {"country", "species"});
+			long orderTime = (System.currentTimeMillis() - start);
+			System.out.println(name + ": getValues() in " + valuesTime + "ms (" + values.size() + "), filter() in " + filterTime + "ms (" + filtered.size() + "), orderBy() in " + orderTime + "ms");
+		}
+	}
+}
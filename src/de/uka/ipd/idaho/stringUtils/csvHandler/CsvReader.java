@@ -0,0 +1,611 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.stringUtils.csvHandler;
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+import de.uka.ipd.idaho.stringUtils.StringVector;
+
+/**
+ * Streaming reader for CSV data, for data too large to be held in a
+ * StringRelation. Rows can either be pulled one by one via the readRow()
+ * method, or be pushed to a RowReceiver via the readRows() method. In both
+ * cases, the reader re-uses one and the same Row object, which is only valid
+ * until the next row is read. Use the copy() method of a Row to retain its
+ * data.<br>
+ * The reader reads its input in large blocks and scans the individual values
+ * in place, creating Strings only for values that are actually retrieved from
+ * a row. In particular, a filter only creates the values it inspects, and
+ * values not included in the projection keys are never created at all.<br>
+ * Values are trimmed unless quoted. A quoted value may contain line breaks and
+ * the separator character, and the value delimiter escaped by doubling it. A
+ * value delimiter in a quoted value not followed by another one, the
+ * separator, or a line break is read literally. As in the readCsvData()
+ * methods of StringRelation, empty lines and lines holding only a single
+ * empty value are ignored, values missing at the end of a row are read as
+ * empty strings, and values beyond the keys are named by their index in the
+ * row. This reader differs from readCsvData() in two respects, however:
+ * First, it ignores empty values beyond the keys at the end of a row, while
+ * readCsvData() only ignores the very last one; for instance, with three
+ * keys, the row <code>a,b,c,,</code> has no value named "3" here, but an
+ * empty one from readCsvData(). Second, a value delimiter inside an unquoted
+ * value is read literally, while readCsvData() starts a quoted section at it.
+ * 
+ * @author sautter
+ */
+public class CsvReader {
+	
+	/**
+	 * Receiver for the rows of a CSV file, used by the readRows() method.
+	 * 
+	 * @author sautter
+	 */
+	public static interface RowReceiver {
+		
+		/**	receive a row. The argument Row object is re-used for all rows, so implementations must copy any data they want to retain.
+		 * @param	row		the row to handle
+		 * @throws IOException
+		 */
+		public abstract void receiveRow(Row row) throws IOException;
+	}
+	
+	private static final int DEFAULT_BUFFER_SIZE = 65536;
+	
+	private static final int PLAIN_FIELD = 0;
+	private static final int QUOTED_FIELD = 1;
+	private static final int ESCAPED_FIELD = 2;
+	
+	private Reader input;
+	private char separator;
+	private char valueDelimiter;
+	private StringTupelFilter filter;
+	
+	private char[] buffer;
+	private int position = 0;
+	private int limit = 0;
+	private boolean endOfInput = false;
+	
+	private int[] fieldStarts = new int[16];
+	private int[] fieldEnds = new int[16];
+	private int[] fieldTypes = new int[16];
+	private int fieldCount = 0;
+	
+	private String[] keys;
+	private HashMap keyIndex = new HashMap();
+	private String[] projectionKeys;
+	private int[] projectionFields;
+	
+	private Row row = new Row();
+	
+	/* keep lines holding only a single quoted empty value, as single key
+	 * tupels with an empty value are written that way (used by
+	 * ExternalSorter for reading back its own runs) */
+	boolean keepQuotedEmptyValues = false;
+	
+	/**	Constructor reading comma separated, double quote delimited data with the keys in the first line
+	 * @param	input	the Reader to read from
+	 * @throws IOException
+	 */
+	public CsvReader(Reader input) throws IOException {
+		this(input, StringRelation.DEFAULT_SEPARATOR, StringRelation.DEFAULT_VALUE_DELIMITER, true, null, null, null);
+	}
+	
+	/**	Constructor reading data with the keys in the first line
+	 * @param	input			the Reader to read from
+	 * @param	separator		the value separator character (StringRelation.GUESS_SEPARATOR to determine it from the data)
+	 * @param	valueDelimiter	the value delimiter character
+	 * @throws IOException
+	 */
+	public CsvReader(Reader input, char separator, char valueDelimiter) throws IOException {
+		this(input, separator, valueDelimiter, true, null, null, null);
+	}
+	
+	/**	Constructor
+	 * @param	input			the Reader to read from
+	 * @param	separator		the value separator character (StringRelation.GUESS_SEPARATOR to determine it from the data)
+	 * @param	valueDelimiter	the value delimiter character
+	 * @param	firstLineIsKeys	read the keys from the first line of the data?
+	 * @param	keys			the keys to use if not read from the first line
+	 * @param	filter			a filter for the rows to return (may be null)
+	 * @param	projectionKeys	the keys to restrict the returned rows to (may be null)
+	 * @throws IOException
+	 */
+	public CsvReader(Reader input, char separator, char valueDelimiter, boolean firstLineIsKeys, StringVector keys, StringTupelFilter filter, StringVector projectionKeys) throws IOException {
+		if (separator == StringRelation.GUESS_SEPARATOR) {
+			input = ((input instanceof BufferedReader) ? input : new BufferedReader(input));
+			separator = StringRelation.guessSeparator(((BufferedReader) input), valueDelimiter);
+		}
+		this.input = input;
+		this.separator = separator;
+		this.valueDelimiter = valueDelimiter;
+		this.filter = filter;
+		this.buffer = new char[DEFAULT_BUFFER_SIZE];
+		
+		//	get keys
+		if (firstLineIsKeys) {
+			if (this.readRecord()) {
+				this.keys = new String[this.fieldCount];
+				for (int f = 0; f < this.fieldCount; f++)
+					this.keys[f] = this.getField(f);
+			}
+			else this.keys = new String[0];
+		}
+		else this.keys = ((keys == null) ? new String[0] : keys.toStringArray());
+		for (int k = 0; k < this.keys.length; k++) {
+			if (!this.keyIndex.containsKey(this.keys[k]))
+				this.keyIndex.put(this.keys[k], new Integer(k));
+		}
+		
+		//	index projection
+		if (projectionKeys != null) {
+			StringVector projected = new StringVector();
+			for (int p = 0; p < projectionKeys.size(); p++) {
+				if (this.keyIndex.containsKey(projectionKeys.get(p)))
+					projected.addElementIgnoreDuplicates(projectionKeys.get(p));
+			}
+			this.projectionKeys = projected.toStringArray();
+			this.projectionFields = new int[this.projectionKeys.length];
+			for (int p = 0; p < this.projectionKeys.length; p++)
+				this.projectionFields[p] = ((Integer) this.keyIndex.get(this.projectionKeys[p])).intValue();
+		}
+	}
+	
+	/* constructor for readers that provide their rows from elsewhere,
+	 * overwriting readRow() and close() (used by ExternalSorter) */
+	CsvReader(String[] keys) {
+		this.keys = keys;
+	}
+	
+	/**	@return the keys of the rows returned by this reader, i.e., the projection keys if any are given, and the keys of the data otherwise
+	 */
+	public String[] getKeys() {
+		String[] keys = ((this.projectionKeys == null) ? this.keys : this.projectionKeys);
+		String[] copy = new String[keys.length];
+		System.arraycopy(keys, 0, copy, 0, keys.length);
+		return copy;
+	}
+	
+	/**	read the next row that passes the filter. The returned Row object is re-used for all rows, so its data is valid only up to the next invocation of this method.
+	 * @return the next row, or null if the end of the data has been reached
+	 * @throws IOException
+	 */
+	public Row readRow() throws IOException {
+		while (this.readRecord()) {
+			this.row.reset(false);
+			if ((this.filter != null) && !this.filter.matches(this.row))
+				continue;
+			if (this.projectionKeys != null)
+				this.row.reset(true);
+			return this.row;
+		}
+		return null;
+	}
+	
+	/**	read all remaining rows that pass the filter, handing them to a receiver
+	 * @param	receiver	the receiver to hand the rows to
+	 * @return the number of rows handed to the receiver
+	 * @throws IOException
+	 */
+	public int readRows(RowReceiver receiver) throws IOException {
+		int rows = 0;
+		for (Row row; (row = this.readRow()) != null; rows++)
+			receiver.receiveRow(row);
+		return rows;
+	}
+	
+	/**	close the reader, and the underlying input
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		this.input.close();
+	}
+	
+	/* read the next non-empty line into the field bounds, returning false at the end of the input */
+	private boolean readRecord() throws IOException {
+		while (true) {
+			int end;
+			while ((end = this.scanRecord()) == -1)
+				this.fill();
+			if (end == -2)
+				return false;
+			this.position = end;
+			if ((this.fieldCount > 1) || (this.fieldEnds[0] > this.fieldStarts[0]))
+				return true;
+			if (this.keepQuotedEmptyValues && (this.fieldTypes[0] != PLAIN_FIELD))
+				return true;
+			// empty line, or single empty value, read on
+		}
+	}
+	
+	/* move the current record to the start of the buffer and read more data, growing the buffer if the record fills all of it */
+	private void fill() throws IOException {
+		if (this.position != 0) {
+			System.arraycopy(this.buffer, this.position, this.buffer, 0, (this.limit - this.position));
+			this.limit -= this.position;
+			this.position = 0;
+		}
+		if (this.limit == this.buffer.length) {
+			char[] buffer = new char[this.buffer.length * 2];
+			System.arraycopy(this.buffer, 0, buffer, 0, this.limit);
+			this.buffer = buffer;
+		}
+		int read = this.input.read(this.buffer, this.limit, (this.buffer.length - this.limit));
+		if (read == -1)
+			this.endOfInput = true;
+		else this.limit += read;
+	}
+	
+	/* scan one record starting at the current position, returning the position after its line break, -1 if more data is required, or -2 at the end of the input */
+	private int scanRecord() {
+		final char[] buffer = this.buffer;
+		final int limit = this.limit;
+		final char separator = this.separator;
+		final char valueDelimiter = this.valueDelimiter;
+		int pos = this.position;
+		if (pos == limit)
+			return (this.endOfInput ? -2 : -1);
+		this.fieldCount = 0;
+		char ch;
+		
+		while (true) {
+			int start = pos;
+			
+			//	skip leading spaces (unless used as separator)
+			while ((pos < limit) && (((ch = buffer[pos]) == ' ') || (ch == '\t')) && (ch != separator))
+				pos++;
+			
+			//	quoted value
+			if ((pos < limit) && (buffer[pos] == valueDelimiter)) {
+				int valueStart = ++pos;
+				int type = QUOTED_FIELD;
+				while (true) {
+					while ((pos < limit) && (buffer[pos] != valueDelimiter))
+						pos++;
+					if ((pos + 1) >= limit) {
+						if (!this.endOfInput)
+							return -1;
+						this.addField(valueStart, pos, type);
+						if (pos < limit)
+							pos++; // closing value delimiter at end of input
+						return limit;
+					}
+					ch = buffer[pos + 1];
+					if ((ch == separator) || (ch == '\n') || (ch == '\r')) {
+						this.addField(valueStart, pos, type);
+						pos++;
+						break;
+					}
+					type = ESCAPED_FIELD; // doubled or literal value delimiter
+					pos += ((ch == valueDelimiter) ? 2 : 1);
+				}
+			}
+			
+			//	plain value
+			else {
+				while ((pos < limit) && ((ch = buffer[pos]) != separator) && (ch != '\n') && (ch != '\r'))
+					pos++;
+				if ((pos == limit) && !this.endOfInput)
+					return -1;
+				this.addField(start, pos, PLAIN_FIELD);
+			}
+			
+			//	end of input
+			if (pos == limit)
+				return limit;
+			
+			//	next value
+			if (buffer[pos] == separator) {
+				pos++;
+				continue;
+			}
+			
+			//	line break (need to see char after '\r' to catch '\r\n')
+			if (buffer[pos] == '\r') {
+				if ((pos + 1) < limit)
+					return ((buffer[pos + 1] == '\n') ? (pos + 2) : (pos + 1));
+				return (this.endOfInput ? limit : -1);
+			}
+			return (pos + 1);
+		}
+	}
+	
+	private void addField(int start, int end, int type) {
+		if (this.fieldCount == this.fieldStarts.length) {
+			this.fieldStarts = grow(this.fieldStarts);
+			this.fieldEnds = grow(this.fieldEnds);
+			this.fieldTypes = grow(this.fieldTypes);
+		}
+		this.fieldStarts[this.fieldCount] = start;
+		this.fieldEnds[this.fieldCount] = end;
+		this.fieldTypes[this.fieldCount] = type;
+		this.fieldCount++;
+	}
+	
+	private static int[] grow(int[] array) {
+		int[] grown = new int[array.length * 2];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+	
+	/* create the String value of a field of the current record */
+	private String getField(int f) {
+		int start = this.fieldStarts[f];
+		int end = this.fieldEnds[f];
+		if (this.fieldTypes[f] == QUOTED_FIELD)
+			return new String(this.buffer, start, (end - start));
+		if (this.fieldTypes[f] == ESCAPED_FIELD) {
+			StringBuffer value = new StringBuffer(end - start);
+			for (int c = start; c < end; c++) {
+				char ch = this.buffer[c];
+				value.append(ch);
+				if ((ch == this.valueDelimiter) && ((c + 1) < end) && (this.buffer[c + 1] == this.valueDelimiter))
+					c++;
+			}
+			return value.toString();
+		}
+		while ((start < end) && (this.buffer[start] <= ' '))
+			start++;
+		while ((end > start) && (this.buffer[end - 1] <= ' '))
+			end--;
+		return ((start == end) ? "" : new String(this.buffer, start, (end - start)));
+	}
+	
+	/* name of a value beyond the keys */
+	private String getExtraKey(int f) {
+		String key = ("" + f);
+		if (!this.keyIndex.containsKey(key))
+			this.keyIndex.put(key, new Integer(f));
+		return key;
+	}
+	
+	/**
+	 * A row of CSV data, i.e., a StringTupel view of the current line of the
+	 * underlying reader. Rows are read-only. As the reader re-uses the same
+	 * Row object for all rows, use the copy() method to retain the data.
+	 * 
+	 * @author sautter
+	 */
+	public class Row extends StringTupel {
+		private String[] rowKeys;
+		private int[] rowFields; // null for all fields in order
+		private int rowSize;
+		private String[] values = new String[16];
+		
+		Row() {
+			super((LinkedHashMap) null);
+		}
+		
+		void reset(boolean project) {
+			if (project) {
+				this.rowKeys = projectionKeys;
+				this.rowFields = projectionFields;
+				this.rowSize = projectionKeys.length;
+			}
+			else {
+				
+				//	ignore empty values beyond the keys at the end of the line
+				int fields = fieldCount;
+				while ((fields > keys.length) && (fieldStarts[fields - 1] == fieldEnds[fields - 1]))
+					fields--;
+				this.rowSize = Math.max(fields, keys.length);
+				if (this.rowSize == keys.length)
+					this.rowKeys = keys;
+				else {
+					this.rowKeys = new String[this.rowSize];
+					System.arraycopy(keys, 0, this.rowKeys, 0, keys.length);
+					for (int f = keys.length; f < this.rowSize; f++)
+						this.rowKeys[f] = getExtraKey(f);
+				}
+				this.rowFields = null;
+				if (this.values.length < this.rowSize)
+					this.values = new String[Math.max(this.rowSize, (this.values.length * 2))];
+				Arrays.fill(this.values, 0, this.rowSize, null);
+			}
+		}
+		
+		/**	retrieve a value by its position in the row
+		 * @param	index	the index of the value
+		 * @return the value at the argument index
+		 */
+		public String getValue(int index) {
+			if ((index < 0) || (index >= this.rowSize))
+				throw new ArrayIndexOutOfBoundsException(index);
+			int field = ((this.rowFields == null) ? index : this.rowFields[index]);
+			if (this.values[field] == null)
+				this.values[field] = ((field < fieldCount) ? getField(field) : "");
+			return this.values[field];
+		}
+		
+		public String getValue(String key, String def) {
+			Integer field = ((Integer) keyIndex.get(key));
+			if (field == null)
+				return def;
+			int f = field.intValue();
+			if (this.rowFields == null)
+				return ((f < this.rowSize) ? this.getValue(f) : def);
+			for (int p = 0; p < this.rowFields.length; p++) {
+				if (this.rowFields[p] == f)
+					return this.getValue(p);
+			}
+			return def;
+		}
+		
+		/**	@return a StringTupel holding a copy of the data of this row
+		 */
+		public StringTupel copy() {
+			StringTupel st = new StringTupel(this.rowSize);
+			for (int k = 0; k < this.rowSize; k++)
+				st.setValue(this.rowKeys[k], this.getValue(k));
+			return st;
+		}
+		
+		public String setValue(String key, String value) {
+			throw new UnsupportedOperationException("CSV rows are read-only.");
+		}
+		public String removeValue(String key) {
+			throw new UnsupportedOperationException("CSV rows are read-only.");
+		}
+		public void clear() {
+			throw new UnsupportedOperationException("CSV rows are read-only.");
+		}
+		void getKeys(StringVector sv) {
+			for (int k = 0; k < this.rowSize; k++)
+				sv.addElementIgnoreDuplicates(this.rowKeys[k]);
+		}
+		public String[] getKeyArray() {
+			String[] keys = new String[this.rowSize];
+			this.getKeys(keys);
+			return keys;
+		}
+		void getKeys(String[] keys) {
+			System.arraycopy(this.rowKeys, 0, keys, 0, this.rowSize);
+		}
+		public int size() {
+			return this.rowSize;
+		}
+		public StringTupel project(StringVector keys) {
+			return this.project(keys.toStringArray());
+		}
+		public StringTupel project(String[] keys) {
+			StringTupel st = new StringTupel(keys.length);
+			for (int k = 0; k < keys.length; k++) {
+				String value = this.getValue(keys[k]);
+				if (value != null)
+					st.setValue(keys[k], value);
+			}
+			return st;
+		}
+		public int hashCode() {
+			if (this.rowSize == 0)
+				return 0;
+			String[] keys = this.getKeyArray();
+			Arrays.sort(keys);
+			return this.toCsvString(keys).hashCode();
+		}
+	}
+	
+	/* benchmark comparing the throughput of streaming and in-memory reading and writing */
+	public static void main(String[] args) throws Exception {
+		File file = File.createTempFile("CsvBenchmark", ".csv");
+		file.deleteOnExit();
+		String[] keys = {"id", "name", "country", "remarks", "count"};
+		String[] countries = {"Germany", "France", "Brazil", "Kenya", "Australia", "Canada", "Japan", "Peru"};
+		Random random = new Random(42);
+		CsvWriter out = new CsvWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), keys);
+		for (int r = 0; r < 500000; r++)
+			out.writeRow(new String[] {
+				("" + r),
+				("Specimen " + random.nextInt(100000)),
+				countries[random.nextInt(countries.length)],
+				((random.nextInt(4) == 0) ? ("collected by \"" + random.nextInt(100) + "\",\nlabel damaged") : "none"),
+				("" + random.nextInt(1000))
+			});
+		out.close();
+		double mb = (((double) file.length()) / (1024 * 1024));
+		System.out.println("Benchmark data: " + file.length() + " bytes");
+		
+		for (int run = 0; run < 3; run++) {
+			
+			//	in-memory reader
+			long start = System.currentTimeMillis();
+			Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+			StringRelation data = StringRelation.readCsvData(in, StringRelation.DEFAULT_SEPARATOR, StringRelation.DEFAULT_VALUE_DELIMITER);
+			in.close();
+			printThroughput("StringRelation.readCsvData()", mb, start, data.size());
+			
+			//	in-memory writer
+			start = System.currentTimeMillis();
+			Writer w = new OutputStreamWriter(new NullOutputStream(), "UTF-8");
+			StringRelation.writeCsvData(w, data);
+			w.close();
+			printThroughput("StringRelation.writeCsvData()", mb, start, data.size());
+			
+			//	streaming writer
+			start = System.currentTimeMillis();
+			CsvWriter cw = new CsvWriter(new OutputStreamWriter(new NullOutputStream(), "UTF-8"), data.getKeyArray());
+			cw.writeRows(data);
+			cw.close();
+			printThroughput("CsvWriter", mb, start, data.size());
+			data = null;
+			
+			//	streaming reader, all values
+			start = System.currentTimeMillis();
+			CsvReader cr = new CsvReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			int rows = 0;
+			for (Row row; (row = cr.readRow()) != null; rows++) {
+				for (int v = 0; v < row.size(); v++)
+					row.getValue(v);
+			}
+			cr.close();
+			printThroughput("CsvReader (all values)", mb, start, rows);
+			
+			//	streaming reader, filter and projection
+			start = System.currentTimeMillis();
+			StringVector projectionKeys = new StringVector();
+			projectionKeys.addElement("name");
+			cr = new CsvReader(new InputStreamReader(new FileInputStream(file), "UTF-8"), StringRelation.DEFAULT_SEPARATOR, StringRelation.DEFAULT_VALUE_DELIMITER, true, null, new StringTupelFilter() {
+				public boolean matches(StringTupel st) {
+					return "Kenya".equals(st.getValue("country"));
+				}
+			}, projectionKeys);
+			final int[] count = {0};
+			rows = cr.readRows(new RowReceiver() {
+				public void receiveRow(Row row) throws IOException {
+					if (row.getValue(0).length() != 0)
+						count[0]++;
+				}
+			});
+			cr.close();
+			printThroughput("CsvReader (filter, projection)", mb, start, rows);
+		}
+	}
+	
+	private static void printThroughput(String label, double mb, long start, int rows) {
+		long time = Math.max(1, (System.currentTimeMillis() - start));
+		System.out.println(label + ": " + rows + " rows in " + time + "ms, " + (((int) ((mb * 10000) / time)) / 10.0) + " MB/s");
+	}
+	
+	private static class NullOutputStream extends OutputStream {
+		public void write(int b) {}
+		public void write(byte[] b, int off, int len) {}
+	}
+}
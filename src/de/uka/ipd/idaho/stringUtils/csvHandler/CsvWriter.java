@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.stringUtils.csvHandler;
+
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streaming writer for CSV data, the counterpart of CsvReader. The writer
+ * collects its output in a large block buffer and writes it to the
+ * underlying Writer only when the buffer is full, or on flush() or close().
+ * Values are always delimited, with the value delimiter escaped by doubling
+ * it, unless the separator is the tab character. In the latter case, values
+ * are not delimited, and tabs and line breaks in values are replaced with
+ * spaces, like in the writeCsvData() methods of StringRelation. In delimited
+ * values, however, line breaks are written verbatim, whereas writeCsvData()
+ * replaces each run of line break characters with a single platform line
+ * separator. Reading the output of this writer back with CsvReader thus
+ * restores all values exactly, unless the separator is the tab character,
+ * or a row consists of a single empty value, which CsvReader ignores.
+ * 
+ * @author sautter
+ */
+public class CsvWriter {
+	private static final int DEFAULT_BUFFER_SIZE = 65536;
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator", "\n");
+	
+	private Writer output;
+	private char separator;
+	private char valueDelimiter;
+	private String[] keys;
+	
+	private char[] buffer = new char[DEFAULT_BUFFER_SIZE];
+	private int position = 0;
+	
+	/**	Constructor writing comma separated, double quote delimited data, with the keys as the first line
+	 * @param	output	the Writer to write to
+	 * @param	keys	the keys whose values to write
+	 * @throws IOException
+	 */
+	public CsvWriter(Writer output, String[] keys) throws IOException {
+		this(output, StringRelation.DEFAULT_SEPARATOR, StringRelation.DEFAULT_VALUE_DELIMITER, keys, true);
+	}
+	
+	/**	Constructor
+	 * @param	output			the Writer to write to
+	 * @param	separator		the value separator character
+	 * @param	valueDelimiter	the value delimiter character
+	 * @param	keys			the keys whose values to write
+	 * @param	writeKeys		write the keys as the first line?
+	 * @throws IOException
+	 */
+	public CsvWriter(Writer output, char separator, char valueDelimiter, String[] keys, boolean writeKeys) throws IOException {
+		this.output = output;
+		this.separator = separator;
+		this.valueDelimiter = valueDelimiter;
+		this.keys = new String[keys.length];
+		System.arraycopy(keys, 0, this.keys, 0, keys.length);
+		if (writeKeys)
+			this.writeRow(this.keys);
+	}
+	
+	/**	@return the keys whose values this writer writes
+	 */
+	public String[] getKeys() {
+		String[] keys = new String[this.keys.length];
+		System.arraycopy(this.keys, 0, keys, 0, keys.length);
+		return keys;
+	}
+	
+	/**	write the values of a StringTupel as a line, in the order of the keys of this writer
+	 * @param	st	the StringTupel to write
+	 * @throws IOException
+	 */
+	public void writeRow(StringTupel st) throws IOException {
+		for (int k = 0; k < this.keys.length; k++) {
+			if (k != 0)
+				this.write(this.separator);
+			this.writeValue(st.getValue(this.keys[k]));
+		}
+		this.writeLineBreak();
+	}
+	
+	/**	write a line of values, in the order they are given
+	 * @param	values	the values to write
+	 * @throws IOException
+	 */
+	public void writeRow(String[] values) throws IOException {
+		for (int v = 0; v < values.length; v++) {
+			if (v != 0)
+				this.write(this.separator);
+			this.writeValue(values[v]);
+		}
+		this.writeLineBreak();
+	}
+	
+	/**	write all tupels in a StringRelation
+	 * @param	data	the StringRelation to write
+	 * @throws IOException
+	 */
+	public void writeRows(StringRelation data) throws IOException {
+		for (int t = 0; t < data.size(); t++)
+			this.writeRow(data.get(t));
+	}
+	
+	/**	write out the buffered data and flush the underlying Writer
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+		this.flushBuffer();
+		this.output.flush();
+	}
+	
+	/**	write out the buffered data and close the underlying Writer
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		this.flushBuffer();
+		this.output.close();
+	}
+	
+	private void writeValue(String value) throws IOException {
+		if (this.separator == '\t') {
+			if (value == null)
+				return;
+			if ((value.indexOf('\t') == -1) && (value.indexOf('\n') == -1) && (value.indexOf('\r') == -1))
+				this.write(value);
+			else this.write(value.replace('\t', ' ').replace('\r', ' ').replace('\n', ' '));
+			return;
+		}
+		this.write(this.valueDelimiter);
+		if (value == null) {}
+		else if (value.indexOf(this.valueDelimiter) == -1)
+			this.write(value);
+		else for (int c = 0; c < value.length(); c++) {
+			char ch = value.charAt(c);
+			if (ch == this.valueDelimiter)
+				this.write(ch);
+			this.write(ch);
+		}
+		this.write(this.valueDelimiter);
+	}
+	
+	private void writeLineBreak() throws IOException {
+		this.write(LINE_SEPARATOR);
+	}
+	
+	private void write(char ch) throws IOException {
+		if (this.position == this.buffer.length)
+			this.flushBuffer();
+		this.buffer[this.position++] = ch;
+	}
+	
+	private void write(String str) throws IOException {
+		int length = str.length();
+		if (length > (this.buffer.length - this.position)) {
+			this.flushBuffer();
+			if (length > this.buffer.length) {
+				this.output.write(str);
+				return;
+			}
+		}
+		str.getChars(0, length, this.buffer, this.position);
+		this.position += length;
+	}
+	
+	private void flushBuffer() throws IOException {
+		if (this.position == 0)
+			return;
+		this.output.write(this.buffer, 0, this.position);
+		this.position = 0;
+	}
+}
@@ -0,0 +1,471 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.stringUtils.csvHandler;
+
+
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Sorter for StringTupels, spilling to disk for data too large to sort in
+ * memory. Tupels are collected up to a configurable run size, then sorted
+ * by case folded sort keys extracted once per tupel, and written to a
+ * temporary CSV file. When all tupels are added, the getSortedTupels()
+ * method merges the sorted runs and returns the result as a CsvReader.
+ * Sorting compares values case insensitively, like the orderBy() methods of
+ * StringRelation, and is stable. Optionally, the sorter removes duplicate
+ * tupels, i.e., tupels with equal values for all keys. In this case, tupels
+ * with equal sort keys are ordered by the remaining values.<br>
+ * As the data is stored as CSV, values missing from a tupel are treated as
+ * empty strings. They sort first, whereas the orderBy() methods of
+ * StringRelation sort them last.
+ * 
+ * @author sautter
+ */
+public class ExternalSorter {
+	
+	/** the default number of tupels to sort in memory, 100000 */
+	public static final int DEFAULT_RUN_SIZE = 100000;
+	
+	/* the maximum number of runs to merge at once (more require intermediate merges) */
+	private static final int MAX_MERGE_WIDTH = 64;
+	
+	private String[] keys;
+	private int[] sortKeyIndices;
+	private boolean removeDuplicates;
+	private int runSize;
+	private File tempFolder;
+	
+	private RunEntry[] buffer;
+	private int bufferSize = 0;
+	private ArrayList runFiles = new ArrayList();
+	private boolean finished = false;
+	
+	/**	Constructor using the default run size and temporary folder
+	 * @param	keys				the keys of the tupels to sort
+	 * @param	sortKeys			the keys to sort by (keys[0] has the highest priority)
+	 * @param	removeDuplicates	remove duplicate tupels?
+	 */
+	public ExternalSorter(String[] keys, String[] sortKeys, boolean removeDuplicates) {
+		this(keys, sortKeys, removeDuplicates, DEFAULT_RUN_SIZE, null);
+	}
+	
+	/**	Constructor
+	 * @param	keys				the keys of the tupels to sort
+	 * @param	sortKeys			the keys to sort by (keys[0] has the highest priority)
+	 * @param	removeDuplicates	remove duplicate tupels?
+	 * @param	runSize				the number of tupels to sort in memory
+	 * @param	tempFolder			the folder to store sorted runs in (null for the system default temporary folder)
+	 */
+	public ExternalSorter(String[] keys, String[] sortKeys, boolean removeDuplicates, int runSize, File tempFolder) {
+		if (runSize < 1)
+			throw new IllegalArgumentException("Invalid run size " + runSize);
+		this.keys = new String[keys.length];
+		System.arraycopy(keys, 0, this.keys, 0, keys.length);
+		
+		//	index sort keys (keys not in the data have the empty value in all tupels, so we can ignore them)
+		int[] sortKeyIndices = new int[sortKeys.length];
+		int sortKeyCount = 0;
+		for (int s = 0; s < sortKeys.length; s++)
+			for (int k = 0; k < keys.length; k++) {
+				if (keys[k].equals(sortKeys[s])) {
+					sortKeyIndices[sortKeyCount++] = k;
+					break;
+				}
+			}
+		this.sortKeyIndices = new int[sortKeyCount];
+		System.arraycopy(sortKeyIndices, 0, this.sortKeyIndices, 0, sortKeyCount);
+		
+		this.removeDuplicates = removeDuplicates;
+		this.tempFolder = tempFolder;
+		this.buffer = new RunEntry[Math.min(runSize, 1024)];
+		this.runSize = runSize;
+	}
+	
+	/**	add a tupel to sort
+	 * @param	st	the tupel to add
+	 * @throws IOException
+	 */
+	public void addTupel(StringTupel st) throws IOException {
+		String[] values = new String[this.keys.length];
+		for (int k = 0; k < this.keys.length; k++)
+			values[k] = st.getValue(this.keys[k], "");
+		this.addValues(values);
+	}
+	
+	/**	add all tupels in a StringRelation
+	 * @param	data	the tupels to add
+	 * @throws IOException
+	 */
+	public void addTupels(StringRelation data) throws IOException {
+		for (int t = 0; t < data.size(); t++)
+			this.addTupel(data.get(t));
+	}
+	
+	/**	add all remaining tupels from a CsvReader
+	 * @param	input	the CsvReader to read the tupels from
+	 * @return the number of tupels added
+	 * @throws IOException
+	 */
+	public int addTupels(CsvReader input) throws IOException {
+		int added = 0;
+		for (CsvReader.Row row; (row = input.readRow()) != null; added++)
+			this.addTupel(row);
+		return added;
+	}
+	
+	private void addValues(String[] values) throws IOException {
+		if (this.finished)
+			throw new IllegalStateException("Sorting already finished.");
+		
+		//	extract sort keys (for duplicate removal, use all values as secondary keys, so duplicates end up adjacent)
+		String[] sortValues = new String[this.sortKeyIndices.length + (this.removeDuplicates ? values.length : 0)];
+		for (int s = 0; s < this.sortKeyIndices.length; s++)
+			sortValues[s] = StringRelation.foldCase(values[this.sortKeyIndices[s]]);
+		if (this.removeDuplicates)
+			System.arraycopy(values, 0, sortValues, this.sortKeyIndices.length, values.length);
+		
+		//	store tupel, and write run if buffer full
+		if (this.bufferSize == this.buffer.length) {
+			RunEntry[] buffer = new RunEntry[Math.min(this.runSize, (this.buffer.length * 2))];
+			System.arraycopy(this.buffer, 0, buffer, 0, this.bufferSize);
+			this.buffer = buffer;
+		}
+		this.buffer[this.bufferSize++] = new RunEntry(values, sortValues);
+		if (this.bufferSize == this.runSize)
+			this.writeRun();
+	}
+	
+	private void writeRun() throws IOException {
+		File runFile = File.createTempFile("ExternalSorterRun", ".csv", this.tempFolder);
+		runFile.deleteOnExit();
+		this.runFiles.add(runFile);
+		this.writeRun(new OutputStreamWriter(new FileOutputStream(runFile), "UTF-8"));
+	}
+	
+	private void writeRun(Writer output) throws IOException {
+		Arrays.sort(this.buffer, 0, this.bufferSize);
+		CsvWriter out = new CsvWriter(output, StringRelation.DEFAULT_SEPARATOR, StringRelation.DEFAULT_VALUE_DELIMITER, this.keys, true);
+		String[] lastValues = null;
+		for (int e = 0; e < this.bufferSize; e++) {
+			if (this.removeDuplicates && (lastValues != null) && Arrays.equals(lastValues, this.buffer[e].values))
+				continue;
+			out.writeRow(this.buffer[e].values);
+			lastValues = this.buffer[e].values;
+		}
+		out.close();
+		Arrays.fill(this.buffer, 0, this.bufferSize, null);
+		this.bufferSize = 0;
+	}
+	
+	/**	finish adding tupels and retrieve them in sorted order. The returned CsvReader deletes the temporary files once it is closed or completely read. This method can be invoked only once.
+	 * @return a CsvReader providing the sorted tupels
+	 * @throws IOException
+	 */
+	public CsvReader getSortedTupels() throws IOException {
+		if (this.finished)
+			throw new IllegalStateException("Sorting already finished.");
+		
+		//	all data fits in a single run, no need to go to disk
+		if (this.runFiles.isEmpty()) {
+			CharArrayWriter run = new CharArrayWriter();
+			this.writeRun(run);
+			this.finished = true;
+			this.buffer = null;
+			CsvReader sorted = new CsvReader(new CharArrayReader(run.toCharArray()));
+			sorted.keepQuotedEmptyValues = true;
+			return sorted;
+		}
+		
+		//	write last run
+		if (this.bufferSize != 0)
+			this.writeRun();
+		this.finished = true;
+		this.buffer = null;
+		
+		//	merge groups of consecutive runs (keeps sort stable) until we can merge the rest in one go
+		while (this.runFiles.size() > MAX_MERGE_WIDTH) {
+			ArrayList mergedRunFiles = new ArrayList();
+			for (int r = 0; r < this.runFiles.size(); r += MAX_MERGE_WIDTH) {
+				int mergeWidth = Math.min(MAX_MERGE_WIDTH, (this.runFiles.size() - r));
+				if (mergeWidth == 1) {
+					mergedRunFiles.add(this.runFiles.get(r));
+					continue;
+				}
+				File[] runs = ((File[]) this.runFiles.subList(r, (r + mergeWidth)).toArray(new File[mergeWidth]));
+				File mergedRunFile = File.createTempFile("ExternalSorterRun", ".csv", this.tempFolder);
+				mergedRunFile.deleteOnExit();
+				mergedRunFiles.add(mergedRunFile);
+				MergingReader merger = new MergingReader(runs);
+				CsvWriter out = new CsvWriter(new OutputStreamWriter(new FileOutputStream(mergedRunFile), "UTF-8"), StringRelation.DEFAULT_SEPARATOR, StringRelation.DEFAULT_VALUE_DELIMITER, this.keys, true);
+				String[] values = new String[this.keys.length];
+				for (CsvReader.Row row; (row = merger.readRow()) != null;) {
+					for (int k = 0; k < values.length; k++)
+						values[k] = row.getValue(k);
+					out.writeRow(values);
+				}
+				out.close();
+			}
+			this.runFiles = mergedRunFiles;
+		}
+		
+		//	merge remaining runs on the fly
+		MergingReader merger = new MergingReader((File[]) this.runFiles.toArray(new File[this.runFiles.size()]));
+		this.runFiles = null;
+		return merger;
+	}
+	
+	/**	sort all remaining tupels from a CsvReader, using the default run size and temporary folder
+	 * @param	input				the CsvReader to read the tupels from
+	 * @param	sortKeys			the keys to sort by (keys[0] has the highest priority)
+	 * @param	removeDuplicates	remove duplicate tupels?
+	 * @return a CsvReader providing the sorted tupels
+	 * @throws IOException
+	 */
+	public static CsvReader sort(CsvReader input, String[] sortKeys, boolean removeDuplicates) throws IOException {
+		ExternalSorter sorter = new ExternalSorter(input.getKeys(), sortKeys, removeDuplicates);
+		sorter.addTupels(input);
+		return sorter.getSortedTupels();
+	}
+	
+	/* regression check: single key tupels with empty values must survive being written to and read back from runs, both in memory and on disk */
+	private static boolean checkEmptyValues() throws IOException {
+		String[] keys = {"value"};
+		String[] values = {"b", "", "a", "", "", "c", ""};
+		for (int runSize = 1; runSize <= values.length; runSize *= values.length) {
+			for (int copies = 1; copies <= 100; copies *= 100) {
+				ExternalSorter sorter = new ExternalSorter(keys, keys, false, runSize, null);
+				for (int c = 0; c < copies; c++)
+					for (int v = 0; v < values.length; v++) {
+						StringTupel st = new StringTupel();
+						st.setValue("value", values[v]);
+						sorter.addTupel(st);
+					}
+				CsvReader sorted = sorter.getSortedTupels();
+				int rows = 0;
+				int empty = 0;
+				for (CsvReader.Row row; (row = sorted.readRow()) != null; rows++) {
+					if (row.getValue(0).length() == 0)
+						empty++;
+				}
+				if ((rows != (values.length * copies)) || (empty != (4 * copies))) {
+					System.out.println("Empty value check failed for run size " + runSize + ": " + rows + " tupels with " + empty + " empty values, expected " + (values.length * copies) + " with " + (4 * copies));
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/* benchmark sorting 10^6 tupels with and without duplicate removal, and in-memory sorting and duplicate removal */
+	public static void main(String[] args) throws Exception {
+		if (!checkEmptyValues())
+			return;
+		System.out.println("Empty value check passed");
+		
+		File file = File.createTempFile("ExternalSorterBenchmark", ".csv");
+		file.deleteOnExit();
+		String[] keys = {"id", "name", "country", "count"};
+		String[] countries = {"Germany", "France", "Brazil", "Kenya", "Australia", "Canada", "Japan", "Peru"};
+		Random random = new Random(42);
+		CsvWriter out = new CsvWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), keys);
+		for (int r = 0; r < 1000000; r++)
+			out.writeRow(new String[] {("" + random.nextInt(500000)), ("Specimen " + random.nextInt(100000)), countries[random.nextInt(countries.length)], ("" + random.nextInt(10))});
+		out.close();
+		double mb = (((double) file.length()) / (1024 * 1024));
+		System.out.println("Benchmark data: " + file.length() + " bytes");
+		
+		for (int d = 0; d < 2; d++) {
+			long start = System.currentTimeMillis();
+			CsvReader in = new CsvReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			ExternalSorter sorter = new ExternalSorter(in.getKeys(), new String[] {"country", "name"}, (d == 1));
+			sorter.addTupels(in);
+			in.close();
+			long runTime = (System.currentTimeMillis() - start);
+			CsvReader sorted = sorter.getSortedTupels();
+			int rows = sorted.readRows(new CsvReader.RowReceiver() {
+				public void receiveRow(CsvReader.Row row) {}
+			});
+			long time = (System.currentTimeMillis() - start);
+			System.out.println("External sort" + ((d == 1) ? " with duplicate removal" : "") + ": " + rows + " tupels in " + time + "ms (" + runTime + "ms for runs), " + (((int) ((mb * 10000) / time)) / 10.0) + " MB/s");
+		}
+		
+		Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		StringRelation data = StringRelation.readCsvData(in, StringRelation.DEFAULT_SEPARATOR, StringRelation.DEFAULT_VALUE_DELIMITER);
+		in.close();
+		long start = System.currentTimeMillis();
+		data.orderBy(new String[] {"country", "name"});
+		System.out.println("In-memory orderBy(): " + data.size() + " tupels in " + (System.currentTimeMillis() - start) + "ms");
+		data.removeValue("id");
+		start = System.currentTimeMillis();
+		data.removeDuplicates();
+		System.out.println("In-memory removeDuplicates(): " + data.size() + " tupels left in " + (System.currentTimeMillis() - start) + "ms");
+	}
+	
+	/* a tupel in a run being sorted in memory */
+	private static class RunEntry implements Comparable {
+		final String[] values;
+		final String[] sortValues;
+		RunEntry(String[] values, String[] sortValues) {
+			this.values = values;
+			this.sortValues = sortValues;
+		}
+		public int compareTo(Object obj) {
+			return compareSortValues(this.sortValues, ((RunEntry) obj).sortValues);
+		}
+	}
+	
+	private static int compareSortValues(String[] sortValues1, String[] sortValues2) {
+		for (int s = 0; s < sortValues1.length; s++) {
+			int c = sortValues1[s].compareTo(sortValues2[s]);
+			if (c != 0)
+				return c;
+		}
+		return 0;
+	}
+	
+	/* k-way merge of sorted run files, deleting them when done */
+	private class MergingReader extends CsvReader {
+		private File[] runFiles;
+		private CsvReader[] runs;
+		private CsvReader.Row[] heads;
+		private String[][] headSortValues;
+		private int[] heap;
+		private int heapSize = 0;
+		private int lastRun = -1;
+		private String[] lastSortValues = null;
+		
+		MergingReader(File[] runFiles) throws IOException {
+			super(keys);
+			this.runFiles = runFiles;
+			this.runs = new CsvReader[runFiles.length];
+			this.heads = new CsvReader.Row[runFiles.length];
+			this.headSortValues = new String[runFiles.length][];
+			this.heap = new int[runFiles.length];
+			for (int r = 0; r < runFiles.length; r++) {
+				this.runs[r] = new CsvReader(new InputStreamReader(new FileInputStream(runFiles[r]), "UTF-8"));
+				this.runs[r].keepQuotedEmptyValues = true;
+				if (this.advance(r))
+					this.heap[this.heapSize++] = r;
+			}
+			for (int h = ((this.heapSize / 2) - 1); h >= 0; h--)
+				this.siftDown(h);
+		}
+		
+		public CsvReader.Row readRow() throws IOException {
+			while (true) {
+				
+				//	move on in run we returned the last row from
+				if (this.lastRun != -1) {
+					if (this.advance(this.lastRun))
+						this.siftDown(0);
+					else if (--this.heapSize != 0) {
+						this.heap[0] = this.heap[this.heapSize];
+						this.siftDown(0);
+					}
+					this.lastRun = -1;
+				}
+				if (this.heapSize == 0) {
+					this.close();
+					return null;
+				}
+				
+				//	return row from top run unless it is a duplicate
+				int run = this.heap[0];
+				this.lastRun = run;
+				if (removeDuplicates && (this.lastSortValues != null) && (compareSortValues(this.lastSortValues, this.headSortValues[run]) == 0))
+					continue;
+				this.lastSortValues = this.headSortValues[run];
+				return this.heads[run];
+			}
+		}
+		
+		private boolean advance(int r) throws IOException {
+			CsvReader.Row row = this.runs[r].readRow();
+			this.heads[r] = row;
+			if (row == null) {
+				this.headSortValues[r] = null;
+				return false;
+			}
+			String[] sortValues = new String[sortKeyIndices.length + (removeDuplicates ? keys.length : 0)];
+			for (int s = 0; s < sortKeyIndices.length; s++)
+				sortValues[s] = StringRelation.foldCase(row.getValue(sortKeyIndices[s]));
+			if (removeDuplicates) {
+				for (int k = 0; k < keys.length; k++)
+					sortValues[sortKeyIndices.length + k] = row.getValue(k);
+			}
+			this.headSortValues[r] = sortValues;
+			return true;
+		}
+		
+		private void siftDown(int h) {
+			int run = this.heap[h];
+			while (true) {
+				int child = ((h * 2) + 1);
+				if (child >= this.heapSize)
+					break;
+				if (((child + 1) < this.heapSize) && this.precedes(this.heap[child + 1], this.heap[child]))
+					child++;
+				if (!this.precedes(this.heap[child], run))
+					break;
+				this.heap[h] = this.heap[child];
+				h = child;
+			}
+			this.heap[h] = run;
+		}
+		
+		/* compare the current rows of two runs, with ties going to the earlier run to keep the sort stable */
+		private boolean precedes(int run1, int run2) {
+			int c = compareSortValues(this.headSortValues[run1], this.headSortValues[run2]);
+			return ((c == 0) ? (run1 < run2) : (c < 0));
+		}
+		
+		public void close() throws IOException {
+			if (this.runs == null)
+				return;
+			for (int r = 0; r < this.runs.length; r++) {
+				this.runs[r].close();
+				this.runFiles[r].delete();
+			}
+			this.runs = null;
+			this.heapSize = 0;
+			this.lastRun = -1;
+		}
+	}
+}
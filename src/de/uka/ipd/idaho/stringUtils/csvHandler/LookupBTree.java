@@ -39,7 +39,10 @@ import de.uka.ipd.idaho.stringUtils.StringVector;
 
 /**
  * A simple file-based BTree implementation that allows storing and looking up
- * StringTupels by an alphanumeric key.
+ * StringTupels by an alphanumeric key.<br>
+ * This class stores each node in a folder of its own, which makes for many
+ * small files and many file system operations. For new trees, prefer
+ * PagedLookupBTree, which stores all nodes in a single file.
  * 
  * @author sautter
  */
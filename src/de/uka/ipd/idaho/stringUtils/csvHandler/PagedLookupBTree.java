@@ -0,0 +1,1216 @@
+/*
+ * Copyright (c) 2006-, IPD Boehm, Universitaet Karlsruhe (TH) / KIT, by Guido Sautter
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Universitaet Karlsruhe (TH) nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY UNIVERSITAET KARLSRUHE (TH) / KIT AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE REGENTS OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uka.ipd.idaho.stringUtils.csvHandler;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * A B+tree storing StringTupels in fixed size pages of a single file, indexed
+ * by the normalized value of a key attribute, replacing the one file per node
+ * layout of LookupBTree. Pages are held in a buffer pool of configurable size,
+ * which evicts pages in clock order.<br>
+ * The tree never overwrites pages that belong to the last committed state.
+ * Instead, modifying a page copies it to a free location, and so do all pages
+ * on the path up to the root. The commit() method writes all modified pages,
+ * and then switches to the new root by writing one of two alternating header
+ * pages. If the process crashes before or during a commit, the tree reopens
+ * in the previously committed state. Pages replaced by a commit become free
+ * for re-use after that commit.<br>
+ * Index keys are normalized like in LookupBTree, i.e., converted to lower case,
+ * with all characters other than letters, digits, and underscores replaced by
+ * underscores. The lookup() method returns tupels whose key attribute matches
+ * the argument key exactly, the fuzzyLookup() method all tupels whose key
+ * attribute normalizes to the same key. The bulkLoad() methods build a tree
+ * from sorted data bottom-up, which is a lot faster than storing tupels one
+ * by one, and the scan() methods iterate over ranges of keys.<br>
+ * Instances of this class are thread safe. However, tupel receivers used with
+ * the scan() method must not modify the tree.
+ * 
+ * @author sautter
+ */
+public class PagedLookupBTree {
+	
+	/**
+	 * Receiver for the tupels found in a range scan.
+	 * 
+	 * @author sautter
+	 */
+	public static interface TupelReceiver {
+		
+		/**	receive a tupel
+		 * @param	st	the tupel
+		 * @throws IOException
+		 */
+		public abstract void receiveTupel(StringTupel st) throws IOException;
+	}
+	
+	/** the default page size, 8KB */
+	public static final int DEFAULT_PAGE_SIZE = 8192;
+	
+	/** the default number of pages in the buffer pool, 1024 (i.e., 8MB with the default page size) */
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+	
+	private static final int MAGIC = 0x4C425450; // 'LBTP'
+	private static final int VERSION = 1;
+	
+	private static final byte LEAF_PAGE = 1;
+	private static final byte INNER_PAGE = 2;
+	private static final byte FREE_LIST_PAGE = 3;
+	private static final byte OVERFLOW_PAGE = 4;
+	
+	/* page layout: type (1 byte), unused (1 byte), cell count (2 bytes),
+	 * start of cell area (2 bytes), leftmost child or next free list page
+	 * (4 bytes), cell offsets (2 bytes each), free space, cells growing down
+	 * from the end of the page. A leaf cell is key length (2 bytes), key,
+	 * value length (2 bytes), value; an inner cell is key length (2 bytes),
+	 * key, child to the right of the key (4 bytes). Values too large for a
+	 * leaf cell go to a chain of overflow pages, with the cell holding 0xFFFF
+	 * as the value length, followed by the total length and the number of the
+	 * first overflow page (4 bytes each). Overflow pages are never modified,
+	 * so copies of a leaf can share them. */
+	private static final int PAGE_HEADER_SIZE = 10;
+	private static final int MAX_KEY_LENGTH = 128;
+	private static final int OVERFLOW_VALUE = 0xFFFF;
+	
+	private static final int HEADER_SLOT_SIZE = 512; // page 0 holds two alternating headers, in separate sectors
+	private static final int FIRST_DATA_PAGE = 1;
+	
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private int pageSize;
+	private String keyAttributeName;
+	
+	private long generation;
+	private int rootPage;
+	private int pageCount;
+	private int freeListPage;
+	private long tupelCount;
+	
+	private IntList freePages = new IntList();
+	private IntList pendingFreePages = new IntList();
+	private BitSet freshPages = new BitSet();
+	private boolean modified = false;
+	
+	private HashMap cache = new HashMap();
+	private Page[] frames;
+	private int frameCount = 0;
+	private int clockHand = 0;
+	private int operation = 0;
+	private int cacheHits = 0;
+	private int cacheMisses = 0;
+	
+	/**	Constructor using default page and cache size
+	 * @param	file				the file to store the tree in
+	 * @param	keyAttributeName	the name of the attribute to index tupels by
+	 * @throws IOException
+	 */
+	public PagedLookupBTree(File file, String keyAttributeName) throws IOException {
+		this(file, keyAttributeName, DEFAULT_PAGE_SIZE, DEFAULT_CACHE_SIZE);
+	}
+	
+	/**	Constructor
+	 * @param	file				the file to store the tree in
+	 * @param	keyAttributeName	the name of the attribute to index tupels by
+	 * @param	pageSize			the size of the pages for a new file (between 1KB and 32KB, ignored for existing files)
+	 * @param	cacheSize			the number of pages to hold in the buffer pool
+	 * @throws IOException
+	 */
+	public PagedLookupBTree(File file, String keyAttributeName, int pageSize, int cacheSize) throws IOException {
+		if (keyAttributeName.trim().length() == 0)
+			throw new IllegalArgumentException("The key attribute name must not be empty");
+		if ((pageSize < 1024) || (pageSize > 32768))
+			throw new IllegalArgumentException("Invalid page size " + pageSize);
+		this.keyAttributeName = keyAttributeName;
+		if (this.keyAttributeName.getBytes("UTF-8").length > (HEADER_SLOT_SIZE - 52))
+			throw new IllegalArgumentException("The key attribute name is too long");
+		this.frames = new Page[Math.max(cacheSize, 16)];
+		this.file = new RandomAccessFile(file, "rw");
+		this.channel = this.file.getChannel();
+		
+		//	new file
+		if (this.file.length() == 0) {
+			this.pageSize = pageSize;
+			this.generation = 0;
+			this.rootPage = -1;
+			this.pageCount = FIRST_DATA_PAGE;
+			this.freeListPage = -1;
+			this.tupelCount = 0;
+			this.writeHeader();
+			this.generation++;
+			this.writeHeader();
+			this.channel.force(false);
+		}
+		
+		//	existing file
+		else this.readHeader();
+	}
+	
+	/**	@return the name of the attribute the tupels are indexed by
+	 */
+	public String getKeyAttributeName() {
+		return this.keyAttributeName;
+	}
+	
+	/**	@return the number of tupels stored in the tree
+	 */
+	public synchronized long getTupelCount() {
+		return this.tupelCount;
+	}
+	
+	/**	@return the number of pages in the file
+	 */
+	public synchronized int getPageCount() {
+		return this.pageCount;
+	}
+	
+	/**	retrieve the tupels for a key
+	 * @param	key		the key to look up
+	 * @return a StringRelation containing all the tupels whose key attribute is equal to the specified key
+	 * @throws IOException
+	 */
+	public StringRelation lookup(String key) throws IOException {
+		StringRelation result = this.fuzzyLookup(key);
+		for (int t = 0; t < result.size(); t++) {
+			if (!key.equals(result.get(t).getValue(this.keyAttributeName, "")))
+				result.remove(t--);
+		}
+		return result;
+	}
+	
+	/**	retrieve the tupels for a key, using normalized strings for matching the key attributes
+	 * @param	key		the key to look up
+	 * @return a StringRelation containing all the tupels whose key attribute normalizes to the same string as the specified key
+	 * @throws IOException
+	 */
+	public StringRelation fuzzyLookup(String key) throws IOException {
+		final String nKey = normalizeKey(key);
+		final StringRelation result = new StringRelation();
+		byte[] indexKey = getIndexKey(nKey);
+		this.scan(indexKey, indexKey, true, new TupelReceiver() {
+			public void receiveTupel(StringTupel st) {
+				if (nKey.equals(normalizeKey(st.getValue(keyAttributeName, ""))))
+					result.addElement(st);
+			}
+		});
+		return result;
+	}
+	
+	/**	iterate over the tupels in a range of keys, in the order of their normalized keys
+	 * @param	fromKey		the key to start at (inclusive, null to start at the first key)
+	 * @param	toKey		the key to stop at (exclusive, null to go to the last key)
+	 * @param	receiver	the receiver to hand the tupels to
+	 * @return the number of tupels handed to the receiver
+	 * @throws IOException
+	 */
+	public int scan(String fromKey, String toKey, TupelReceiver receiver) throws IOException {
+		return this.scan(((fromKey == null) ? null : getIndexKey(normalizeKey(fromKey))), ((toKey == null) ? null : getIndexKey(normalizeKey(toKey))), false, receiver);
+	}
+	
+	/**	retrieve the tupels in a range of keys, in the order of their normalized keys
+	 * @param	fromKey		the key to start at (inclusive, null to start at the first key)
+	 * @param	toKey		the key to stop at (exclusive, null to go to the last key)
+	 * @return a StringRelation containing the tupels in the specified range
+	 * @throws IOException
+	 */
+	public StringRelation lookupRange(String fromKey, String toKey) throws IOException {
+		final StringRelation result = new StringRelation();
+		this.scan(fromKey, toKey, new TupelReceiver() {
+			public void receiveTupel(StringTupel st) {
+				result.addElement(st);
+			}
+		});
+		return result;
+	}
+	
+	private synchronized int scan(byte[] fromKey, byte[] toKey, boolean toInclusive, TupelReceiver receiver) throws IOException {
+		if (this.rootPage == -1)
+			return 0;
+		int[] count = {0};
+		this.scan(this.rootPage, fromKey, toKey, toInclusive, receiver, count);
+		return count[0];
+	}
+	
+	private boolean scan(int pageNumber, byte[] fromKey, byte[] toKey, boolean toInclusive, TupelReceiver receiver, int[] count) throws IOException {
+		this.operation++; // release pages of previous leaf
+		Page page = this.getPage(pageNumber);
+		int cells = getCellCount(page.data);
+		
+		//	leaf, hand out tupels in range
+		if (page.data[0] == LEAF_PAGE) {
+			int start = ((fromKey == null) ? 0 : this.findCell(page.data, fromKey, false));
+			byte[][] values = new byte[cells - start][];
+			int valueCount = 0;
+			boolean more = true;
+			for (int c = start; c < cells; c++) {
+				if ((toKey != null) && (this.compareKey(page.data, c, toKey) >= (toInclusive ? 1 : 0))) {
+					more = false;
+					break;
+				}
+				values[valueCount++] = this.getLeafValue(page.data, c);
+			}
+			
+			//	decode only after we are done with the page, as receiver might cause it to be evicted
+			for (int v = 0; v < valueCount; v++) {
+				receiver.receiveTupel(decodeTupel(values[v]));
+				count[0]++;
+			}
+			return more;
+		}
+		
+		//	inner page, copy out children in range, as page might be evicted while we descend
+		int start = ((fromKey == null) ? 0 : this.findCell(page.data, fromKey, false));
+		int[] children = new int[cells + 1 - start];
+		int childCount = 0;
+		for (int c = start; c <= cells; c++) {
+			if ((c > start) && (toKey != null) && (this.compareKey(page.data, (c - 1), toKey) >= (toInclusive ? 1 : 0)))
+				break;
+			children[childCount++] = getChild(page.data, c);
+		}
+		for (int c = 0; c < childCount; c++) {
+			if (!this.scan(children[c], fromKey, toKey, toInclusive, receiver, count))
+				return false;
+		}
+		return (childCount == children.length);
+	}
+	
+	/**	store a tupel. The tupel only becomes persistent on the next commit.
+	 * @param	data	the tupel to store
+	 * @throws IOException
+	 */
+	public synchronized void store(StringTupel data) throws IOException {
+		String key = data.getValue(this.keyAttributeName, "");
+		if (key.length() == 0)
+			return;
+		byte[] indexKey = getIndexKey(normalizeKey(key));
+		byte[] value = encodeTupel(data);
+		
+		this.operation++;
+		this.modified = true;
+		byte[] cell = this.makeLeafCell(indexKey, value);
+		Page root;
+		if (this.rootPage == -1) {
+			root = this.newPage();
+			initPage(root.data, LEAF_PAGE, this.pageSize);
+		}
+		else root = this.getWritablePage(this.rootPage);
+		this.rootPage = root.number;
+		
+		Split split = this.insert(root, indexKey, cell);
+		if (split != null) {
+			Page newRoot = this.newPage();
+			initPage(newRoot.data, INNER_PAGE, this.pageSize);
+			putInt(newRoot.data, 6, root.number);
+			this.insertCell(newRoot.data, 0, makeInnerCell(split.key, split.rightPage));
+			this.rootPage = newRoot.number;
+		}
+		this.tupelCount++;
+	}
+	
+	private int getMaxCellSize() {
+		return (((this.pageSize - PAGE_HEADER_SIZE) / 4) - 2); // leaves room for at least four cells per page
+	}
+	
+	private static class Split {
+		final byte[] key;
+		final int rightPage;
+		Split(byte[] key, int rightPage) {
+			this.key = key;
+			this.rightPage = rightPage;
+		}
+	}
+	
+	private Split insert(Page page, byte[] key, byte[] leafCell) throws IOException {
+		
+		//	leaf, insert after any existing tupels with the same key
+		if (page.data[0] == LEAF_PAGE) {
+			int index = this.findCell(page.data, key, true);
+			byte[] cell = leafCell;
+			if (this.insertCell(page.data, index, cell))
+				return null;
+			return this.splitPage(page, index, cell);
+		}
+		
+		//	inner page, descend (copying child if necessary)
+		int index = this.findCell(page.data, key, true);
+		int childNumber = getChild(page.data, index);
+		Page child = this.getWritablePage(childNumber);
+		if (child.number != childNumber)
+			setChild(page.data, index, child.number);
+		Split split = this.insert(child, key, leafCell);
+		if (split == null)
+			return null;
+		
+		//	insert separator for split child
+		byte[] cell = makeInnerCell(split.key, split.rightPage);
+		if (this.insertCell(page.data, index, cell))
+			return null;
+		return this.splitPage(page, index, cell);
+	}
+	
+	/* split a full page, distributing its cells plus the one to insert between the page and a new right sibling */
+	private Split splitPage(Page page, int index, byte[] newCell) throws IOException {
+		byte[] data = page.data;
+		int cellCount = getCellCount(data);
+		byte[][] cells = new byte[cellCount + 1][];
+		int totalSize = 0;
+		for (int c = 0, i = 0; i <= cellCount; i++) {
+			cells[i] = ((i == index) ? newCell : this.getCell(data, c++));
+			totalSize += (cells[i].length + 2);
+		}
+		Page right = this.newPage();
+		byte type = data[0];
+		initPage(right.data, type, this.pageSize);
+		
+		//	leaf, split at half the data, separator is first key of right page
+		if (type == LEAF_PAGE) {
+			int leftSize = 0;
+			int split = 0;
+			while ((split < (cells.length - 1)) && ((leftSize + cells[split].length + 2) <= (totalSize / 2)))
+				leftSize += (cells[split++].length + 2);
+			if (split == 0)
+				split = 1;
+			initPage(data, LEAF_PAGE, this.pageSize);
+			for (int c = 0; c < split; c++)
+				this.insertCell(data, c, cells[c]);
+			for (int c = split; c < cells.length; c++)
+				this.insertCell(right.data, (c - split), cells[c]);
+			return new Split(getCellKey(cells[split]), right.number);
+		}
+		
+		//	inner page, move middle separator up, its child becomes leftmost child of right page
+		int middle = (cells.length / 2);
+		int leftmostChild = getInt(data, 6);
+		initPage(data, INNER_PAGE, this.pageSize);
+		putInt(data, 6, leftmostChild);
+		for (int c = 0; c < middle; c++)
+			this.insertCell(data, c, cells[c]);
+		byte[] middleKey = getCellKey(cells[middle]);
+		putInt(right.data, 6, getInt(cells[middle], (cells[middle].length - 4)));
+		for (int c = (middle + 1); c < cells.length; c++)
+			this.insertCell(right.data, (c - middle - 1), cells[c]);
+		return new Split(middleKey, right.number);
+	}
+	
+	/**	build the tree from the tupels provided by a CsvReader. The tupels are sorted by their normalized keys (spilling to disk for large data), and then written to full pages bottom-up. The tree has to be empty, and is committed afterwards.
+	 * @param	input	the CsvReader to read the tupels from
+	 * @return the number of tupels stored
+	 * @throws IOException
+	 */
+	public int bulkLoad(CsvReader input) throws IOException {
+		ExternalSorter sorter = this.getBulkLoadSorter(input.getKeys());
+		for (CsvReader.Row row; (row = input.readRow()) != null;)
+			sorter.addTupel(this.getBulkLoadTupel(row));
+		return this.buildTree(sorter.getSortedTupels());
+	}
+	
+	/**	build the tree from the tupels in a StringRelation. The tree has to be empty, and is committed afterwards.
+	 * @param	data	the tupels to store
+	 * @return the number of tupels stored
+	 * @throws IOException
+	 */
+	public int bulkLoad(StringRelation data) throws IOException {
+		ExternalSorter sorter = this.getBulkLoadSorter(data.getKeyArray());
+		for (int t = 0; t < data.size(); t++)
+			sorter.addTupel(this.getBulkLoadTupel(data.get(t)));
+		return this.buildTree(sorter.getSortedTupels());
+	}
+	
+	private static final String BULK_LOAD_SORT_KEY = "\u0000key";
+	
+	private ExternalSorter getBulkLoadSorter(String[] keys) {
+		String[] sortKeys = new String[keys.length + 1];
+		sortKeys[0] = BULK_LOAD_SORT_KEY;
+		System.arraycopy(keys, 0, sortKeys, 1, keys.length);
+		return new ExternalSorter(sortKeys, new String[] {BULK_LOAD_SORT_KEY}, false);
+	}
+	
+	private StringTupel getBulkLoadTupel(StringTupel st) {
+		StringTupel sortTupel = new StringTupel(st.size() + 1);
+		sortTupel.setValue(BULK_LOAD_SORT_KEY, normalizeKey(st.getValue(this.keyAttributeName, "")));
+		String[] keys = st.getKeyArray();
+		for (int k = 0; k < keys.length; k++)
+			sortTupel.setValue(keys[k], st.getValue(keys[k]));
+		return sortTupel;
+	}
+	
+	private synchronized int buildTree(CsvReader sorted) throws IOException {
+		if ((this.rootPage != -1) || (this.tupelCount != 0))
+			throw new IllegalStateException("Bulk load requires an empty tree.");
+		this.modified = true;
+		String[] keys = sorted.getKeys();
+		
+		//	fill leaves
+		IntList levelPages = new IntList();
+		java.util.ArrayList levelKeys = new java.util.ArrayList();
+		int leafNumber = -1;
+		int fillLimit = ((this.pageSize * 9) / 10);
+		int tupels = 0;
+		for (CsvReader.Row row; (row = sorted.readRow()) != null;) {
+			String key = row.getValue(this.keyAttributeName, "");
+			if (key.length() == 0)
+				continue;
+			StringTupel st = new StringTupel(keys.length);
+			for (int k = 1; k < keys.length; k++)
+				st.setValue(keys[k], row.getValue(k));
+			byte[] indexKey = getIndexKey(normalizeKey(key));
+			this.operation++;
+			byte[] cell = this.makeLeafCell(indexKey, encodeTupel(st));
+			
+			//	get current leaf only after creating cell, as allocating overflow pages might have evicted it
+			Page leaf = ((leafNumber == -1) ? null : this.getWritablePage(leafNumber));
+			if ((leaf == null) || ((this.pageSize - getFreeSpace(leaf.data)) > fillLimit) || !this.insertCell(leaf.data, getCellCount(leaf.data), cell)) {
+				leaf = this.newPage();
+				initPage(leaf.data, LEAF_PAGE, this.pageSize);
+				this.insertCell(leaf.data, 0, cell);
+				leafNumber = leaf.number;
+				levelPages.add(leaf.number);
+				levelKeys.add(indexKey);
+			}
+			tupels++;
+		}
+		
+		//	build inner levels bottom-up
+		while (levelPages.size() > 1) {
+			IntList parentPages = new IntList();
+			java.util.ArrayList parentKeys = new java.util.ArrayList();
+			Page parent = null;
+			for (int p = 0; p < levelPages.size(); p++) {
+				this.operation++;
+				byte[] cell = makeInnerCell(((byte[]) levelKeys.get(p)), levelPages.get(p));
+				if ((parent == null) || ((this.pageSize - getFreeSpace(parent.data)) > fillLimit) || !this.insertCell(parent.data, getCellCount(parent.data), cell)) {
+					parent = this.newPage();
+					initPage(parent.data, INNER_PAGE, this.pageSize);
+					putInt(parent.data, 6, levelPages.get(p));
+					parentPages.add(parent.number);
+					parentKeys.add(levelKeys.get(p));
+				}
+			}
+			levelPages = parentPages;
+			levelKeys = parentKeys;
+		}
+		this.rootPage = ((levelPages.size() == 0) ? -1 : levelPages.get(0));
+		this.tupelCount = tupels;
+		this.commit();
+		return tupels;
+	}
+	
+	/**	write all changes to the file, and switch over to the new state
+	 * @throws IOException
+	 */
+	public synchronized void commit() throws IOException {
+		if (!this.modified)
+			return;
+		
+		//	the free list of the last commit is obsolete after this commit
+		int oldFreeListPage = this.freeListPage;
+		while (oldFreeListPage != -1) {
+			Page page = this.getPage(oldFreeListPage);
+			this.pendingFreePages.add(oldFreeListPage);
+			oldFreeListPage = getInt(page.data, 6);
+		}
+		
+		//	write free list (including pages freed by this commit) to fresh pages
+		int perPage = ((this.pageSize - PAGE_HEADER_SIZE) / 4);
+		IntList freeListPages = new IntList();
+		int freeListSize = (this.freePages.size() + this.pendingFreePages.size());
+		for (int p = 0; p < ((freeListSize + perPage - 1) / perPage); p++) {
+			freeListPages.add(this.allocatePage());
+			freeListSize = (this.freePages.size() + this.pendingFreePages.size());
+		}
+		int nextFreeListPage = -1;
+		int freeIndex = 0;
+		for (int p = (freeListPages.size() - 1); p >= 0; p--) {
+			this.operation++;
+			Page page = new Page(freeListPages.get(p), new byte[this.pageSize]);
+			page.data[0] = FREE_LIST_PAGE;
+			putInt(page.data, 6, nextFreeListPage);
+			int count = 0;
+			for (; (count < perPage) && (freeIndex < freeListSize); count++, freeIndex++)
+				putInt(page.data, (PAGE_HEADER_SIZE + (count * 4)), ((freeIndex < this.freePages.size()) ? this.freePages.get(freeIndex) : this.pendingFreePages.get(freeIndex - this.freePages.size())));
+			putShort(page.data, 2, count);
+			this.writePage(page);
+			this.cachePage(page);
+			nextFreeListPage = page.number;
+		}
+		
+		//	write data pages and flush to disk
+		for (int f = 0; f < this.frameCount; f++) {
+			if (this.frames[f].dirty)
+				this.writePage(this.frames[f]);
+		}
+		this.channel.force(false);
+		
+		//	write header and flush again, which makes the new state the committed one
+		this.generation++;
+		this.freeListPage = nextFreeListPage;
+		this.writeHeader();
+		this.channel.force(false);
+		
+		//	pages replaced by this commit can be re-used now
+		for (int p = 0; p < this.pendingFreePages.size(); p++)
+			this.freePages.add(this.pendingFreePages.get(p));
+		this.pendingFreePages.clear();
+		this.freshPages.clear();
+		this.modified = false;
+	}
+	
+	/**	commit all changes and close the file
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		this.commit();
+		this.file.close();
+	}
+	
+	private void writeHeader() throws IOException {
+		byte[] keyAttributeNameBytes = this.keyAttributeName.getBytes("UTF-8");
+		byte[] header = new byte[52 + keyAttributeNameBytes.length];
+		putInt(header, 0, MAGIC);
+		putInt(header, 4, VERSION);
+		putInt(header, 8, this.pageSize);
+		putLong(header, 12, this.generation);
+		putInt(header, 20, this.rootPage);
+		putInt(header, 24, this.pageCount);
+		putInt(header, 28, this.freeListPage);
+		putLong(header, 32, this.tupelCount);
+		putInt(header, 40, keyAttributeNameBytes.length);
+		System.arraycopy(keyAttributeNameBytes, 0, header, 44, keyAttributeNameBytes.length);
+		CRC32 crc = new CRC32();
+		crc.update(header, 0, (header.length - 8));
+		putLong(header, (header.length - 8), crc.getValue());
+		this.channel.write(ByteBuffer.wrap(header), ((this.generation % 2) * HEADER_SLOT_SIZE));
+	}
+	
+	private void readHeader() throws IOException {
+		
+		//	read both header slots, and use the valid one with the higher generation
+		byte[] header = null;
+		for (int h = 0; h < 2; h++) {
+			byte[] candidate = new byte[HEADER_SLOT_SIZE];
+			if (this.channel.read(ByteBuffer.wrap(candidate), (h * HEADER_SLOT_SIZE)) < candidate.length)
+				continue;
+			if ((getInt(candidate, 0) != MAGIC) || (getInt(candidate, 4) != VERSION))
+				continue;
+			int nameLength = getInt(candidate, 40);
+			if ((nameLength < 0) || (nameLength > (HEADER_SLOT_SIZE - 52)))
+				continue;
+			CRC32 crc = new CRC32();
+			crc.update(candidate, 0, (44 + nameLength));
+			if (crc.getValue() != getLong(candidate, (44 + nameLength)))
+				continue;
+			if ((header == null) || (getLong(header, 12) < getLong(candidate, 12)))
+				header = candidate;
+		}
+		if (header == null)
+			throw new IOException("Invalid file, no valid header found");
+		
+		this.pageSize = getInt(header, 8);
+		this.generation = getLong(header, 12);
+		this.rootPage = getInt(header, 20);
+		this.pageCount = getInt(header, 24);
+		this.freeListPage = getInt(header, 28);
+		this.tupelCount = getLong(header, 32);
+		String keyAttributeName = new String(header, 44, getInt(header, 40), "UTF-8");
+		if (!keyAttributeName.equals(this.keyAttributeName))
+			throw new IllegalArgumentException("The tree is indexed by '" + keyAttributeName + "', not by '" + this.keyAttributeName + "'");
+		
+		//	load free list
+		for (int freeListPage = this.freeListPage; freeListPage != -1;) {
+			Page page = this.getPage(freeListPage);
+			int count = getCellCount(page.data);
+			for (int f = 0; f < count; f++)
+				this.freePages.add(getInt(page.data, (PAGE_HEADER_SIZE + (f * 4))));
+			freeListPage = getInt(page.data, 6);
+		}
+	}
+	
+	/* the buffer pool */
+	
+	private static class Page {
+		final int number;
+		final byte[] data;
+		boolean dirty = false;
+		boolean referenced = true;
+		int operation;
+		Page(int number, byte[] data) {
+			this.number = number;
+			this.data = data;
+		}
+	}
+	
+	private Page getPage(int number) throws IOException {
+		Page page = ((Page) this.cache.get(new Integer(number)));
+		if (page == null) {
+			this.cacheMisses++;
+			page = new Page(number, new byte[this.pageSize]);
+			ByteBuffer buffer = ByteBuffer.wrap(page.data);
+			long offset = (((long) number) * this.pageSize);
+			while (buffer.hasRemaining()) {
+				if (this.channel.read(buffer, (offset + buffer.position())) == -1)
+					throw new IOException("Unexpected end of file reading page " + number);
+			}
+			this.cachePage(page);
+		}
+		else {
+			this.cacheHits++;
+			page.referenced = true;
+		}
+		page.operation = this.operation;
+		return page;
+	}
+	
+	/* get a page for modification, copying it if it belongs to the last committed state */
+	private Page getWritablePage(int number) throws IOException {
+		Page page = this.getPage(number);
+		if (this.freshPages.get(number)) {
+			page.dirty = true;
+			return page;
+		}
+		Page copy = this.newPage();
+		System.arraycopy(page.data, 0, copy.data, 0, this.pageSize);
+		this.pendingFreePages.add(number);
+		return copy;
+	}
+	
+	private Page newPage() throws IOException {
+		Page page = new Page(this.allocatePage(), new byte[this.pageSize]);
+		page.dirty = true;
+		page.operation = this.operation;
+		this.cachePage(page);
+		return page;
+	}
+	
+	private int allocatePage() {
+		int number = ((this.freePages.size() == 0) ? this.pageCount++ : this.freePages.removeLast());
+		this.freshPages.set(number);
+		return number;
+	}
+	
+	private void cachePage(Page page) throws IOException {
+		Integer number = new Integer(page.number);
+		Page old = ((Page) this.cache.put(number, page));
+		if (old != null) {
+			for (int f = 0; f < this.frameCount; f++)
+				if (this.frames[f] == old) {
+					this.frames[f] = page;
+					return;
+				}
+		}
+		if (this.frameCount < this.frames.length) {
+			this.frames[this.frameCount++] = page;
+			return;
+		}
+		
+		//	clock sweep, skipping pages used by the current operation
+		for (int s = 0; s < (this.frames.length * 2); s++) {
+			Page victim = this.frames[this.clockHand];
+			if (victim.operation == this.operation) {}
+			else if (victim.referenced)
+				victim.referenced = false;
+			else {
+				if (victim.dirty)
+					this.writePage(victim); // only pages allocated since last commit can be dirty, so this is safe
+				this.cache.remove(new Integer(victim.number));
+				this.frames[this.clockHand] = page;
+				this.clockHand = ((this.clockHand + 1) % this.frames.length);
+				return;
+			}
+			this.clockHand = ((this.clockHand + 1) % this.frames.length);
+		}
+		
+		//	all pages in use by current operation, grow pool
+		Page[] frames = new Page[this.frames.length * 2];
+		System.arraycopy(this.frames, 0, frames, 0, this.frames.length);
+		this.frames = frames;
+		this.frames[this.frameCount++] = page;
+	}
+	
+	private void writePage(Page page) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(page.data);
+		long offset = (((long) page.number) * this.pageSize);
+		while (buffer.hasRemaining())
+			this.channel.write(buffer, (offset + buffer.position()));
+		page.dirty = false;
+	}
+	
+	/**	@return the number of pages in the buffer pool
+	 */
+	public int getCacheSize() {
+		return this.frames.length;
+	}
+	
+	/**	@return	the cache hit ratio in percent
+	 */
+	public synchronized int getCacheSuccess() {
+		int sum = (this.cacheHits + this.cacheMisses);
+		return ((sum == 0) ? 0 : ((this.cacheHits * 100) / sum));
+	}
+	
+	/**	@return	the number of cache hits since the last reset
+	 */
+	public synchronized int getCacheHits() {
+		return this.cacheHits;
+	}
+	
+	/**	@return	the number of cache misses since the last reset
+	 */
+	public synchronized int getCacheMisses() {
+		return this.cacheMisses;
+	}
+	
+	/**	reset the statistics on cache hits and misses
+	 */
+	public synchronized void resetCacheStatistics() {
+		this.cacheHits = 0;
+		this.cacheMisses = 0;
+	}
+	
+	/* page layout */
+	
+	private static void initPage(byte[] data, byte type, int pageSize) {
+		java.util.Arrays.fill(data, ((byte) 0));
+		data[0] = type;
+		putShort(data, 2, 0);
+		putShort(data, 4, (pageSize & 0xFFFF)); // 32768 fits into unsigned short
+	}
+	
+	private static int getCellCount(byte[] data) {
+		return getShort(data, 2);
+	}
+	
+	private static int getFreeSpace(byte[] data) {
+		return (getShort(data, 4) - (PAGE_HEADER_SIZE + (getCellCount(data) * 2)));
+	}
+	
+	private static int getCellOffset(byte[] data, int index) {
+		return getShort(data, (PAGE_HEADER_SIZE + (index * 2)));
+	}
+	
+	private boolean insertCell(byte[] data, int index, byte[] cell) {
+		if (getFreeSpace(data) < (cell.length + 2))
+			return false;
+		int cellCount = getCellCount(data);
+		int cellStart = (getShort(data, 4) - cell.length);
+		System.arraycopy(cell, 0, data, cellStart, cell.length);
+		int slot = (PAGE_HEADER_SIZE + (index * 2));
+		System.arraycopy(data, slot, data, (slot + 2), ((cellCount - index) * 2));
+		putShort(data, slot, cellStart);
+		putShort(data, 2, (cellCount + 1));
+		putShort(data, 4, cellStart);
+		return true;
+	}
+	
+	private byte[] getCell(byte[] data, int index) {
+		int offset = getCellOffset(data, index);
+		int keyLength = getShort(data, offset);
+		int length = (2 + keyLength + 4);
+		if (data[0] == LEAF_PAGE) {
+			int valueLength = getShort(data, (offset + 2 + keyLength));
+			length = (2 + keyLength + 2 + ((valueLength == OVERFLOW_VALUE) ? 8 : valueLength));
+		}
+		byte[] cell = new byte[length];
+		System.arraycopy(data, offset, cell, 0, length);
+		return cell;
+	}
+	
+	private static byte[] getCellKey(byte[] cell) {
+		byte[] key = new byte[getShort(cell, 0)];
+		System.arraycopy(cell, 2, key, 0, key.length);
+		return key;
+	}
+	
+	private byte[] getLeafValue(byte[] data, int index) throws IOException {
+		int offset = getCellOffset(data, index);
+		offset += (2 + getShort(data, offset));
+		int valueLength = getShort(data, offset);
+		if (valueLength != OVERFLOW_VALUE) {
+			byte[] value = new byte[valueLength];
+			System.arraycopy(data, (offset + 2), value, 0, value.length);
+			return value;
+		}
+		
+		//	read overflow chain
+		byte[] value = new byte[getInt(data, (offset + 2))];
+		int overflowPage = getInt(data, (offset + 6));
+		for (int v = 0; v < value.length;) {
+			Page page = this.getPage(overflowPage);
+			int length = getShort(page.data, 2);
+			System.arraycopy(page.data, PAGE_HEADER_SIZE, value, v, length);
+			v += length;
+			overflowPage = getInt(page.data, 6);
+		}
+		return value;
+	}
+	
+	/* child to the left of the cell with the argument index in an inner page, i.e., the leftmost child for index 0 */
+	private static int getChild(byte[] data, int index) {
+		if (index == 0)
+			return getInt(data, 6);
+		int offset = getCellOffset(data, (index - 1));
+		return getInt(data, (offset + 2 + getShort(data, offset)));
+	}
+	
+	private static void setChild(byte[] data, int index, int child) {
+		if (index == 0)
+			putInt(data, 6, child);
+		else {
+			int offset = getCellOffset(data, (index - 1));
+			putInt(data, (offset + 2 + getShort(data, offset)), child);
+		}
+	}
+	
+	private byte[] makeLeafCell(byte[] key, byte[] value) throws IOException {
+		if ((2 + key.length + 2 + value.length) > this.getMaxCellSize()) {
+			
+			//	write value to overflow pages, back to front so we know the next page
+			int perPage = (this.pageSize - PAGE_HEADER_SIZE);
+			int nextPage = -1;
+			for (int start = (((value.length - 1) / perPage) * perPage); start >= 0; start -= perPage) {
+				Page page = this.newPage();
+				page.data[0] = OVERFLOW_PAGE;
+				int length = Math.min(perPage, (value.length - start));
+				putShort(page.data, 2, length);
+				putInt(page.data, 6, nextPage);
+				System.arraycopy(value, start, page.data, PAGE_HEADER_SIZE, length);
+				nextPage = page.number;
+			}
+			byte[] cell = new byte[2 + key.length + 2 + 8];
+			putShort(cell, 0, key.length);
+			System.arraycopy(key, 0, cell, 2, key.length);
+			putShort(cell, (2 + key.length), OVERFLOW_VALUE);
+			putInt(cell, (4 + key.length), value.length);
+			putInt(cell, (8 + key.length), nextPage);
+			return cell;
+		}
+		byte[] cell = new byte[2 + key.length + 2 + value.length];
+		putShort(cell, 0, key.length);
+		System.arraycopy(key, 0, cell, 2, key.length);
+		putShort(cell, (2 + key.length), value.length);
+		System.arraycopy(value, 0, cell, (4 + key.length), value.length);
+		return cell;
+	}
+	
+	private static byte[] makeInnerCell(byte[] key, int child) {
+		byte[] cell = new byte[2 + key.length + 4];
+		putShort(cell, 0, key.length);
+		System.arraycopy(key, 0, cell, 2, key.length);
+		putInt(cell, (2 + key.length), child);
+		return cell;
+	}
+	
+	/* compare the key of a cell to a search key */
+	private int compareKey(byte[] data, int index, byte[] key) {
+		int offset = getCellOffset(data, index);
+		int keyLength = getShort(data, offset);
+		offset += 2;
+		for (int b = 0; (b < keyLength) && (b < key.length); b++) {
+			int c = ((data[offset + b] & 0xFF) - (key[b] & 0xFF));
+			if (c != 0)
+				return c;
+		}
+		return (keyLength - key.length);
+	}
+	
+	/* find the first cell whose key is greater than (after) or greater than or equal to (!after) the argument key; for inner pages, this is the index of the child to descend to */
+	private int findCell(byte[] data, byte[] key, boolean after) {
+		int low = 0;
+		int high = getCellCount(data);
+		while (low < high) {
+			int middle = ((low + high) >>> 1);
+			int c = this.compareKey(data, middle, key);
+			if ((c < 0) || (after && (c == 0)))
+				low = (middle + 1);
+			else high = middle;
+		}
+		return low;
+	}
+	
+	/* keys and values */
+	
+	static final String KEY_CHARACTERS = "abcdefghijklmnopqrstuvwxyz0123456789_";
+	
+	/**	normalize a key String (convert to lower case, replace all non-alphanumeric characters by underscores)
+	 * @param	key		the string to normalize
+	 * @return the normalized form of the specified key String
+	 */
+	private static String normalizeKey(String key) {
+		String lKey = key.toLowerCase();
+		StringBuffer assembler = null;
+		for (int c = 0; c < lKey.length(); c++) {
+			char ch = lKey.charAt(c);
+			if (KEY_CHARACTERS.indexOf(ch) != -1)
+				continue;
+			if (assembler == null)
+				assembler = new StringBuffer(lKey);
+			assembler.setCharAt(c, '_');
+		}
+		return ((assembler == null) ? lKey : assembler.toString());
+	}
+	
+	/* normalized keys are ASCII, so we can use one byte per char; long keys are truncated, with lookups filtering by the full key */
+	private static byte[] getIndexKey(String nKey) {
+		byte[] key = new byte[Math.min(nKey.length(), MAX_KEY_LENGTH)];
+		for (int c = 0; c < key.length; c++)
+			key[c] = ((byte) nKey.charAt(c));
+		return key;
+	}
+	
+	private static byte[] encodeTupel(StringTupel st) {
+		String[] keys = st.getKeyArray();
+		ByteList bytes = new ByteList();
+		bytes.addVarInt(keys.length);
+		for (int k = 0; k < keys.length; k++) {
+			bytes.addString(keys[k]);
+			String value = st.getValue(keys[k]);
+			if (value == null)
+				bytes.addVarInt(0);
+			else {
+				bytes.addVarInt(1);
+				bytes.addString(value);
+			}
+		}
+		return bytes.toByteArray();
+	}
+	
+	private static StringTupel decodeTupel(byte[] bytes) throws UnsupportedEncodingException {
+		int[] position = {0};
+		int size = readVarInt(bytes, position);
+		StringTupel st = new StringTupel(size);
+		for (int k = 0; k < size; k++) {
+			String key = readString(bytes, position);
+			st.setValue(key, ((readVarInt(bytes, position) == 0) ? null : readString(bytes, position)));
+		}
+		return st;
+	}
+	
+	private static int readVarInt(byte[] bytes, int[] position) {
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			int b = bytes[position[0]++];
+			value |= ((b & 0x7F) << shift);
+			if ((b & 0x80) == 0)
+				return value;
+		}
+	}
+	
+	private static String readString(byte[] bytes, int[] position) throws UnsupportedEncodingException {
+		int length = readVarInt(bytes, position);
+		String str = new String(bytes, position[0], length, "UTF-8");
+		position[0] += length;
+		return str;
+	}
+	
+	private static class ByteList {
+		private byte[] bytes = new byte[256];
+		private int size = 0;
+		void add(byte b) {
+			if (this.size == this.bytes.length) {
+				byte[] bytes = new byte[this.bytes.length * 2];
+				System.arraycopy(this.bytes, 0, bytes, 0, this.size);
+				this.bytes = bytes;
+			}
+			this.bytes[this.size++] = b;
+		}
+		void addVarInt(int value) {
+			while ((value & ~0x7F) != 0) {
+				this.add((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			this.add((byte) value);
+		}
+		void addString(String str) {
+			byte[] bytes;
+			try {
+				bytes = str.getBytes("UTF-8");
+			}
+			catch (UnsupportedEncodingException uee) {
+				throw new RuntimeException(uee); // never gonna happen, UTF-8 is always supported
+			}
+			this.addVarInt(bytes.length);
+			for (int b = 0; b < bytes.length; b++)
+				this.add(bytes[b]);
+		}
+		byte[] toByteArray() {
+			byte[] bytes = new byte[this.size];
+			System.arraycopy(this.bytes, 0, bytes, 0, this.size);
+			return bytes;
+		}
+	}
+	
+	private static class IntList {
+		private int[] ints = new int[16];
+		private int size = 0;
+		void add(int i) {
+			if (this.size == this.ints.length) {
+				int[] ints = new int[this.ints.length * 2];
+				System.arraycopy(this.ints, 0, ints, 0, this.size);
+				this.ints = ints;
+			}
+			this.ints[this.size++] = i;
+		}
+		int get(int index) {
+			return this.ints[index];
+		}
+		int removeLast() {
+			return this.ints[--this.size];
+		}
+		int size() {
+			return this.size;
+		}
+		void clear() {
+			this.size = 0;
+		}
+	}
+	
+	public static void main(String[] args) throws Exception {
+		String[] countries = {"Germany", "France", "Brazil", "Kenya", "Australia", "Canada", "Japan", "Peru"};
+		Random random = new Random(42);
+		StringRelation data = new StringRelation();
+		for (int t = 0; t < 20000; t++) {
+			StringTupel st = new StringTupel();
+			st.setValue("name", ("Specimen " + random.nextInt(10000)));
+			st.setValue("country", countries[random.nextInt(countries.length)]);
+			st.setValue("count", ("" + random.nextInt(10)));
+			data.addElement(st);
+		}
+		String[] keys = new String[1000];
+		for (int k = 0; k < keys.length; k++)
+			keys[k] = data.get(random.nextInt(data.size())).getValue("name");
+		
+		//	old tree, one file per node
+		File folder = File.createTempFile("LookupBTreeBenchmark", "");
+		folder.delete();
+		folder.mkdirs();
+		long start = System.currentTimeMillis();
+		LookupBTree oldTree = new LookupBTree(folder, "name");
+		for (int t = 0; t < data.size(); t++)
+			oldTree.store(data.get(t));
+		oldTree.flushCache();
+		System.out.println("LookupBTree: stored " + data.size() + " tupels in " + (System.currentTimeMillis() - start) + "ms");
+		start = System.currentTimeMillis();
+		int found = 0;
+		for (int k = 0; k < keys.length; k++)
+			found += oldTree.lookup(keys[k]).size();
+		System.out.println("LookupBTree: " + keys.length + " lookups (" + found + " tupels) in " + (System.currentTimeMillis() - start) + "ms");
+		deleteFolder(folder);
+		
+		//	paged tree, single inserts
+		File file = File.createTempFile("PagedLookupBTreeBenchmark", ".db");
+		file.deleteOnExit();
+		start = System.currentTimeMillis();
+		PagedLookupBTree tree = new PagedLookupBTree(file, "name");
+		for (int t = 0; t < data.size(); t++)
+			tree.store(data.get(t));
+		tree.commit();
+		System.out.println("PagedLookupBTree: stored " + data.size() + " tupels in " + (System.currentTimeMillis() - start) + "ms, " + file.length() + " bytes");
+		start = System.currentTimeMillis();
+		found = 0;
+		for (int k = 0; k < keys.length; k++)
+			found += tree.lookup(keys[k]).size();
+		System.out.println("PagedLookupBTree: " + keys.length + " lookups (" + found + " tupels) in " + (System.currentTimeMillis() - start) + "ms, cache success " + tree.getCacheSuccess() + "%");
+		start = System.currentTimeMillis();
+		int scanned = tree.scan("Specimen 1", "Specimen 2", new TupelReceiver() {
+			public void receiveTupel(StringTupel st) {}
+		});
+		System.out.println("PagedLookupBTree: scanned " + scanned + " tupels in " + (System.currentTimeMillis() - start) + "ms");
+		tree.close();
+		file.delete();
+		
+		//	paged tree, bulk load
+		start = System.currentTimeMillis();
+		tree = new PagedLookupBTree(file, "name");
+		tree.bulkLoad(data);
+		System.out.println("PagedLookupBTree: bulk loaded " + data.size() + " tupels in " + (System.currentTimeMillis() - start) + "ms, " + file.length() + " bytes");
+		tree.close();
+		file.delete();
+		
+		//	bulk load with overflow values through a tiny buffer pool, pages evicted mid-load must not lose any tupels
+		StringRelation largeData = new StringRelation();
+		char[] padding = new char[9 * 1024];
+		for (int t = 0; t < 500; t++) {
+			java.util.Arrays.fill(padding, ((char) ('a' + random.nextInt(26))));
+			StringTupel st = new StringTupel();
+			st.setValue("name", ("Specimen " + random.nextInt(10000)));
+			st.setValue("notes", ((t % 3) == 0) ? new String(padding) : "short");
+			largeData.addElement(st);
+		}
+		tree = new PagedLookupBTree(file, "name", 1024, 16);
+		int loaded = tree.bulkLoad(largeData);
+		int scannedBack = tree.lookupRange(null, null).size();
+		System.out.println("PagedLookupBTree: bulk loaded " + loaded + " tupels with overflow values through " + tree.getCacheSize() + " cached pages, scanned back " + scannedBack + " of " + tree.getTupelCount() + ", check " + (((scannedBack == tree.getTupelCount()) && (loaded == largeData.size())) ? "passed" : "failed"));
+		tree.close();
+		file.delete();
+	}
+	
+	private static void deleteFolder(File folder) {
+		File[] files = folder.listFiles();
+		for (int f = 0; f < files.length; f++) {
+			if (files[f].isDirectory())
+				deleteFolder(files[f]);
+			else files[f].delete();
+		}
+		folder.delete();
+	}
+	
+	private static int getShort(byte[] bytes, int offset) {
+		return (((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF));
+	}
+	
+	private static void putShort(byte[] bytes, int offset, int value) {
+		bytes[offset] = ((byte) (value >>> 8));
+		bytes[offset + 1] = ((byte) value);
+	}
+	
+	private static int getInt(byte[] bytes, int offset) {
+		return ((getShort(bytes, offset) << 16) | getShort(bytes, (offset + 2)));
+	}
+	
+	private static void putInt(byte[] bytes, int offset, int value) {
+		putShort(bytes, offset, (value >>> 16));
+		putShort(bytes, (offset + 2), value);
+	}
+	
+	private static long getLong(byte[] bytes, int offset) {
+		return ((((long) getInt(bytes, offset)) << 32) | (getInt(bytes, (offset + 4)) & 0xFFFFFFFFL));
+	}
+	
+	private static void putLong(byte[] bytes, int offset, long value) {
+		putInt(bytes, offset, ((int) (value >>> 32)));
+		putInt(bytes, (offset + 4), ((int) value));
+	}
+}
@@ -35,10 +35,12 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Random;
 import java.util.Vector;
 
 import de.uka.ipd.idaho.stringUtils.StringUtils;
@@ -46,7 +48,8 @@ import de.uka.ipd.idaho.stringUtils.StringVector;
 
 /**
  * A representation of CSV data that allows to execute some basic relational
- * algebra (natural join, projection, selection, ordering, and union). This
+ * algebra (natural join, projection, selection, ordering, grouping, and
+ * union). This
  * class basically wraps CSV and relational algebra specific functionality
  * around a java.util.Vector object.
  * 
@@ -233,22 +236,9 @@ public class StringRelation {
 	/**	sort the StringTupels, using the values of a key for comparison 
 	 * @param	key		the key the values of which to use for comparison
 	 */
-	public void orderBy(final String key) {
-		if (key == null)
-			return;
-		Collections.sort(this.data, new StringTupelComparator() {
-			public int compare(StringTupel st1, StringTupel st2) {
-				if (st1 == st2) return 0;
-				if (st1 == null) return 1;
-				if (st2 == null) return -1;
-				String s1 = st1.getValue(key);
-				String s2 = st2.getValue(key);
-				if (s1 == s2) return 0;
-				if (s1 == null) return 1;
-				if (s2 == null) return -1;
-				return s1.compareToIgnoreCase(s2);
-			}
-		});
+	public void orderBy(String key) {
+		if (key != null)
+			this.orderBy(new String[] {key});
 	}
 	
 	/**	sort the StringTupels, using the values of a set of keys for comparison 
@@ -263,9 +253,67 @@ public class StringRelation {
 	 * @param	keys	the keys the values of which to use for comparison (will be applied in reverse order so that keys[0] has the highest priority)
 	 */
 	public void orderBy(String[] keys) {
-		if (keys != null)
-			for (int k = keys.length - 1; k != -1; k--)
-				this.orderBy(keys[k]);
+		if ((keys == null) || (keys.length == 0) || (this.size() < 2))
+			return;
+		
+		//	extract case folded sort keys once, rather than on every comparison
+		SortEntry[] entries = new SortEntry[this.size()];
+		for (int t = 0; t < entries.length; t++) {
+			StringTupel st = this.get(t);
+			String[] sortKeys = new String[keys.length];
+			if (st != null) {
+				for (int k = 0; k < keys.length; k++) {
+					String value = st.getValue(keys[k]);
+					sortKeys[k] = ((value == null) ? null : foldCase(value));
+				}
+			}
+			entries[t] = new SortEntry(st, sortKeys);
+		}
+		
+		//	sort (stable, so tupels with equal keys remain in order) and write back
+		Arrays.sort(entries);
+		for (int t = 0; t < entries.length; t++)
+			this.set(t, entries[t].tupel);
+	}
+	
+	private static class SortEntry implements Comparable {
+		final StringTupel tupel;
+		final String[] sortKeys;
+		SortEntry(StringTupel tupel, String[] sortKeys) {
+			this.tupel = tupel;
+			this.sortKeys = sortKeys;
+		}
+		public int compareTo(Object obj) {
+			SortEntry se = ((SortEntry) obj);
+			if (this.tupel == null)
+				return ((se.tupel == null) ? 0 : 1);
+			if (se.tupel == null)
+				return -1;
+			for (int k = 0; k < this.sortKeys.length; k++) {
+				String s1 = this.sortKeys[k];
+				String s2 = se.sortKeys[k];
+				if (s1 == s2) continue;
+				if (s1 == null) return 1;
+				if (s2 == null) return -1;
+				int c = s1.compareTo(s2);
+				if (c != 0) return c;
+			}
+			return 0;
+		}
+	}
+	
+	/* fold the case of a string so that compareTo() on folded strings orders like compareToIgnoreCase() on the originals */
+	static String foldCase(String str) {
+		for (int c = 0; c < str.length(); c++) {
+			char ch = str.charAt(c);
+			if (Character.toLowerCase(Character.toUpperCase(ch)) != ch) {
+				char[] chars = str.toCharArray();
+				for (; c < chars.length; c++)
+					chars[c] = Character.toLowerCase(Character.toUpperCase(chars[c]));
+				return new String(chars);
+			}
+		}
+		return str;
 	}
 	
 	/**	join this SringTupelVector with another one
@@ -313,82 +361,267 @@ public class StringRelation {
 		if (this.size() == 0)
 			return (rightOuter ? toJoin : new StringRelation());
 		
-		//	generate keys
-		StringTupel tupel;
-		Integer hash;
-		ArrayList ownKeys = new ArrayList(this.size());
-		IdentityHashMap ownData = new IdentityHashMap(this.size());
-		for (int t = 0; t < this.size(); t++) {
-			tupel = this.get(t);
-			hash = new Integer(tupel.toCsvString(keys).hashCode());
-			ownKeys.add(hash);
-			ownData.put(hash, tupel);
-		}
-		ArrayList otherKeys = new ArrayList(toJoin.size());
-		IdentityHashMap otherData = new IdentityHashMap(toJoin.size());
-		for (int t = 0; t < toJoin.size(); t++) {
-			tupel = toJoin.get(t);
-			hash = new Integer(tupel.toCsvString(keys).hashCode());
-			otherKeys.add(hash);
-			otherData.put(hash, tupel);
-		}
-		tupel = null;
-		hash = null;
+		String[] joinKeys = keys.toStringArray();
 		
-		//	sort keys
-		Collections.sort(ownKeys);
-		Collections.sort(otherKeys);
+		//	index smaller relation by join key values, chaining rows with equal values in their original order
+		boolean buildOwn = (this.size() <= toJoin.size());
+		StringRelation build = (buildOwn ? this : toJoin);
+		StringRelation probe = (buildOwn ? toJoin : this);
+		HashMap firstRows = new HashMap();
+		int[] nextRows = new int[build.size()];
+		for (int t = (build.size() - 1); t != -1; t--) {
+			Integer next = ((Integer) firstRows.put(getKeyValues(build.get(t), joinKeys), new Integer(t)));
+			nextRows[t] = ((next == null) ? -1 : next.intValue());
+		}
 		
-		//	perform join
+		//	probe larger relation, joining each tupel with all partners
 		StringRelation result = new StringRelation();
-		int ownIndex = 0;
-		int otherIndex = 0;
-		while ((ownIndex < ownKeys.size()) && (otherIndex < otherKeys.size())) {
-			Integer ownKey = ((Integer) ownKeys.get(ownIndex));
-			Integer otherKey = ((Integer) otherKeys.get(otherIndex));
-			
-			int c = ownKey.compareTo(otherKey);
-			
-			if (c < 0) {
-				ownIndex++;
-				if (leftOuter) result.addElement((StringTupel) ownData.get(ownKey));
+		boolean probeOuter = (buildOwn ? rightOuter : leftOuter);
+		boolean[] buildMatched = ((buildOwn ? leftOuter : rightOuter) ? new boolean[build.size()] : null);
+		for (int t = 0; t < probe.size(); t++) {
+			StringTupel probeTupel = probe.get(t);
+			Integer first = ((Integer) firstRows.get(getKeyValues(probeTupel, joinKeys)));
+			if (first == null) {
+				if (probeOuter)
+					result.addElement(probeTupel);
+				continue;
 			}
-			
-			else if (c == 0) {
-				ownIndex++;
-				result.addElement(((StringTupel) ownData.get(ownKey)).join((StringTupel) otherData.get(otherKey)));
-				
-				int i = 1;
-				while ((c == 0) && ((otherIndex + i) < toJoin.size())) {
-					otherKey = ((Integer) otherKeys.get(otherIndex + i));
-					c = ownKey.compareTo(otherKey);
-					if (c == 0) result.addElement(((StringTupel) ownData.get(ownKey)).join((StringTupel) otherData.get(otherKey)));
-					i++;
-				}
+			for (int b = first.intValue(); b != -1; b = nextRows[b]) {
+				StringTupel buildTupel = build.get(b);
+				result.addElement(buildOwn ? buildTupel.join(probeTupel) : probeTupel.join(buildTupel));
+				if (buildMatched != null)
+					buildMatched[b] = true;
 			}
-			
-			else {
-				otherIndex++;
-				if (rightOuter) result.addElement((StringTupel) otherData.get(otherKey));
+		}
+		
+		//	add tupels from smaller relation that have not found a partner
+		if (buildMatched != null) {
+			for (int b = 0; b < build.size(); b++) {
+				if (!buildMatched[b])
+					result.addElement(build.get(b));
 			}
 		}
 		
-		//	add rest of tupels
-		while (leftOuter && (ownIndex < ownKeys.size())) {
-			result.addElement((StringTupel) ownData.get(ownKeys.get(ownIndex)));
-			ownIndex++;
+		return result;
+	}
+	
+	/* get the values of a tupel for a set of keys in a form suitable as a hash key, treating missing values as empty */
+	private static Object getKeyValues(StringTupel st, String[] keys) {
+		if (keys.length == 1)
+			return st.getValue(keys[0], "");
+		String[] values = new String[keys.length];
+		for (int k = 0; k < keys.length; k++)
+			values[k] = st.getValue(keys[k], "");
+		return new KeyValues(values);
+	}
+	
+	private static class KeyValues {
+		final String[] values;
+		final int hash;
+		KeyValues(String[] values) {
+			this.values = values;
+			this.hash = Arrays.hashCode(values);
+		}
+		public int hashCode() {
+			return this.hash;
 		}
-		while (rightOuter && (otherIndex < otherKeys.size())) {
-			result.addElement((StringTupel) otherData.get(otherKeys.get(otherIndex)));
-			otherIndex++;
+		public boolean equals(Object obj) {
+			return ((obj instanceof KeyValues) && (((KeyValues) obj).hash == this.hash) && Arrays.equals(((KeyValues) obj).values, this.values));
 		}
+	}
+	
+	/**	group the tupels in this StringRelation by the values of a set of keys
+	 * and compute aggregates for each group, in a single pass over the tupels
+	 * @param	groupKeys	the keys whose values to group the tupels by
+	 * @param	aggregates	the aggregates to compute for each group
+	 * @return a new StringRelation containing one tupel per group, holding the values of the grouping keys and the aggregates
+	 */
+	public StringRelation groupBy(StringVector groupKeys, Aggregate[] aggregates) {
+		return this.groupBy(groupKeys.toStringArray(), aggregates);
+	}
+	
+	/**	group the tupels in this StringRelation by the values of a set of keys
+	 * and compute aggregates for each group, in a single pass over the tupels
+	 * @param	groupKeys	the keys whose values to group the tupels by
+	 * @param	aggregates	the aggregates to compute for each group
+	 * @return a new StringRelation containing one tupel per group, holding the values of the grouping keys and the aggregates
+	 */
+	public StringRelation groupBy(String[] groupKeys, Aggregate[] aggregates) {
+		GroupAggregator aggregator = new GroupAggregator(groupKeys, aggregates);
+		for (int t = 0; t < this.size(); t++)
+			aggregator.add(this.get(t));
+		return aggregator.getResult();
+	}
+	
+	/**
+	 * An aggregate function to compute for the groups of a groupBy()
+	 * operation. Counts include all non-empty values of the aggregated key, or
+	 * all tupels if the key is null. Sums, minimums, and maximums include all
+	 * values of the aggregated key that parse as numbers, and are empty for
+	 * groups without any such values.
+	 * 
+	 * @author sautter
+	 */
+	public static class Aggregate {
 		
-		//	clean up
-		ownKeys.clear();
-		ownData.clear();
-		otherKeys.clear();
-		otherData.clear();
-		return result;
+		/** aggregate function counting values or tupels */
+		public static final int COUNT = 0;
+		
+		/** aggregate function summing up numeric values */
+		public static final int SUM = 1;
+		
+		/** aggregate function finding the smallest numeric value */
+		public static final int MIN = 2;
+		
+		/** aggregate function finding the largest numeric value */
+		public static final int MAX = 3;
+		
+		private static final String[] FUNCTION_NAMES = {"COUNT", "SUM", "MIN", "MAX"};
+		
+		final int function;
+		final String key;
+		final String resultKey;
+		
+		/** Constructor naming the result after the function and the aggregated key, e.g. 'SUM(value)'
+		 * @param	function	the aggregate function, one of COUNT, SUM, MIN, and MAX
+		 * @param	key			the key whose values to aggregate (may be null for COUNT)
+		 */
+		public Aggregate(int function, String key) {
+			this(function, key, ((key == null) ? FUNCTION_NAMES[function] : (FUNCTION_NAMES[function] + "(" + key + ")")));
+		}
+		
+		/** Constructor
+		 * @param	function	the aggregate function, one of COUNT, SUM, MIN, and MAX
+		 * @param	key			the key whose values to aggregate (may be null for COUNT)
+		 * @param	resultKey	the key to store the aggregate under in the result tupels
+		 */
+		public Aggregate(int function, String key, String resultKey) {
+			if ((function < COUNT) || (function > MAX))
+				throw new IllegalArgumentException("Invalid aggregate function " + function);
+			if ((key == null) && (function != COUNT))
+				throw new IllegalArgumentException("Aggregate function " + FUNCTION_NAMES[function] + " requires a key");
+			this.function = function;
+			this.key = key;
+			this.resultKey = resultKey;
+		}
+	}
+	
+	/**
+	 * Incremental implementation of the groupBy() operation. Client code can
+	 * add tupels one by one, e.g. while reading them from a CSV file, so the
+	 * tupels do not have to be held in memory as a whole. The groups in the
+	 * result are in the order of the first tupel of each group.
+	 * 
+	 * @author sautter
+	 */
+	public static class GroupAggregator {
+		private String[] groupKeys;
+		private Aggregate[] aggregates;
+		private LinkedHashMap groups = new LinkedHashMap();
+		
+		/** Constructor
+		 * @param	groupKeys	the keys whose values to group the tupels by
+		 * @param	aggregates	the aggregates to compute for each group
+		 */
+		public GroupAggregator(String[] groupKeys, Aggregate[] aggregates) {
+			this.groupKeys = groupKeys;
+			this.aggregates = aggregates;
+		}
+		
+		/**	add a tupel to the aggregation
+		 * @param	st	the tupel to add
+		 */
+		public void add(StringTupel st) {
+			Object groupKey = getKeyValues(st, this.groupKeys);
+			Group group = ((Group) this.groups.get(groupKey));
+			if (group == null) {
+				group = new Group(st, this.groupKeys, this.aggregates.length);
+				this.groups.put(groupKey, group);
+			}
+			for (int a = 0; a < this.aggregates.length; a++) {
+				Aggregate aggregate = this.aggregates[a];
+				if (aggregate.key == null) {
+					group.counts[a]++;
+					continue;
+				}
+				String value = st.getValue(aggregate.key);
+				if ((value == null) || (value.length() == 0))
+					continue;
+				if (aggregate.function == Aggregate.COUNT) {
+					group.counts[a]++;
+					continue;
+				}
+				double number = parseNumber(value);
+				if (number != number)
+					continue; // NaN, not a number
+				if (group.counts[a] == 0)
+					group.values[a] = number;
+				else if (aggregate.function == Aggregate.SUM)
+					group.values[a] += number;
+				else if (aggregate.function == Aggregate.MIN)
+					group.values[a] = Math.min(group.values[a], number);
+				else group.values[a] = Math.max(group.values[a], number);
+				group.counts[a]++;
+			}
+		}
+		
+		/**	@return the number of groups found so far
+		 */
+		public int getGroupCount() {
+			return this.groups.size();
+		}
+		
+		/**	@return a StringRelation containing one tupel per group, holding the values of the grouping keys and the aggregates
+		 */
+		public StringRelation getResult() {
+			StringRelation result = new StringRelation();
+			for (Iterator git = this.groups.values().iterator(); git.hasNext();) {
+				Group group = ((Group) git.next());
+				StringTupel st = new StringTupel(this.groupKeys.length + this.aggregates.length);
+				for (int k = 0; k < this.groupKeys.length; k++)
+					st.setValue(this.groupKeys[k], group.keyValues[k]);
+				for (int a = 0; a < this.aggregates.length; a++) {
+					if (this.aggregates[a].function == Aggregate.COUNT)
+						st.setValue(this.aggregates[a].resultKey, ("" + group.counts[a]));
+					else st.setValue(this.aggregates[a].resultKey, ((group.counts[a] == 0) ? "" : formatNumber(group.values[a])));
+				}
+				result.addElement(st);
+			}
+			return result;
+		}
+	}
+	
+	private static class Group {
+		final String[] keyValues;
+		final long[] counts;
+		final double[] values;
+		Group(StringTupel st, String[] groupKeys, int aggregateCount) {
+			this.keyValues = new String[groupKeys.length];
+			for (int k = 0; k < groupKeys.length; k++)
+				this.keyValues[k] = st.getValue(groupKeys[k], "");
+			this.counts = new long[aggregateCount];
+			this.values = new double[aggregateCount];
+		}
+	}
+	
+	static double parseNumber(String value) {
+		if (value.length() == 0)
+			return Double.NaN;
+		char ch = value.charAt(0);
+		if (((ch < '0') || (ch > '9')) && (ch != '-') && (ch != '+') && (ch != '.') && (ch != ' '))
+			return Double.NaN; // save the exception for obvious non-numbers
+		try {
+			return Double.parseDouble(value);
+		}
+		catch (NumberFormatException nfe) {
+			return Double.NaN;
+		}
+	}
+	
+	static String formatNumber(double number) {
+		if ((number == Math.rint(number)) && (Math.abs(number) < 1e15))
+			return ("" + ((long) number));
+		else return ("" + number);
 	}
 	
 	/**	union a StringRelation with this one
@@ -480,12 +713,18 @@ public class StringRelation {
 			return;
 		String[] keys = this.getKeyArray();
 		HashSet tupelStrings = new HashSet(this.size());
-		for (int t = 0; t < this.size(); t++) {
-			StringTupel tupel = this.get(t);
-			String csv = tupel.toCsvString(keys);
-			if (!tupelStrings.add(csv))
-				this.remove(t--);
+		
+		//	move retained tupels forward in a single pass, then cut off the tail
+		int retained = 0;
+		for (int t = 0; t < this.data.size(); t++) {
+			StringTupel tupel = ((StringTupel) this.data.get(t));
+			if (tupelStrings.add(tupel.toCsvString(keys))) {
+				if (retained != t)
+					this.data.set(retained, tupel);
+				retained++;
+			}
 		}
+		this.data.setSize(retained);
 	}
 //	public void removeDuplicates() {
 //		if (this.size() < 2)
@@ -3138,7 +3377,7 @@ public class StringRelation {
 	}
 	
 //	private static char guessSeparator(BufferedReader input, char valueDelimiter, StringVector keys, StringVector projectionKeys) throws IOException {
-	private static char guessSeparator(BufferedReader input, char valueDelimiter) throws IOException {
+	static char guessSeparator(BufferedReader input, char valueDelimiter) throws IOException {
 		
 		//	get first 8K of input for analysis
 		input.mark(8192);
@@ -3488,4 +3727,43 @@ public class StringRelation {
 			buf.flush();
 		return true;
 	}
+	
+	/* benchmark for join and groupBy on relations with 10^6 tupels */
+	public static void main(String[] args) throws Exception {
+		int size = 1000000;
+		int categories = 100000;
+		Random random = new Random(42);
+		StringRelation facts = new StringRelation();
+		for (int t = 0; t < size; t++) {
+			StringTupel st = new StringTupel(3);
+			st.setValue("id", ("" + t));
+			st.setValue("category", ("C" + random.nextInt(categories)));
+			st.setValue("value", ("" + random.nextInt(1000)));
+			facts.addElement(st);
+		}
+		StringRelation names = new StringRelation();
+		for (int c = 0; c < categories; c++) {
+			StringTupel st = new StringTupel(2);
+			st.setValue("category", ("C" + c));
+			st.setValue("name", ("Category " + c));
+			names.addElement(st);
+		}
+		StringVector joinKeys = new StringVector();
+		joinKeys.addElement("category");
+		Aggregate[] aggregates = {
+			new Aggregate(Aggregate.COUNT, null),
+			new Aggregate(Aggregate.SUM, "value"),
+			new Aggregate(Aggregate.MIN, "value"),
+			new Aggregate(Aggregate.MAX, "value"),
+		};
+		for (int r = 0; r < 3; r++) {
+			long start = System.currentTimeMillis();
+			StringRelation joined = facts.join(names, false, false, joinKeys);
+			long joinTime = (System.currentTimeMillis() - start);
+			start = System.currentTimeMillis();
+			StringRelation groups = facts.groupBy(new String[] {"category"}, aggregates);
+			long groupTime = (System.currentTimeMillis() - start);
+			System.out.println("Joined " + size + " x " + categories + " tupels into " + joined.size() + " in " + joinTime + "ms, grouped into " + groups.size() + " in " + groupTime + "ms");
+		}
+	}
 }
@@ -60,6 +60,12 @@ public class StringTupel {
 		this.data = new LinkedHashMap(((initialCapacity * 4) + 2) / 3); // account for default load factor 0.75 (we want as many elements to actually fit before expansion)
 	}
 	
+	/* constructor for views that keep their data elsewhere, overwriting all
+	 * methods that access the map (used by ColumnarStringRelation and CsvReader) */
+	StringTupel(LinkedHashMap data) {
+		this.data = data;
+	}
+	
 	/**	add a key/value pair to this StringTupel
 	 * @param	key		the key to add the specified value for (must not be null)
 	 * @param	value	the value to assign to the specified key
@@ -188,10 +194,10 @@ public class StringTupel {
 	public boolean matches(StringTupel filter) {
 		if ((filter == null) || (filter.size() == 0))
 			return true;
-		for (Iterator kit = filter.data.keySet().iterator(); kit.hasNext();) {
-			String key = ((String) kit.next());
-			String ownVal = ((String) this.data.get(key));
-			String filterVal = ((String) filter.data.get(key));
+		String[] filterKeys = filter.getKeyArray();
+		for (int k = 0; k < filterKeys.length; k++) {
+			String ownVal = this.getValue(filterKeys[k]);
+			String filterVal = filter.getValue(filterKeys[k]);
 			if (notEqual(ownVal, filterVal))
 				return false;
 		}
@@ -206,11 +212,19 @@ public class StringTupel {
 	public StringTupel join(StringTupel toJoin) {
 		if ((toJoin == null) || (toJoin == this))
 			return this;
-		StringTupel st = new StringTupel(this.data.size() + toJoin.data.size());
-		st.data.putAll(toJoin.data);
-		st.data.putAll(this.data); // own values replace ones from argument
+		StringTupel st = new StringTupel(this.size() + toJoin.size());
+		toJoin.copyValues(st);
+		this.copyValues(st); // own values replace ones from argument
 		return st;
 	}
+	private void copyValues(StringTupel st) {
+		if (this.data == null) {
+			String[] keys = this.getKeyArray();
+			for (int k = 0; k < keys.length; k++)
+				st.data.put(keys[k], this.getValue(keys[k]));
+		}
+		else st.data.putAll(this.data);
+	}
 	
 	/** @see java.lang.Object#toString()
 	 */
@@ -402,10 +416,10 @@ public class StringTupel {
 		StringTupel st = ((StringTupel) obj);
 		if (st.size() != this.size())
 			return false;
-		for (Iterator kit = this.data.keySet().iterator(); kit.hasNext();) {
-			String key = ((String) kit.next());
-			String ownVal = this.getValue(key);
-			String objVal = st.getValue(key);
+		String[] keys = this.getKeyArray();
+		for (int k = 0; k < keys.length; k++) {
+			String ownVal = this.getValue(keys[k]);
+			String objVal = st.getValue(keys[k]);
 			if (notEqual(ownVal, objVal))
 				return false;
 		}
@@ -415,7 +429,7 @@ public class StringTupel {
 	/** @see java.lang.Object#hashCode()
 	 */
 	public int hashCode() {
-		if (this.data.isEmpty())
+		if (this.size() == 0)
 			return 0;
 		if (this.hash == 0) {
 			String[] keys = this.getKeyArray();
@@ -28,10 +28,17 @@
 package de.uka.ipd.idaho.stringUtils.regExUtils;
 
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import de.uka.ipd.idaho.stringUtils.StringVector;
 
@@ -42,17 +49,27 @@ import de.uka.ipd.idaho.stringUtils.StringVector;
  * that a PatternSet can contain a set of patterns, and the contains(Object o)
  * method returns true if (a) o is of type java.lang.String and (b.1) the
  * content Set contains the specified String explicitly, or (b.2) at least on of
- * the contained patterns matches the specified String
+ * the contained patterns matches the specified String<BR>
+ * The patterns are compiled once, on the first lookup after a modification.
+ * Patterns without any regular expression syntax go into a hash set, all
+ * others are combined into alternations, one for each first character of
+ * their literal prefixes, and one for the patterns without a literal prefix.
+ * This way, a lookup only tries the patterns that can possibly match. The
+ * results of pattern matching are cached in a bounded LRU cache. Adding
+ * patterns and compiling them synchronize on the PatternSet, so lookups
+ * running concurrently with a modification never install or cache results
+ * of a compiled form that misses the modification.
  * 
  * @author sautter
  */
 public class PatternSet implements Set {
+	private static final int MATCH_CACHE_SIZE = 4096;
+	private static final String REGEX_SYNTAX_CHARS = "\\^$.|?*+()[]{}";
 	
 	private StringVector patterns = new StringVector();
 	
 	private Set positiveSet = new HashSet();
-	private Set matchCacheSet = new HashSet();
-	private Set noMatchCacheSet = new HashSet();
+	private volatile CompiledPatterns compiledPatterns = null;
 	
 	/**	Constructor for a new empty PatternSet
 	 */
@@ -94,22 +111,20 @@ public class PatternSet implements Set {
 	/** @see java.util.Set#add(java.lang.Object)
 	 */
 	public boolean add(String s) {
-		if (RegExUtils.isSimplePattern(s)) {
-			String pattern = RegExUtils.getFullPattern(s);
-			boolean change = !this.patterns.contains(pattern);
-			this.patterns.addElementIgnoreDuplicates(pattern);
-			this.noMatchCacheSet.clear();
-			return change;
-		}
-		else if (RegExUtils.isValidRegEx(s)) {
-			boolean change = !this.patterns.contains(s);
-			this.patterns.addElementIgnoreDuplicates(s);
-			this.noMatchCacheSet.clear();
-			return change;
-		}
+		if (RegExUtils.isSimplePattern(s))
+			return this.addPattern(RegExUtils.getFullPattern(s));
+		else if (RegExUtils.isValidRegEx(s))
+			return this.addPattern(s);
 		else return this.positiveSet.add(s);
 	}
 	
+	private synchronized boolean addPattern(String pattern) {
+		boolean change = !this.patterns.contains(pattern);
+		this.patterns.addElementIgnoreDuplicates(pattern);
+		this.patternsModified();
+		return change;
+	}
+	
 	/** @see java.util.Set#addAll(java.util.Collection)
 	 */
 	public boolean addAll(Collection c) {
@@ -124,10 +139,15 @@ public class PatternSet implements Set {
 	 */
 	public void clear() {
 		this.positiveSet.clear();
-		this.matchCacheSet.clear();
-		this.noMatchCacheSet.clear();
-		
-		this.patterns.clear();
+		synchronized (this) {
+			this.patterns.clear();
+			this.patternsModified();
+		}
+	}
+	
+	/* discard compiled patterns (and cached matches with them), to be called holding the monitor, so compilePatterns() cannot interleave */
+	private void patternsModified() {
+		this.compiledPatterns = null;
 	}
 	
 	/** @see java.util.Set#contains(java.lang.Object)
@@ -139,30 +159,165 @@ public class PatternSet implements Set {
 		if (o == null) return false;
 		if (!(o instanceof String)) return false;
 		
+		//	do literal lookup
+		String str = o.toString();
+		CompiledPatterns cps = this.compiledPatterns;
+		if (cps == null)
+			cps = this.compilePatterns();
+		if (cps.literals.contains(str)) return true;
+		if (cps.isEmpty()) return false;
+		
 		//	do cache lookup
-		if (this.matchCacheSet.contains(o)) return true;
-		if (this.noMatchCacheSet.contains(o)) return false;
+		Boolean match;
+		synchronized (cps.matchCache) {
+			match = ((Boolean) cps.matchCache.get(str));
+		}
+		if (match != null) return match.booleanValue();
 		
-		//	do list lookup
-		for (int t = 0; t < this.patterns.size(); t++) {
-			try {
-				//	try regular expression match
-				if (o.toString().matches(this.patterns.get(t))) {
-					this.matchCacheSet.add(o);
-					return true;
+		//	do pattern lookup, and remember result (in cache of compiled patterns it came from, so it goes away with them)
+		match = (cps.matches(str) ? Boolean.TRUE : Boolean.FALSE);
+		synchronized (cps.matchCache) {
+			cps.matchCache.put(str, match);
+		}
+		return match.booleanValue();
+	}
+	
+	private synchronized CompiledPatterns compilePatterns() {
+		if (this.compiledPatterns == null)
+			this.compiledPatterns = new CompiledPatterns(this.patterns.toStringArray());
+		return this.compiledPatterns;
+	}
+	
+	/* immutable compiled form of the patterns, with literals in a hash set,
+	 * and regular expressions combined into alternations by the first char
+	 * of their literal prefixes, plus the cache of matching results */
+	private static class CompiledPatterns {
+		final HashSet literals = new HashSet();
+		final Map matchCache = new LinkedHashMap(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry eldest) {
+				return (this.size() > MATCH_CACHE_SIZE);
+			}
+		};
+		final HashMap patternsByFirstChar = new HashMap();
+		final Pattern[] unprefixedPatterns;
+		CompiledPatterns(String[] patterns) {
+			HashMap regExsByFirstChar = new HashMap();
+			ArrayList unprefixedRegExs = new ArrayList();
+			ArrayList separatePatterns = new ArrayList();
+			for (int p = 0; p < patterns.length; p++) {
+				String prefix = getLiteralPrefix(patterns[p]);
+				if ((prefix.length() == patterns[p].length()) && !prefix.startsWith(CASE_INSENSITIVE_FLAG))
+					this.literals.add(patterns[p]);
+				else if (prefix.length() == 0)
+					unprefixedRegExs.add(patterns[p]);
+				else if (prefix.startsWith(CASE_INSENSITIVE_FLAG)) {
+					addRegEx(regExsByFirstChar, Character.toLowerCase(prefix.charAt(CASE_INSENSITIVE_FLAG.length())), patterns[p]);
+					addRegEx(regExsByFirstChar, Character.toUpperCase(prefix.charAt(CASE_INSENSITIVE_FLAG.length())), patterns[p]);
 				}
+				else addRegEx(regExsByFirstChar, prefix.charAt(0), patterns[p]);
 			}
-			catch (Exception e) {
-				//	try plain comparison
-				if (o.toString().equals(this.patterns.get(t))) {
-					this.matchCacheSet.add(o);
-					return true;
+			for (Iterator fcit = regExsByFirstChar.keySet().iterator(); fcit.hasNext();) {
+				Character fc = ((Character) fcit.next());
+				this.patternsByFirstChar.put(fc, combine(((ArrayList) regExsByFirstChar.get(fc)), separatePatterns));
+			}
+			Pattern[] unprefixedPatterns = combine(unprefixedRegExs, separatePatterns);
+			separatePatterns.addAll(0, Arrays.asList(unprefixedPatterns));
+			this.unprefixedPatterns = ((Pattern[]) separatePatterns.toArray(new Pattern[separatePatterns.size()]));
+		}
+		
+		private static void addRegEx(HashMap regExsByFirstChar, char firstChar, String regEx) {
+			Character fc = new Character(firstChar);
+			ArrayList regExs = ((ArrayList) regExsByFirstChar.get(fc));
+			if (regExs == null) {
+				regExs = new ArrayList();
+				regExsByFirstChar.put(fc, regExs);
+			}
+			if (!regExs.contains(regEx))
+				regExs.add(regEx);
+		}
+		
+		/* combine regular expressions into a single alternation, except for
+		 * ones with back references, whose group numbers would change */
+		private static Pattern[] combine(ArrayList regExs, ArrayList separatePatterns) {
+			ArrayList combinable = new ArrayList();
+			for (int r = 0; r < regExs.size(); r++) {
+				String regEx = ((String) regExs.get(r));
+				if (hasBackReference(regEx))
+					separatePatterns.add(Pattern.compile(regEx));
+				else combinable.add(regEx);
+			}
+			if (combinable.isEmpty())
+				return new Pattern[0];
+			if (combinable.size() > 1) try {
+				StringBuffer alternation = new StringBuffer();
+				for (int r = 0; r < combinable.size(); r++) {
+					if (r != 0)
+						alternation.append('|');
+					alternation.append("(?:" + combinable.get(r) + ")");
 				}
+				Pattern[] combined = {Pattern.compile(alternation.toString())};
+				return combined;
+			} catch (PatternSyntaxException pse) {}
+			Pattern[] compiled = new Pattern[combinable.size()];
+			for (int r = 0; r < combinable.size(); r++)
+				compiled[r] = Pattern.compile((String) combinable.get(r));
+			return compiled;
+		}
+		
+		boolean isEmpty() {
+			return (this.patternsByFirstChar.isEmpty() && (this.unprefixedPatterns.length == 0));
+		}
+		
+		boolean matches(String str) {
+			if (str.length() != 0) {
+				Pattern[] patterns = ((Pattern[]) this.patternsByFirstChar.get(new Character(str.charAt(0))));
+				if ((patterns != null) && matches(patterns, str))
+					return true;
 			}
+			return matches(this.unprefixedPatterns, str);
 		}
+		private static boolean matches(Pattern[] patterns, String str) {
+			for (int p = 0; p < patterns.length; p++) {
+				if (patterns[p].matcher(str).matches())
+					return true;
+			}
+			return false;
+		}
+	}
+	
+	private static final String CASE_INSENSITIVE_FLAG = "(?i)";
+	
+	/* get the literal characters at the start of a regular expression that
+	 * every match has to start with, empty if there are top level options;
+	 * a leading case insensitivity flag is included in the prefix */
+	static String getLiteralPrefix(String regEx) {
+		if (regEx.indexOf('|') != -1)
+			return "";
+		if (regEx.startsWith(CASE_INSENSITIVE_FLAG)) {
+			String prefix = getLiteralPrefix(regEx.substring(CASE_INSENSITIVE_FLAG.length()));
+			return ((prefix.length() == 0) ? "" : (CASE_INSENSITIVE_FLAG + prefix));
+		}
+		int l = 0;
+		while ((l < regEx.length()) && (REGEX_SYNTAX_CHARS.indexOf(regEx.charAt(l)) == -1))
+			l++;
 		
-		//	remember string which is not contained
-		this.noMatchCacheSet.add(o);
+		//	last literal is optional if followed by a quantifier allowing zero occurrences
+		if ((l != 0) && (l < regEx.length()) && ("?*{".indexOf(regEx.charAt(l)) != -1))
+			l--;
+		return regEx.substring(0, l);
+	}
+	
+	private static boolean hasBackReference(String regEx) {
+		for (int c = 0; c < (regEx.length() - 1); c++) {
+			if (regEx.charAt(c) != '\\')
+				continue;
+			char nch = regEx.charAt(c + 1);
+			if (('1' <= nch) && (nch <= '9'))
+				return true;
+			if (nch == 'k')
+				return true;
+			c++; // skip escaped character
+		}
 		return false;
 	}
 	
@@ -225,4 +380,65 @@ public class PatternSet implements Set {
 		System.arraycopy(array, 0, o, 0, Math.min(o.length, array.length));
 		return null;
 	}
+	
+	/* benchmark comparing compiled lookups to matching each pattern on its
+	 * own, the latter being what lookups did before compiling patterns */
+	public static void main(String[] args) throws Exception {
+		int tokenCount = ((args.length < 1) ? 1000000 : Integer.parseInt(args[0]));
+		ArrayList patternList = new ArrayList();
+		String[] stopWords = {"a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "has", "in", "is", "it", "of", "on", "or", "that", "the", "to", "was", "were", "will", "with"};
+		for (int w = 0; w < stopWords.length; w++) {
+			patternList.add(stopWords[w]);
+			patternList.add(Character.toUpperCase(stopWords[w].charAt(0)) + stopWords[w].substring(1));
+		}
+		for (int p = 0; patternList.size() < 250; p++) {
+			patternList.add("word" + p);
+			patternList.add("pre" + p + "[a-z]*");
+			patternList.add("(?i)x" + p + "y[0-9]+");
+		}
+		patternList.add("[0-9]+");
+		patternList.add("[IVXLCM]+");
+		String[] patterns = ((String[]) patternList.toArray(new String[patternList.size()]));
+		
+		String[] vocabulary = new String[50000];
+		for (int v = 0; v < vocabulary.length; v++) {
+			if ((v % 10) == 0)
+				vocabulary[v] = stopWords[v % stopWords.length];
+			else if ((v % 10) == 1)
+				vocabulary[v] = ("" + v);
+			else if ((v % 10) == 2)
+				vocabulary[v] = ("pre" + (v % 100) + "fix");
+			else vocabulary[v] = ("token" + v);
+		}
+		String[] tokens = new String[tokenCount];
+		for (int t = 0; t < tokens.length; t++)
+			tokens[t] = vocabulary[(int) ((((long) t) * 7919) % vocabulary.length)];
+		
+		for (int round = 0; round < 2; round++) {
+			PatternSet ps = new PatternSet();
+			for (int p = 0; p < patterns.length; p++)
+				ps.add(patterns[p]);
+			int matches = 0;
+			long start = System.currentTimeMillis();
+			for (int t = 0; t < tokens.length; t++) {
+				if (ps.contains(tokens[t]))
+					matches++;
+			}
+			long time = (System.currentTimeMillis() - start);
+			System.out.println("compiled: " + matches + " of " + tokens.length + " tokens matched in " + time + "ms, " + ((time * 1000000) / tokens.length) + "ns per lookup");
+			
+			int sample = Math.min(tokens.length, 20000);
+			matches = 0;
+			start = System.currentTimeMillis();
+			for (int t = 0; t < sample; t++) {
+				for (int p = 0; p < patterns.length; p++)
+					if (tokens[t].matches(patterns[p])) {
+						matches++;
+						break;
+					}
+			}
+			time = (System.currentTimeMillis() - start);
+			System.out.println("uncompiled: " + matches + " of " + sample + " tokens matched in " + time + "ms, " + ((time * 1000000) / sample) + "ns per lookup");
+		}
+	}
 }